@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.bigdata.dastor.config.DatabaseDescriptor;
+
+/**
+ * BIGDATA:
+ * A cache of decompressed column blocks, shared by all sstables and bounded
+ * in bytes (BlockCacheSizeInMB).  Reads of hot rows of compressed sstables
+ * then deserialize the cached block instead of decompressing it again; unlike
+ * the row cache, only the blocks actually read are kept.
+ *
+ * The cache is split into segments, each an LRU under its own lock.  Blocks of
+ * deleted sstables are never requested again and just age out.
+ */
+public class BlockCache implements BlockCacheMBean
+{
+    public static final String MBEAN_OBJECT_NAME = "com.bigdata.dastor.db:type=Caches,cache=BlockCache";
+    public static final BlockCache instance;
+
+    private static final int SEGMENT_COUNT = 16;
+    // the key, the map entry and the array header
+    private static final int BLOCK_OVERHEAD = 128;
+
+    static
+    {
+        instance = new BlockCache(DatabaseDescriptor.getBlockCacheSize());
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            mbs.registerMBean(instance, new ObjectName(MBEAN_OBJECT_NAME));
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private volatile long capacity;
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong lastRequests = new AtomicLong(0);
+    private final AtomicLong lastHits = new AtomicLong(0);
+
+    private BlockCache(long capacity)
+    {
+        this.capacity = capacity;
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment();
+    }
+
+    public boolean isEnabled()
+    {
+        return capacity > 0;
+    }
+
+    /**
+     * @return the decompressed block, or null.
+     */
+    public byte[] get(Key key)
+    {
+        byte[] block = segmentFor(key).get(key);
+        requests.incrementAndGet();
+        if (block != null)
+            hits.incrementAndGet();
+        return block;
+    }
+
+    public void put(Key key, byte[] block)
+    {
+        // a block larger than a segment would only evict everything else
+        if (sizeOf(block) > capacity / SEGMENT_COUNT)
+            return;
+        segmentFor(key).put(key, block);
+    }
+
+    private Segment segmentFor(Key key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[(h & Integer.MAX_VALUE) % SEGMENT_COUNT];
+    }
+
+    private static long sizeOf(byte[] block)
+    {
+        return block.length + BLOCK_OVERHEAD;
+    }
+
+    public long getCapacityInBytes()
+    {
+        return capacity;
+    }
+
+    public void setCapacityInBytes(long capacity)
+    {
+        this.capacity = capacity;
+        for (Segment segment : segments)
+            segment.evict();
+    }
+
+    public long getSizeInBytes()
+    {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.getSize();
+        return size;
+    }
+
+    public int getBlockCount()
+    {
+        int count = 0;
+        for (Segment segment : segments)
+            count += segment.getCount();
+        return count;
+    }
+
+    public long getRequests()
+    {
+        return requests.get();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public double getRecentHitRate()
+    {
+        long r = requests.get();
+        long h = hits.get();
+        try
+        {
+            return ((double)(h - lastHits.get())) / (r - lastRequests.get());
+        }
+        finally
+        {
+            lastRequests.set(r);
+            lastHits.set(h);
+        }
+    }
+
+    public void clear()
+    {
+        for (Segment segment : segments)
+            segment.clear();
+        requests.set(0);
+        hits.set(0);
+        lastRequests.set(0);
+        lastHits.set(0);
+    }
+
+    /**
+     * A block: the sstable data file, the position of the first block of the row,
+     * and the offset of the block from it.
+     */
+    public static class Key
+    {
+        private final String path;
+        private final long rowPosition;
+        private final long blockOffset;
+
+        public Key(String path, long rowPosition, long blockOffset)
+        {
+            this.path = path;
+            this.rowPosition = rowPosition;
+            this.blockOffset = blockOffset;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return rowPosition == other.rowPosition && blockOffset == other.blockOffset && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int h = path.hashCode();
+            h = 31 * h + (int) (rowPosition ^ (rowPosition >>> 32));
+            h = 31 * h + (int) (blockOffset ^ (blockOffset >>> 32));
+            return h;
+        }
+    }
+
+    private class Segment
+    {
+        private final LinkedHashMap<Key, byte[]> blocks = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+        private long size = 0;
+
+        synchronized byte[] get(Key key)
+        {
+            return blocks.get(key);
+        }
+
+        synchronized void put(Key key, byte[] block)
+        {
+            byte[] old = blocks.put(key, block);
+            if (old != null)
+                size -= sizeOf(old);
+            size += sizeOf(block);
+            evict();
+        }
+
+        synchronized void evict()
+        {
+            long limit = capacity / SEGMENT_COUNT;
+            Iterator<Map.Entry<Key, byte[]>> iter = blocks.entrySet().iterator();
+            while (size > limit && iter.hasNext())
+            {
+                size -= sizeOf(iter.next().getValue());
+                iter.remove();
+            }
+        }
+
+        synchronized long getSize()
+        {
+            return size;
+        }
+
+        synchronized int getCount()
+        {
+            return blocks.size();
+        }
+
+        synchronized void clear()
+        {
+            blocks.clear();
+            size = 0;
+        }
+    }
+}
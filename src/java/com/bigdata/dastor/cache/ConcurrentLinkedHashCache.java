@@ -0,0 +1,98 @@
+package com.bigdata.dastor.cache;
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+import java.util.Set;
+
+import com.reardencommerce.kernel.collections.shared.evictable.ConcurrentLinkedHashMap;
+
+/**
+ * BIGDATA: the on-heap cache, bounded in entries, with second chance eviction.
+ */
+public class ConcurrentLinkedHashCache<K, V> implements ICache<K, V>
+{
+    private final ConcurrentLinkedHashMap<K, V> map;
+
+    public ConcurrentLinkedHashCache(int capacity)
+    {
+        map = ConcurrentLinkedHashMap.create(ConcurrentLinkedHashMap.EvictionPolicy.SECOND_CHANCE, capacity);
+    }
+
+    public long capacity()
+    {
+        return map.capacity();
+    }
+
+    public void setCapacity(long capacity)
+    {
+        map.setCapacity((int) Math.min(capacity, Integer.MAX_VALUE));
+    }
+
+    public void put(K key, V value)
+    {
+        map.put(key, value);
+    }
+
+    public V get(K key)
+    {
+        return map.get(key);
+    }
+
+    public void remove(K key)
+    {
+        map.remove(key);
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public long weightedSize()
+    {
+        return map.size();
+    }
+
+    public boolean isWeighted()
+    {
+        return false;
+    }
+
+    public boolean isPutCopying()
+    {
+        return false;
+    }
+
+    public String policy()
+    {
+        return "secondchance";
+    }
+
+    public void clear()
+    {
+        map.clear();
+    }
+
+    public Set<K> keySet()
+    {
+        return map.keySet();
+    }
+}
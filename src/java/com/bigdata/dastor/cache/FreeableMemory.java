@@ -0,0 +1,77 @@
+package com.bigdata.dastor.cache;
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.jna.Memory;
+
+/**
+ * BIGDATA:
+ * Native memory freed explicitly once its last reference is dropped, instead
+ * of when the collector finalizes it.  It starts with one reference, the
+ * cache's; readers take another one for the time they copy out of it.
+ */
+public class FreeableMemory extends Memory
+{
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    public FreeableMemory(long size)
+    {
+        super(size);
+    }
+
+    /**
+     * @return false if the memory was already freed, in which case it must not be read.
+     */
+    public boolean reference()
+    {
+        while (true)
+        {
+            int n = references.get();
+            if (n <= 0)
+                return false;
+            if (references.compareAndSet(n, n + 1))
+                return true;
+        }
+    }
+
+    public void unreference()
+    {
+        if (references.decrementAndGet() == 0)
+            free();
+    }
+
+    private void free()
+    {
+        assert peer != 0;
+        super.finalize(); // frees the native memory
+        peer = 0;
+    }
+
+    @Override
+    protected void finalize()
+    {
+        // only a leaked reference gets here with the memory not freed
+        if (peer != 0)
+            super.finalize();
+    }
+}
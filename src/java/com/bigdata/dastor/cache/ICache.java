@@ -0,0 +1,70 @@
+package com.bigdata.dastor.cache;
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+import java.util.Set;
+
+/**
+ * BIGDATA:
+ * The storage of an InstrumentedCache.  Capacity and weighted size are in
+ * entries, or in bytes for weighted caches.
+ */
+public interface ICache<K, V>
+{
+    public long capacity();
+
+    public void setCapacity(long capacity);
+
+    public void put(K key, V value);
+
+    public V get(K key);
+
+    public void remove(K key);
+
+    /**
+     * @return the number of entries
+     */
+    public int size();
+
+    /**
+     * @return the size to compare with the capacity
+     */
+    public long weightedSize();
+
+    /**
+     * @return true if capacity and weighted size are in bytes
+     */
+    public boolean isWeighted();
+
+    /**
+     * @return true if get returns a copy of the cached value, which callers may not update in place
+     */
+    public boolean isPutCopying();
+
+    /**
+     * @return the name of the eviction policy
+     */
+    public String policy();
+
+    public void clear();
+
+    public Set<K> keySet();
+}
@@ -24,12 +24,9 @@ package com.bigdata.dastor.cache;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
-import com.reardencommerce.kernel.collections.shared.evictable.ConcurrentLinkedHashMap;
-
 public class InstrumentedCache<K, V>
 {
-    private int capacity;
-    private final ConcurrentLinkedHashMap<K, V> map;
+    private final ICache<K, V> map;
     private final AtomicLong requests = new AtomicLong(0);
     private final AtomicLong hits = new AtomicLong(0);
     private final AtomicLong lastRequests = new AtomicLong(0);
@@ -38,8 +35,15 @@ public class InstrumentedCache<K, V>
 
     public InstrumentedCache(int capacity)
     {
-        this.capacity = capacity;
-        map = ConcurrentLinkedHashMap.create(ConcurrentLinkedHashMap.EvictionPolicy.SECOND_CHANCE, capacity);
+        this(new ConcurrentLinkedHashCache<K, V>(capacity));
+    }
+
+    /**
+     * BIGDATA: a cache of another provider, e.g. SerializingCache.
+     */
+    public InstrumentedCache(ICache<K, V> map)
+    {
+        this.map = map;
     }
 
     public void put(K key, V value)
@@ -66,9 +70,9 @@ public class InstrumentedCache<K, V>
         map.remove(key);
     }
 
-    public int getCapacity()
+    public long getCapacity()
     {
-        return capacity;
+        return map.capacity();
     }
 
     public boolean isCapacitySetManually()
@@ -76,13 +80,12 @@ public class InstrumentedCache<K, V>
         return capacitySetManually;
     }
     
-    public void updateCapacity(int capacity)
+    public void updateCapacity(long capacity)
     {
         map.setCapacity(capacity);
-        this.capacity = capacity;
     }
 
-    public void setCapacity(int capacity)
+    public void setCapacity(long capacity)
     {
         updateCapacity(capacity);
         capacitySetManually = true;
@@ -93,6 +96,26 @@ public class InstrumentedCache<K, V>
         return map.size();
     }
 
+    public long getWeightedSize()
+    {
+        return map.weightedSize();
+    }
+
+    public boolean isWeighted()
+    {
+        return map.isWeighted();
+    }
+
+    public boolean isPutCopying()
+    {
+        return map.isPutCopying();
+    }
+
+    public String getPolicy()
+    {
+        return map.policy();
+    }
+
     public long getHits()
     {
         return hits.get();
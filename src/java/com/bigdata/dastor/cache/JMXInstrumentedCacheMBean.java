@@ -23,10 +23,21 @@ package com.bigdata.dastor.cache;
 
 public interface JMXInstrumentedCacheMBean
 {
-    public int getCapacity();
-    public void setCapacity(int capacity);
+    public long getCapacity();
+    public void setCapacity(long capacity);
     public int getSize();
 
+    /**
+     * BIGDATA: the size compared with the capacity; in bytes if isWeighted, else the entry count.
+     */
+    public long getWeightedSize();
+    public boolean isWeighted();
+
+    /**
+     * BIGDATA: the eviction policy, to compare hit rates across policies.
+     */
+    public String getPolicy();
+
     /** total request count since cache creation */
     public long getRequests();
 
@@ -0,0 +1,275 @@
+package com.bigdata.dastor.cache;
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BIGDATA:
+ * A scan resistant cache bounded in bytes, with segmented LRU eviction.
+ *
+ * A new entry enters the probationary part of the cache, and only moves to the
+ * protected part once it is hit.  When the protected part is over its share
+ * of the capacity, its least recently used entries go back to probation; the
+ * cache evicts the least recently used entries of probation.  So a scan, or a
+ * sweep over the keys, which hits each of its entries once, only churns the
+ * probationary part and leaves the hot set protected.
+ *
+ * Entries are weighed with an IWeigher when they are put; a cached value
+ * updated in place afterwards keeps its weight until it is put again.  Like SerializingCache, the
+ * cache is split into segments, each under its own lock.
+ */
+public class SLRUCache<K, V> implements ICache<K, V>
+{
+    private static final int SEGMENT_COUNT = 16;
+    // share of the capacity of the protected part
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final IWeigher<K, V> weigher;
+    private final Segment[] segments;
+    private volatile long capacity;
+
+    @SuppressWarnings("unchecked")
+    public SLRUCache(long capacity, IWeigher<K, V> weigher)
+    {
+        this.capacity = capacity;
+        this.weigher = weigher;
+        segments = (Segment[]) new SLRUCache.Segment[SEGMENT_COUNT];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment();
+    }
+
+    public long capacity()
+    {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity)
+    {
+        this.capacity = capacity;
+        for (Segment segment : segments)
+            segment.evict();
+    }
+
+    public void put(K key, V value)
+    {
+        long weight = weigher.weightOf(key, value);
+        if (weight > capacity / SEGMENT_COUNT)
+        {
+            remove(key); // the older value is stale now
+            return;
+        }
+        segmentFor(key).put(key, new Entry<V>(value, weight));
+    }
+
+    public V get(K key)
+    {
+        return segmentFor(key).get(key);
+    }
+
+    public void remove(K key)
+    {
+        segmentFor(key).remove(key);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.getCount();
+        return size;
+    }
+
+    public long weightedSize()
+    {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.getSize();
+        return size;
+    }
+
+    public boolean isWeighted()
+    {
+        return true;
+    }
+
+    public boolean isPutCopying()
+    {
+        return false;
+    }
+
+    public String policy()
+    {
+        return "slru";
+    }
+
+    public void clear()
+    {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    public Set<K> keySet()
+    {
+        Set<K> keys = new HashSet<K>();
+        for (Segment segment : segments)
+            segment.addKeys(keys);
+        return keys;
+    }
+
+    private Segment segmentFor(K key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[(h & Integer.MAX_VALUE) % SEGMENT_COUNT];
+    }
+
+    private static class Entry<V>
+    {
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private class Segment
+    {
+        private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+        private final LinkedHashMap<K, Entry<V>> protect = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+        private long probationSize = 0;
+        private long protectSize = 0;
+
+        synchronized V get(K key)
+        {
+            Entry<V> entry = protect.get(key);
+            if (entry != null)
+                return entry.value;
+
+            entry = probation.remove(key);
+            if (entry == null)
+                return null;
+            // a second hit: promote
+            probationSize -= entry.weight;
+            protect.put(key, entry);
+            protectSize += entry.weight;
+            demote();
+            return entry.value;
+        }
+
+        synchronized void put(K key, Entry<V> entry)
+        {
+            // a replaced entry keeps its place
+            Entry<V> old = protect.get(key);
+            if (old != null)
+            {
+                protect.put(key, entry);
+                protectSize += entry.weight - old.weight;
+                demote();
+            }
+            else
+            {
+                old = probation.put(key, entry);
+                probationSize += entry.weight - (old == null ? 0 : old.weight);
+            }
+            evict();
+        }
+
+        synchronized void remove(K key)
+        {
+            Entry<V> old = protect.remove(key);
+            if (old != null)
+            {
+                protectSize -= old.weight;
+                return;
+            }
+            old = probation.remove(key);
+            if (old != null)
+                probationSize -= old.weight;
+        }
+
+        synchronized void evict()
+        {
+            long limit = capacity / SEGMENT_COUNT;
+            demote();
+            Iterator<Map.Entry<K, Entry<V>>> iter = probation.entrySet().iterator();
+            while (probationSize + protectSize > limit && iter.hasNext())
+            {
+                probationSize -= iter.next().getValue().weight;
+                iter.remove();
+            }
+            // only when the protected part alone is over the capacity, after a resize
+            iter = protect.entrySet().iterator();
+            while (protectSize > limit && iter.hasNext())
+            {
+                protectSize -= iter.next().getValue().weight;
+                iter.remove();
+            }
+        }
+
+        // caller synchronizes
+        private void demote()
+        {
+            long limit = (long) (capacity / SEGMENT_COUNT * PROTECTED_RATIO);
+            Iterator<Map.Entry<K, Entry<V>>> iter = protect.entrySet().iterator();
+            while (protectSize > limit && iter.hasNext())
+            {
+                Map.Entry<K, Entry<V>> lru = iter.next();
+                iter.remove();
+                protectSize -= lru.getValue().weight;
+                probation.put(lru.getKey(), lru.getValue());
+                probationSize += lru.getValue().weight;
+            }
+        }
+
+        synchronized long getSize()
+        {
+            return probationSize + protectSize;
+        }
+
+        synchronized int getCount()
+        {
+            return probation.size() + protect.size();
+        }
+
+        synchronized void clear()
+        {
+            probation.clear();
+            protect.clear();
+            probationSize = 0;
+            protectSize = 0;
+        }
+
+        synchronized void addKeys(Set<K> keys)
+        {
+            keys.addAll(probation.keySet());
+            keys.addAll(protect.keySet());
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.bigdata.dastor.cache;
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.bigdata.dastor.io.ICompactSerializer2;
+import com.bigdata.dastor.io.util.DataOutputBuffer;
+
+/**
+ * BIGDATA:
+ * A cache which keeps its values serialized in native memory, so that large
+ * caches add nothing to the Java heap but their keys.  Values are serialized
+ * on put and deserialized on every get; capacity is in bytes.
+ *
+ * Like BlockCache, the cache is split into segments, each an LRU under its own
+ * lock.  A get only references the memory of a value under the lock, and
+ * deserializes it outside; memory evicted meanwhile is freed by the last reader.
+ */
+public class SerializingCache<K, V> implements ICache<K, V>
+{
+    private static final int SEGMENT_COUNT = 16;
+    // the key reference, the map entry and the FreeableMemory object
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final ICompactSerializer2<V> serializer;
+    private final Segment[] segments;
+    private volatile long capacity;
+
+    @SuppressWarnings("unchecked")
+    public SerializingCache(long capacity, ICompactSerializer2<V> serializer)
+    {
+        this.capacity = capacity;
+        this.serializer = serializer;
+        segments = (Segment[]) new SerializingCache.Segment[SEGMENT_COUNT];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment();
+    }
+
+    public long capacity()
+    {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity)
+    {
+        this.capacity = capacity;
+        for (Segment segment : segments)
+            segment.evict();
+    }
+
+    public void put(K key, V value)
+    {
+        FreeableMemory mem = serialize(value);
+        if (sizeOf(mem) > capacity / SEGMENT_COUNT)
+        {
+            mem.unreference();
+            remove(key); // the older value is stale now
+            return;
+        }
+        segmentFor(key).put(key, mem);
+    }
+
+    public V get(K key)
+    {
+        FreeableMemory mem = segmentFor(key).reference(key);
+        if (mem == null)
+            return null;
+        try
+        {
+            return deserialize(mem);
+        }
+        finally
+        {
+            mem.unreference();
+        }
+    }
+
+    public void remove(K key)
+    {
+        segmentFor(key).remove(key);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.getCount();
+        return size;
+    }
+
+    public long weightedSize()
+    {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.getSize();
+        return size;
+    }
+
+    public boolean isWeighted()
+    {
+        return true;
+    }
+
+    public boolean isPutCopying()
+    {
+        return true;
+    }
+
+    public String policy()
+    {
+        return "lru";
+    }
+
+    public void clear()
+    {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    public Set<K> keySet()
+    {
+        Set<K> keys = new HashSet<K>();
+        for (Segment segment : segments)
+            segment.addKeys(keys);
+        return keys;
+    }
+
+    private Segment segmentFor(K key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[(h & Integer.MAX_VALUE) % SEGMENT_COUNT];
+    }
+
+    private static long sizeOf(FreeableMemory mem)
+    {
+        return mem.size() + ENTRY_OVERHEAD;
+    }
+
+    private FreeableMemory serialize(V value)
+    {
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        try
+        {
+            serializer.serialize(value, buffer);
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+        // Memory refuses 0 bytes
+        FreeableMemory mem = new FreeableMemory(Math.max(1, buffer.getLength()));
+        mem.write(0, buffer.getData(), 0, buffer.getLength());
+        return mem;
+    }
+
+    private V deserialize(FreeableMemory mem)
+    {
+        byte[] bytes = new byte[(int) mem.size()];
+        mem.read(0, bytes, 0, bytes.length);
+        try
+        {
+            return serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+    }
+
+    private class Segment
+    {
+        private final LinkedHashMap<K, FreeableMemory> entries = new LinkedHashMap<K, FreeableMemory>(16, 0.75f, true);
+        private long size = 0;
+
+        /**
+         * @return the referenced memory of key, or null.
+         */
+        synchronized FreeableMemory reference(K key)
+        {
+            FreeableMemory mem = entries.get(key);
+            // the cache holds a reference to every memory in the map
+            if (mem != null && !mem.reference())
+                throw new AssertionError("freed memory in the cache for " + key);
+            return mem;
+        }
+
+        synchronized void put(K key, FreeableMemory mem)
+        {
+            FreeableMemory old = entries.put(key, mem);
+            size += sizeOf(mem);
+            if (old != null)
+                release(old);
+            evict();
+        }
+
+        synchronized void remove(K key)
+        {
+            FreeableMemory old = entries.remove(key);
+            if (old != null)
+                release(old);
+        }
+
+        synchronized void evict()
+        {
+            long limit = capacity / SEGMENT_COUNT;
+            Iterator<Map.Entry<K, FreeableMemory>> iter = entries.entrySet().iterator();
+            while (size > limit && iter.hasNext())
+            {
+                FreeableMemory mem = iter.next().getValue();
+                iter.remove();
+                release(mem);
+            }
+        }
+
+        synchronized void clear()
+        {
+            for (FreeableMemory mem : entries.values())
+                release(mem);
+            entries.clear();
+        }
+
+        synchronized long getSize()
+        {
+            return size;
+        }
+
+        synchronized int getCount()
+        {
+            return entries.size();
+        }
+
+        synchronized void addKeys(Set<K> keys)
+        {
+            keys.addAll(entries.keySet());
+        }
+
+        // caller synchronizes
+        private void release(FreeableMemory mem)
+        {
+            size -= sizeOf(mem);
+            mem.unreference();
+        }
+    }
+}
@@ -47,10 +47,26 @@ public final class CFMetaData
     // BIGDATA:
     public final long compactSkipSize; // default 0, no skip
     public final Compression.Algorithm compressAlgo; // default null
+    public final boolean arenaMemtable; // default false, memtable on heap
+    public final DatabaseDescriptor.Durability durability; // default commitlog
+    public final DatabaseDescriptor.RowCacheProvider rowCacheProvider; // default heap
+    public final long rowCacheSizeInBytes; // capacity of a serializing or slru row cache, default 0 (off)
+    public final DatabaseDescriptor.CachePolicy rowCachePolicy; // default secondchance
+    public final DatabaseDescriptor.CachePolicy keyCachePolicy; // default secondchance
+    public final long keyCacheSizeInBytes; // capacity of an slru key cache, default 0 (off)
+    public final int columnBloomFilterThreshold; // rows of more columns get a column filter; 0 all (default), -1 none
+    public final DatabaseDescriptor.CompactionStrategy compactionStrategy; // default sizetiered
+    public final long leveledSSTableSize; // the size of the sstables of a leveled bucket
+    public final long timeWindowSize; // the span of the windows of a timewindow bucket, in ms
 
     CFMetaData(String tableName, String cfName, String columnType, AbstractType comparator, AbstractType subcolumnComparator,
                String comment, double rowCacheSize, double keyCacheSize, int rowCacheSavePeriodInSeconds, int keyCacheSavePeriodInSeconds,
-               long compactSkipSize, Compression.Algorithm compressAlgo)
+               long compactSkipSize, Compression.Algorithm compressAlgo, boolean arenaMemtable,
+               DatabaseDescriptor.Durability durability, DatabaseDescriptor.RowCacheProvider rowCacheProvider,
+               long rowCacheSizeInBytes, DatabaseDescriptor.CachePolicy rowCachePolicy,
+               DatabaseDescriptor.CachePolicy keyCachePolicy, long keyCacheSizeInBytes,
+               int columnBloomFilterThreshold, DatabaseDescriptor.CompactionStrategy compactionStrategy,
+               long leveledSSTableSize, long timeWindowSize)
     {
         this.tableName = tableName;
         this.cfName = cfName;
@@ -65,6 +81,17 @@ public final class CFMetaData
         // BIGDATA:
         this.compactSkipSize = compactSkipSize;
         this.compressAlgo = compressAlgo;
+        this.arenaMemtable = arenaMemtable;
+        this.durability = durability;
+        this.rowCacheProvider = rowCacheProvider;
+        this.rowCacheSizeInBytes = rowCacheSizeInBytes;
+        this.rowCachePolicy = rowCachePolicy;
+        this.keyCachePolicy = keyCachePolicy;
+        this.keyCacheSizeInBytes = keyCacheSizeInBytes;
+        this.columnBloomFilterThreshold = columnBloomFilterThreshold;
+        this.compactionStrategy = compactionStrategy;
+        this.leveledSSTableSize = leveledSSTableSize;
+        this.timeWindowSize = timeWindowSize;
     }
 
     // a quick and dirty pretty printer for describing the column family...
@@ -92,7 +119,18 @@ public final class CFMetaData
                 && other.keyCacheSavePeriodInSeconds == keyCacheSavePeriodInSeconds
                 // BIGDATA:
                 && other.compactSkipSize == compactSkipSize
-                && other.compressAlgo == compressAlgo;
+                && other.compressAlgo == compressAlgo
+                && other.arenaMemtable == arenaMemtable
+                && other.durability == durability
+                && other.rowCacheProvider == rowCacheProvider
+                && other.rowCacheSizeInBytes == rowCacheSizeInBytes
+                && other.rowCachePolicy == rowCachePolicy
+                && other.keyCachePolicy == keyCachePolicy
+                && other.keyCacheSizeInBytes == keyCacheSizeInBytes
+                && other.columnBloomFilterThreshold == columnBloomFilterThreshold
+                && other.compactionStrategy == compactionStrategy
+                && other.leveledSSTableSize == leveledSSTableSize
+                && other.timeWindowSize == timeWindowSize;
     }
 
     // BIGDATA:
@@ -119,6 +157,17 @@ public final class CFMetaData
             dout.writeUTF(cfm.compressAlgo.getName());
         else 
             dout.writeUTF(Compression.COMPRESSION_NULL);
+        dout.writeBoolean(cfm.arenaMemtable);
+        dout.writeUTF(cfm.durability.name());
+        dout.writeUTF(cfm.rowCacheProvider.name());
+        dout.writeLong(cfm.rowCacheSizeInBytes);
+        dout.writeUTF(cfm.rowCachePolicy.name());
+        dout.writeUTF(cfm.keyCachePolicy.name());
+        dout.writeLong(cfm.keyCacheSizeInBytes);
+        dout.writeInt(cfm.columnBloomFilterThreshold);
+        dout.writeUTF(cfm.compactionStrategy.name());
+        dout.writeLong(cfm.leveledSSTableSize);
+        dout.writeLong(cfm.timeWindowSize);
         dout.close();
         return bout.toByteArray();
     }
@@ -159,9 +208,22 @@ public final class CFMetaData
         Compression.Algorithm compressAlgo = null;
         if (!compressAlgoName.equals(Compression.COMPRESSION_NULL))
             compressAlgo = Compression.getCompressionAlgorithmByName(compressAlgoName);
+        boolean arenaMemtable = din.readBoolean();
+        DatabaseDescriptor.Durability durability = DatabaseDescriptor.Durability.valueOf(din.readUTF());
+        DatabaseDescriptor.RowCacheProvider rowCacheProvider = DatabaseDescriptor.RowCacheProvider.valueOf(din.readUTF());
+        long rowCacheSizeInBytes = din.readLong();
+        DatabaseDescriptor.CachePolicy rowCachePolicy = DatabaseDescriptor.CachePolicy.valueOf(din.readUTF());
+        DatabaseDescriptor.CachePolicy keyCachePolicy = DatabaseDescriptor.CachePolicy.valueOf(din.readUTF());
+        long keyCacheSizeInBytes = din.readLong();
+        int columnBloomFilterThreshold = din.readInt();
+        DatabaseDescriptor.CompactionStrategy compactionStrategy = DatabaseDescriptor.CompactionStrategy.valueOf(din.readUTF());
+        long leveledSSTableSize = din.readLong();
+        long timeWindowSize = din.readLong();
         CFMetaData cfm = new CFMetaData(tableName, cfName, columnType, comparator, subcolumnComparator,
                 comment, rowCacheSize, keyCacheSize, rowCacheSavePeriod, keyCacheSavePeriod,
-                compactSkipSize, compressAlgo);
+                compactSkipSize, compressAlgo, arenaMemtable, durability, rowCacheProvider, rowCacheSizeInBytes,
+                rowCachePolicy, keyCachePolicy, keyCacheSizeInBytes, columnBloomFilterThreshold,
+                compactionStrategy, leveledSSTableSize, timeWindowSize);
         return cfm;
     }
 
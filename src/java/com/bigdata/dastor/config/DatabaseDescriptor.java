@@ -74,7 +74,44 @@ public class DatabaseDescriptor
     // don't capitalize these; we need them to match what's in the config file for CLS.valueOf to parse
     public static enum CommitLogSync {
         periodic,
-        batch
+        batch,
+        group // BIGDATA: batch durability, entries appended concurrently by the writers
+    }
+
+    // BIGDATA: per bucket; commitlog acknowledges writes as LogSyncMode does, deferred
+    // acknowledges them before they are synced, none does not log them at all.
+    public static enum Durability {
+        commitlog,
+        none,
+        deferred
+    }
+
+    // BIGDATA: per bucket; heap keeps the cached rows as objects, serializing keeps them
+    // serialized out of the heap, bounded in bytes by RowCacheSizeInMB.
+    public static enum RowCacheProvider {
+        heap,
+        serializing
+    }
+
+    // BIGDATA: per bucket eviction of the key and row caches; secondchance is bounded in
+    // entries, slru is scan resistant and bounded in bytes by Key/RowCacheSizeInMB.
+    public static enum CachePolicy {
+        secondchance,
+        slru
+    }
+
+    // BIGDATA: per bucket; how minor compactions choose the sstables to merge, see
+    // ICompactionStrategy.
+    public static enum CompactionStrategy {
+        sizetiered,
+        leveled,
+        timewindow
+    }
+
+    // BIGDATA: filter of the keys of an sstable (-Filter.db)
+    public static enum BloomFilterType {
+        standard,
+        blocked
     }
 
     public static enum DiskAccessMode {
@@ -104,6 +141,8 @@ public class DatabaseDescriptor
     private static int consistencyThreads = 4; // not configurable
     private static int concurrentReaders = 8;
     private static int concurrentWriters = 32;
+    /* BIGDATA: threads serializing and compressing rows of flushing memtables */
+    private static int flushWorkerThreads = Runtime.getRuntime().availableProcessors();
 
     private static double flushDataBufferSizeInMB = 32;
     private static double flushIndexBufferSizeInMB = 8;
@@ -125,6 +164,10 @@ public class DatabaseDescriptor
     private static int memtableThroughput = 64;
     /* Number of objects in millions in the memtable before it is dumped */
     private static double memtableOperations = 100; // BIGDATA: large enough to make ineffective.
+    /* BIGDATA: estimated heap retained by a memtable before it is dumped, 0 to disable */
+    private static int memtableLiveSizeInMB = 0;
+    /* BIGDATA: ceiling of the heap retained by all memtables, including those being flushed, 0 to disable */
+    private static int memtableTotalSpaceInMB = 0;
     /* 
      * This parameter enables or disables consistency checks. 
      * If set to false the read repairs are disable for very
@@ -146,6 +189,11 @@ public class DatabaseDescriptor
     private static CommitLogSync commitLogSync = CommitLogSync.periodic; // BIGDATA: initialize
     private static double commitLogSyncBatchMS = 0; // BIGDATA: disable, each write will be synced to disk individually
     private static int commitLogSyncPeriodMS = 10000; // BIGDATA: initialize
+    /* BIGDATA: pre-allocated, memory-mapped and recycled commit log segments; always for group sync */
+    private static boolean commitLogMapped = false;
+    /* BIGDATA: compression of commit log entries of at least commitLogCompressStartSize bytes */
+    private static Compression.Algorithm commitLogCompressAlgo = Compression.Algorithm.NONE;
+    private static int commitLogCompressStartSize = 512;
 
     // BIGDATA: initialize
     private static DiskAccessMode diskAccessMode = DiskAccessMode.standard;  // BIGDATA: initialize
@@ -158,7 +206,11 @@ public class DatabaseDescriptor
 
     private static IAuthenticator authenticator = new AllowAllAuthenticator();
 
-    private static int indexinterval = 128;
+    private static volatile int indexinterval = 128;
+    // BIGDATA: page size of the paged sstable index, 0 for none
+    private static int indexPageSize = 0;
+    // BIGDATA
+    private static BloomFilterType bloomFilterType = BloomFilterType.standard;
 
     private final static String SYSTEM_CONF_FILE = "system-conf.xml";
 
@@ -168,9 +220,13 @@ public class DatabaseDescriptor
     // BIGDATA: for new row format, is the index at end of row?
     // the first byte of a row is row format.
     private static boolean newRowFormatIndexAtEnd = false;
+    // BIGDATA: column values read from mapped data files are views until used
+    private static boolean zeroCopyReads = false;
     
     // BIGDATA: only when a row larger than this size, compression will be applied.
     private static int compressStartRowSize = 0;
+    // BIGDATA: bytes of decompressed column blocks cached, 0 disables the block cache.
+    private static long blockCacheSize = 0;
 
     // BIGDATA: try to lock memory.
     private static boolean tryLockMemoryEnabled = true;
@@ -184,9 +240,21 @@ public class DatabaseDescriptor
     // BIGDATA:
     // concurrent compaction of different CFs
     private static boolean concurrentCompactionEnabled = false;
+    // BIGDATA: sstable scans read the next buffer ahead on a background thread
+    private static boolean scanReadAhead = true;
+    // BIGDATA: compaction drops the pages of its inputs and outputs from the page cache
+    private static boolean compactionSkipPageCache = true;
+    // BIGDATA: threads a single compaction is split across, by token range
+    private static int compactionParallelism = 1;
+    // BIGDATA: MB per second all compactions read at most together, 0 for unlimited
+    private static int compactionThroughputInMB = 0;
 
     public static final int DEFAULT_ROW_CACHE_SAVE_PERIOD_IN_SECONDS = 0;
     public static final int DEFAULT_KEY_CACHE_SAVE_PERIOD_IN_SECONDS = 0;
+    // BIGDATA: the size of the sstables of the levels of a leveled bucket
+    public static final long DEFAULT_LEVELED_SSTABLE_SIZE = 64L * 1024L * 1024L;
+    // BIGDATA: the span of write timestamps of the windows of a timewindow bucket, in ms
+    public static final long DEFAULT_TIME_WINDOW_SIZE = 60L * 60L * 1000L;
 
     public static File getSerializedRowCachePath(String ksName, String cfName)
     {
@@ -198,6 +266,12 @@ public class DatabaseDescriptor
         return new File(savedCachesDirectory + File.separator + ksName + "-" + cfName + "-KeyCache");
     }
 
+    // BIGDATA: the levels of the sstables of a leveled bucket; if lost, all are back to level 0
+    public static File getLeveledManifestPath(String ksName, String cfName)
+    {
+        return new File(savedCachesDirectory + File.separator + ksName + "-" + cfName + "-Levels");
+    }
+
     public static int getCompactionPriority()
     {
         String priorityString = System.getProperty("bigdata.dastor.compaction.priority");
@@ -265,14 +339,14 @@ public class DatabaseDescriptor
                 }
                 catch (IllegalArgumentException e)
                 {
-                    throw new ConfigurationException("LogSyncMode must be 'periodic' or 'batch'.");
+                    throw new ConfigurationException("LogSyncMode must be 'periodic', 'batch' or 'group'.");
                 }
             }
             if (commitLogSync == null)
             {
                 throw new ConfigurationException("Bad config LogSyncMode");
             }
-            else if (commitLogSync == CommitLogSync.batch)
+            else if (commitLogSync == CommitLogSync.batch || commitLogSync == CommitLogSync.group)
             {
                 String syncBatchMs = xmlUtils.getNodeValue("/Dastor/LogSyncBatchInMS");
                 if (syncBatchMs != null)
@@ -286,7 +360,7 @@ public class DatabaseDescriptor
                         throw new ConfigurationException("LogSyncBatchInMS bad value.");
                     }
                 }
-                logger.debug("LogSyncMode = batch, interval(ms) = " + commitLogSyncBatchMS);
+                logger.debug("LogSyncMode = " + commitLogSync + ", interval(ms) = " + commitLogSyncBatchMS);
             }
             else
             {
@@ -306,6 +380,30 @@ public class DatabaseDescriptor
                 logger.debug("LogSyncMode = periodic, period(ms) = " + commitLogSyncPeriodMS);
             }
 
+            String logMmap = xmlUtils.getNodeValue("/Dastor/LogSegmentMmap");
+            if (logMmap != null)
+                commitLogMapped = Boolean.valueOf(logMmap);
+            if (commitLogSync == CommitLogSync.group)
+                commitLogMapped = true;
+
+            String logCompression = xmlUtils.getNodeValue("/Dastor/LogCompression");
+            if (logCompression != null)
+            {
+                try
+                {
+                    commitLogCompressAlgo = Compression.getCompressionAlgorithmByName(logCompression);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    throw new ConfigurationException("LogCompression must be either 'gz', 'lzo', or 'none'");
+                }
+                if (!commitLogCompressAlgo.isSupported())
+                    throw new ConfigurationException("LogCompression '" + logCompression + "' is not supported");
+            }
+            String logCompressStartSize = xmlUtils.getNodeValue("/Dastor/LogCompressStartSize");
+            if (logCompressStartSize != null)
+                commitLogCompressStartSize = Integer.parseInt(logCompressStartSize);
+
             String modeRaw = xmlUtils.getNodeValue("/Dastor/DiskAccessMode");
             if (modeRaw != null)
             {
@@ -431,6 +529,16 @@ public class DatabaseDescriptor
                 throw new ConfigurationException("ConcurrentWriters must be at least 2");
             }
 
+            String rawFlushWorkers = xmlUtils.getNodeValue("/Dastor/FlushWorkerThreads");
+            if (rawFlushWorkers != null)
+            {
+                flushWorkerThreads = Integer.parseInt(rawFlushWorkers);
+            }
+            if (flushWorkerThreads < 1)
+            {
+                throw new ConfigurationException("FlushWorkerThreads must be at least 1");
+            }
+
             String rawFlushData = xmlUtils.getNodeValue("/Dastor/DataFlushBufferSizeInMB");
             if (rawFlushData != null)
             {
@@ -553,6 +661,18 @@ public class DatabaseDescriptor
                 throw new ConfigurationException("Memtable cells count must be a positive double");
             }
 
+            /* BIGDATA: memtable thresholds by estimated heap usage */
+            String memtableLiveSize = xmlUtils.getNodeValue("/Dastor/MemtableLiveSizeInMB");
+            if (memtableLiveSize != null)
+                memtableLiveSizeInMB = Integer.parseInt(memtableLiveSize);
+            String memtableTotalSpace = xmlUtils.getNodeValue("/Dastor/MemtableTotalSpaceInMB");
+            if (memtableTotalSpace != null)
+                memtableTotalSpaceInMB = Integer.parseInt(memtableTotalSpace);
+            if (memtableLiveSizeInMB < 0 || memtableTotalSpaceInMB < 0)
+            {
+                throw new ConfigurationException("MemtableLiveSizeInMB and MemtableTotalSpaceInMB must not be negative");
+            }
+
             /* This parameter enables or disables consistency checks.
              * If set to false the read repairs are disable for very
              * high throughput on reads but at the cost of consistency.*/
@@ -620,7 +740,42 @@ public class DatabaseDescriptor
                 if (indexinterval <= 0)
                     throw new ConfigurationException("Index Interval must be a positive, non-zero integer.");
             }
+
+            // BIGDATA
+            String indexPageSizeStr = xmlUtils.getNodeValue("/Dastor/IndexPageSizeInKB");
+            if (indexPageSizeStr != null)
+            {
+                indexPageSize = Integer.parseInt(indexPageSizeStr) * 1024;
+                if (indexPageSize < 0)
+                    throw new ConfigurationException("IndexPageSizeInKB must be positive, or 0 for no paged index.");
+            }
             
+            // BIGDATA
+            String bloomFilterTypeStr = xmlUtils.getNodeValue("/Dastor/BloomFilterType");
+            if (bloomFilterTypeStr != null)
+            {
+                try
+                {
+                    bloomFilterType = BloomFilterType.valueOf(bloomFilterTypeStr);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    throw new ConfigurationException("BloomFilterType must be either 'standard' or 'blocked'");
+                }
+            }
+
+            // BIGDATA
+            String zeroCopyReadsStr = xmlUtils.getNodeValue("/Dastor/ZeroCopyReads");
+            if (zeroCopyReadsStr != null)
+            {
+                if (zeroCopyReadsStr.equalsIgnoreCase("true"))
+                    zeroCopyReads = true;
+                else if (zeroCopyReadsStr.equalsIgnoreCase("false"))
+                    zeroCopyReads = false;
+                else
+                    throw new ConfigurationException("ZeroCopyReads bad value. Use 'true' or 'false'.");
+            }
+
             // BIGDATA
             String newRowFormatIndexAtEndStr = xmlUtils.getNodeValue("/Dastor/NewRowFormatIndexAtEnd");
             if (newRowFormatIndexAtEndStr != null)
@@ -640,6 +795,15 @@ public class DatabaseDescriptor
                 compressStartRowSize = Integer.parseInt(compressStartRowSizeStr);
             }
             
+            // BIGDATA
+            String blockCacheSizeStr = xmlUtils.getNodeValue("/Dastor/BlockCacheSizeInMB");
+            if (blockCacheSizeStr != null)
+            {
+                blockCacheSize = Long.parseLong(blockCacheSizeStr) * 1024L * 1024L;
+                if (blockCacheSize < 0)
+                    throw new ConfigurationException("BlockCacheSizeInMB must not be negative");
+            }
+
             // BIGDATA
             String tryLockMemoryStr = xmlUtils.getNodeValue("/Dastor/TryLockMemory");
             if (tryLockMemoryStr != null)
@@ -674,7 +838,18 @@ public class DatabaseDescriptor
                                                                             DEFAULT_ROW_CACHE_SAVE_PERIOD_IN_SECONDS,
                                                                             DEFAULT_KEY_CACHE_SAVE_PERIOD_IN_SECONDS,
                                                                             0L,
-                                                                            null));
+                                                                            null,
+                                                                            false,
+                                                                            Durability.commitlog,
+                                                                            RowCacheProvider.heap,
+                                                                            0L,
+                                                                            CachePolicy.secondchance,
+                                                                            CachePolicy.secondchance,
+                                                                            0L,
+                                                                            0,
+                                                                            CompactionStrategy.sizetiered,
+                                                                            DEFAULT_LEVELED_SSTABLE_SIZE,
+                                                                            DEFAULT_TIME_WINDOW_SIZE));
 
             // BIGDATA: schema changed
             systemMeta.cfMetaData.put(HintedHandOffManager.HINTS_CF, new CFMetaData(Table.SYSTEM_TABLE,
@@ -688,7 +863,18 @@ public class DatabaseDescriptor
                                                                                     DEFAULT_ROW_CACHE_SAVE_PERIOD_IN_SECONDS,
                                                                                     DEFAULT_KEY_CACHE_SAVE_PERIOD_IN_SECONDS,
                                                                                     0L,
-                                                                                    null));
+                                                                                    null,
+                                                                                    false,
+                                                                                    Durability.commitlog,
+                                                                                    RowCacheProvider.heap,
+                                                                                    0L,
+                                                                                    CachePolicy.secondchance,
+                                                                                    CachePolicy.secondchance,
+                                                                                    0L,
+                                                                                    0,
+                                                                                    CompactionStrategy.sizetiered,
+                                                                                    DEFAULT_LEVELED_SSTABLE_SIZE,
+                                                                                    DEFAULT_TIME_WINDOW_SIZE));
 
             // BIGDATA: for CF status
             systemMeta.cfMetaData.put(SystemTable.CFSTA_CF, new CFMetaData(Table.SYSTEM_TABLE,
@@ -702,7 +888,18 @@ public class DatabaseDescriptor
                                                                            DEFAULT_ROW_CACHE_SAVE_PERIOD_IN_SECONDS,
                                                                            DEFAULT_KEY_CACHE_SAVE_PERIOD_IN_SECONDS,
                                                                            0L,
-                                                                           null));
+                                                                           null,
+                                                                           false,
+                                                                           Durability.commitlog,
+                                                                           RowCacheProvider.heap,
+                                                                           0L,
+                                                                           CachePolicy.secondchance,
+                                                                           CachePolicy.secondchance,
+                                                                           0L,
+                                                                           0,
+                                                                           CompactionStrategy.sizetiered,
+                                                                           DEFAULT_LEVELED_SSTABLE_SIZE,
+                                                                           DEFAULT_TIME_WINDOW_SIZE));
             
             // BIGDATA:  Load the time-segment within a day to run CFC task periodically.
             cfcBeginTime = xmlUtils.getNodeValue("/Dastor/BucketCollector/BeginTime");
@@ -729,6 +926,52 @@ public class DatabaseDescriptor
                     throw new ConfigurationException("Unrecognized value for ConcurrentCompaction.  Use 'true' or 'false'.");
                 }
             }
+
+            // BIGDATA
+            String scanReadAheadStr = xmlUtils.getNodeValue("/Dastor/ScanReadAhead");
+            if (scanReadAheadStr != null)
+            {
+                if (scanReadAheadStr.equalsIgnoreCase("true"))
+                    scanReadAhead = true;
+                else if (scanReadAheadStr.equalsIgnoreCase("false"))
+                    scanReadAhead = false;
+                else
+                    throw new ConfigurationException("ScanReadAhead bad value. Use 'true' or 'false'.");
+            }
+
+            // BIGDATA
+            String compactionSkipPageCacheStr = xmlUtils.getNodeValue("/Dastor/CompactionSkipPageCache");
+            if (compactionSkipPageCacheStr != null)
+            {
+                if (compactionSkipPageCacheStr.equalsIgnoreCase("true"))
+                    compactionSkipPageCache = true;
+                else if (compactionSkipPageCacheStr.equalsIgnoreCase("false"))
+                    compactionSkipPageCache = false;
+                else
+                    throw new ConfigurationException("CompactionSkipPageCache bad value. Use 'true' or 'false'.");
+            }
+
+            // BIGDATA
+            String rawCompactionParallelism = xmlUtils.getNodeValue("/Dastor/CompactionParallelism");
+            if (rawCompactionParallelism != null)
+            {
+                compactionParallelism = Integer.parseInt(rawCompactionParallelism);
+            }
+            if (compactionParallelism < 1)
+            {
+                throw new ConfigurationException("CompactionParallelism must be at least 1");
+            }
+
+            // BIGDATA
+            String rawCompactionThroughput = xmlUtils.getNodeValue("/Dastor/CompactionThroughputInMB");
+            if (rawCompactionThroughput != null)
+            {
+                compactionThroughputInMB = Integer.parseInt(rawCompactionThroughput);
+            }
+            if (compactionThroughputInMB < 0)
+            {
+                throw new ConfigurationException("CompactionThroughputInMB must not be negative");
+            }
             
             
             /* Load the seeds for node contact points */
@@ -996,7 +1239,118 @@ public class DatabaseDescriptor
                             throw new ConfigurationException("Compression attribute must be either 'gz', 'lzo', or 'none' in " + ksName + ":" + cfName);
                         }
                     }
+
+                    // BIGDATA:
+                    boolean arenaMemtable = false;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "MemtableMode")) != null)
+                    {
+                        if (value.equalsIgnoreCase("arena"))
+                            arenaMemtable = true;
+                        else if (!value.equalsIgnoreCase("heap"))
+                            throw new ConfigurationException("MemtableMode attribute must be either 'heap' or 'arena' in " + ksName + ":" + cfName);
+                    }
+
+                    // BIGDATA:
+                    Durability durability = Durability.commitlog;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "Durability")) != null)
+                    {
+                        try
+                        {
+                            durability = Durability.valueOf(value.toLowerCase());
+                        }
+                        catch (IllegalArgumentException e)
+                        {
+                            throw new ConfigurationException("Durability attribute must be either 'commitlog', 'none', or 'deferred' in " + ksName + ":" + cfName);
+                        }
+                    }
+
+                    // BIGDATA:
+                    RowCacheProvider rowCacheProvider = RowCacheProvider.heap;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "RowCacheProvider")) != null)
+                    {
+                        try
+                        {
+                            rowCacheProvider = RowCacheProvider.valueOf(value.toLowerCase());
+                        }
+                        catch (IllegalArgumentException e)
+                        {
+                            throw new ConfigurationException("RowCacheProvider attribute must be either 'heap' or 'serializing' in " + ksName + ":" + cfName);
+                        }
+                    }
+                    CachePolicy rowCachePolicy = getCachePolicy(columnFamily, "RowCachePolicy", ksName, cfName);
+                    if (rowCachePolicy != CachePolicy.secondchance && rowCacheProvider == RowCacheProvider.serializing)
+                        throw new ConfigurationException("RowCachePolicy is only valid with RowCacheProvider 'heap' in " + ksName + ":" + cfName);
+                    long rowCacheSizeInBytes = 0L;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "RowCacheSizeInMB")) != null)
+                    {
+                        if (rowCacheProvider != RowCacheProvider.serializing && rowCachePolicy != CachePolicy.slru)
+                            throw new ConfigurationException("RowCacheSizeInMB is only valid with RowCacheProvider 'serializing' or RowCachePolicy 'slru' in " + ksName + ":" + cfName);
+                        rowCacheSizeInBytes = Long.parseLong(value) * 1024L * 1024L;
+                    }
+                    CachePolicy keyCachePolicy = getCachePolicy(columnFamily, "KeyCachePolicy", ksName, cfName);
+                    long keyCacheSizeInBytes = 0L;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "KeyCacheSizeInMB")) != null)
+                    {
+                        if (keyCachePolicy != CachePolicy.slru)
+                            throw new ConfigurationException("KeyCacheSizeInMB is only valid with KeyCachePolicy 'slru' in " + ksName + ":" + cfName);
+                        keyCacheSizeInBytes = Long.parseLong(value) * 1024L * 1024L;
+                    }
+                    
+                    // BIGDATA: column filters of the rows, "on", "off" or a column count to exceed
+                    int columnBloomFilterThreshold = 0;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "ColumnBloomFilter")) != null)
+                    {
+                        if (value.equalsIgnoreCase("on"))
+                            columnBloomFilterThreshold = 0;
+                        else if (value.equalsIgnoreCase("off"))
+                            columnBloomFilterThreshold = -1;
+                        else
+                        {
+                            try
+                            {
+                                columnBloomFilterThreshold = Integer.parseInt(value);
+                            }
+                            catch (NumberFormatException e)
+                            {
+                                columnBloomFilterThreshold = -1;
+                            }
+                            if (columnBloomFilterThreshold < 0)
+                                throw new ConfigurationException("ColumnBloomFilter attribute must be either 'on', 'off', or a column count in " + ksName + ":" + cfName);
+                        }
+                    }
                     
+                    // BIGDATA:
+                    CompactionStrategy compactionStrategy = CompactionStrategy.sizetiered;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "CompactionStrategy")) != null)
+                    {
+                        try
+                        {
+                            compactionStrategy = CompactionStrategy.valueOf(value.toLowerCase());
+                        }
+                        catch (IllegalArgumentException e)
+                        {
+                            throw new ConfigurationException("CompactionStrategy attribute must be either 'sizetiered', 'leveled', or 'timewindow' in " + ksName + ":" + cfName);
+                        }
+                    }
+                    long leveledSSTableSize = DEFAULT_LEVELED_SSTABLE_SIZE;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "LeveledSSTableSizeInMB")) != null)
+                    {
+                        if (compactionStrategy != CompactionStrategy.leveled)
+                            throw new ConfigurationException("LeveledSSTableSizeInMB is only valid with CompactionStrategy 'leveled' in " + ksName + ":" + cfName);
+                        leveledSSTableSize = Long.parseLong(value) * 1024L * 1024L;
+                        if (leveledSSTableSize <= 0)
+                            throw new ConfigurationException("LeveledSSTableSizeInMB must be positive in " + ksName + ":" + cfName);
+                    }
+                    long timeWindowSize = DEFAULT_TIME_WINDOW_SIZE;
+                    if ((value = XMLUtils.getAttributeValue(columnFamily, "TimeWindowInMinutes")) != null)
+                    {
+                        if (compactionStrategy != CompactionStrategy.timewindow)
+                            throw new ConfigurationException("TimeWindowInMinutes is only valid with CompactionStrategy 'timewindow' in " + ksName + ":" + cfName);
+                        timeWindowSize = Long.parseLong(value) * 60L * 1000L;
+                        if (timeWindowSize <= 0)
+                            throw new ConfigurationException("TimeWindowInMinutes must be positive in " + ksName + ":" + cfName);
+                    }
+
                     // Parse out user-specified logical names for the various dimensions
                     // of a the column family from the config.
                     String comment = xmlUtils.getNodeValue(xqlCF + "Comment");
@@ -1008,7 +1362,9 @@ public class DatabaseDescriptor
                     int keyCacheSavePeriod = keyCacheSavePeriodString != null ? Integer.valueOf(keyCacheSavePeriodString) : DEFAULT_KEY_CACHE_SAVE_PERIOD_IN_SECONDS;
                     meta.cfMetaData.put(cfName, new CFMetaData(tableName, cfName, columnType, comparator, subcolumnComparator,
                             comment, rowCacheSize, keyCacheSize, rowCacheSavePeriod, keyCacheSavePeriod,
-                            compactSkipSize, compressAlgo));
+                            compactSkipSize, compressAlgo, arenaMemtable, durability, rowCacheProvider, rowCacheSizeInBytes,
+                            rowCachePolicy, keyCachePolicy, keyCacheSizeInBytes, columnBloomFilterThreshold,
+                            compactionStrategy, leveledSSTableSize, timeWindowSize));
                 }
 
                 tables.put(meta.name, meta);
@@ -1064,6 +1420,32 @@ public class DatabaseDescriptor
         }
     }
 
+    // BIGDATA:
+    private static CachePolicy getCachePolicy(Node columnFamily, String attr, String ksName, String cfName) throws ConfigurationException
+    {
+        String value;
+        try
+        {
+            value = XMLUtils.getAttributeValue(columnFamily, attr);
+        }
+        catch (TransformerException e)
+        {
+            ConfigurationException ex = new ConfigurationException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+        if (value == null)
+            return CachePolicy.secondchance;
+        try
+        {
+            return CachePolicy.valueOf(value.toLowerCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ConfigurationException(attr + " attribute must be either 'secondchance' or 'slru' in " + ksName + ":" + cfName);
+        }
+    }
+
     /**
      * Creates all storage-related directories.
      * @throws IOException when a disk problem is encountered.
@@ -1186,6 +1568,16 @@ public class DatabaseDescriptor
       return memtableOperations;
     }
 
+    public static int getMemtableLiveSizeInMB()
+    {
+        return memtableLiveSizeInMB;
+    }
+
+    public static int getMemtableTotalSpaceInMB()
+    {
+        return memtableTotalSpaceInMB;
+    }
+
     public static boolean getConsistencyCheck()
     {
       return doConsistencyCheck;
@@ -1296,6 +1688,11 @@ public class DatabaseDescriptor
         return concurrentWriters;
     }
 
+    public static int getFlushWorkerThreads()
+    {
+        return flushWorkerThreads;
+    }
+
     public static long getRowWarningThreshold()
     {
         return rowWarningThreshold;
@@ -1446,6 +1843,28 @@ public class DatabaseDescriptor
         return commitLogSync;
     }
 
+    public static boolean isCommitLogMapped()
+    {
+        return commitLogMapped;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the compression of commit log entries, NONE if disabled.
+     */
+    public static Compression.Algorithm getCommitLogCompressAlgo()
+    {
+        return commitLogCompressAlgo;
+    }
+
+    /**
+     * BIGDATA:
+     */
+    public static int getCommitLogCompressStartSize()
+    {
+        return commitLogCompressStartSize;
+    }
+
     public static DiskAccessMode getDiskAccessMode()
     {
         return diskAccessMode;
@@ -1501,6 +1920,43 @@ public class DatabaseDescriptor
         return indexinterval;
     }
 
+    /**
+     * BIGDATA:
+     * @return the column count a row must exceed to get a column filter, or -1 for none.
+     */
+    public static int getColumnBloomFilterThreshold(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        assert cfm != null;
+        return cfm.columnBloomFilterThreshold;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the page size in bytes of the paged sstable index, or 0 if it is disabled.
+     */
+    public static int getIndexPageSize()
+    {
+        return indexPageSize;
+    }
+
+    /**
+     * BIGDATA: the filter of the sstables written from now on; existing ones keep theirs.
+     */
+    public static BloomFilterType getBloomFilterType()
+    {
+        return bloomFilterType;
+    }
+
+    /**
+     * BIGDATA: the interval of the sstables written or resampled from now on.
+     */
+    public static void setIndexInterval(int interval)
+    {
+        assert interval > 0;
+        indexinterval = interval;
+    }
+
     /**
      * BIGDATA:
      * @return The byte size of SSTable which will be skipped in compaction.
@@ -1523,6 +1979,67 @@ public class DatabaseDescriptor
         return cfm.compressAlgo;
     }
 
+    /**
+     * BIGDATA:
+     * @return how writes to the bucket are logged.
+     */
+    public static Durability getDurability(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        assert cfm != null;
+        return cfm.durability;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the provider of the row cache of the bucket.
+     */
+    public static RowCacheProvider getRowCacheProvider(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        return cfm == null ? RowCacheProvider.heap : cfm.rowCacheProvider;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the capacity in bytes of a serializing row cache.
+     */
+    public static long getRowCacheSizeInBytes(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        return cfm == null ? 0L : cfm.rowCacheSizeInBytes;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the eviction policy of the row cache of the bucket.
+     */
+    public static CachePolicy getRowCachePolicy(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        return cfm == null ? CachePolicy.secondchance : cfm.rowCachePolicy;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the eviction policy of the key cache of the bucket.
+     */
+    public static CachePolicy getKeyCachePolicy(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        return cfm == null ? CachePolicy.secondchance : cfm.keyCachePolicy;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the capacity in bytes of an slru key cache.
+     */
+    public static long getKeyCacheSizeInBytes(String tableName, String columnFamilyName)
+    {
+        CFMetaData cfm = getCFMetaData(tableName, columnFamilyName);
+        return cfm == null ? 0L : cfm.keyCacheSizeInBytes;
+    }
+
     /**
      * BIGDATA:
      * @return true if the concurrent compaction is enabled.
@@ -1531,7 +2048,51 @@ public class DatabaseDescriptor
     {
         return concurrentCompactionEnabled;
     }
+
+    /**
+     * BIGDATA:
+     * @return true if sstable scans read ahead asynchronously.
+     */
+    public static boolean isScanReadAhead()
+    {
+        return scanReadAhead;
+    }
+
+    /**
+     * BIGDATA:
+     * @return true if compaction advises the kernel to drop the pages it reads and writes.
+     */
+    public static boolean isCompactionSkipPageCache()
+    {
+        return compactionSkipPageCache;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the number of token ranges, each merged by its own thread, a compaction may be split into.
+     */
+    public static int getCompactionParallelism()
+    {
+        return compactionParallelism;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the MB per second all compactions read at most together, 0 for unlimited.
+     */
+    public static int getCompactionThroughputInMB()
+    {
+        return compactionThroughputInMB;
+    }
     
+    /**
+     * BIGDATA: only has effect with DiskAccessMode mmap, on uncompressed rows.
+     */
+    public static boolean isZeroCopyReads()
+    {
+        return zeroCopyReads;
+    }
+
     /**
      * BIGDATA:
      * @return true if the index at end of row for new row format.
@@ -1549,6 +2110,15 @@ public class DatabaseDescriptor
         return compressStartRowSize;
     }
     
+    /**
+     * BIGDATA:
+     * @return the capacity of the block cache in bytes, 0 if disabled.
+     */
+    public static long getBlockCacheSize()
+    {
+        return blockCacheSize;
+    }
+    
     /**
      * BIGDATA:
      */
@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.bigdata.dastor.db.marshal.AbstractType;
+import com.bigdata.dastor.io.ICompactSerializer2;
+import com.bigdata.dastor.io.util.DataOutputBuffer;
+import com.bigdata.dastor.utils.HeapSizes;
+import com.bigdata.dastor.utils.SlabAllocator;
+
+/**
+ * BIGDATA:
+ * A Memtable which keeps column names and values in off-heap slabs.
+ *
+ * Every top-level column is serialized once into the memtable's SlabAllocator
+ * as [int length][serialized column]; each row only keeps a sorted long[] of
+ * references to its columns plus its deletion info on heap.  Reads and flush
+ * materialize ColumnFamily objects on demand, so getSliceIterator,
+ * getNamesIterator and writeSortedContents work unchanged.  All slabs are
+ * dropped at once when the flushed sstable becomes live.
+ */
+public class ArenaMemtable extends Memtable
+{
+    private static final int LENGTH_SIZE = DBConstants.intSize_;
+    // the ArenaRow object with its initial reference array
+    private static final long ROW_HEAP_OVERHEAD = HeapSizes.align(HeapSizes.OBJECT_HEADER + 8 + 4 + HeapSizes.REFERENCE + 4 + HeapSizes.REFERENCE)
+                                                  + HeapSizes.sizeOfArray(4, 8);
+
+    private final ConcurrentNavigableMap<DecoratedKey, ArenaRow> rows = new ConcurrentSkipListMap<DecoratedKey, ArenaRow>();
+    private final SlabAllocator allocator = new SlabAllocator();
+    /* readers may still hold this memtable after its flush; this keeps release() from pulling slabs from under them. */
+    private final ReentrantReadWriteLock releaseLock = new ReentrantReadWriteLock();
+
+    public ArenaMemtable(ColumnFamilyStore cfs)
+    {
+        super(cfs);
+    }
+
+    @Override
+    protected long resolve(DecoratedKey key, ColumnFamily cf)
+    {
+        long size = 0;
+        ArenaRow row = rows.get(key);
+        if (row == null)
+        {
+            ArenaRow newRow = new ArenaRow();
+            row = rows.putIfAbsent(key, newRow);
+            if (row == null)
+            {
+                row = newRow;
+                size += KEY_HEAP_OVERHEAD + HeapSizes.sizeOfString(key.key) + ROW_HEAP_OVERHEAD;
+            }
+        }
+        // each column costs one long reference on heap; growth of the array is amortized into it
+        return size + 2 * 8 * row.resolve(cf);
+    }
+
+    /**
+     * the heap estimate plus the off-heap slabs reserved by this memtable.
+     */
+    @Override
+    public long getLiveSize()
+    {
+        return super.getLiveSize() + allocator.getAllocatedBytes();
+    }
+
+    @Override
+    protected ColumnFamily getColumnFamily(DecoratedKey key)
+    {
+        ArenaRow row = rows.get(key);
+        if (row == null)
+            return null;
+
+        releaseLock.readLock().lock();
+        try
+        {
+            // the data is in the flushed sstable once we are released
+            return allocator.isReleased() ? null : row.toColumnFamily();
+        }
+        finally
+        {
+            releaseLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected Iterator<Map.Entry<DecoratedKey, ColumnFamily>> getSortedRows()
+    {
+        final Iterator<Map.Entry<DecoratedKey, ArenaRow>> iter = rows.entrySet().iterator();
+        return new Iterator<Map.Entry<DecoratedKey, ColumnFamily>>()
+        {
+            public boolean hasNext()
+            {
+                return iter.hasNext();
+            }
+
+            public Map.Entry<DecoratedKey, ColumnFamily> next()
+            {
+                final Map.Entry<DecoratedKey, ArenaRow> entry = iter.next();
+                // rows are materialized by getValue, so that flush does it on its serializer threads
+                return new AbstractMap.SimpleImmutableEntry<DecoratedKey, ColumnFamily>(entry.getKey(), null)
+                {
+                    @Override
+                    public ColumnFamily getValue()
+                    {
+                        return entry.getValue().toColumnFamily();
+                    }
+                };
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    protected int getRowCount()
+    {
+        return rows.size();
+    }
+
+    @Override
+    protected void release()
+    {
+        releaseLock.writeLock().lock();
+        try
+        {
+            rows.clear();
+            allocator.release();
+        }
+        finally
+        {
+            releaseLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<DecoratedKey> getKeyIterator(DecoratedKey startWith)
+    {
+        return rows.navigableKeySet().tailSet(startWith).iterator();
+    }
+
+    @Override
+    public boolean isClean()
+    {
+        return rows.isEmpty();
+    }
+
+    @Override
+    void clearUnsafe()
+    {
+        rows.clear();
+    }
+
+    /**
+     * @return the off-heap bytes reserved by this memtable.
+     */
+    public long getOffHeapSize()
+    {
+        return allocator.getAllocatedBytes();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Arena%s(%s off-heap bytes)", super.toString(), allocator.getAllocatedBytes());
+    }
+
+    /**
+     * The on-heap part of a row: deletion info and the sorted column references.
+     * All access is synchronized on the row; writers of different rows never contend.
+     */
+    private class ArenaRow
+    {
+        private long markedForDeleteAt = Long.MIN_VALUE;
+        private int localDeletionTime = Integer.MIN_VALUE;
+        private long[] refs = new long[4];
+        private int count = 0;
+
+        /**
+         * @return the number of columns added to the row.
+         */
+        synchronized int resolve(ColumnFamily cf)
+        {
+            int added = 0;
+            localDeletionTime = Math.max(localDeletionTime, cf.getLocalDeletionTime());
+            markedForDeleteAt = Math.max(markedForDeleteAt, cf.getMarkedForDeleteAt());
+
+            AbstractType comparator = cf.getComparator();
+            ICompactSerializer2<IColumn> serializer = cf.getColumnSerializer();
+            DataOutputBuffer buffer = new DataOutputBuffer();
+            for (IColumn column : cf.getSortedColumns())
+            {
+                int index = search(column.name(), comparator);
+                if (index < 0)
+                {
+                    insert(-(index + 1), write(column, serializer, buffer));
+                    added++;
+                    continue;
+                }
+
+                IColumn oldColumn = read(refs[index], serializer);
+                if (oldColumn instanceof SuperColumn)
+                {
+                    ((SuperColumn)oldColumn).putColumn(column);
+                    refs[index] = write(oldColumn, serializer, buffer);
+                }
+                else if (((Column)oldColumn).comparePriority((Column)column) <= 0)
+                {
+                    refs[index] = write(column, serializer, buffer);
+                }
+            }
+            return added;
+        }
+
+        synchronized ColumnFamily toColumnFamily()
+        {
+            ColumnFamily cf = ColumnFamily.create(getTableName(), cfs.getColumnFamilyName());
+            cf.localDeletionTime.set(localDeletionTime);
+            cf.markedForDeleteAt.set(markedForDeleteAt);
+            ICompactSerializer2<IColumn> serializer = cf.getColumnSerializer();
+            for (int i = 0; i < count; i++)
+                cf.addColumn(read(refs[i], serializer));
+            return cf;
+        }
+
+        private int search(byte[] name, AbstractType comparator)
+        {
+            // fast path: most rows (e.g. time-series) are appended in name order
+            if (count == 0)
+                return -1;
+            int cmp = comparator.compare(readName(refs[count - 1]), name);
+            if (cmp < 0)
+                return -(count + 1);
+            if (cmp == 0)
+                return count - 1;
+
+            int low = 0;
+            int high = count - 2;
+            while (low <= high)
+            {
+                int mid = (low + high) >>> 1;
+                cmp = comparator.compare(readName(refs[mid]), name);
+                if (cmp < 0)
+                    low = mid + 1;
+                else if (cmp > 0)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -(low + 1);
+        }
+
+        private void insert(int index, long ref)
+        {
+            if (count == refs.length)
+            {
+                long[] grown = new long[refs.length * 2];
+                System.arraycopy(refs, 0, grown, 0, count);
+                refs = grown;
+            }
+            System.arraycopy(refs, index, refs, index + 1, count - index);
+            refs[index] = ref;
+            count++;
+        }
+    }
+
+    private long write(IColumn column, ICompactSerializer2<IColumn> serializer, DataOutputBuffer buffer)
+    {
+        buffer.reset();
+        try
+        {
+            buffer.writeInt(0); // placeholder for the length
+            serializer.serialize(column, buffer);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        byte[] data = buffer.getData();
+        int length = buffer.getLength() - LENGTH_SIZE;
+        data[0] = (byte)(length >>> 24);
+        data[1] = (byte)(length >>> 16);
+        data[2] = (byte)(length >>> 8);
+        data[3] = (byte)length;
+        return allocator.copy(data, 0, buffer.getLength());
+    }
+
+    private IColumn read(long ref, ICompactSerializer2<IColumn> serializer)
+    {
+        int length = allocator.getInt(ref, 0);
+        byte[] bytes = new byte[length];
+        allocator.get(ref, LENGTH_SIZE, bytes, 0, length);
+        try
+        {
+            return serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * both Column and SuperColumn serialize their name first, as a 2-byte length and the bytes.
+     */
+    private byte[] readName(long ref)
+    {
+        int length = allocator.getUnsignedShort(ref, LENGTH_SIZE);
+        byte[] name = new byte[length];
+        allocator.get(ref, LENGTH_SIZE + 2, name, 0, length);
+        return name;
+    }
+}
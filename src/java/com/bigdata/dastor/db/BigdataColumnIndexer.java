@@ -73,14 +73,8 @@ public class BigdataColumnIndexer
      * @param columns columns of the ColumnFamily
      * @return BloomFilter with the summarized information.
      */
-    private static BloomFilter createColumnBloomFilter(Collection<IColumn> columns)
+    private static BloomFilter createColumnBloomFilter(Collection<IColumn> columns, int columnCount)
     {
-        int columnCount = 0;
-        for (IColumn column : columns)
-        {
-            columnCount += column.getObjectCount();
-        }
-
         BloomFilter bf = BloomFilter.getFilter(columnCount, 4);
         for (IColumn column : columns)
         {
@@ -98,15 +92,55 @@ public class BigdataColumnIndexer
         return bf;
     }
 
+    /**
+     * BIGDATA:
+     * @return the number of columns and subcolumns of a row.
+     */
+    static int columnCount(Collection<IColumn> columns)
+    {
+        int columnCount = 0;
+        for (IColumn column : columns)
+        {
+            columnCount += column.getObjectCount();
+        }
+        return columnCount;
+    }
+
+    /**
+     * BIGDATA:
+     * @param threshold the bucket ColumnBloomFilter: the column count a row must exceed, or -1 for none.
+     * @return true if a row of columnCount columns gets a column filter.
+     */
+    static boolean hasColumnBloomFilter(int columnCount, int threshold)
+    {
+        return threshold >= 0 && columnCount > threshold;
+    }
+
     /**
      * Create a bloom filter and write it.
+     * BIGDATA: a row without filter gets an empty one, of length 0, which readers skip.
      * @param columns columns of the ColumnFamily
+     * @param threshold see hasColumnBloomFilter
      * @param dos data output stream
      * @throws IOException
      */
-    public static void createAndSerializeBloomFiliter(Collection<IColumn> columns, DataOutput dos)
+    public static void createAndSerializeBloomFiliter(Collection<IColumn> columns, int threshold, DataOutput dos)
     {
-        BloomFilter bf = createColumnBloomFilter(columns);        
+        int columnCount = columnCount(columns);
+        if (!hasColumnBloomFilter(columnCount, threshold))
+        {
+            try
+            {
+                dos.writeInt(0);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        BloomFilter bf = createColumnBloomFilter(columns, columnCount);
         /* Write out the bloom filter. */
         DataOutputBuffer bufOut = new DataOutputBuffer();
         try
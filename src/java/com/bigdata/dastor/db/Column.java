@@ -30,6 +30,7 @@ import org.apache.commons.lang.ArrayUtils;
 import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.io.util.DataOutputBuffer;
 import com.bigdata.dastor.utils.FBUtilities;
+import com.bigdata.dastor.utils.HeapSizes;
 
 
 /**
@@ -80,6 +81,19 @@ public class Column implements IColumn
         isMarkedForDelete = isDeleted;
     }
 
+    /**
+     * BIGDATA: for subclasses providing their own value(), see MappedColumn.
+     */
+    protected Column(byte[] name, long timestamp, boolean isDeleted)
+    {
+        assert name != null;
+        assert name.length <= IColumn.MAX_NAME_LENGTH;
+        this.name = name;
+        this.value = null;
+        this.timestamp = timestamp;
+        isMarkedForDelete = isDeleted;
+    }
+
     public byte[] name()
     {
         return name;
@@ -95,6 +109,14 @@ public class Column implements IColumn
         return value;
     }
 
+    /**
+     * BIGDATA: the length of value(), without materializing it.
+     */
+    public int valueLength()
+    {
+        return value.length;
+    }
+
     public Collection<IColumn> getSubColumns()
     {
         throw new UnsupportedOperationException("This operation is unsupported on simple columns.");
@@ -144,7 +166,15 @@ public class Column implements IColumn
            * We store the string as UTF-8 encoded, so when we calculate the length, it
            * should be converted to UTF-8.
            */
-        return IColumn.UtfPrefix_ + name.length + DBConstants.boolSize_ + DBConstants.tsSize_ + DBConstants.intSize_ + value.length;
+        return IColumn.UtfPrefix_ + name.length + DBConstants.boolSize_ + DBConstants.tsSize_ + DBConstants.intSize_ + valueLength();
+    }
+
+    // BIGDATA: object with name, value, timestamp and delete flag, plus both arrays
+    private static final long HEAP_OVERHEAD = HeapSizes.align(HeapSizes.OBJECT_HEADER + 2 * HeapSizes.REFERENCE + 8 + 1);
+
+    public long heapSize()
+    {
+        return HEAP_OVERHEAD + HeapSizes.sizeOfArray(name) + HeapSizes.sizeOfArray(valueLength(), 1);
     }
 
     /*
@@ -173,7 +203,7 @@ public class Column implements IColumn
     public void updateDigest(MessageDigest digest)
     {
         digest.update(name);
-        digest.update(value);
+        digest.update(value());
         DataOutputBuffer buffer = new DataOutputBuffer();
         try
         {
@@ -190,7 +220,7 @@ public class Column implements IColumn
     public int getLocalDeletionTime()
     {
         assert isMarkedForDelete;
-        return ByteBuffer.wrap(value).getInt();
+        return ByteBuffer.wrap(value()).getInt();
     }
 
     // note that we do not call this simply compareTo since it also makes sense to compare Columns by name
@@ -204,7 +234,7 @@ public class Column implements IColumn
         
         // compare value as tie-breaker for equal timestamps
         if (timestamp == o.timestamp)
-            return FBUtilities.compareByteArrays(value, o.value);
+            return FBUtilities.compareByteArrays(value(), o.value());
 
         // neither is tombstoned and timestamps are different
         return timestamp - o.timestamp;
@@ -217,7 +247,7 @@ public class Column implements IColumn
         sb.append(":");
         sb.append(isMarkedForDelete());
         sb.append(":");
-        sb.append(value.length);
+        sb.append(valueLength());
         sb.append("@");
         sb.append(timestamp());
         return sb.toString();
@@ -37,6 +37,7 @@ import com.bigdata.dastor.db.filter.QueryPath;
 import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.io.ICompactSerializer2;
 import com.bigdata.dastor.utils.FBUtilities;
+import com.bigdata.dastor.utils.HeapSizes;
 
 
 public class ColumnFamily implements IColumnContainer
@@ -128,6 +129,29 @@ public class ColumnFamily implements IColumnContainer
         delete(cf);
     }
 
+    /**
+     * BIGDATA: copy the values still viewing a mapped segment (MappedColumn), so
+     * the row no longer holds the mapping; for rows kept beyond the query.
+     */
+    public void materialize()
+    {
+        for (IColumn column : columns_.values())
+        {
+            if (column instanceof SuperColumn)
+            {
+                for (IColumn subColumn : column.getSubColumns())
+                {
+                    if (subColumn instanceof MappedColumn)
+                        subColumn.value();
+                }
+            }
+            else if (column instanceof MappedColumn)
+            {
+                column.value();
+            }
+        }
+    }
+
     public ICompactSerializer2<IColumn> getColumnSerializer()
     {
     	return columnSerializer_;
@@ -308,6 +332,30 @@ public class ColumnFamily implements IColumnContainer
         return size;
     }
 
+    // BIGDATA: object, its column map and the two deletion atomics
+    static final long HEAP_OVERHEAD = HeapSizes.align(HeapSizes.OBJECT_HEADER + 5 * HeapSizes.REFERENCE)
+                                      + HeapSizes.SKIP_LIST + HeapSizes.ATOMIC_INTEGER + HeapSizes.ATOMIC_LONG;
+
+    /**
+     * BIGDATA: estimated bytes retained on heap by the columns of this CF,
+     * including the skip-list entries that hold them, but not the CF itself.
+     */
+    public long columnsHeapSize()
+    {
+        long size = 0;
+        for (IColumn column : columns_.values())
+            size += HeapSizes.SKIP_LIST_ENTRY + column.heapSize();
+        return size;
+    }
+
+    /**
+     * BIGDATA: estimated bytes retained on heap by this CF.
+     */
+    public long heapSize()
+    {
+        return HEAP_OVERHEAD + columnsHeapSize();
+    }
+
     // BIGDATA
     public boolean isSizeLargeThan(int threshold)
     {
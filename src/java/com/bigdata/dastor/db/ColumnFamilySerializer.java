@@ -21,6 +21,7 @@ package com.bigdata.dastor.db;
  */
 
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
@@ -37,10 +38,12 @@ import org.apache.hadoop.io.compress.Compressor;
 import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.log4j.Logger;
 
+import com.bigdata.dastor.cache.BlockCache;
 import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.io.ICompactSerializer2;
 import com.bigdata.dastor.io.IndexHelper;
+import com.bigdata.dastor.io.IteratingRow;
 import com.bigdata.dastor.io.SSTableReader;
 import com.bigdata.dastor.io.compress.Compression;
 import com.bigdata.dastor.io.util.BoundedFileDataInputStream;
@@ -221,9 +224,9 @@ public class ColumnFamilySerializer implements ICompactSerializer2<ColumnFamily>
      *
      * BIGDATA: change method name to oldSerializeWithIndexes from serializeWithIndexes
      */
-    public void oldSerializeWithIndexes(ColumnFamily columnFamily, DataOutput dos)
+    public void oldSerializeWithIndexes(ColumnFamily columnFamily, int columnBloomFilterThreshold, DataOutput dos)
     {        
-        ColumnIndexer.serialize(columnFamily, dos);
+        ColumnIndexer.serialize(columnFamily, columnBloomFilterThreshold, dos);
         serializeForSSTable(columnFamily, dos);
     }
     
@@ -260,13 +263,13 @@ public class ColumnFamilySerializer implements ICompactSerializer2<ColumnFamily>
      * @param dos
      * @throws IOException
      */
-    public void bigdataSerializeWithIndexes(ColumnFamily columnFamily, DataOutputBuffer headerDos, DataOutputBuffer dos, Compression.Algorithm compressAlgo)
+    public void bigdataSerializeWithIndexes(ColumnFamily columnFamily, DataOutputBuffer headerDos, DataOutputBuffer dos, Compression.Algorithm compressAlgo, int columnBloomFilterThreshold)
     {
         // get the sorted columns from column family row
         Collection<IColumn> columns = columnFamily.getSortedColumns();
         
-        // create and serialize bloom filter
-        BigdataColumnIndexer.createAndSerializeBloomFiliter(columns, headerDos);
+        // create and serialize bloom filter, possibly empty
+        BigdataColumnIndexer.createAndSerializeBloomFiliter(columns, columnBloomFilterThreshold, headerDos);
 
         /*
          * Maintains a list of Column IndexInfo objects for the columns in this
@@ -403,13 +406,13 @@ public class ColumnFamilySerializer implements ICompactSerializer2<ColumnFamily>
      * @param dos
      * @throws IOException
      */
-    public void bigdataSerializeWithIndexesAtEnd(ColumnFamily columnFamily, DataOutputBuffer dos, Compression.Algorithm compressAlgo)
+    public void bigdataSerializeWithIndexesAtEnd(ColumnFamily columnFamily, DataOutputBuffer dos, Compression.Algorithm compressAlgo, int columnBloomFilterThreshold)
     {
         // get the sorted columns from column family row
         Collection<IColumn> columns = columnFamily.getSortedColumns();
         
-        // create and serialize bloom filter
-        BigdataColumnIndexer.createAndSerializeBloomFiliter(columns, dos);
+        // create and serialize bloom filter, possibly empty
+        BigdataColumnIndexer.createAndSerializeBloomFiliter(columns, columnBloomFilterThreshold, dos);
 
         /*
          * Maintains a list of Column IndexInfo objects for the columns in this
@@ -516,7 +519,8 @@ public class ColumnFamilySerializer implements ICompactSerializer2<ColumnFamily>
     }
     
     // BIGDATA: new serializeWithIndexes, to support old and new row format
-    public void serializeWithIndexes(ColumnFamily columnFamily, DataOutputBuffer headerDos, DataOutputBuffer dos, Compression.Algorithm compressAlgo)
+    // columnBloomFilterThreshold: the bucket ColumnBloomFilter, see BigdataColumnIndexer.hasColumnBloomFilter
+    public void serializeWithIndexes(ColumnFamily columnFamily, DataOutputBuffer headerDos, DataOutputBuffer dos, Compression.Algorithm compressAlgo, int columnBloomFilterThreshold)
     {
         if ( (compressAlgo != null) && 
              ( (DatabaseDescriptor.getCompressStartRowSize() <= 0) ||
@@ -526,17 +530,70 @@ public class ColumnFamilySerializer implements ICompactSerializer2<ColumnFamily>
             // use the id of compressAlgo
             serializeRowFormat(true, newIndexAtEnd, compressAlgo.getId(), headerDos);
             if (newIndexAtEnd)
-                bigdataSerializeWithIndexesAtEnd(columnFamily, dos, compressAlgo);
+                bigdataSerializeWithIndexesAtEnd(columnFamily, dos, compressAlgo, columnBloomFilterThreshold);
             else
-                bigdataSerializeWithIndexes(columnFamily, headerDos, dos, compressAlgo);
+                bigdataSerializeWithIndexes(columnFamily, headerDos, dos, compressAlgo, columnBloomFilterThreshold);
         }
         else
         {
             serializeRowFormat(false, false, 0, headerDos);
-            oldSerializeWithIndexes(columnFamily, dos);
+            oldSerializeWithIndexes(columnFamily, columnBloomFilterThreshold, dos);
         }
     }
     
+    /**
+     * BIGDATA: write a new format row of the column blocks of rows, all of compressAlgo,
+     * whose columns do not interleave and which have no row tombstone.  The blocks are
+     * copied as they are on disk, in the order of the rows; only the bloom filter and
+     * the column index are built anew.
+     * @param columns the columns of all rows, for the bloom filter; empty if the row gets none
+     */
+    public void serializeBlocksWithIndexes(List<IteratingRow> rows, Collection<IColumn> columns, Compression.Algorithm compressAlgo,
+                                           int columnBloomFilterThreshold, DataOutputBuffer headerDos, DataOutputBuffer dos)
+            throws IOException
+    {
+        boolean newIndexAtEnd = DatabaseDescriptor.isNewRowFormatIndexAtEnd();
+        serializeRowFormat(true, newIndexAtEnd, compressAlgo.getId(), headerDos);
+
+        BigdataColumnIndexer.createAndSerializeBloomFiliter(columns, columnBloomFilterThreshold, newIndexAtEnd ? dos : headerDos);
+
+        // deletion meta: none of the rows is deleted
+        ColumnFamily cfNoColumns = rows.get(0).getColumnFamilyNoColumns();
+        dos.writeInt(cfNoColumns.localDeletionTime.get());
+        dos.writeLong(cfNoColumns.markedForDeleteAt.get());
+
+        int columnCount = 0;
+        for (IteratingRow row : rows)
+            columnCount += row.getColumnCount();
+        dos.writeInt(columnCount);
+
+        List<IndexHelper.IndexInfo> indexList = new ArrayList<IndexHelper.IndexInfo>();
+        int indexSizeInBytes = 0;
+        int firstBlockPos = dos.getLength();
+        for (IteratingRow row : rows)
+        {
+            for (IndexHelper.IndexInfo indexInfo : row.getColumnIndex())
+            {
+                IndexHelper.IndexInfo cIndexInfo = new IndexHelper.IndexInfo(indexInfo.firstName, indexInfo.lastName,
+                                                                             dos.getLength() - firstBlockPos, indexInfo.width, indexInfo.sizeOnDisk);
+                row.echoBlock(indexInfo, dos);
+                indexList.add(cIndexInfo);
+                indexSizeInBytes += cIndexInfo.serializedSize();
+            }
+        }
+
+        if (newIndexAtEnd)
+        {
+            int indexStartPos = dos.getLength();
+            BigdataColumnIndexer.serialize(indexList, indexSizeInBytes, dos);
+            dos.writeInt(dos.getLength() - indexStartPos);
+        }
+        else
+        {
+            BigdataColumnIndexer.serialize(indexList, indexSizeInBytes, headerDos);
+        }
+    }
+
     /**
      * ************************************************************************
      * PAY ATTENTION: This method is only internally used for message.
@@ -676,6 +733,40 @@ public class ColumnFamilySerializer implements ICompactSerializer2<ColumnFamily>
         }
     }
 
+    /**
+     * BIGDATA: Get block input stream of a block of sstable, through the BlockCache
+     * if the block is compressed.  Release it with releaseBlockInputStream.
+     * @param firstBlockPos the position of the first block of the row
+     */
+    public DataInputStream getBlockInputStream(SSTableReader sstable, FileDataInput is, long firstBlockPos,
+                                               IndexHelper.IndexInfo indexInfo, CompressionContext context) throws IOException
+    {
+        if (context.compressAlgo == Compression.Algorithm.NONE || !BlockCache.instance.isEnabled())
+        {
+            is.seek(firstBlockPos + indexInfo.offset);
+            return getBlockInputStream(is, indexInfo.sizeOnDisk, context);
+        }
+
+        BlockCache.Key key = new BlockCache.Key(sstable.getFilename(), firstBlockPos, indexInfo.offset);
+        byte[] block = BlockCache.instance.get(key);
+        if (block == null)
+        {
+            is.seek(firstBlockPos + indexInfo.offset);
+            DataInputStream in = getBlockInputStream(is, indexInfo.sizeOnDisk, context);
+            try
+            {
+                block = new byte[(int) indexInfo.width];
+                in.readFully(block);
+            }
+            finally
+            {
+                releaseBlockInputStream(in, context);
+            }
+            BlockCache.instance.put(key, block);
+        }
+        return new DataInputStream(new ByteArrayInputStream(block));
+    }
+
     /**
      * BIGDATA: Release block input stream.
      * @param context
@@ -20,7 +20,6 @@ package com.bigdata.dastor.db;
 
 import java.io.*;
 import java.lang.management.ManagementFactory;
-import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,6 +34,7 @@ import org.apache.log4j.Logger;
 import org.apache.commons.collections.IteratorUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
+import com.bigdata.dastor.cache.JMXInstrumentedCache;
 import com.bigdata.dastor.concurrent.JMXEnabledThreadPoolExecutor;
 import com.bigdata.dastor.concurrent.NamedThreadFactory;
 import com.bigdata.dastor.concurrent.RetryingScheduledThreadPoolExecutor;
@@ -65,12 +65,23 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     private static Logger logger_ = Logger.getLogger(ColumnFamilyStore.class);
 
+    // BIGDATA: warms up the row caches of the buckets, one at a time, with ROW_CACHE_LOAD_THREADS readers
+    private static final ExecutorService rowCacheLoader =
+            Executors.newSingleThreadExecutor(new NamedThreadFactory("ROW-CACHE-LOADER", Thread.MIN_PRIORITY));
+    private static final int ROW_CACHE_LOAD_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
     /*
      * submitFlush first puts [Binary]Memtable.getSortedContents on the flushSorter executor,
      * which then puts the sorted results on the writer executor.  This is because sorting is CPU-bound,
      * and writing is disk-bound; we want to be able to do both at once.  When the write is complete,
      * we turn the writer into an SSTableReader and add it to ssTables_ where it is available for reads.
      *
+     * BIGDATA: a live Memtable is already sorted, so it goes straight to the writer executor, whose
+     * thread hands batches of rows to the flushSerializer threads for serialization and compression and
+     * appends the results in key order.  flushSerializer has its own unbounded queue and never submits
+     * to the writer, so a writer waiting on its batches cannot deadlock with BinaryMemtable sorts that
+     * are blocked on a full writer queue.
+     *
      * For BinaryMemtable that's about all that happens.  For live Memtables there are two other things
      * that switchMemtable does (which should be the only caller of submitFlush in this case).
      * First, it puts the Memtable into memtablesPendingFlush, where it stays until the flush is complete
@@ -81,11 +92,11 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
      * called, all data up to the given context has been persisted to SSTables.
      */
     private static ExecutorService flushSorter_
-            = new JMXEnabledThreadPoolExecutor(1,
-                                               Runtime.getRuntime().availableProcessors(),
+            = new JMXEnabledThreadPoolExecutor(DatabaseDescriptor.getFlushWorkerThreads(), // BIGDATA
+                                               DatabaseDescriptor.getFlushWorkerThreads(),
                                                Integer.MAX_VALUE,
                                                TimeUnit.SECONDS,
-                                               new LinkedBlockingQueue<Runnable>(Runtime.getRuntime().availableProcessors()),
+                                               new LinkedBlockingQueue<Runnable>(DatabaseDescriptor.getFlushWorkerThreads()),
                                                new NamedThreadFactory("FLUSH-SORTER-POOL"));
     private static ExecutorService flushWriter_
             = new JMXEnabledThreadPoolExecutor(1,
@@ -94,6 +105,13 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                                                TimeUnit.SECONDS,
                                                new LinkedBlockingQueue<Runnable>(DatabaseDescriptor.getAllDataFileLocations().length),
                                                new NamedThreadFactory("FLUSH-WRITER-POOL"));
+    private static ExecutorService flushSerializer_ // BIGDATA
+            = new JMXEnabledThreadPoolExecutor(DatabaseDescriptor.getFlushWorkerThreads(),
+                                               DatabaseDescriptor.getFlushWorkerThreads(),
+                                               Integer.MAX_VALUE,
+                                               TimeUnit.SECONDS,
+                                               new LinkedBlockingQueue<Runnable>(),
+                                               new NamedThreadFactory("FLUSH-SERIALIZER-POOL"));
     private static ExecutorService commitLogUpdater_ = new JMXEnabledThreadPoolExecutor("MEMTABLE-POST-FLUSHER");
 
     private static final int KEY_RANGE_FILE_BUFFER_SIZE = 256 * 1024;
@@ -110,7 +128,9 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     private AtomicInteger fileIndexGenerator_ = new AtomicInteger(0);
 
     /* active memtable associated with this ColumnFamilyStore. */
-    private Memtable memtable_;
+    private volatile Memtable memtable_; // BIGDATA: volatile, there is no more flusherLock
+    /* BIGDATA: serializes memtable switches of this CFS only */
+    private final Object switchLock = new Object();
 
     // TODO binarymemtable ops are not threadsafe (do they need to be?)
     private AtomicReference<BinaryMemtable> binaryMemtable_;
@@ -130,6 +150,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     // BIGDATA: refer to CFMetaData, for fast reference of some parameters.
     private final CFMetaData cfMetaData;
+    // BIGDATA: chooses the sstables of the minor compactions
+    private final ICompactionStrategy compactionStrategy;
 
     // BIGDATA: the status of this CF, status and statusTimestamp should be set at same time.
     public final static int CF_STATUS_NORMAL    = 0;
@@ -147,14 +169,14 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         columnFamily_ = columnFamilyName;
         isSuper_ = isSuper;
         fileIndexGenerator_.set(indexValue);
-        memtable_ = new Memtable(this);
+        memtable_ = newMemtable();
         binaryMemtable_ = new AtomicReference<BinaryMemtable>(new BinaryMemtable(this));
 
         if (logger_.isDebugEnabled())
             logger_.debug("Starting CFS " + columnFamily_);
         // scan for data files corresponding to this CF
         List<File> sstableFiles = new ArrayList<File>();
-        Pattern auxFilePattern = Pattern.compile("(.*)(-Filter\\.db$|-Index\\.db$)");
+        Pattern auxFilePattern = Pattern.compile("(.*)(-Filter\\.db$|-Index\\.db$|-Pages\\.db$|-Stats\\.db$)");
         Pattern tmpCacheFilePattern = Pattern.compile(table + "-" + columnFamilyName + "-(Key|Row)Cache.*\\.tmp$");
         for (File file : files())
         {
@@ -195,64 +217,77 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         /* Load the index files and the Bloom Filters associated with them. */
         ssTables_ = new SSTableTracker(table, columnFamilyName);
-        Set<String> savedKeys = readSavedCache(DatabaseDescriptor.getSerializedKeyCachePath(table, columnFamilyName), false);
-        List<SSTableReader> sstables = new ArrayList<SSTableReader>();
+        ssTables_.add(openSSTables(sstableFiles));
+
+        // BIGDATA:
+        if (cfMetaData.compactionStrategy == DatabaseDescriptor.CompactionStrategy.leveled)
+            compactionStrategy = new LeveledCompactionStrategy(this);
+        else if (cfMetaData.compactionStrategy == DatabaseDescriptor.CompactionStrategy.timewindow)
+            compactionStrategy = new TimeWindowCompactionStrategy(this);
+        else
+            compactionStrategy = new SizeTieredCompactionStrategy(this);
+    }
+
+    /**
+     * BIGDATA: open the sstables in parallel, each with its entries of the saved key cache.
+     */
+    private List<SSTableReader> openSSTables(List<File> sstableFiles) throws IOException
+    {
+        final Map<String, List<Pair<String, SSTable.PositionSize>>> savedKeys = ssTables_.readSavedKeyCache();
+        List<Callable<SSTableReader>> tasks = new ArrayList<Callable<SSTableReader>>();
         for (File file : sstableFiles)
         {
-            String filename = file.getAbsolutePath();
+            final String filename = file.getAbsolutePath();
             if (SSTable.deleteIfCompacted(filename))
                 continue;
 
-            SSTableReader sstable;
-            try
+            tasks.add(new Callable<SSTableReader>()
             {
-                sstable = SSTableReader.open(filename, savedKeys, ssTables_);
-            }
-            catch (IOException ex)
+                public SSTableReader call()
+                {
+                    List<Pair<String, SSTable.PositionSize>> entries = savedKeys.get(filename);
+                    try
+                    {
+                        return SSTableReader.open(filename,
+                                                  entries == null ? Collections.<Pair<String, SSTable.PositionSize>>emptyList() : entries,
+                                                  ssTables_);
+                    }
+                    catch (IOException ex)
+                    {
+                        logger_.error("Corrupt file " + filename + "; skipped", ex);
+                        return null;
+                    }
+                }
+            });
+        }
+
+        List<SSTableReader> sstables = new ArrayList<SSTableReader>();
+        if (tasks.isEmpty())
+            return sstables;
+        int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("SSTABLE-OPENER"));
+        try
+        {
+            for (Future<SSTableReader> future : executor.invokeAll(tasks))
             {
-                logger_.error("Corrupt file " + filename + "; skipped", ex);
-                continue;
+                SSTableReader sstable = future.get();
+                if (sstable != null)
+                    sstables.add(sstable);
             }
-            sstables.add(sstable);
         }
-        ssTables_.add(sstables);
-    }
-
-    protected Set<String> readSavedCache(File path, boolean sort) throws IOException
-    {
-        Set<String> keys;
-        if (sort)
+        catch (InterruptedException e)
         {
-            // sort the results on read because cache may be written many times during server lifetime,
-            // so better to pay that price once on startup than sort at write time.
-            keys = new TreeSet<String>(StorageProxy.keyComparator);
+            throw new AssertionError(e);
         }
-        else
+        catch (ExecutionException e)
         {
-            keys = new HashSet<String>();
+            throw new RuntimeException(e.getCause());
         }
-        
-        long start = System.currentTimeMillis();
-        if (path.exists())
+        finally
         {
-            if (logger_.isDebugEnabled())
-                logger_.debug("reading saved cache from " + path);
-            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path)));
-            Charset UTF8 = Charset.forName("UTF-8");
-            while (in.available() > 0)
-            {
-                int size = in.readInt();
-                byte[] bytes = new byte[size];
-                in.readFully(bytes);
-                keys.add(new String(bytes, UTF8));
-            }
-            in.close();
-            if (logger_.isDebugEnabled())
-                logger_.debug(String.format("completed reading (%d ms; %d keys) from saved cache at %s",
-                                            (System.currentTimeMillis() - start), keys.size(), path));
+            executor.shutdown();
         }
-
-        return keys;
+        return sstables;
     }
 
     // must be called after all sstables are loaded since row cache merges all row versions
@@ -262,19 +297,9 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         int rowCacheSavePeriodInSeconds = DatabaseDescriptor.getTableMetaData(table_).get(columnFamily_).rowCacheSavePeriodInSeconds;
         int keyCacheSavePeriodInSeconds = DatabaseDescriptor.getTableMetaData(table_).get(columnFamily_).keyCacheSavePeriodInSeconds;
 
-        try
-        {
-            long start = System.currentTimeMillis();
-            logger_.info(String.format("loading%s", msgSuffix));
-            for (String key : readSavedCache(DatabaseDescriptor.getSerializedRowCachePath(table_, columnFamily_), true))
-                cacheRow(key);
-            logger_.info(String.format("completed loading (%d ms; %d keys) %s",
-                                       System.currentTimeMillis()-start, ssTables_.getRowCache().getSize(), msgSuffix));
-        }
-        catch (IOException ioe)
-        {
-            logger_.warn("error loading " + msgSuffix, ioe);
-        }
+        // BIGDATA: warm up in the background, the node serves reads meanwhile
+        if (ssTables_.getRowCache().getCapacity() > 0)
+            rowCacheLoader.execute(new RowCacheLoader(msgSuffix));
 
         rowCacheWriteTask = new WrappedRunnable()
         {
@@ -307,6 +332,77 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
     }
 
+    /**
+     * BIGDATA: reads the rows of the saved row cache into the cache, splitting the
+     * sorted keys into contiguous ranges read in parallel.
+     */
+    private class RowCacheLoader implements Runnable
+    {
+        private final String msgSuffix;
+
+        RowCacheLoader(String msgSuffix)
+        {
+            this.msgSuffix = msgSuffix;
+        }
+
+        public void run()
+        {
+            long start = System.currentTimeMillis();
+            logger_.info(String.format("loading%s", msgSuffix));
+            final List<String> keys;
+            try
+            {
+                keys = ssTables_.readSavedRowCache();
+            }
+            catch (IOException ioe)
+            {
+                logger_.warn("error loading " + msgSuffix, ioe);
+                return;
+            }
+            if (keys.isEmpty())
+                return;
+
+            int threads = Math.min(ROW_CACHE_LOAD_THREADS, keys.size());
+            int rangeSize = (keys.size() + threads - 1) / threads;
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("ROW-CACHE-READER", Thread.MIN_PRIORITY));
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < keys.size(); i += rangeSize)
+            {
+                final List<String> range = keys.subList(i, Math.min(i + rangeSize, keys.size()));
+                futures.add(executor.submit(new WrappedRunnable()
+                {
+                    protected void runMayThrow() throws IOException
+                    {
+                        for (String key : range)
+                        {
+                            // the cache was disabled meanwhile
+                            if (ssTables_.getRowCache().getCapacity() == 0)
+                                return;
+                            cacheRow(key);
+                        }
+                    }
+                }));
+            }
+            executor.shutdown();
+            try
+            {
+                for (Future<?> future : futures)
+                    future.get();
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+            catch (ExecutionException e)
+            {
+                logger_.warn("error loading " + msgSuffix, e.getCause());
+                return;
+            }
+            logger_.info(String.format("completed loading (%d ms; %d keys) %s",
+                                       System.currentTimeMillis()-start, ssTables_.getRowCache().getSize(), msgSuffix));
+        }
+    }
+
     public Future<?> submitKeyCacheWrite()
     {
         return cacheSavingExecutor.submit(keyCacheWriteTask);
@@ -317,7 +413,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return cacheSavingExecutor.submit(rowCacheWriteTask);
     }
 
-    public void addToCompactedRowStats(Long rowsize)
+    public synchronized void addToCompactedRowStats(Long rowsize)
     {
         if (minRowCompactedSize < 1 || rowsize < minRowCompactedSize)
             minRowCompactedSize = rowsize;
@@ -469,50 +565,62 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     Future<?> maybeSwitchMemtable(Memtable oldMemtable, final boolean writeCommitLog) throws IOException
     {
         /**
-         *  If we can get the writelock, that means no new updates can come in and 
-         *  all ongoing updates to memtables have completed. We can get the tail
-         *  of the log and use it as the starting position for log replay on recovery.
+         *  BIGDATA: writers pin the memtable before appending to the commit log (see Table.apply),
+         *  so every mutation logged before the context below has pinned the old memtable and
+         *  goes into it; later ones may go to either memtable, which replay tolerates.
+         *  Writers are never blocked: after the freeze they pin the fresh memtable, and we
+         *  only wait for those still applying to the old one before flushing it.
          */
-        Table.flusherLock.writeLock().lock();
-        try
+        synchronized (switchLock)
         {
-            if (oldMemtable.isFrozen())
-            {
-                return null;
-            }
-            oldMemtable.freeze();
-
-            final CommitLogSegment.CommitLogContext ctx = writeCommitLog ? CommitLog.instance().getContext() : null;
-            logger_.info(columnFamily_ + " has reached its threshold; switching in a fresh Memtable at " + ctx);
-            final Condition condition = submitFlush(oldMemtable);
-            memtable_ = new Memtable(this);
-            // a second executor that makes sure the onMemtableFlushes get called in the right order,
-            // while keeping the wait-for-flush (future.get) out of anything latency-sensitive.
-            return commitLogUpdater_.submit(new WrappedRunnable()
+            try
             {
-                public void runMayThrow() throws InterruptedException, IOException
+                if (oldMemtable.isFrozen())
+                {
+                    return null;
+                }
+
+                final CommitLogSegment.CommitLogContext ctx = writeCommitLog ? CommitLog.instance().getContext() : null;
+                logger_.info(columnFamily_ + " has reached its threshold; switching in a fresh Memtable at " + ctx);
+                oldMemtable.freeze();
+                // readers look at memtable_ before the pending set, so the old memtable must be pending first
+                getMemtablesPendingFlush().add(oldMemtable);
+                memtable_ = newMemtable();
+                oldMemtable.awaitWriters();
+                final Condition condition = submitFlush(oldMemtable);
+                // a second executor that makes sure the onMemtableFlushes get called in the right order,
+                // while keeping the wait-for-flush (future.get) out of anything latency-sensitive.
+                return commitLogUpdater_.submit(new WrappedRunnable()
                 {
-                    condition.await();
-                    if (writeCommitLog)
+                    public void runMayThrow() throws InterruptedException, IOException
                     {
-                        // if we're not writing to the commit log, we are replaying the log, so marking
-                        // the log header with "you can discard anything written before the context" is not valid
-                        CommitLog.instance().discardCompletedSegments(table_, columnFamily_, ctx);
+                        condition.await();
+                        if (writeCommitLog)
+                        {
+                            // if we're not writing to the commit log, we are replaying the log, so marking
+                            // the log header with "you can discard anything written before the context" is not valid
+                            CommitLog.instance().discardCompletedSegments(table_, columnFamily_, ctx);
+                        }
                     }
-                }
-            });
-        }
-        finally
-        {
-            Table.flusherLock.writeLock().unlock();
-            if (memtableSwitchCount == Integer.MAX_VALUE)
+                });
+            }
+            finally
             {
-                memtableSwitchCount = 0;
+                if (memtableSwitchCount == Integer.MAX_VALUE)
+                {
+                    memtableSwitchCount = 0;
+                }
+                memtableSwitchCount++;
             }
-            memtableSwitchCount++;
         }
     }
 
+    // BIGDATA: the memtable implementation is selected per CF by MemtableMode.
+    private Memtable newMemtable()
+    {
+        return cfMetaData.arenaMemtable ? new ArenaMemtable(this) : new Memtable(this);
+    }
+
     void switchBinaryMemtable(String key, byte[] buffer) throws IOException
     {
         binaryMemtable_.set(new BinaryMemtable(this));
@@ -557,22 +665,38 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         submitFlush(binaryMemtable_.get()).await();        
     }
 
+    /**
+     * BIGDATA: pin the active memtable for a write; the caller must unpin it when done.
+     * A memtable being switched out refuses new pins, and memtable_ is replaced right
+     * after, so this only spins for the few instructions of that window.
+     */
+    Memtable pinMemtable()
+    {
+        while (true)
+        {
+            Memtable memtable = memtable_;
+            if (memtable.pin())
+                return memtable;
+            Thread.yield();
+        }
+    }
+
     /**
      * Insert/Update the column family for this key.
-     * Caller is responsible for acquiring Table.flusherLock!
-     * param @ lock - lock that needs to be used.
+     * Caller is responsible for pinning the memtable! (BIGDATA: see pinMemtable)
+     * param @ memtable - the pinned memtable.
      * param @ key - key for update/insert
      * param @ columnFamily - columnFamily changes
      */
-    Memtable apply(String key, ColumnFamily columnFamily) throws IOException
+    boolean apply(Memtable memtable, String key, ColumnFamily columnFamily) throws IOException
     {
         long start = System.nanoTime();
 
-        boolean flushRequested = memtable_.isThresholdViolated();
-        memtable_.put(key, columnFamily);
+        boolean flushRequested = memtable.isThresholdViolated();
+        memtable.put(key, columnFamily);
         writeStats_.addNano(System.nanoTime() - start);
         
-        return flushRequested ? memtable_ : null;
+        return flushRequested;
     }
 
     /*
@@ -753,12 +877,10 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     /**
      * submits flush sort on the flushSorter executor, which will in turn submit to flushWriter when sorted.
-     * TODO because our executors use CallerRunsPolicy, when flushSorter fills up, no writes will proceed
-     * because the next flush will start executing on the caller, mutation-stage thread that has the
-     * flush write lock held.  (writes aquire this as a read lock before proceeding.)
-     * This is good, because it backpressures flushes, but bad, because we can't write until that last
-     * flushing thread finishes sorting, which will almost always be longer than any of the flushSorter threads proper
-     * (since, by definition, it started last).
+     * TODO because our executors use CallerRunsPolicy, when flushSorter fills up, the next flush
+     * will start executing on the caller, mutation-stage thread.  This is good, because it backpressures
+     * flushes, but bad, because that thread can't write until it finishes sorting.  (BIGDATA: other
+     * writers are no longer held up, since there is no more flush write lock.)
      */
     Condition submitFlush(IFlushable flushable)
     {
@@ -768,6 +890,12 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return condition;
     }
 
+    /** BIGDATA: the executor a live Memtable flush serializes its row batches on. */
+    static ExecutorService getFlushSerializer()
+    {
+        return flushSerializer_;
+    }
+
     public boolean isSuper()
     {
         return isSuper_;
@@ -788,9 +916,25 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return memtableSwitchCount;
     }
 
+    public long getMemtableLiveSize()
+    {
+        return getMemtableThreadSafe().getLiveSize();
+    }
+
     /**
-     * get the current memtable in a threadsafe fashion.  note that simply "return memtable_" is
-     * incorrect; you need to lock to introduce a thread safe happens-before ordering.
+     * BIGDATA: estimated heap still retained by the memtables being flushed.
+     */
+    public long getMemtablesPendingFlushLiveSize()
+    {
+        long size = 0;
+        for (Memtable memtable : getMemtablesPendingFlush())
+            size += memtable.getLiveSize();
+        return size;
+    }
+
+    /**
+     * get the current memtable in a threadsafe fashion.  (BIGDATA: memtable_ is volatile now,
+     * which gives the happens-before ordering the flusherLock used to.)
      *
      * do NOT use this method to do either a put or get on the memtable object, since it could be
      * flushed in the meantime (and its executor terminated).
@@ -800,28 +944,12 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
      */
     private Memtable getMemtableThreadSafe()
     {
-        Table.flusherLock.readLock().lock();
-        try
-        {
-            return memtable_;
-        }
-        finally
-        {
-            Table.flusherLock.readLock().unlock();
-        }
+        return memtable_;
     }
 
     public Iterator<DecoratedKey> memtableKeyIterator(DecoratedKey startWith) throws ExecutionException, InterruptedException
     {
-        Table.flusherLock.readLock().lock();
-        try
-        {
-             return memtable_.getKeyIterator(startWith);
-        }
-        finally
-        {
-            Table.flusherLock.readLock().unlock();
-        }
+        return memtable_.getKeyIterator(startWith);
     }
 
     public Collection<SSTableReader> getSSTables()
@@ -854,10 +982,10 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return readStats_.getTotalLatencyMicros();
     }
 
-// TODO this actually isn't a good meature of pending tasks
+    // BIGDATA: writers no longer queue on a flush lock, count the flushes in progress instead
     public int getPendingTasks()
     {
-        return Table.flusherLock.getQueueLength();
+        return getMemtablesPendingFlush().size();
     }
 
     public long getWriteCount()
@@ -903,6 +1031,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             cached = getTopLevelColumns(new IdentityQueryFilter(key, new QueryPath(columnFamily_)), Integer.MIN_VALUE);
             if (cached == null)
                 return null;
+            if (!ssTables_.getRowCache().isPutCopying())
+                cached.materialize(); // BIGDATA: no mapped views in the cache
             ssTables_.getRowCache().put(key, cached);
         }
         return cached;
@@ -985,38 +1115,47 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             final ColumnFamily returnCF;
             ColumnIterator iter;
 
+            // BIGDATA: the rows the memtable iterators read, for addNamesSSTableIterators
+            List<ColumnFamily> memtableCFs = new ArrayList<ColumnFamily>();
+
             /* add the current memtable */
-            Table.flusherLock.readLock().lock();
-            try
-            {
-                iter = filter.getMemColumnIterator(memtable_, getComparator());
-                // TODO this is a little subtle: the Memtable ColumnIterator has to be a shallow clone of the source CF,
-                // with deletion times set correctly, so we can use it as the "base" CF to add query results to.
-                // (for sstable ColumnIterators we do not care if it is a shallow clone or not.)
-                returnCF = iter.getColumnFamily();
-            }
-            finally
-            {
-                Table.flusherLock.readLock().unlock();
-            }
+            ColumnFamily memtableCF = memtable_.getColumnFamily(filter.key);
+            memtableCFs.add(memtableCF);
+            iter = filter.getMemColumnIterator(memtable_, memtableCF, getComparator());
+            // TODO this is a little subtle: the Memtable ColumnIterator has to be a shallow clone of the source CF,
+            // with deletion times set correctly, so we can use it as the "base" CF to add query results to.
+            // (for sstable ColumnIterators we do not care if it is a shallow clone or not.)
+            returnCF = iter.getColumnFamily();
             iterators.add(iter);
 
             /* add the memtables being flushed */
             for (Memtable memtable : getMemtablesPendingFlush())
             {
-                iter = filter.getMemColumnIterator(memtable, getComparator());
+                memtableCF = memtable.getColumnFamily(filter.key);
+                memtableCFs.add(memtableCF);
+                iter = filter.getMemColumnIterator(memtable, memtableCF, getComparator());
                 returnCF.delete(iter.getColumnFamily());
                 iterators.add(iter);
             }
 
             /* add the SSTables on disk */
-            for (SSTableReader sstable : ssTables_)
+            if (filter instanceof NamesQueryFilter && !isSuper())
             {
-                iter = filter.getSSTableColumnIterator(sstable);
-                if (iter.getColumnFamily() != null)
+                addNamesSSTableIterators((NamesQueryFilter) filter, returnCF, memtableCFs, iterators);
+            }
+            else
+            {
+                for (SSTableReader sstable : ssTables_)
                 {
-                    returnCF.delete(iter.getColumnFamily());
-                    iterators.add(iter);
+                    // BIGDATA: skip the sstables whose column stats exclude the filter
+                    if (!filter.mayMatch(sstable.getColumnStats()))
+                        continue;
+                    iter = filter.getSSTableColumnIterator(sstable);
+                    if (iter.getColumnFamily() != null)
+                    {
+                        returnCF.delete(iter.getColumnFamily());
+                        iterators.add(iter);
+                    }
                 }
             }
 
@@ -1042,6 +1181,75 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
     }
 
+    /**
+     * BIGDATA:
+     * Add the iterators of the sstables a name query may find a column in, newest
+     * (by the max timestamp of their column stats) first.  Once every name has a
+     * version newer than anything in the remaining sstables, those are not read.
+     * The memtables are always read, so their versions count too: those of the rows,
+     * memtableCFs, their iterators read, so they are of the same memtables.
+     */
+    private void addNamesSSTableIterators(NamesQueryFilter filter, ColumnFamily returnCF, List<ColumnFamily> memtableCFs,
+                                          List<ColumnIterator> iterators) throws IOException
+    {
+        List<SSTableReader> sstables = new ArrayList<SSTableReader>();
+        for (SSTableReader sstable : ssTables_)
+        {
+            if (filter.mayMatch(sstable.getColumnStats()))
+                sstables.add(sstable);
+        }
+        Collections.sort(sstables, new Comparator<SSTableReader>()
+        {
+            public int compare(SSTableReader o1, SSTableReader o2)
+            {
+                long t1 = o1.getColumnStats().getMaxTimestamp(), t2 = o2.getColumnStats().getMaxTimestamp();
+                return t1 > t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+
+        List<byte[]> names = new ArrayList<byte[]>(filter.columns);
+        long[] newest = new long[names.size()];
+        Arrays.fill(newest, Long.MIN_VALUE);
+        for (ColumnFamily memtableCF : memtableCFs)
+            updateNewest(memtableCF, names, newest);
+
+        for (SSTableReader sstable : sstables)
+        {
+            long maxTimestamp = sstable.getColumnStats().getMaxTimestamp();
+            if (returnCF.getMarkedForDeleteAt() > maxTimestamp || isNewer(newest, maxTimestamp))
+                break;
+            ColumnIterator iter = filter.getSSTableColumnIterator(sstable);
+            if (iter.getColumnFamily() != null)
+            {
+                returnCF.delete(iter.getColumnFamily());
+                iterators.add(iter);
+                updateNewest(iter.getColumnFamily(), names, newest);
+            }
+        }
+    }
+
+    private static void updateNewest(ColumnFamily cf, List<byte[]> names, long[] newest)
+    {
+        if (cf == null)
+            return;
+        for (int i = 0; i < newest.length; i++)
+        {
+            IColumn column = cf.getColumn(names.get(i));
+            if (column != null)
+                newest[i] = Math.max(newest[i], column.timestamp());
+        }
+    }
+
+    private static boolean isNewer(long[] newest, long timestamp)
+    {
+        for (long t : newest)
+        {
+            if (t <= timestamp)
+                return false;
+        }
+        return true;
+    }
+
     /**
      * @param range: either a Bounds, which includes start key, or a Range, which does not.
      * @param maxResults
@@ -1237,6 +1445,14 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             targetLink = new File(snapshotDirectoryPath, sourceFile.getName());
             CLibrary.createHardLink(sourceFile, targetLink);
 
+            // BIGDATA: optional
+            for (String filename : new String[] { ssTable.pagesFilename(), ssTable.statsFilename() })
+            {
+                File file = new File(filename);
+                if (file.exists())
+                    CLibrary.createHardLink(file, new File(snapshotDirectoryPath, file.getName()));
+            }
+
             if (logger_.isDebugEnabled())
                 logger_.debug("Snapshot for " + table_ + " table data file " + sourceFile.getAbsolutePath() +
                     " created as " + targetLink.getAbsolutePath());
@@ -1269,6 +1485,30 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return ssTables_.getRowCache().getCapacity() == 0 ? null : ssTables_.getRowCache().getInternal(key);
     }
 
+    /**
+     * BIGDATA: merge a write into the cached row, if any.  The rows of a copying
+     * cache are copies, so the row is invalidated instead, to be read again.
+     * A weighted cache has the merged row put back, to weigh it again; a row
+     * grown too large for the cache is dropped then.
+     */
+    void updateRowCache(String key, ColumnFamily columnFamily)
+    {
+        JMXInstrumentedCache<String, ColumnFamily> rowCache = ssTables_.getRowCache();
+        if (rowCache.getCapacity() == 0)
+            return;
+        if (rowCache.isPutCopying())
+        {
+            rowCache.remove(key);
+            return;
+        }
+        ColumnFamily cachedRow = rowCache.getInternal(key);
+        if (cachedRow == null)
+            return;
+        cachedRow.addAll(columnFamily);
+        if (rowCache.isWeighted())
+            rowCache.put(key, cachedRow);
+    }
+
     void invalidateCachedRow(String key)
     {
         ssTables_.getRowCache().remove(key);
@@ -1284,12 +1524,12 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         ssTables_.getRowCache().clear();
     }
 
-    public int getRowCacheCapacity()
+    public long getRowCacheCapacity()
     {
         return ssTables_.getRowCache().getCapacity();
     }
 
-    public int getKeyCacheCapacity()
+    public long getKeyCacheCapacity()
     {
         return ssTables_.getKeyCache().getCapacity();
     }
@@ -1315,16 +1555,16 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return Iterables.concat(stores);
     }
 
-    public Iterable<IndexSummary.KeyPosition> allIndexPositions()
+    public Iterable<DecoratedKey> allSampledKeys()
     {
         Collection<SSTableReader> sstables = getSSTables();
-        Iterable<IndexSummary.KeyPosition>[] positions = new Iterable[sstables.size()];
+        Iterable<DecoratedKey>[] keys = new Iterable[sstables.size()];
         int i = 0;
         for (SSTableReader sstable: sstables)
         {
-            positions[i++] = sstable.getIndexPositions();
+            keys[i++] = sstable.getSampledKeys();
         }
-        return Iterables.concat(positions);
+        return Iterables.concat(keys);
     }
 
     /**
@@ -1390,6 +1630,57 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return falseCount.doubleValue() / (trueCount.doubleValue() + falseCount.doubleValue());
     }
 
+    public double getBloomFilterFalsePositiveRate()
+    {
+        long falseCount = 0;
+        long negativeCount = 0;
+        for (SSTableReader sstable: getSSTables())
+        {
+            falseCount += sstable.getBloomFilterFalsePositiveCount();
+            negativeCount += sstable.getBloomFilterTrueNegativeCount();
+        }
+        if (falseCount == 0 && negativeCount == 0)
+            return 0d;
+        return (double) falseCount / (falseCount + negativeCount);
+    }
+
+    public double getBloomFilterExpectedFalsePositiveRate()
+    {
+        return expectedFalsePositiveRate(false);
+    }
+
+    public double getStandardBloomFilterExpectedFalsePositiveRate()
+    {
+        return expectedFalsePositiveRate(true);
+    }
+
+    /**
+     * BIGDATA: the rates of the sstables weighted by their lookups of absent
+     * keys, so it compares with getBloomFilterFalsePositiveRate; by their keys
+     * before any lookup.
+     */
+    private double expectedFalsePositiveRate(boolean standard)
+    {
+        double lookups = 0;
+        double lookupRate = 0;
+        double keys = 0;
+        double keyRate = 0;
+        for (SSTableReader sstable: getSSTables())
+        {
+            double rate = standard
+                        ? sstable.getStandardBloomFilterExpectedFalsePositiveRate()
+                        : sstable.getBloomFilterExpectedFalsePositiveRate();
+            long n = sstable.getBloomFilterFalsePositiveCount() + sstable.getBloomFilterTrueNegativeCount();
+            lookups += n;
+            lookupRate += n * rate;
+            keys += sstable.estimatedKeys();
+            keyRate += sstable.estimatedKeys() * rate;
+        }
+        if (lookups > 0)
+            return lookupRate / lookups;
+        return keys > 0 ? keyRate / keys : 0d;
+    }
+
     public long estimateKeys()
     {
         return ssTables_.estimatedKeys();
@@ -1414,6 +1705,12 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     {
         return cfMetaData;
     }
+
+    // BIGDATA:
+    public ICompactionStrategy getCompactionStrategy()
+    {
+        return compactionStrategy;
+    }
         
     // BIGDATA:
     @Override
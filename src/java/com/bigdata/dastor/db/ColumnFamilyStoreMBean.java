@@ -46,6 +46,14 @@ public interface ColumnFamilyStoreMBean
      * @return The number of columns.
      */
     public int getMemtableColumnsCount();
+
+    /**
+     * BIGDATA: Returns the estimated heap retained by the memtable,
+     * plus its off-heap slabs for an arena memtable.
+     *
+     * @return The size in bytes.
+     */
+    public long getMemtableLiveSize();
     
     /**
      * Returns the number of times that a flush has resulted in the
@@ -166,6 +174,25 @@ public interface ColumnFamilyStoreMBean
 
     public double getRecentBloomFilterFalseRatio();
 
+    /**
+     * BIGDATA:
+     * @return the false positives over the lookups of keys absent from the sstables
+     */
+    public double getBloomFilterFalsePositiveRate();
+
+    /**
+     * BIGDATA:
+     * @return the false positive rate expected from the filters of the sstables
+     */
+    public double getBloomFilterExpectedFalsePositiveRate();
+
+    /**
+     * BIGDATA:
+     * @return the false positive rate expected from standard BloomFilters of the
+     * sstables, to compare with BloomFilterType blocked
+     */
+    public double getStandardBloomFilterExpectedFalsePositiveRate();
+
     public long estimateKeys();
 
     // BIGDATA:
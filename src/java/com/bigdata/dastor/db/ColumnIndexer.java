@@ -29,8 +29,6 @@ import java.util.Iterator;
 import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.io.IndexHelper;
-import com.bigdata.dastor.io.util.DataOutputBuffer;
-import com.bigdata.dastor.utils.BloomFilter;
 
 
 /**
@@ -45,22 +43,17 @@ public class ColumnIndexer
 	 * Given a column family this, function creates an in-memory structure that represents the
 	 * column index for the column family, and subsequently writes it to disk.
 	 * @param columnFamily Column family to create index for
+	 * @param columnBloomFilterThreshold BIGDATA: see BigdataColumnIndexer.hasColumnBloomFilter
 	 * @param dos data output stream
 	 * @throws IOException
 	 */
-    public static void serialize(ColumnFamily columnFamily, DataOutput dos)
+    public static void serialize(ColumnFamily columnFamily, int columnBloomFilterThreshold, DataOutput dos)
 	{
         Collection<IColumn> columns = columnFamily.getSortedColumns();
-        BloomFilter bf = createColumnBloomFilter(columns);                    
-        /* Write out the bloom filter. */
-        DataOutputBuffer bufOut = new DataOutputBuffer();
         try
         {
-            BloomFilter.serializer().serialize(bf, bufOut);
-            /* write the length of the serialized bloom filter. */
-            dos.writeInt(bufOut.getLength());
-            /* write out the serialized bytes. */
-            dos.write(bufOut.getData(), 0, bufOut.getLength());
+            // BIGDATA: same filter as the new row format, possibly empty
+            BigdataColumnIndexer.createAndSerializeBloomFiliter(columns, columnBloomFilterThreshold, dos);
 
             /* Do the indexing */
             doIndexing(columnFamily.getComparator(), columns, dos);
@@ -71,37 +64,6 @@ public class ColumnIndexer
         }
 	}
     
-    /**
-     * Create a bloom filter that contains the subcolumns and the columns that
-     * make up this Column Family.
-     * @param columns columns of the ColumnFamily
-     * @return BloomFilter with the summarized information.
-     */
-    private static BloomFilter createColumnBloomFilter(Collection<IColumn> columns)
-    {
-        int columnCount = 0;
-        for (IColumn column : columns)
-        {
-            columnCount += column.getObjectCount();
-        }
-
-        BloomFilter bf = BloomFilter.getFilter(columnCount, 4);
-        for (IColumn column : columns)
-        {
-            bf.add(column.name());
-            /* If this is SuperColumn type Column Family we need to get the subColumns too. */
-            if (column instanceof SuperColumn)
-            {
-                Collection<IColumn> subColumns = column.getSubColumns();
-                for (IColumn subColumn : subColumns)
-                {
-                    bf.add(subColumn.name());
-                }
-            }
-        }
-        return bf;
-    }
-
     /**
      * Given the collection of columns in the Column Family,
      * the name index is generated and written into the provided
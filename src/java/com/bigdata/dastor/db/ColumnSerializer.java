@@ -24,7 +24,9 @@ package com.bigdata.dastor.db;
 import java.io.*;
 
 
+import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.io.ICompactSerializer2;
+import com.bigdata.dastor.io.util.MappedFileDataInput;
 import com.bigdata.dastor.utils.FBUtilities;
 
 public class ColumnSerializer implements ICompactSerializer2<IColumn>
@@ -82,6 +84,9 @@ public class ColumnSerializer implements ICompactSerializer2<IColumn>
         {
             throw new IOException("Corrupt (negative) value length encountered");
         }
+        // BIGDATA: a view over the mapped segment, copied only if used
+        if (length > 0 && dis instanceof MappedFileDataInput && DatabaseDescriptor.isZeroCopyReads())
+            return new MappedColumn(name, ((MappedFileDataInput) dis).readView(length), ts, delete);
         byte[] value = new byte[length];
         if (length > 0)
         {
@@ -25,7 +25,14 @@ import java.net.InetAddress;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
@@ -40,6 +47,7 @@ import org.apache.commons.collections.iterators.FilterIterator;
 import org.apache.commons.lang.StringUtils;
 
 import com.bigdata.dastor.concurrent.DebuggableThreadPoolExecutor;
+import com.bigdata.dastor.concurrent.NamedThreadFactory;
 import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.dht.Range;
 import com.bigdata.dastor.io.*;
@@ -47,6 +55,8 @@ import com.bigdata.dastor.io.util.FileUtils;
 import com.bigdata.dastor.service.AntiEntropyService;
 import com.bigdata.dastor.service.StorageService;
 import com.bigdata.dastor.utils.FBUtilities;
+import com.bigdata.dastor.utils.Pair;
+import com.bigdata.dastor.utils.Throttle;
 
 public class CompactionManager implements CompactionManagerMBean
 {
@@ -71,7 +81,17 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    // BIGDATA: the smallest range a compaction is split into
+    private static final long MIN_RANGE_SIZE = 256L * 1024 * 1024;
+    // BIGDATA: the sampled keys of an sstable per range, to find the boundaries with
+    private static final int SAMPLES_PER_RANGE = 128;
+
     private CompactionExecutor executor;
+    // BIGDATA: paces the reads of all compactions together, see CompactionThroughputInMB
+    private final Throttle throttle = new Throttle(DatabaseDescriptor.getCompactionThroughputInMB() * 1024L * 1024L);
+    // BIGDATA: merges the ranges of split compactions
+    private final ExecutorService rangeExecutor = Executors.newFixedThreadPool(DatabaseDescriptor.getCompactionParallelism(),
+                                                                              new NamedThreadFactory("COMPACTION-RANGE", DatabaseDescriptor.getCompactionPriority()));
     private Map<ColumnFamilyStore, Integer> estimatedCompactions = new NonBlockingHashMap<ColumnFamilyStore, Integer>();
 
     // BIGDATA: to support concurrent compaction
@@ -129,36 +149,37 @@ public class CompactionManager implements CompactionManagerMBean
                     return 0;
                 }
                 logger.debug("Checking to see if compaction of " + cfs.columnFamily_ + " would be useful");
-                Set<List<SSTableReader>> buckets = getBuckets(cfs.getSSTables(), 50L * 1024L * 1024L, cfs.getCFMetaData().compactSkipSize); // BIGDATA: compactSkipSize
-                updateEstimateFor(cfs, buckets);
-                
-                for (List<SSTableReader> sstables : buckets)
-                {
-                    if (sstables.size() >= minimumCompactionThreshold)
-                    {
-                        // if we have too many to compact all at once, compact older ones first -- this avoids
-                        // re-compacting files we just created.
-                        Collections.sort(sstables);
-                        return doCompaction(cfs, sstables.subList(0, Math.min(sstables.size(), maximumCompactionThreshold)), getDefaultGCBefore());
-                    }
-                }
-                return 0;
+                ICompactionStrategy strategy = cfs.getCompactionStrategy(); // BIGDATA
+                dropExpired(cfs, strategy.getExpiredSSTables(getDefaultGCBefore()));
+                updateEstimateFor(cfs);
+
+                // BIGDATA: chosen by the strategy of the bucket
+                List<SSTableReader> sstables = strategy.getNextCompaction(minimumCompactionThreshold, maximumCompactionThreshold);
+                if (sstables == null)
+                    return 0;
+                return doCompaction(cfs, sstables, getDefaultGCBefore());
             }
         };
-        return getExecutor(cfs).submit(callable);
+        return getExecutor(cfs).submit(callable, TaskType.MINOR);
     }
 
-    private void updateEstimateFor(ColumnFamilyStore cfs, Set<List<SSTableReader>> buckets)
+    /**
+     * BIGDATA: drop the sstables a merge would leave nothing of, without merging them.
+     */
+    private void dropExpired(ColumnFamilyStore cfs, List<SSTableReader> expired) throws IOException
     {
-        int n = 0;
-        for (List<SSTableReader> sstables : buckets)
-        {
-            if (sstables.size() >= minimumCompactionThreshold)
-            {
-                n += 1 + sstables.size() / (maximumCompactionThreshold - minimumCompactionThreshold);
-            }
-        }
-        estimatedCompactions.put(cfs, n);
+        if (expired.isEmpty())
+            return;
+        if (DatabaseDescriptor.isSnapshotBeforeCompaction())
+            cfs.getTable().snapshot("compact-" + cfs.columnFamily_);
+        logger.info("Dropping expired [" + StringUtils.join(expired, ",") + "]");
+        cfs.markCompacted(expired);
+        cfs.getCompactionStrategy().compacted(expired, Collections.<SSTableReader>emptyList());
+    }
+
+    private void updateEstimateFor(ColumnFamilyStore cfs) throws IOException
+    {
+        estimatedCompactions.put(cfs, cfs.getCompactionStrategy().getEstimatedCompactions(minimumCompactionThreshold, maximumCompactionThreshold));
     }
 
     public Future<Object> submitCleanup(final ColumnFamilyStore cfStore)
@@ -171,7 +192,7 @@ public class CompactionManager implements CompactionManagerMBean
                 return this;
             }
         };
-        return getExecutor(cfStore).submit(runnable);
+        return getExecutor(cfStore).submit(runnable, TaskType.CLEANUP);
     }
 
     public Future<List<SSTableReader>> submitAnticompaction(final ColumnFamilyStore cfStore, final Collection<Range> ranges, final InetAddress target)
@@ -183,7 +204,7 @@ public class CompactionManager implements CompactionManagerMBean
                 return doAntiCompaction(cfStore, cfStore.getSSTables(), ranges, target);
             }
         };
-        return getExecutor(cfStore).submit(callable);
+        return getExecutor(cfStore).submit(callable, TaskType.CLEANUP);
     }
 
     public Future submitMajor(final ColumnFamilyStore cfStore)
@@ -231,7 +252,7 @@ public class CompactionManager implements CompactionManagerMBean
                 return this;
             }
         };
-        return getExecutor(cfStore).submit(callable);
+        return getExecutor(cfStore).submit(callable, TaskType.MAJOR);
     }
 
     public Future submitValidation(final ColumnFamilyStore cfStore, final AntiEntropyService.Validator validator)
@@ -244,7 +265,7 @@ public class CompactionManager implements CompactionManagerMBean
                 return this;
             }
         };
-        return getExecutor(cfStore).submit(callable);
+        return getExecutor(cfStore).submit(callable, TaskType.VALIDATION);
     }
 
     /**
@@ -279,6 +300,27 @@ public class CompactionManager implements CompactionManagerMBean
         maximumCompactionThreshold = threshold;
     }
 
+    // BIGDATA
+    public Throttle getThrottle()
+    {
+        return throttle;
+    }
+
+    // BIGDATA
+    public int getCompactionThroughputInMB()
+    {
+        return (int) (throttle.getRate() / (1024L * 1024L));
+    }
+
+    // BIGDATA
+    public void setCompactionThroughputInMB(int throughput)
+    {
+        if (throughput < 0)
+            throw new IllegalArgumentException("compaction throughput must not be negative: " + throughput);
+        throttle.setRate(throughput * 1024L * 1024L);
+        logger.info("Compaction throughput set to " + throughput + " MB/s");
+    }
+
     public void disableAutoCompaction()
     {
         minimumCompactionThreshold = 0;
@@ -320,43 +362,148 @@ public class CompactionManager implements CompactionManagerMBean
         boolean major = cfs.isCompleteSSTables(sstables);
 
         long startTime = System.currentTimeMillis();
-        long totalkeysWritten = 0;
+
+        // BIGDATA: the rows are split into disjoint token ranges, merged in parallel
+        List<DecoratedKey> boundaries = getRangeBoundaries(sstables, cfs.getExpectedCompactedFileSize(sstables));
+        int rangeCount = boundaries.size() + 1;
 
         // TODO the int cast here is potentially buggy
-        int expectedBloomFilterSize = Math.max(DatabaseDescriptor.getIndexInterval(), (int)SSTableReader.getApproximateKeyCount(sstables));
+        long expectedKeys = SSTableReader.getApproximateKeyCount(sstables) / rangeCount;
+        // BIGDATA: the strategy may split the output into sstables of maxSSTableSize
+        ICompactionStrategy strategy = cfs.getCompactionStrategy();
+        long maxSSTableSize = strategy.getMaxSSTableSize();
+        long expectedSize = cfs.getExpectedCompactedFileSize(sstables) / rangeCount;
+        if (maxSSTableSize < expectedSize)
+            expectedKeys = (long) (expectedKeys * ((double) maxSSTableSize / expectedSize));
+        int expectedBloomFilterSize = Math.max(DatabaseDescriptor.getIndexInterval(), (int)expectedKeys);
         if (logger.isDebugEnabled())
           logger.debug("Expected bloom filter size : " + expectedBloomFilterSize);
 
-        SSTableWriter writer;
-        CompactionIterator ci = new CompactionIterator(cfs, sstables, gcBefore, major); // retain a handle so we can call close()
-        Iterator<CompactionIterator.CompactedRow> nni = new FilterIterator(ci, PredicateUtils.notNullPredicate());
-        getExecutor(cfs).beginCompaction(cfs, ci);
+        List<CompactionIterator> iterators = new ArrayList<CompactionIterator>();
+        for (int i = 0; i < rangeCount; i++)
+        {
+            DecoratedKey left = i == 0 ? null : boundaries.get(i - 1);
+            DecoratedKey right = i == rangeCount - 1 ? null : boundaries.get(i);
+            iterators.add(new CompactionIterator(cfs, sstables, left, right, gcBefore, major));
+        }
+        getExecutor(cfs).beginCompaction(cfs, iterators);
 
+        List<List<SSTableReader>> rangeResults = new ArrayList<List<SSTableReader>>();
+        for (int i = 0; i < rangeCount; i++)
+            rangeResults.add(new ArrayList<SSTableReader>());
+        long totalkeysWritten = 0;
+        boolean success = false;
         try
         {
-            if (!nni.hasNext())
+            if (rangeCount == 1)
             {
-                // don't mark compacted in the finally block, since if there _is_ nondeleted data,
-                // we need to sync it (via closeAndOpen) first, so there is no period during which
-                // a crash could cause data loss.
-                cfs.markCompacted(sstables);
-                return 0;
+                totalkeysWritten = compactRange(cfs, iterators.get(0), compactionFileLocation, expectedBloomFilterSize, maxSSTableSize, rangeResults.get(0));
             }
+            else
+            {
+                logger.info("Compacting in " + rangeCount + " ranges split at " + StringUtils.join(boundaries, ","));
+                List<Future<Long>> futures = new ArrayList<Future<Long>>();
+                for (int i = 0; i < rangeCount; i++)
+                    futures.add(rangeExecutor.submit(new RangeCompaction(cfs, iterators.get(i), compactionFileLocation, expectedBloomFilterSize, maxSSTableSize, rangeResults.get(i))));
+                // wait for every range, even once one failed, so none is still writing during the cleanup
+                ExecutionException failure = null;
+                for (Future<Long> future : futures)
+                {
+                    try
+                    {
+                        totalkeysWritten += future.get();
+                    }
+                    catch (ExecutionException e)
+                    {
+                        if (failure == null)
+                            failure = e;
+                    }
+                }
+                if (failure != null)
+                {
+                    if (failure.getCause() instanceof IOException)
+                        throw (IOException) failure.getCause();
+                    throw new RuntimeException(failure.getCause());
+                }
+            }
+            success = true;
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+        finally
+        {
+            if (!success)
+            {
+                for (List<SSTableReader> readers : rangeResults)
+                {
+                    for (SSTableReader reader : readers)
+                        reader.deleteUntracked();
+                }
+            }
+        }
 
-            String newFilename = new File(compactionFileLocation, cfs.getTempSSTableFileName()).getAbsolutePath();
-            writer = new SSTableWriter(newFilename, expectedBloomFilterSize, StorageService.getPartitioner());
+        // the outputs of all ranges replace the inputs at once
+        List<SSTableReader> results = new ArrayList<SSTableReader>();
+        for (List<SSTableReader> readers : rangeResults)
+            results.addAll(readers);
+        if (results.isEmpty())
+        {
+            // everything was deleted
+            cfs.markCompacted(sstables);
+            strategy.compacted(sstables, results);
+            return 0;
+        }
+        cfs.replaceCompactedSSTables(sstables, results);
+        strategy.compacted(sstables, results);
+        submitMinorIfNeeded(cfs);
+
+        String format = "Compacted to %s.  %d/%d bytes for %d keys.  Time: %dms.";
+        long dTime = System.currentTimeMillis() - startTime;
+        logger.info(String.format(format, StringUtils.join(results, ","), SSTable.getTotalBytes(sstables), SSTable.getTotalBytes(results), totalkeysWritten, dTime));
+        return sstables.size();
+    }
+
+    /**
+     * BIGDATA: write the rows of one compaction range into sstables of at most about
+     * maxSSTableSize, which are added to results, but not published.
+     * @return the number of keys written.
+     */
+    private static long compactRange(ColumnFamilyStore cfs, CompactionIterator ci, String compactionFileLocation,
+                                     int expectedBloomFilterSize, long maxSSTableSize, List<SSTableReader> results)
+            throws IOException
+    {
+        long keysWritten = 0;
+        SSTableWriter writer = null;
+        Iterator<CompactionIterator.CompactedRow> nni = new FilterIterator(ci, PredicateUtils.notNullPredicate());
+        try
+        {
             while (nni.hasNext())
             {
                 CompactionIterator.CompactedRow row = nni.next();
+                if (writer == null)
+                {
+                    String newFilename = new File(compactionFileLocation, cfs.getTempSSTableFileName()).getAbsolutePath();
+                    writer = new SSTableWriter(newFilename, expectedBloomFilterSize, StorageService.getPartitioner());
+                    if (DatabaseDescriptor.isCompactionSkipPageCache())
+                        writer.skipPageCache();
+                }
                 long prevpos = writer.getFilePointer();
 
-                writer.append(row.key, row.headerBuffer, row.buffer);
-                totalkeysWritten++;
+                writer.append(row.key, row.headerBuffer, row.buffer, row.stats);
+                keysWritten++;
 
                 long rowsize = writer.getFilePointer() - prevpos;
                 if (rowsize > DatabaseDescriptor.getRowWarningThreshold())
                     logger.warn("Large row " + row.key.key + " in " + cfs.getColumnFamilyName() + " " + rowsize + " bytes");
                 cfs.addToCompactedRowStats(rowsize);
+
+                if (writer.getFilePointer() >= maxSSTableSize)
+                {
+                    results.add(writer.closeAndOpenReader());
+                    writer = null;
+                }
             }
         }
         finally
@@ -364,14 +511,82 @@ public class CompactionManager implements CompactionManagerMBean
             ci.close();
         }
 
-        SSTableReader ssTable = writer.closeAndOpenReader();
-        cfs.replaceCompactedSSTables(sstables, Arrays.asList(ssTable));
-        submitMinorIfNeeded(cfs);
+        if (writer != null)
+            results.add(writer.closeAndOpenReader());
+        return keysWritten;
+    }
 
-        String format = "Compacted to %s.  %d/%d bytes for %d keys.  Time: %dms.";
-        long dTime = System.currentTimeMillis() - startTime;
-        logger.info(String.format(format, writer.getFilename(), SSTable.getTotalBytes(sstables), ssTable.length(), totalkeysWritten, dTime));
-        return sstables.size();
+    private static class RangeCompaction implements Callable<Long>
+    {
+        private final ColumnFamilyStore cfs;
+        private final CompactionIterator ci;
+        private final String compactionFileLocation;
+        private final int expectedBloomFilterSize;
+        private final long maxSSTableSize;
+        private final List<SSTableReader> results;
+
+        RangeCompaction(ColumnFamilyStore cfs, CompactionIterator ci, String compactionFileLocation,
+                        int expectedBloomFilterSize, long maxSSTableSize, List<SSTableReader> results)
+        {
+            this.cfs = cfs;
+            this.ci = ci;
+            this.compactionFileLocation = compactionFileLocation;
+            this.expectedBloomFilterSize = expectedBloomFilterSize;
+            this.maxSSTableSize = maxSSTableSize;
+            this.results = results;
+        }
+
+        public Long call() throws IOException
+        {
+            return compactRange(cfs, ci, compactionFileLocation, expectedBloomFilterSize, maxSSTableSize, results);
+        }
+    }
+
+    /**
+     * BIGDATA: the keys splitting sstables into at most CompactionParallelism ranges of
+     * about the same size, none smaller than MIN_RANGE_SIZE; each sampled key of the index
+     * summaries stands for its share of the bytes of its sstable.
+     * @return the sorted boundaries, empty if the compaction is not to be split.
+     */
+    static List<DecoratedKey> getRangeBoundaries(Collection<SSTableReader> sstables, long expectedSize)
+    {
+        int rangeCount = (int) Math.min(DatabaseDescriptor.getCompactionParallelism(), expectedSize / MIN_RANGE_SIZE);
+        if (rangeCount <= 1)
+            return Collections.emptyList();
+
+        List<Pair<DecoratedKey, Long>> samples = new ArrayList<Pair<DecoratedKey, Long>>();
+        long totalWeight = 0;
+        for (SSTableReader sstable : sstables)
+        {
+            List<DecoratedKey> keys = sstable.getSampledKeys(SAMPLES_PER_RANGE * rangeCount);
+            if (keys.isEmpty())
+                continue;
+            long weight = Math.max(1, sstable.length() / keys.size());
+            for (DecoratedKey key : keys)
+                samples.add(new Pair<DecoratedKey, Long>(key, weight));
+            totalWeight += weight * keys.size();
+        }
+        Collections.sort(samples, new Comparator<Pair<DecoratedKey, Long>>()
+        {
+            public int compare(Pair<DecoratedKey, Long> o1, Pair<DecoratedKey, Long> o2)
+            {
+                return o1.left.compareTo(o2.left);
+            }
+        });
+
+        List<DecoratedKey> boundaries = new ArrayList<DecoratedKey>();
+        long weight = 0;
+        for (Pair<DecoratedKey, Long> sample : samples)
+        {
+            if (boundaries.size() == rangeCount - 1)
+                break;
+            // a boundary starts the range it is in, so it is not the first key
+            if (weight >= totalWeight * (boundaries.size() + 1) / rangeCount
+                && (boundaries.isEmpty() || sample.left.compareTo(boundaries.get(boundaries.size() - 1)) > 0))
+                boundaries.add(sample.left);
+            weight += sample.right;
+        }
+        return boundaries;
     }
 
     /**
@@ -431,8 +646,10 @@ public class CompactionManager implements CompactionManagerMBean
                     FileUtils.createDirectory(compactionFileLocation);
                     String newFilename = new File(compactionFileLocation, cfs.getTempSSTableFileName()).getAbsolutePath();
                     writer = new SSTableWriter(newFilename, expectedBloomFilterSize, StorageService.getPartitioner());
+                    if (DatabaseDescriptor.isCompactionSkipPageCache())
+                        writer.skipPageCache();
                 }
-                writer.append(row.key, row.headerBuffer, row.buffer);
+                writer.append(row.key, row.headerBuffer, row.buffer, row.stats);
                 totalkeysWritten++;
             }
         }
@@ -603,11 +820,17 @@ public class CompactionManager implements CompactionManagerMBean
                 public void run ()
                 {
                     logger.debug("Estimating compactions for " + cfs.columnFamily_);
-                    final Set<List<SSTableReader>> buckets = getBuckets(cfs.getSSTables(), 50L * 1024L * 1024L, cfs.getCFMetaData().compactSkipSize); // BIGDATA
-                    updateEstimateFor(cfs, buckets);
+                    try
+                    {
+                        updateEstimateFor(cfs);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new RuntimeException(e);
+                    }
                 }
             };
-            getExecutor(cfs).submit(runnable);
+            getExecutor(cfs).submit(Executors.callable(runnable), TaskType.ESTIMATE);
         }
 
         // actually schedule compactions.  done in a second pass so all the estimates occur before we
@@ -618,28 +841,91 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    /**
+     * BIGDATA: the kinds of compaction tasks, in the order queued tasks run, so the minor
+     * compactions of the small sstables of recent flushes are not held up behind long
+     * major compactions, validations and cleanups (or anticompactions) queued before them.
+     * A running task is never preempted.
+     */
+    private enum TaskType
+    {
+        ESTIMATE, MINOR, MAJOR, VALIDATION, CLEANUP
+    }
+
+    private static class CompactionTask<T> extends FutureTask<T> implements Comparable<CompactionTask<?>>
+    {
+        private static final AtomicLong sequence = new AtomicLong(0);
+
+        private final TaskType type;
+        private final long order; // first in, first out among tasks of a type
+
+        CompactionTask(Callable<T> callable, TaskType type)
+        {
+            super(callable);
+            this.type = type;
+            this.order = sequence.incrementAndGet();
+        }
+
+        public int compareTo(CompactionTask<?> o)
+        {
+            int c = type.compareTo(o.type);
+            if (c != 0)
+                return c;
+            return order < o.order ? -1 : (order == o.order ? 0 : 1);
+        }
+    }
+
     private class CompactionExecutor extends DebuggableThreadPoolExecutor
     {
         private volatile ColumnFamilyStore cfs;
-        private volatile CompactionIterator ci;
+        private volatile List<CompactionIterator> iterators; // BIGDATA: one per range
+        // BIGDATA: for the throughput: the start of the current compaction, and the
+        // bytes and time of the compactions done
+        private volatile long startTime;
+        private long bytesDone = 0;
+        private long timeDone = 0;
 
         public CompactionExecutor()
         {
-            super("COMPACTION-POOL", DatabaseDescriptor.getCompactionPriority());
+            // BIGDATA: queued tasks run by TaskType
+            super(1, 1, Integer.MAX_VALUE, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                  new NamedThreadFactory("COMPACTION-POOL", DatabaseDescriptor.getCompactionPriority()));
+        }
+
+        <T> Future<T> submit(Callable<T> callable, TaskType type)
+        {
+            CompactionTask<T> task = new CompactionTask<T>(callable, type);
+            execute(task);
+            return task;
         }
 
         @Override
         public void afterExecute(Runnable r, Throwable t)
         {
             super.afterExecute(r, t);
+            Long bytes = getBytesCompleted();
+            if (bytes != null)
+            {
+                synchronized (this)
+                {
+                    bytesDone += bytes;
+                    timeDone += System.currentTimeMillis() - startTime;
+                }
+            }
             cfs = null;
-            ci = null;
+            iterators = null;
         }
 
         void beginCompaction(ColumnFamilyStore cfs, CompactionIterator ci)
         {
+            beginCompaction(cfs, Arrays.asList(ci));
+        }
+
+        void beginCompaction(ColumnFamilyStore cfs, List<CompactionIterator> iterators)
+        {
+            this.startTime = System.currentTimeMillis();
             this.cfs = cfs;
-            this.ci = ci;
+            this.iterators = iterators;
         }
 
         public String getColumnFamilyName()
@@ -649,13 +935,58 @@ public class CompactionManager implements CompactionManagerMBean
 
         public Long getBytesTotal()
         {
-            return ci == null ? null : ci.getTotalBytes();
+            List<CompactionIterator> current = iterators;
+            if (current == null)
+                return null;
+            long bytes = 0;
+            for (CompactionIterator ci : current)
+                bytes += ci.getTotalBytes();
+            return bytes;
         }
 
         public Long getBytesCompleted()
         {
-            return ci == null ? null : ci.getBytesRead();
+            List<CompactionIterator> current = iterators;
+            if (current == null)
+                return null;
+            long bytes = 0;
+            for (CompactionIterator ci : current)
+                bytes += ci.getBytesRead();
+            return bytes;
+        }
+
+        /**
+         * BIGDATA: the MB per second read while compacting, over the compactions done
+         * and the current one.
+         */
+        public synchronized double getThroughput()
+        {
+            long bytes = bytesDone;
+            long time = timeDone;
+            Long current = getBytesCompleted();
+            if (current != null)
+            {
+                bytes += current;
+                time += System.currentTimeMillis() - startTime;
+            }
+            return time <= 0 ? 0 : bytes * 1000.0 / time / (1024 * 1024);
+        }
+    }
+
+    // BIGDATA
+    public String getCompactionThroughputs()
+    {
+        Map<String, Double> throughputs = new TreeMap<String, Double>();
+        if (DatabaseDescriptor.isConcCompactionEnabled())
+        {
+            for (Map.Entry<ColumnFamilyStore, CompactionExecutor> e : cfsExecutorMap.entrySet())
+                throughputs.put(e.getKey().getTable().name + ":" + e.getKey().getColumnFamilyName(), e.getValue().getThroughput());
+        }
+        else
+        {
+            throughputs.put("COMPACTION-POOL", executor.getThroughput());
         }
+        return JSONValue.toJSONString(throughputs);
     }
 
     public String getColumnFamilyInProgress()
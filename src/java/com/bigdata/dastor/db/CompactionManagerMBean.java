@@ -63,4 +63,19 @@ public interface CompactionManagerMBean
      * @return estimated number of compactions remaining to perform
      */
     public int getPendingTasks();
+
+    /**
+     * BIGDATA: the MB per second all compactions read at most together, 0 for unlimited
+     */
+    public int getCompactionThroughputInMB();
+
+    /**
+     * BIGDATA: sets the MB per second all compactions read at most together, 0 for unlimited
+     */
+    public void setCompactionThroughputInMB(int throughput);
+
+    /**
+     * BIGDATA: the MB per second each compaction executor has read at while compacting, as json
+     */
+    public String getCompactionThroughputs();
 }
@@ -44,4 +44,5 @@ public interface IColumn
     public void updateDigest(MessageDigest digest);
     public int getLocalDeletionTime(); // for tombstone GC, so int is sufficient granularity
     public String getString(AbstractType comparator);
+    public long heapSize(); // BIGDATA: estimated retained bytes on heap
 }
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.bigdata.dastor.db;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import com.bigdata.dastor.io.SSTableReader;
+
+/**
+ * BIGDATA:
+ * Chooses the sstables the minor compactions of a ColumnFamilyStore merge,
+ * per bucket (CompactionStrategy in schema-conf.xml).  CompactionManager runs
+ * the compactions of a store one at a time, so getNextCompaction is followed
+ * by compacted before it is called again.
+ */
+public interface ICompactionStrategy
+{
+    /**
+     * @return the sstables the next minor compaction should merge, or null if none is needed.
+     */
+    public List<SSTableReader> getNextCompaction(int minThreshold, int maxThreshold) throws IOException;
+
+    /**
+     * @return the sstables which can be dropped as they are, holding nothing a merge
+     * at gcBefore would keep; may be empty.
+     */
+    public List<SSTableReader> getExpiredSSTables(int gcBefore) throws IOException;
+
+    /**
+     * @return the number of compactions needed for the sstables to settle, roughly.
+     */
+    public int getEstimatedCompactions(int minThreshold, int maxThreshold) throws IOException;
+
+    /**
+     * @return the size past which a compaction writes the rest of its rows to another sstable,
+     * or Long.MAX_VALUE.
+     */
+    public long getMaxSSTableSize();
+
+    /**
+     * called once a compaction, minor or not, replaced sstables by results, which may be empty.
+     */
+    public void compacted(Collection<SSTableReader> sstables, List<SSTableReader> results) throws IOException;
+}
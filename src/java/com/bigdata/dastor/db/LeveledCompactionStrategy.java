@@ -0,0 +1,355 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.bigdata.dastor.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.dastor.config.DatabaseDescriptor;
+import com.bigdata.dastor.io.SSTable;
+import com.bigdata.dastor.io.SSTableReader;
+
+/**
+ * BIGDATA:
+ * Leveled compaction.  Flushed sstables are in level 0, where they may overlap;
+ * every other level L is a run of sstables of about LeveledSSTableSizeInMB
+ * with disjoint key ranges, of up to 10^L sstables.  Once level 0 holds
+ * minThreshold sstables, they are merged with the sstables of level 1 they
+ * overlap, into level 1.  A level past its size has one of its sstables, in
+ * turn through the keys, merged with those it overlaps in the next level, or
+ * just moved there if it overlaps none.  A read then looks into the sstables
+ * of level 0 and at most one sstable of each other level, the others being
+ * out of its key (see SSTableReader.getPosition).
+ *
+ * The levels are saved in the saved caches directory; an sstable of unknown
+ * level, e.g. flushed, streamed, cleaned up or in a lost manifest, is in level 0.
+ */
+public class LeveledCompactionStrategy implements ICompactionStrategy
+{
+    private static final Logger logger = Logger.getLogger(LeveledCompactionStrategy.class);
+
+    private static final int MANIFEST_VERSION = 1;
+    private static final int MAX_LEVEL = 8;
+
+    private final ColumnFamilyStore cfs;
+    private final long maxSSTableSize;
+    private final File manifestPath;
+
+    // the levels of the live sstables, by data file name
+    private Map<String, Integer> levels = new HashMap<String, Integer>();
+    // where the next compaction of each level starts
+    private final DecoratedKey[] lastCompactedKeys = new DecoratedKey[MAX_LEVEL + 1];
+    // the sstables chosen by getNextCompaction, and the level of their results
+    private Collection<SSTableReader> pending;
+    private int pendingLevel;
+
+    public LeveledCompactionStrategy(ColumnFamilyStore cfs) throws IOException
+    {
+        this.cfs = cfs;
+        maxSSTableSize = cfs.getCFMetaData().leveledSSTableSize;
+        manifestPath = DatabaseDescriptor.getLeveledManifestPath(cfs.getCFMetaData().tableName, cfs.getColumnFamilyName());
+        load();
+        // forget the sstables removed while down, whose file names may be reused
+        getLevels();
+        save();
+    }
+
+    public synchronized List<SSTableReader> getNextCompaction(int minThreshold, int maxThreshold) throws IOException
+    {
+        pending = null;
+        List<List<SSTableReader>> generations = getLevels();
+
+        List<SSTableReader> level0 = generations.get(0);
+        if (level0.size() >= minThreshold)
+        {
+            Collections.sort(level0);
+            List<SSTableReader> candidates = new ArrayList<SSTableReader>(level0.subList(0, Math.min(level0.size(), maxThreshold)));
+            candidates.addAll(overlapping(candidates, generations.get(1)));
+            return setPending(candidates, 1);
+        }
+
+        while (true)
+        {
+            int level = getMostOversizedLevel(generations);
+            if (level < 0)
+                return null;
+
+            SSTableReader sstable = nextInTurn(level, generations.get(level));
+            List<SSTableReader> candidates = new ArrayList<SSTableReader>();
+            candidates.add(sstable);
+            List<SSTableReader> overlapped = overlapping(candidates, generations.get(level + 1));
+            if (overlapped.isEmpty())
+            {
+                // nothing to merge with: move it up as is
+                if (logger.isDebugEnabled())
+                    logger.debug("Moving " + sstable + " to level " + (level + 1));
+                levels.put(nameOf(sstable), level + 1);
+                generations.get(level).remove(sstable);
+                generations.get(level + 1).add(sstable);
+                save();
+                continue;
+            }
+            candidates.addAll(overlapped);
+            return setPending(candidates, level + 1);
+        }
+    }
+
+    private List<SSTableReader> setPending(List<SSTableReader> candidates, int level)
+    {
+        pending = candidates;
+        pendingLevel = level;
+        return candidates;
+    }
+
+    public synchronized int getEstimatedCompactions(int minThreshold, int maxThreshold) throws IOException
+    {
+        List<List<SSTableReader>> generations = getLevels();
+        int n = 0;
+        int level0 = generations.get(0).size();
+        if (level0 > 0 && level0 >= minThreshold)
+            n += (level0 + maxThreshold - 1) / Math.max(1, maxThreshold);
+        for (int level = 1; level < MAX_LEVEL; level++)
+        {
+            double excess = SSTable.getTotalBytes(generations.get(level)) - maxBytes(level);
+            if (excess > 0)
+                n += (int) Math.ceil(excess / maxSSTableSize);
+        }
+        return n;
+    }
+
+    public List<SSTableReader> getExpiredSSTables(int gcBefore)
+    {
+        return Collections.emptyList();
+    }
+
+    public long getMaxSSTableSize()
+    {
+        return maxSSTableSize;
+    }
+
+    public synchronized void compacted(Collection<SSTableReader> sstables, List<SSTableReader> results) throws IOException
+    {
+        int level;
+        if (pending != null && pending.size() == sstables.size() && pending.containsAll(sstables))
+            level = pendingLevel;
+        else
+            level = getLevelFor(results); // not chosen here, e.g. major, or cut short for lack of space
+        pending = null;
+
+        getLevels();
+        for (SSTableReader sstable : results)
+            levels.put(nameOf(sstable), level);
+        save();
+        if (logger.isDebugEnabled())
+            logger.debug(results.size() + " sstables of " + cfs.getColumnFamilyName() + " in level " + level);
+    }
+
+    /**
+     * @return the lowest level which can hold the results, if none of its sstables overlaps them, else 0.
+     * Results are written in key order, so they do not overlap one another.
+     */
+    private int getLevelFor(List<SSTableReader> results) throws IOException
+    {
+        if (results.isEmpty())
+            return 0;
+        List<List<SSTableReader>> generations = getLevels();
+        long bytes = SSTable.getTotalBytes(results);
+        for (int level = 1; level < MAX_LEVEL; level++)
+        {
+            if (bytes <= maxBytes(level))
+                return overlapping(results, generations.get(level)).isEmpty() ? level : 0;
+        }
+        return overlapping(results, generations.get(MAX_LEVEL)).isEmpty() ? MAX_LEVEL : 0;
+    }
+
+    /**
+     * @return the level (but the last) most past its size, or -1 if none is.
+     */
+    private int getMostOversizedLevel(List<List<SSTableReader>> generations)
+    {
+        int best = -1;
+        double bestScore = 1.0;
+        for (int level = 1; level < MAX_LEVEL; level++)
+        {
+            double score = SSTable.getTotalBytes(generations.get(level)) / maxBytes(level);
+            if (score > bestScore)
+            {
+                best = level;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private double maxBytes(int level)
+    {
+        return Math.pow(10, level) * maxSSTableSize;
+    }
+
+    /**
+     * @return the sstable of the level following the last one compacted, in key order.
+     */
+    private SSTableReader nextInTurn(int level, List<SSTableReader> sstables) throws IOException
+    {
+        Collections.sort(sstables, new Comparator<SSTableReader>()
+        {
+            public int compare(SSTableReader o1, SSTableReader o2)
+            {
+                return o1.getFirstKey().compareTo(o2.getFirstKey());
+            }
+        });
+        SSTableReader next = sstables.get(0);
+        DecoratedKey last = lastCompactedKeys[level];
+        if (last != null)
+        {
+            for (SSTableReader sstable : sstables)
+            {
+                if (sstable.getFirstKey().compareTo(last) > 0)
+                {
+                    next = sstable;
+                    break;
+                }
+            }
+        }
+        lastCompactedKeys[level] = next.getLastKey();
+        return next;
+    }
+
+    /**
+     * @return the sstables which overlap the range from the first to the last key of the candidates,
+     * so the results of merging them all cannot overlap the other sstables.
+     */
+    private static List<SSTableReader> overlapping(List<SSTableReader> candidates, List<SSTableReader> sstables) throws IOException
+    {
+        DecoratedKey first = null;
+        DecoratedKey last = null;
+        for (SSTableReader candidate : candidates)
+        {
+            if (first == null || candidate.getFirstKey().compareTo(first) < 0)
+                first = candidate.getFirstKey();
+            if (last == null || candidate.getLastKey().compareTo(last) > 0)
+                last = candidate.getLastKey();
+        }
+        List<SSTableReader> overlapped = new ArrayList<SSTableReader>();
+        for (SSTableReader sstable : sstables)
+        {
+            if (sstable.getFirstKey().compareTo(last) <= 0 && sstable.getLastKey().compareTo(first) >= 0)
+                overlapped.add(sstable);
+        }
+        return overlapped;
+    }
+
+    /**
+     * @return the live sstables by level, forgetting the levels of the others.
+     */
+    private List<List<SSTableReader>> getLevels()
+    {
+        List<List<SSTableReader>> generations = new ArrayList<List<SSTableReader>>(MAX_LEVEL + 1);
+        for (int level = 0; level <= MAX_LEVEL; level++)
+            generations.add(new ArrayList<SSTableReader>());
+        Map<String, Integer> live = new HashMap<String, Integer>();
+        for (SSTableReader sstable : cfs.getSSTables())
+        {
+            String name = nameOf(sstable);
+            Integer level = levels.get(name);
+            if (level == null || level < 0 || level > MAX_LEVEL)
+                level = 0;
+            live.put(name, level);
+            generations.get(level).add(sstable);
+        }
+        levels = live;
+        return generations;
+    }
+
+    private static String nameOf(SSTableReader sstable)
+    {
+        return new File(sstable.getFilename()).getName();
+    }
+
+    /**
+     * [int version][int count]([UTF data file name][int level])*, for the sstables above level 0.
+     */
+    private void load()
+    {
+        if (!manifestPath.exists())
+            return;
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestPath)));
+            try
+            {
+                if (in.readInt() != MANIFEST_VERSION)
+                {
+                    logger.info("ignoring sstable levels of an unknown format " + manifestPath);
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                    levels.put(in.readUTF(), in.readInt());
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to read sstable levels from " + manifestPath + ", all are in level 0", e);
+            levels.clear();
+        }
+    }
+
+    private void save() throws IOException
+    {
+        File tmpFile = File.createTempFile(manifestPath.getName(), null, manifestPath.getParentFile());
+        FileOutputStream fout = new FileOutputStream(tmpFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+        int count = 0;
+        for (Integer level : levels.values())
+        {
+            if (level > 0)
+                count++;
+        }
+        out.writeInt(MANIFEST_VERSION);
+        out.writeInt(count);
+        for (Map.Entry<String, Integer> entry : levels.entrySet())
+        {
+            if (entry.getValue() > 0)
+            {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+        out.flush();
+        fout.getFD().sync();
+        out.close();
+        if (!tmpFile.renameTo(manifestPath))
+            throw new IOException("Unable to rename sstable levels to " + manifestPath);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BIGDATA:
+ * A column read from a mapped sstable segment (ZeroCopyReads), whose value
+ * stays a view over the mapping until value() is first called: the columns
+ * a query reads but drops (beyond its count, not among its names, shadowed)
+ * never copy their value.  Those handed to the client, digested or cached
+ * are copied once, and then release the view.
+ *
+ * The view keeps the mapping reachable, so the segment is not unmapped under
+ * it even once the sstable is compacted and deleted; this is why cached rows
+ * are materialized (see ColumnFamily.materialize).
+ */
+public class MappedColumn extends Column
+{
+    private volatile ByteBuffer view;
+    private volatile byte[] value;
+    private final int length;
+
+    MappedColumn(byte[] name, ByteBuffer view, long timestamp, boolean isDeleted)
+    {
+        super(name, timestamp, isDeleted);
+        this.view = view;
+        this.length = view.remaining();
+    }
+
+    @Override
+    public byte[] value()
+    {
+        byte[] bytes = value;
+        if (bytes != null)
+            return bytes;
+        ByteBuffer buffer = view;
+        if (buffer == null)
+            return value; // materialized meanwhile; value is set before view is cleared
+        bytes = new byte[length];
+        buffer.duplicate().get(bytes);
+        value = bytes;
+        view = null;
+        return bytes;
+    }
+
+    @Override
+    public int valueLength()
+    {
+        return length;
+    }
+
+    public boolean isMaterialized()
+    {
+        return view == null;
+    }
+}
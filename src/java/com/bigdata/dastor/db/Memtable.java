@@ -23,8 +23,12 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 
 import org.apache.log4j.Logger;
@@ -34,28 +38,47 @@ import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.filter.*;
 import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.dht.IPartitioner;
+import com.bigdata.dastor.io.ColumnStats;
 import com.bigdata.dastor.io.SSTableReader;
 import com.bigdata.dastor.io.SSTableWriter;
+import com.bigdata.dastor.io.compress.Compression;
 import com.bigdata.dastor.io.util.DataOutputBuffer;
 import com.bigdata.dastor.service.StorageService;
+import com.bigdata.dastor.utils.HeapSizes;
+import com.bigdata.dastor.utils.SimpleCondition;
 import com.bigdata.dastor.utils.WrappedRunnable;
 
 public class Memtable implements Comparable<Memtable>, IFlushable
 {
     private static final Logger logger = Logger.getLogger(Memtable.class);
 
-    private boolean isFrozen;
+    private volatile boolean isFrozen;
+    /* BIGDATA: writers currently applying a mutation to this memtable, see pin() */
+    private final AtomicInteger writers = new AtomicInteger(0);
+    private final SimpleCondition drained = new SimpleCondition();
 
     private final int THRESHOLD = DatabaseDescriptor.getMemtableThroughput() * 1024*1024; // not static since we might want to change at runtime
     private final int THRESHOLD_COUNT = (int)(DatabaseDescriptor.getMemtableOperations() * 1024*1024);
+    private final long THRESHOLD_LIVE = DatabaseDescriptor.getMemtableLiveSizeInMB() * 1024L*1024L; // BIGDATA: 0 to disable
+
+    /*
+     * BIGDATA: the heap retained by a row key in the memtable: the skip-list entry,
+     * the DecoratedKey and its token (a BigIntegerToken for RandomPartitioner), excluding the key string.
+     */
+    protected static final long KEY_HEAP_OVERHEAD = HeapSizes.SKIP_LIST_ENTRY
+                                                    + HeapSizes.align(HeapSizes.OBJECT_HEADER + 2 * HeapSizes.REFERENCE)
+                                                    + HeapSizes.align(HeapSizes.OBJECT_HEADER + HeapSizes.REFERENCE)
+                                                    + HeapSizes.align(HeapSizes.OBJECT_HEADER + HeapSizes.REFERENCE + 4 * 4)
+                                                    + HeapSizes.sizeOfArray(4, 4);
 
     private final AtomicInteger currentThroughput = new AtomicInteger(0);
     private final AtomicInteger currentOperations = new AtomicInteger(0);
+    private final AtomicLong currentLiveSize = new AtomicLong(0); // BIGDATA
 
     private final long creationTime;
     private final ConcurrentNavigableMap<DecoratedKey, ColumnFamily> columnFamilies = new ConcurrentSkipListMap<DecoratedKey, ColumnFamily>();
-    private final IPartitioner partitioner = StorageService.getPartitioner();
-    private final ColumnFamilyStore cfs;
+    protected final IPartitioner partitioner = StorageService.getPartitioner();
+    protected final ColumnFamilyStore cfs;
 
     public Memtable(ColumnFamilyStore cfs)
     {
@@ -91,9 +114,19 @@ public class Memtable implements Comparable<Memtable>, IFlushable
         return currentOperations.get();
     }
 
+    /**
+     * BIGDATA: estimated bytes really retained by this memtable, rather than
+     * the serialized size of its data as in getCurrentThroughput.
+     */
+    public long getLiveSize()
+    {
+        return currentLiveSize.get();
+    }
+
     boolean isThresholdViolated()
     {
-        return currentThroughput.get() >= this.THRESHOLD || currentOperations.get() >= this.THRESHOLD_COUNT;
+        return currentThroughput.get() >= this.THRESHOLD || currentOperations.get() >= this.THRESHOLD_COUNT
+               || (THRESHOLD_LIVE > 0 && getLiveSize() >= THRESHOLD_LIVE);
     }
 
     boolean isFrozen()
@@ -106,28 +139,97 @@ public class Memtable implements Comparable<Memtable>, IFlushable
         isFrozen = true;
     }
 
+    /**
+     * BIGDATA: register a writer, which may then put into this memtable until unpin().
+     * Fails once the memtable is frozen; the writer must then pin the fresh one.
+     * The frozen flag and the writer count are both sequentially consistent, so either
+     * the writer sees the freeze, or the switch sees the writer and waits for it.
+     */
+    boolean pin()
+    {
+        writers.incrementAndGet();
+        if (!isFrozen)
+            return true;
+        unpin();
+        return false;
+    }
+
+    void unpin()
+    {
+        if (writers.decrementAndGet() == 0 && isFrozen)
+            drained.signalAll();
+    }
+
+    /**
+     * BIGDATA: wait for the writers which pinned this memtable before it was frozen.
+     */
+    void awaitWriters()
+    {
+        assert isFrozen;
+        if (writers.get() == 0)
+            return;
+        try
+        {
+            drained.await();
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Should only be called by ColumnFamilyStore.apply.  NOT a public API.
-     * (CFS handles locking to avoid submitting an op
+     * (Callers pin the memtable to avoid submitting an op
      *  to a flushing memtable.  Any other way is unsafe.)
     */
     void put(String key, ColumnFamily columnFamily)
     {
-        assert !isFrozen; // not 100% foolproof but hell, it's an assert
-        resolve(key, columnFamily);
+        assert writers.get() > 0; // BIGDATA: frozen memtables still take the writes pinned before the freeze
+        currentThroughput.addAndGet(columnFamily.size());
+        currentOperations.addAndGet(columnFamily.getColumnCount());
+        currentLiveSize.addAndGet(resolve(partitioner.decorateKey(key), columnFamily));
     }
 
-    private void resolve(String key, ColumnFamily cf)
+    /**
+     * BIGDATA: merge cf into the row stored for key.
+     * Subclasses with a different row storage override this and the other row accessors below.
+     * @return the estimated heap bytes newly retained by the memtable. Columns which
+     * supersede an existing one are counted in full, since the old one is only
+     * collected after it has aged into the old generation.
+     */
+    protected long resolve(DecoratedKey key, ColumnFamily cf)
     {
-        currentThroughput.addAndGet(cf.size());
-        currentOperations.addAndGet(cf.getColumnCount());
-
-        DecoratedKey decoratedKey = partitioner.decorateKey(key);
-        ColumnFamily oldCf = columnFamilies.putIfAbsent(decoratedKey, cf);
+        ColumnFamily oldCf = columnFamilies.putIfAbsent(key, cf);
         if (oldCf == null)
-            return;
+            return KEY_HEAP_OVERHEAD + HeapSizes.sizeOfString(key.key) + cf.heapSize();
 
         oldCf.resolve(cf);
+        return cf.columnsHeapSize();
+    }
+
+    /**
+     * BIGDATA: the rows of this memtable in partitioner order, as ColumnFamily objects.
+     */
+    protected Iterator<Map.Entry<DecoratedKey, ColumnFamily>> getSortedRows()
+    {
+        return columnFamilies.entrySet().iterator();
+    }
+
+    /**
+     * BIGDATA: number of rows in this memtable.
+     */
+    protected int getRowCount()
+    {
+        return columnFamilies.size();
+    }
+
+    /**
+     * BIGDATA: called once the flushed sstable is live and this memtable is
+     * no longer reachable from the CFS, to release any resources it holds.
+     */
+    protected void release()
+    {
     }
 
     // for debugging
@@ -135,8 +237,9 @@ public class Memtable implements Comparable<Memtable>, IFlushable
     {
         StringBuilder builder = new StringBuilder();
         builder.append("{");
-        for (Map.Entry<DecoratedKey, ColumnFamily> entry : columnFamilies.entrySet())
+        for (Iterator<Map.Entry<DecoratedKey, ColumnFamily>> iter = getSortedRows(); iter.hasNext();)
         {
+            Map.Entry<DecoratedKey, ColumnFamily> entry = iter.next();
             builder.append(entry.getKey()).append(": ").append(entry.getValue()).append(", ");
         }
         builder.append("}");
@@ -144,21 +247,39 @@ public class Memtable implements Comparable<Memtable>, IFlushable
     }
 
 
-    private SSTableReader writeSortedContents() throws IOException
+    /*
+     * BIGDATA: serialization and compression are CPU-bound, so batches of rows are
+     * serialized on the serializer threads while this thread appends the finished
+     * batches in key order.  At most two batches per serializer thread are in flight.
+     */
+    private SSTableReader writeSortedContents(ExecutorService serializer) throws IOException
     {
         logger.info("Writing " + this);
-        SSTableWriter writer = new SSTableWriter(cfs.getFlushPath(), columnFamilies.size(), StorageService.getPartitioner());
-
-        DataOutputBuffer headerBuffer = new DataOutputBuffer(); // BIGDATA
-        DataOutputBuffer buffer = new DataOutputBuffer();
-        for (Map.Entry<DecoratedKey, ColumnFamily> entry : columnFamilies.entrySet())
+        SSTableWriter writer = new SSTableWriter(cfs.getFlushPath(), getRowCount(), StorageService.getPartitioner());
+
+        Compression.Algorithm compressAlgo = cfs.getCFMetaData().compressAlgo;
+        int columnBloomFilterThreshold = cfs.getCFMetaData().columnBloomFilterThreshold;
+        int window = 2 * DatabaseDescriptor.getFlushWorkerThreads();
+        LinkedList<Future<FlushBatch>> inFlight = new LinkedList<Future<FlushBatch>>();
+        Iterator<Map.Entry<DecoratedKey, ColumnFamily>> iter = getSortedRows();
+        try
         {
-            headerBuffer.reset(); // BIGDATA
-            buffer.reset();
-            /* serialize the cf with column indexes */
-            ColumnFamily.serializer().serializeWithIndexes(entry.getValue(), headerBuffer, buffer, cfs.getCFMetaData().compressAlgo); // BIGDATA
-            /* Now write the key and value to disk */
-            writer.append(entry.getKey(), headerBuffer, buffer); // BIGDATA
+            while (iter.hasNext() || !inFlight.isEmpty())
+            {
+                while (iter.hasNext() && inFlight.size() < window)
+                {
+                    List<Map.Entry<DecoratedKey, ColumnFamily>> rows = new ArrayList<Map.Entry<DecoratedKey, ColumnFamily>>(FlushBatch.MAX_ROWS);
+                    while (iter.hasNext() && rows.size() < FlushBatch.MAX_ROWS)
+                        rows.add(iter.next());
+                    inFlight.add(serializer.submit(new FlushBatch(rows, compressAlgo, columnBloomFilterThreshold)));
+                }
+                waitFor(inFlight.removeFirst()).appendTo(writer);
+            }
+        }
+        finally
+        {
+            for (Future<FlushBatch> future : inFlight)
+                future.cancel(false);
         }
 
         SSTableReader ssTable = writer.closeAndOpenReader();
@@ -167,6 +288,24 @@ public class Memtable implements Comparable<Memtable>, IFlushable
         return ssTable;
     }
 
+    private static FlushBatch waitFor(Future<FlushBatch> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     public void flushAndSignal(final Condition condition, ExecutorService sorter, final ExecutorService writer)
     {
         cfs.getMemtablesPendingFlush().add(this); // it's ok for the MT to briefly be both active and pendingFlush
@@ -174,8 +313,9 @@ public class Memtable implements Comparable<Memtable>, IFlushable
         {
             public void runMayThrow() throws IOException
             {
-                cfs.addSSTable(writeSortedContents());
+                cfs.addSSTable(writeSortedContents(ColumnFamilyStore.getFlushSerializer())); // BIGDATA
                 cfs.getMemtablesPendingFlush().remove(Memtable.this);
+                release(); // BIGDATA
                 condition.signalAll();
             }
         });
@@ -183,8 +323,8 @@ public class Memtable implements Comparable<Memtable>, IFlushable
 
     public String toString()
     {
-        return String.format("Memtable-%s@%s(%s bytes, %s operations)",
-                             cfs.getColumnFamilyName(), hashCode(), currentThroughput, currentOperations);
+        return String.format("Memtable-%s@%s(%s bytes, %s live bytes, %s operations)",
+                             cfs.getColumnFamilyName(), hashCode(), currentThroughput, currentLiveSize, currentOperations);
     }
 
     public Iterator<DecoratedKey> getKeyIterator(DecoratedKey startWith)
@@ -197,7 +337,7 @@ public class Memtable implements Comparable<Memtable>, IFlushable
         return columnFamilies.isEmpty();
     }
 
-    private String getTableName()
+    protected String getTableName()
     {
         return cfs.getTable().name;
     }
@@ -293,7 +433,13 @@ public class Memtable implements Comparable<Memtable>, IFlushable
 
     public ColumnFamily getColumnFamily(String key)
     {
-        return columnFamilies.get(partitioner.decorateKey(key));
+        return getColumnFamily(partitioner.decorateKey(key));
+    }
+
+    // BIGDATA
+    protected ColumnFamily getColumnFamily(DecoratedKey key)
+    {
+        return columnFamilies.get(key);
     }
 
     void clearUnsafe()
@@ -305,4 +451,64 @@ public class Memtable implements Comparable<Memtable>, IFlushable
     {
         return System.currentTimeMillis() > creationTime + DatabaseDescriptor.getMemtableLifetimeMS();
     }
+
+    /**
+     * BIGDATA: a run of consecutive rows serialized into one buffer, back to back
+     * in their on-disk form (header then column blocks).
+     */
+    private static class FlushBatch implements Callable<FlushBatch>
+    {
+        static final int MAX_ROWS = 128;
+
+        private List<Map.Entry<DecoratedKey, ColumnFamily>> rows;
+        private final Compression.Algorithm compressAlgo;
+        private final int columnBloomFilterThreshold;
+        private final DecoratedKey[] keys;
+        private final ColumnStats[] stats;
+        private final int[] ends;
+        private final DataOutputBuffer output = new DataOutputBuffer();
+
+        FlushBatch(List<Map.Entry<DecoratedKey, ColumnFamily>> rows, Compression.Algorithm compressAlgo, int columnBloomFilterThreshold)
+        {
+            this.rows = rows;
+            this.compressAlgo = compressAlgo;
+            this.columnBloomFilterThreshold = columnBloomFilterThreshold;
+            this.keys = new DecoratedKey[rows.size()];
+            this.stats = new ColumnStats[rows.size()];
+            this.ends = new int[rows.size()];
+        }
+
+        public FlushBatch call() throws IOException
+        {
+            DataOutputBuffer headerBuffer = new DataOutputBuffer();
+            DataOutputBuffer buffer = new DataOutputBuffer();
+            for (int i = 0; i < keys.length; i++)
+            {
+                Map.Entry<DecoratedKey, ColumnFamily> entry = rows.get(i);
+                ColumnFamily cf = entry.getValue(); // decoded from the arena by an ArenaMemtable: only once
+                headerBuffer.reset();
+                buffer.reset();
+                /* serialize the cf with column indexes */
+                ColumnFamily.serializer().serializeWithIndexes(cf, headerBuffer, buffer, compressAlgo, columnBloomFilterThreshold);
+                output.write(headerBuffer.getData(), 0, headerBuffer.getLength());
+                output.write(buffer.getData(), 0, buffer.getLength());
+                keys[i] = entry.getKey();
+                stats[i] = ColumnStats.of(cf);
+                ends[i] = output.getLength();
+            }
+            rows = null; // only the serialized form is needed from now on
+            return this;
+        }
+
+        void appendTo(SSTableWriter writer) throws IOException
+        {
+            int start = 0;
+            for (int i = 0; i < keys.length; i++)
+            {
+                /* Now write the key and value to disk */
+                writer.append(keys[i], output.getData(), start, ends[i] - start, stats[i]);
+                start = ends[i];
+            }
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * BIGDATA:
+ * Keeps the estimated heap of all memtables, including those still being
+ * flushed, under a global ceiling by flushing the largest active memtable
+ * whenever the ceiling is exceeded.  Per-memtable thresholds alone cannot
+ * bound the heap when many buckets are written at once.
+ *
+ * While flushes are in progress, a memtable which is too small a fraction
+ * of the ceiling to matter is not flushed: the flushes will soon free their
+ * bytes, and flushing it would only make a tiny sstable.  With no flush in
+ * progress, the largest memtable is flushed however small it is, so many
+ * small buckets cannot hold the heap over the ceiling.
+ */
+class MeteredFlusher implements Runnable
+{
+    private static final Logger logger = Logger.getLogger(MeteredFlusher.class);
+
+    static final long CHECK_INTERVAL_MS = 1000;
+    // the smallest memtable flushed while others are being flushed, as a fraction of the ceiling
+    static final double MIN_FLUSH_FRACTION = 0.05;
+
+    private final long totalSpace;
+
+    MeteredFlusher(long totalSpace)
+    {
+        this.totalSpace = totalSpace;
+    }
+
+    public void run()
+    {
+        long total = 0;
+        long pending = 0;
+        long largestSize = 0;
+        ColumnFamilyStore largest = null;
+        for (Table table : Table.opened())
+        {
+            for (ColumnFamilyStore cfs : table.getColumnFamilyStores())
+            {
+                long size = cfs.getMemtableLiveSize();
+                long pendingSize = cfs.getMemtablesPendingFlushLiveSize();
+                total += size + pendingSize;
+                pending += pendingSize;
+                if (size > largestSize)
+                {
+                    largestSize = size;
+                    largest = cfs;
+                }
+            }
+        }
+
+        if (total <= totalSpace || largest == null)
+            return;
+        if (pending > 0 && largestSize < totalSpace * MIN_FLUSH_FRACTION)
+        {
+            logger.debug(String.format("memtables retain %d bytes (%d being flushed) over the ceiling of %d, but the largest, %s, has only %d",
+                                       total, pending, totalSpace, largest.getColumnFamilyName(), largestSize));
+            return;
+        }
+
+        logger.info(String.format("memtables retain %d bytes (%d being flushed) over the ceiling of %d, flushing %s of %d bytes",
+                                  total, pending, totalSpace, largest.getColumnFamilyName(), largestSize));
+        try
+        {
+            largest.forceFlush();
+        }
+        catch (IOException e)
+        {
+            logger.error("metered flush of " + largest.getColumnFamilyName() + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.bigdata.dastor.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.bigdata.dastor.io.SSTableReader;
+
+/**
+ * BIGDATA:
+ * The default strategy: sstables of similar sizes are merged together once
+ * there are minThreshold of them (see CompactionManager.getBuckets), skipping
+ * those of CompactSkipInGB or more.
+ */
+public class SizeTieredCompactionStrategy implements ICompactionStrategy
+{
+    private static final long MIN_BUCKET_SIZE = 50L * 1024L * 1024L;
+
+    private final ColumnFamilyStore cfs;
+
+    public SizeTieredCompactionStrategy(ColumnFamilyStore cfs)
+    {
+        this.cfs = cfs;
+    }
+
+    private Set<List<SSTableReader>> getBuckets()
+    {
+        return CompactionManager.getBuckets(cfs.getSSTables(), MIN_BUCKET_SIZE, cfs.getCFMetaData().compactSkipSize);
+    }
+
+    public List<SSTableReader> getNextCompaction(int minThreshold, int maxThreshold)
+    {
+        for (List<SSTableReader> sstables : getBuckets())
+        {
+            if (sstables.size() >= minThreshold)
+            {
+                // if we have too many to compact all at once, compact older ones first -- this avoids
+                // re-compacting files we just created.
+                Collections.sort(sstables);
+                return new ArrayList<SSTableReader>(sstables.subList(0, Math.min(sstables.size(), maxThreshold)));
+            }
+        }
+        return null;
+    }
+
+    public int getEstimatedCompactions(int minThreshold, int maxThreshold)
+    {
+        int n = 0;
+        for (List<SSTableReader> sstables : getBuckets())
+        {
+            if (sstables.size() >= minThreshold)
+            {
+                n += 1 + sstables.size() / (maxThreshold - minThreshold);
+            }
+        }
+        return n;
+    }
+
+    public List<SSTableReader> getExpiredSSTables(int gcBefore)
+    {
+        return Collections.emptyList();
+    }
+
+    public long getMaxSSTableSize()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    public void compacted(Collection<SSTableReader> sstables, List<SSTableReader> results)
+    {
+    }
+}
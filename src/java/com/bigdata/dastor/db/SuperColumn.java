@@ -32,6 +32,7 @@ import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.io.ICompactSerializer2;
 import com.bigdata.dastor.io.util.DataOutputBuffer;
 import com.bigdata.dastor.utils.FBUtilities;
+import com.bigdata.dastor.utils.HeapSizes;
 
 
 public class SuperColumn implements IColumn, IColumnContainer
@@ -115,6 +116,18 @@ public class SuperColumn implements IColumn, IColumnContainer
         return size;
     }
 
+    // BIGDATA: object, its subcolumn map and the two deletion atomics
+    private static final long HEAP_OVERHEAD = HeapSizes.align(HeapSizes.OBJECT_HEADER + 4 * HeapSizes.REFERENCE)
+                                              + HeapSizes.SKIP_LIST + HeapSizes.ATOMIC_INTEGER + HeapSizes.ATOMIC_LONG;
+
+    public long heapSize()
+    {
+        long size = HEAP_OVERHEAD + HeapSizes.sizeOfArray(name_);
+        for (IColumn subColumn : getSubColumns())
+            size += HeapSizes.SKIP_LIST_ENTRY + subColumn.heapSize();
+        return size;
+    }
+
     /**
      * This returns the size of the super-column when serialized.
      * @see com.bigdata.dastor.db.IColumn#serializedSize()
@@ -21,7 +21,6 @@ package com.bigdata.dastor.db;
 import java.util.*;
 import java.io.IOException;
 import java.io.File;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.Future;
 
 import com.bigdata.dastor.config.CFMetaData;
@@ -51,9 +50,6 @@ public class Table
 
     private static final Logger logger = Logger.getLogger(Table.class);
     private static final String SNAPSHOT_SUBDIR_NAME = "snapshots";
-    /* we use this lock to drain updaters before calling a flush. */
-    static final ReentrantReadWriteLock flusherLock = new ReentrantReadWriteLock(true);
-
     private static Timer flushTimer = new Timer("FLUSH-TIMER");
     private final boolean waitForCommitLog;
 
@@ -70,6 +66,19 @@ public class Table
         {
             throw new RuntimeException(ex);
         }
+
+        // BIGDATA: bound the heap of all memtables together
+        if (DatabaseDescriptor.getMemtableTotalSpaceInMB() > 0)
+        {
+            final MeteredFlusher flusher = new MeteredFlusher(DatabaseDescriptor.getMemtableTotalSpaceInMB() * 1024L * 1024L);
+            flushTimer.schedule(new TimerTask()
+            {
+                public void run()
+                {
+                    flusher.run();
+                }
+            }, MeteredFlusher.CHECK_INTERVAL_MS, MeteredFlusher.CHECK_INTERVAL_MS);
+        }
     }
 
     /*
@@ -436,30 +445,48 @@ public class Table
     {
         HashMap<ColumnFamilyStore,Memtable> memtablesToFlush = new HashMap<ColumnFamilyStore, Memtable>(2);
 
-        // write the mutation to the commitlog and memtables
-        flusherLock.readLock().lock();
+        /*
+         * BIGDATA: pin the memtables before the commit log append, instead of holding a global
+         * flusher read lock.  A switch takes its commit log context, then freezes the memtable
+         * and waits only for the writers pinned to it, so no write waits on another bucket's flush.
+         */
+        Collection<ColumnFamily> columnFamilies = mutation.getColumnFamilies();
+        ColumnFamilyStore[] stores = new ColumnFamilyStore[columnFamilies.size()];
+        Memtable[] memtables = new Memtable[stores.length];
         try
         {
+            int i = 0;
+            for (ColumnFamily columnFamily : columnFamilies)
+            {
+                stores[i] = columnFamilyStores.get(columnFamily.name());
+                memtables[i] = stores[i].pinMemtable();
+                i++;
+            }
+
+            // write the mutation to the commitlog and memtables
             if (writeCommitLog)
             {
-                CommitLog.instance().add(mutation, serializedMutation);
+                logMutation(mutation, serializedMutation, stores);
             }
-        
-            for (ColumnFamily columnFamily : mutation.getColumnFamilies())
+
+            i = 0;
+            for (ColumnFamily columnFamily : columnFamilies)
             {
-                Memtable memtableToFlush;
-                ColumnFamilyStore cfs = columnFamilyStores.get(columnFamily.name());
-                if ((memtableToFlush=cfs.apply(mutation.key(), columnFamily)) != null)
-                    memtablesToFlush.put(cfs, memtableToFlush);
-
-                ColumnFamily cachedRow = cfs.getRawCachedRow(mutation.key());
-                if (cachedRow != null)
-                    cachedRow.addAll(columnFamily);
+                ColumnFamilyStore cfs = stores[i];
+                if (cfs.apply(memtables[i], mutation.key(), columnFamily))
+                    memtablesToFlush.put(cfs, memtables[i]);
+                i++;
+
+                cfs.updateRowCache(mutation.key(), columnFamily);
             }
         }
         finally
         {
-            flusherLock.readLock().unlock();
+            for (Memtable memtable : memtables)
+            {
+                if (memtable != null)
+                    memtable.unpin();
+            }
         }
 
         // flush memtables that got filled up.  usually mTF will be empty and this will be a no-op
@@ -467,6 +494,47 @@ public class Table
             entry.getKey().maybeSwitchMemtable(entry.getValue(), writeCommitLog);
     }
 
+    /**
+     * BIGDATA: log the column families of mutation as their buckets' Durability says.
+     * The mutation is waited for unless all its logged buckets are deferred, and
+     * reserialized without its unlogged column families if there are some.
+     */
+    private void logMutation(RowMutation mutation, Object serializedMutation, ColumnFamilyStore[] stores) throws IOException
+    {
+        boolean logAll = true;
+        boolean logAny = false;
+        boolean deferred = true;
+        for (ColumnFamilyStore cfs : stores)
+        {
+            DatabaseDescriptor.Durability durability = cfs.getCFMetaData().durability;
+            if (durability == DatabaseDescriptor.Durability.none)
+            {
+                logAll = false;
+                continue;
+            }
+            logAny = true;
+            if (durability == DatabaseDescriptor.Durability.commitlog)
+                deferred = false;
+        }
+        if (!logAny)
+            return;
+
+        if (!logAll)
+        {
+            // stores are in the order of the mutation's column families
+            RowMutation logged = new RowMutation(mutation.getTable(), mutation.key());
+            int i = 0;
+            for (ColumnFamily columnFamily : mutation.getColumnFamilies())
+            {
+                if (stores[i++].getCFMetaData().durability != DatabaseDescriptor.Durability.none)
+                    logged.add(columnFamily);
+            }
+            mutation = logged;
+            serializedMutation = logged.getSerializedBuffer();
+        }
+        CommitLog.instance().add(mutation, serializedMutation, deferred);
+    }
+
     public List<Future<?>> flush() throws IOException
     {
         List<Future<?>> futures = new ArrayList<Future<?>>();
@@ -520,6 +588,14 @@ public class Table
         return dataDirPath + File.separator + tableName + File.separator + SNAPSHOT_SUBDIR_NAME + File.separator + snapshotName;
     }
 
+    /**
+     * BIGDATA: the tables opened so far, unlike all() this never opens one.
+     */
+    static Collection<Table> opened()
+    {
+        return instances.values();
+    }
+
     public static Iterable<Table> all()
     {
         Function<String, Table> transformer = new Function<String, Table>()
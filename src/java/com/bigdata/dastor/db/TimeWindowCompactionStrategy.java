@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.bigdata.dastor.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.bigdata.dastor.io.ColumnStats;
+import com.bigdata.dastor.io.SSTableReader;
+
+/**
+ * BIGDATA:
+ * Time window compaction, for buckets written in time order such as CDRs.
+ * sstables are grouped by the window of TimeWindowInMinutes their latest
+ * write timestamp (in ms) falls in, and only the sstables of the newest
+ * window are merged, size-tiered: the immutable data of closed windows is
+ * never rewritten along with new flushes.  sstables of unknown stats (see
+ * ColumnStats), e.g. binary memtable flushes, streamed sstables or those of
+ * an older version, are in no window: they are merged size-tiered among
+ * themselves, apart from the windows so as not to make their stats unknown.
+ *
+ * An sstable holding nothing but tombstones deleted before gcBefore, all
+ * older than anything in the other sstables so they shadow nothing, is
+ * dropped without a merge; so goes a window whose rows were all deleted.
+ */
+public class TimeWindowCompactionStrategy implements ICompactionStrategy
+{
+    private static final long MIN_BUCKET_SIZE = 50L * 1024L * 1024L;
+
+    private final ColumnFamilyStore cfs;
+    private final long windowSize;
+
+    public TimeWindowCompactionStrategy(ColumnFamilyStore cfs)
+    {
+        this.cfs = cfs;
+        windowSize = cfs.getCFMetaData().timeWindowSize;
+    }
+
+    /**
+     * @return the sstables of the newest window, in active, and those of unknown stats, in unknown.
+     */
+    private void getActiveWindow(List<SSTableReader> active, List<SSTableReader> unknown)
+    {
+        long activeWindow = Long.MIN_VALUE;
+        for (SSTableReader sstable : cfs.getSSTables())
+        {
+            ColumnStats stats = sstable.getColumnStats();
+            if (!stats.isKnown())
+            {
+                unknown.add(sstable);
+                continue;
+            }
+            long window = stats.getMaxTimestamp() / windowSize;
+            if (window > activeWindow)
+            {
+                activeWindow = window;
+                active.clear();
+            }
+            if (window == activeWindow)
+                active.add(sstable);
+        }
+    }
+
+    private Set<List<SSTableReader>> getBuckets()
+    {
+        List<SSTableReader> active = new ArrayList<SSTableReader>();
+        List<SSTableReader> unknown = new ArrayList<SSTableReader>();
+        getActiveWindow(active, unknown);
+        long compactSkipSize = cfs.getCFMetaData().compactSkipSize;
+        Set<List<SSTableReader>> buckets = new HashSet<List<SSTableReader>>();
+        buckets.addAll(CompactionManager.getBuckets(active, MIN_BUCKET_SIZE, compactSkipSize));
+        buckets.addAll(CompactionManager.getBuckets(unknown, MIN_BUCKET_SIZE, compactSkipSize));
+        return buckets;
+    }
+
+    public List<SSTableReader> getNextCompaction(int minThreshold, int maxThreshold)
+    {
+        for (List<SSTableReader> sstables : getBuckets())
+        {
+            if (sstables.size() >= minThreshold)
+            {
+                Collections.sort(sstables);
+                return new ArrayList<SSTableReader>(sstables.subList(0, Math.min(sstables.size(), maxThreshold)));
+            }
+        }
+        return null;
+    }
+
+    public List<SSTableReader> getExpiredSSTables(int gcBefore)
+    {
+        List<SSTableReader> candidates = new ArrayList<SSTableReader>();
+        long minTimestamp = Long.MAX_VALUE; // of what the candidates may shadow
+        for (SSTableReader sstable : cfs.getSSTables())
+        {
+            ColumnStats stats = sstable.getColumnStats();
+            if (stats.isPurgeable(gcBefore))
+                candidates.add(sstable);
+            else
+                minTimestamp = Math.min(minTimestamp, stats.getMinTimestamp());
+        }
+
+        List<SSTableReader> expired = new ArrayList<SSTableReader>();
+        for (SSTableReader sstable : candidates)
+        {
+            if (sstable.getColumnStats().getMaxTimestamp() < minTimestamp)
+                expired.add(sstable);
+        }
+        return expired;
+    }
+
+    public int getEstimatedCompactions(int minThreshold, int maxThreshold)
+    {
+        int n = 0;
+        for (List<SSTableReader> sstables : getBuckets())
+        {
+            if (sstables.size() >= minThreshold)
+            {
+                n += 1 + sstables.size() / Math.max(1, maxThreshold - minThreshold);
+            }
+        }
+        return n;
+    }
+
+    public long getMaxSSTableSize()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    public void compacted(Collection<SSTableReader> sstables, List<SSTableReader> results)
+    {
+    }
+}
@@ -134,9 +134,10 @@ class BatchCommitLogExecutorService extends AbstractCommitLogExecutorService imp
 
     public void add(CommitLog.LogRecordAdder adder)
     {
+        Callable<?> task = adder;
         try
         {
-            submit((Callable)adder).get();
+            submit(task).get();
         }
         catch (InterruptedException e)
         {
@@ -148,6 +149,13 @@ class BatchCommitLogExecutorService extends AbstractCommitLogExecutorService imp
         }
     }
 
+    // BIGDATA: the entry is still synced with its batch, nobody waits for it
+    public void addDeferred(CommitLog.LogRecordAdder adder)
+    {
+        Callable<?> task = adder;
+        submit(task);
+    }
+
     private static class CheaterFutureTask<V> extends FutureTask<V>
     {
         private final Callable rawCallable;
@@ -22,25 +22,17 @@ package com.bigdata.dastor.db.commitlog;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
-import com.bigdata.dastor.concurrent.StageManager;
 import com.bigdata.dastor.config.DatabaseDescriptor;
-import com.bigdata.dastor.db.ColumnFamily;
 import com.bigdata.dastor.db.RowMutation;
 import com.bigdata.dastor.db.Table;
 import com.bigdata.dastor.io.DeletionService;
-import com.bigdata.dastor.io.util.BufferedRandomAccessFile;
 import com.bigdata.dastor.io.util.FileUtils;
-import com.bigdata.dastor.utils.FBUtilities;
-import com.bigdata.dastor.utils.WrappedRunnable;
 
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.CRC32;
-import java.util.zip.Checksum;
 
 /*
  * Commit Log tracks every write operation into the system. The aim
@@ -72,7 +64,6 @@ import java.util.zip.Checksum;
  */
 public class CommitLog
 {
-    private static final int MAX_OUTSTANDING_REPLAY_COUNT = 1024;
     private static volatile int SEGMENT_SIZE = 128*1024*1024; // roll after log gets this big
 
     private static final Logger logger = Logger.getLogger(CommitLog.class);
@@ -88,18 +79,27 @@ public class CommitLog
     }
 
     private final Deque<CommitLogSegment> segments = new ArrayDeque<CommitLogSegment>();
+    // BIGDATA: the last of segments, readable outside the executor by group commit writers
+    private volatile CommitLogSegment activeSegment;
 
     public static void setSegmentSize(int size)
     {
         SEGMENT_SIZE = size;
     }
 
+    public static int getSegmentSize()
+    {
+        return SEGMENT_SIZE;
+    }
+
     public int getSegmentCount()
     {
         return segments.size();
     }
 
     private final ICommitLogExecutorService executor;
+    // BIGDATA: prepares the files of mapped segments, null if they are not used
+    private final CommitLogSegmentAllocator allocator;
 
     /**
      * param @ table - name of table for which we are maintaining
@@ -112,9 +112,14 @@ public class CommitLog
         // all old segments are recovered and deleted before CommitLog is instantiated.
         // All we need to do is create a new one.
         int cfSize = Table.TableMetadata.getColumnFamilyCount();
-        segments.add(new CommitLogSegment(cfSize));
+        allocator = DatabaseDescriptor.isCommitLogMapped() ? new CommitLogSegmentAllocator() : null;
+        addSegment(newSegment(cfSize));
         
-        if (DatabaseDescriptor.getCommitLogSync() == DatabaseDescriptor.CommitLogSync.periodic)
+        if (DatabaseDescriptor.getCommitLogSync() == DatabaseDescriptor.CommitLogSync.group)
+        {
+            executor = new GroupCommitLogExecutorService(); // BIGDATA
+        }
+        else if (DatabaseDescriptor.getCommitLogSync() == DatabaseDescriptor.CommitLogSync.periodic)
         {
             executor = new PeriodicCommitLogExecutorService();
             final Callable syncer = new Callable()
@@ -177,126 +182,60 @@ public class CommitLog
     }
 
 
+    /**
+     * BIGDATA: replayed in parallel by CommitLogReplayer.
+     */
     public static void recover(File[] clogs) throws IOException
     {
-        Set<Table> tablesRecovered = new HashSet<Table>();
-        List<Future<?>> futures = new ArrayList<Future<?>>();
-        for (File file : clogs)
-        {
-            int bufferSize = (int)Math.min(file.length(), 32 * 1024 * 1024);
-            BufferedRandomAccessFile reader = new BufferedRandomAccessFile(file.getAbsolutePath(), "r", bufferSize);
-
-            try
-            {
-                final CommitLogHeader clHeader;
-                try
-                {
-                    clHeader = CommitLogHeader.readCommitLogHeader(reader);
-                }
-                catch (EOFException eofe)
-                {
-                    logger.info("Attempted to recover an incomplete CommitLogHeader.  Everything is ok, don't panic.");
-                    continue;
-                }
-
-                /* seek to the lowest position where any CF has non-flushed data */
-                int lowPos = CommitLogHeader.getLowestPosition(clHeader);
-                if (lowPos == 0)
-                    continue;
-
-                reader.seek(lowPos);
-                if (logger.isDebugEnabled())
-                    logger.debug("Replaying " + file + " starting at " + lowPos);
+        CommitLogReplayer.instance.replay(clogs);
+    }
 
-                /* read the logs populate RowMutation and apply */
-                while (!reader.isEOF())
-                {
-                    if (logger.isDebugEnabled())
-                        logger.debug("Reading mutation at " + reader.getFilePointer());
+    CommitLogSegment currentSegment()
+    {
+        return activeSegment;
+    }
 
-                    long claimedCRC32;
-                    byte[] bytes;
-                    try
-                    {
-                        bytes = new byte[(int) reader.readLong()]; // readlong can throw EOFException too
-                        reader.readFully(bytes);
-                        claimedCRC32 = reader.readLong();
-                    }
-                    catch (EOFException e)
-                    {
-                        // last CL entry didn't get completely written.  that's ok.
-                        break;
-                    }
+    // BIGDATA: segments are only added under the executor
+    private void addSegment(CommitLogSegment segment)
+    {
+        segments.add(segment);
+        activeSegment = segment;
+    }
 
-                    ByteArrayInputStream bufIn = new ByteArrayInputStream(bytes);
-                    Checksum checksum = new CRC32();
-                    checksum.update(bytes, 0, bytes.length);
-                    if (claimedCRC32 != checksum.getValue())
-                    {
-                        // this part of the log must not have been fsynced.  probably the rest is bad too,
-                        // but just in case there is no harm in trying them.
-                        continue;
-                    }
+    private CommitLogSegment newSegment(int cfCount)
+    {
+        if (allocator != null)
+            return new MappedCommitLogSegment(cfCount, allocator.take());
+        return new CommitLogSegment(cfCount);
+    }
 
-                    /* deserialize the commit log entry */
-                    final RowMutation rm = RowMutation.serializer().deserialize(new DataInputStream(bufIn));
-                    if (logger.isDebugEnabled())
-                        logger.debug(String.format("replaying mutation for %s.%s: %s",
-                                                    rm.getTable(),
-                                                    rm.key(),
-                                                    "{" + StringUtils.join(rm.getColumnFamilies(), ", ") + "}"));
-                    final Table table = Table.open(rm.getTable());
-                    tablesRecovered.add(table);
-                    final Collection<ColumnFamily> columnFamilies = new ArrayList<ColumnFamily>(rm.getColumnFamilies());
-                    final long entryLocation = reader.getFilePointer();
-                    Runnable runnable = new WrappedRunnable()
-                    {
-                        public void runMayThrow() throws IOException
-                        {
-                            /* remove column families that have already been flushed before applying the rest */
-                            for (ColumnFamily columnFamily : columnFamilies)
-                            {
-                                int id = table.getColumnFamilyId(columnFamily.name());
-                                if (!clHeader.isDirty(id) || entryLocation <= clHeader.getPosition(id))
-                                {
-                                    rm.removeColumnFamily(columnFamily);
-                                }
-                            }
-                            if (!rm.isEmpty())
-                            {
-                                Table.open(rm.getTable()).apply(rm, null, false);
-                            }
-                        }
-                    };
-                    futures.add(StageManager.getStage(StageManager.MUTATION_STAGE).submit(runnable));
-                    if (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT)
-                    {
-                        FBUtilities.waitOnFutures(futures);
-                        futures.clear();
-                    }
-                }
-            }
-            finally
+    /**
+     * BIGDATA: called by a group commit writer which found full a segment;
+     * the first one to get here adds the next segment.
+     */
+    void rollSegment(final CommitLogSegment full)
+    {
+        Callable task = new Callable()
+        {
+            public Object call() throws Exception
             {
-                reader.close();
-                logger.info("Finished reading " + file);
+                if (currentSegment() == full)
+                    addSegment(newSegment(full.getHeader().getColumnFamilyCount()));
+                return null;
             }
+        };
+        try
+        {
+            executor.submit(task).get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException(e);
         }
-
-        // wait for all the writes to finish on the mutation stage
-        FBUtilities.waitOnFutures(futures);
-        logger.debug("Finished waiting on mutations from recovery");
-
-        // flush replayed tables
-        futures.clear();
-        for (Table table : tablesRecovered)
-            futures.addAll(table.flush());
-        FBUtilities.waitOnFutures(futures);
-    }
-
-    private CommitLogSegment currentSegment()
-    {
-        return segments.getLast();
     }
     
     public CommitLogSegment.CommitLogContext getContext() throws IOException
@@ -330,7 +269,20 @@ public class CommitLog
     */
     public void add(RowMutation rowMutation, Object serializedRow) throws IOException
     {
-        executor.add(new LogRecordAdder(rowMutation, serializedRow));
+        add(rowMutation, serializedRow, false);
+    }
+
+    /**
+     * BIGDATA: entries are compressed here, in the mutation thread, if LogCompression is on.
+     * @param deferred do not wait for the entry to be synced, whatever the sync mode.
+     */
+    public void add(RowMutation rowMutation, Object serializedRow, boolean deferred) throws IOException
+    {
+        LogRecordAdder adder = new LogRecordAdder(rowMutation, CompressedLogEntry.maybeCompress(serializedRow));
+        if (deferred)
+            executor.addDeferred(adder);
+        else
+            executor.add(adder);
     }
 
     /*
@@ -395,17 +347,28 @@ public class CommitLog
                 // the replay point for this CF, instead.
                 if (logger.isDebugEnabled())
                     logger.debug("Marking replay position " + context.position + " on commit log " + segment);
-                header.turnOn(id, context.position);
+                synchronized (header) // BIGDATA: group commit writers mark the header concurrently
+                {
+                    header.turnOn(id, context.position);
+                }
                 segment.writeHeader();
                 break;
             }
 
-            header.turnOff(id);
-            if (header.isSafeToDelete())
+            boolean safeToDelete;
+            synchronized (header)
+            {
+                header.turnOff(id);
+                safeToDelete = header.isSafeToDelete();
+            }
+            if (safeToDelete)
             {
                 logger.info("Discarding obsolete commit log:" + segment);
                 segment.close();
-                DeletionService.submitDelete(segment.getPath());
+                if (allocator != null)
+                    allocator.recycle(segment.getPath()); // BIGDATA
+                else
+                    DeletionService.submitDelete(segment.getPath());
                 // usually this will be the first (remaining) segment, but not always, if segment A contains
                 // writes to a CF that is unflushed but is followed by segment B whose CFs are all flushed.
                 iter.remove();
@@ -431,7 +394,7 @@ public class CommitLog
             public Object call() throws Exception
             {
                 sync();
-                segments.add(new CommitLogSegment(currentSegment().getHeader().getColumnFamilyCount()));
+                addSegment(newSegment(currentSegment().getHeader().getColumnFamilyCount()));
                 return null;
             }
         };
@@ -466,12 +429,18 @@ public class CommitLog
         {
             try
             {
-                currentSegment().write(rowMutation, serializedRow);
+                if (currentSegment().write(rowMutation, serializedRow) == null)
+                {
+                    // BIGDATA: a mapped segment has a fixed size, and this one is full
+                    sync();
+                    addSegment(newSegment(currentSegment().getHeader().getColumnFamilyCount()));
+                    currentSegment().write(rowMutation, serializedRow);
+                }
                 // roll log if necessary
                 if (currentSegment().length() >= SEGMENT_SIZE)
                 {
                     sync();
-                    segments.add(new CommitLogSegment(currentSegment().getHeader().getColumnFamilyCount()));
+                    addSegment(newSegment(currentSegment().getHeader().getColumnFamilyCount()));
                 }
             }
             catch (IOException e)
@@ -485,5 +454,14 @@ public class CommitLog
             run();
             return null;
         }
+
+        /**
+         * BIGDATA: group commit, runs in the mutation thread.
+         * @return the position past the entry, or -1 if segment is full.
+         */
+        long append(MappedCommitLogSegment segment) throws IOException
+        {
+            return segment.append(rowMutation, serializedRow);
+        }
     }
 }
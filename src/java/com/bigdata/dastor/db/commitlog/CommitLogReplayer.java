@@ -0,0 +1,544 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db.commitlog;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.bigdata.dastor.concurrent.NamedThreadFactory;
+import com.bigdata.dastor.config.DatabaseDescriptor;
+import com.bigdata.dastor.db.ColumnFamily;
+import com.bigdata.dastor.db.RowMutation;
+import com.bigdata.dastor.db.Table;
+import com.bigdata.dastor.io.util.BufferedRandomAccessFile;
+import com.bigdata.dastor.io.util.FileUtils;
+import com.bigdata.dastor.utils.FBUtilities;
+
+/**
+ * BIGDATA:
+ * Parallel commit log replay.
+ *
+ * Reader threads read, checksum and decompress several segments at once, each
+ * into its own bounded queue of entries.  The dispatcher walks them in order
+ * and only parses the table and key of each entry, to hand it to the lane of
+ * its key.  Each lane is a single thread which deserializes and applies its
+ * entries in order, so all mutations of a key are replayed in log order, while
+ * different keys are replayed in parallel.
+ *
+ * Progress is exposed through CommitLogReplayerMBean.
+ */
+public class CommitLogReplayer implements CommitLogReplayerMBean
+{
+    private static final Logger logger = Logger.getLogger(CommitLogReplayer.class);
+
+    public static final String MBEAN_OBJECT_NAME = "com.bigdata.dastor.db:type=CommitLogReplayer";
+    public static final CommitLogReplayer instance;
+
+    private static final int MAX_READERS = 4;
+    // entries read ahead per segment, and waiting per lane
+    private static final int SEGMENT_QUEUE_SIZE = 1024;
+    private static final int LANE_QUEUE_SIZE = 1024;
+
+    private static final Entry END = new Entry(null, null, 0);
+
+    static
+    {
+        instance = new CommitLogReplayer();
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            mbs.registerMBean(instance, new ObjectName(MBEAN_OBJECT_NAME));
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private volatile boolean replaying = false;
+    private volatile int totalSegments = 0;
+    private final AtomicInteger replayedSegments = new AtomicInteger(0);
+    private volatile long totalBytes = 0;
+    private final AtomicLong readBytes = new AtomicLong(0);
+    private final AtomicLong replayedMutations = new AtomicLong(0);
+    private final AtomicLong skippedEntries = new AtomicLong(0);
+    private volatile long startTime = 0;
+    private volatile long endTime = 0;
+
+    // the first error of a reader or a lane; the others stop on it
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    private CommitLogReplayer()
+    {
+    }
+
+    /**
+     * replay clogs, sorted oldest first, and flush the tables they touched.
+     */
+    public synchronized void replay(File[] clogs) throws IOException
+    {
+        reset(clogs);
+
+        int readerCount = Math.max(1, Math.min(MAX_READERS, clogs.length));
+        ExecutorService readers = Executors.newFixedThreadPool(readerCount, new NamedThreadFactory("COMMIT-LOG-REPLAY-READER"));
+        Lane[] lanes = new Lane[DatabaseDescriptor.getConcurrentWriters()];
+        for (int i = 0; i < lanes.length; i++)
+        {
+            lanes[i] = new Lane("COMMIT-LOG-REPLAY-" + i);
+            lanes[i].start();
+        }
+
+        Set<String> tablesRecovered = new HashSet<String>();
+        try
+        {
+            // readers take segments in order, and one blocks only on a full queue of a
+            // segment the dispatcher has not reached: the oldest one always progresses.
+            List<Segment> segments = new ArrayList<Segment>(clogs.length);
+            for (File file : clogs)
+            {
+                Segment segment = new Segment(file);
+                segments.add(segment);
+                readers.execute(segment);
+            }
+
+            for (Segment segment : segments)
+            {
+                if (!dispatch(segment, lanes, tablesRecovered))
+                    break;
+                replayedSegments.incrementAndGet();
+                logger.info("Finished reading " + segment.file);
+            }
+        }
+        catch (Throwable t)
+        {
+            fail(t);
+        }
+        finally
+        {
+            for (Lane lane : lanes)
+                lane.finish();
+            readers.shutdownNow();
+        }
+
+        long dispatchedAt = System.currentTimeMillis();
+        for (Lane lane : lanes)
+        {
+            try
+            {
+                lane.join();
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+        }
+        long appliedAt = System.currentTimeMillis();
+        logger.debug("Finished waiting on mutations from recovery");
+
+        Throwable t = failure.get();
+        if (t != null)
+        {
+            replaying = false;
+            endTime = appliedAt;
+            if (t instanceof IOException)
+                throw (IOException) t;
+            throw new RuntimeException(t);
+        }
+
+        // flush replayed tables
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (String tableName : tablesRecovered)
+            futures.addAll(Table.open(tableName).flush());
+        FBUtilities.waitOnFutures(futures);
+
+        endTime = System.currentTimeMillis();
+        replaying = false;
+        logger.info(String.format("Replayed %d mutations of %d segments (%s) in %d ms: read %d ms, apply %d ms more, flush %d ms; %d entries skipped",
+                                  replayedMutations.get(), totalSegments, FileUtils.stringifyFileSize(totalBytes),
+                                  endTime - startTime, dispatchedAt - startTime, appliedAt - dispatchedAt, endTime - appliedAt,
+                                  skippedEntries.get()));
+    }
+
+    private void reset(File[] clogs)
+    {
+        long bytes = 0;
+        for (File file : clogs)
+            bytes += file.length();
+
+        failure.set(null);
+        totalSegments = clogs.length;
+        totalBytes = bytes;
+        replayedSegments.set(0);
+        readBytes.set(0);
+        replayedMutations.set(0);
+        skippedEntries.set(0);
+        startTime = System.currentTimeMillis();
+        endTime = 0;
+        replaying = true;
+    }
+
+    /**
+     * hand the entries of segment to the lanes of their keys.
+     * @return false if the replay failed.
+     */
+    private boolean dispatch(Segment segment, Lane[] lanes, Set<String> tablesRecovered) throws IOException
+    {
+        while (true)
+        {
+            Entry entry = take(segment.entries);
+            if (entry == END || failure.get() != null)
+                return failure.get() == null;
+
+            // the table and the key are serialized first; the lane deserializes the rest
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.bytes));
+            tablesRecovered.add(in.readUTF());
+            String key = in.readUTF();
+            lanes[(key.hashCode() & Integer.MAX_VALUE) % lanes.length].add(entry);
+        }
+    }
+
+    /**
+     * put, unless the replay failed.
+     * @return false if the replay failed.
+     */
+    private <T> boolean put(BlockingQueue<T> queue, T element) throws InterruptedException
+    {
+        while (failure.get() == null)
+        {
+            if (queue.offer(element, 100, TimeUnit.MILLISECONDS))
+                return true;
+        }
+        return false;
+    }
+
+    private static <T> T take(BlockingQueue<T> queue)
+    {
+        try
+        {
+            return queue.take();
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void fail(Throwable t)
+    {
+        if (failure.compareAndSet(null, t))
+            logger.error("Commit log replay failed", t);
+    }
+
+    public boolean isReplaying()
+    {
+        return replaying;
+    }
+
+    public int getTotalSegments()
+    {
+        return totalSegments;
+    }
+
+    public int getReplayedSegments()
+    {
+        return replayedSegments.get();
+    }
+
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    public long getReadBytes()
+    {
+        return readBytes.get();
+    }
+
+    public long getReplayedMutations()
+    {
+        return replayedMutations.get();
+    }
+
+    public long getSkippedEntries()
+    {
+        return skippedEntries.get();
+    }
+
+    public long getElapsedTime()
+    {
+        if (startTime == 0)
+            return 0;
+        return (replaying ? System.currentTimeMillis() : endTime) - startTime;
+    }
+
+    /**
+     * A checksummed entry, with the header of its segment to filter flushed column families.
+     */
+    private static class Entry
+    {
+        final CommitLogHeader header;
+        final byte[] bytes;
+        final long location;
+
+        Entry(CommitLogHeader header, byte[] bytes, long location)
+        {
+            this.header = header;
+            this.bytes = bytes;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Reads one segment into its queue; always ends it with END.
+     */
+    private class Segment implements Runnable
+    {
+        final File file;
+        final BlockingQueue<Entry> entries = new ArrayBlockingQueue<Entry>(SEGMENT_QUEUE_SIZE);
+
+        Segment(File file)
+        {
+            this.file = file;
+        }
+
+        public void run()
+        {
+            try
+            {
+                read();
+            }
+            catch (InterruptedException e)
+            {
+                // the replay is over
+            }
+            catch (Throwable t)
+            {
+                fail(t);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        /**
+         * after a failure, the dispatcher only waits on this queue if it is empty.
+         */
+        private void end()
+        {
+            try
+            {
+                if (put(entries, END))
+                    return;
+            }
+            catch (InterruptedException e)
+            {
+                // the replay is over
+            }
+            entries.offer(END);
+        }
+
+        private void read() throws IOException, InterruptedException
+        {
+            long length = file.length();
+            int bufferSize = (int)Math.min(length, 32 * 1024 * 1024);
+            BufferedRandomAccessFile reader = new BufferedRandomAccessFile(file.getAbsolutePath(), "r", bufferSize);
+            long counted = 0;
+            try
+            {
+                CommitLogHeader clHeader;
+                try
+                {
+                    clHeader = CommitLogHeader.readCommitLogHeader(reader);
+                }
+                catch (EOFException eofe)
+                {
+                    logger.info("Attempted to recover an incomplete CommitLogHeader.  Everything is ok, don't panic.");
+                    return;
+                }
+
+                /* seek to the lowest position where any CF has non-flushed data */
+                int lowPos = CommitLogHeader.getLowestPosition(clHeader);
+                if (lowPos == 0)
+                    return;
+
+                reader.seek(lowPos);
+                counted = lowPos;
+                readBytes.addAndGet(counted);
+                if (logger.isDebugEnabled())
+                    logger.debug("Replaying " + file + " starting at " + lowPos);
+
+                while (!reader.isEOF())
+                {
+                    long claimedCRC32;
+                    byte[] bytes;
+                    boolean compressed;
+                    try
+                    {
+                        long entryLength = reader.readLong(); // readlong can throw EOFException too
+                        if (entryLength == 0)
+                        {
+                            // unwritten space of a mapped segment, whose entries are written
+                            // concurrently.  nothing past it was synced.
+                            break;
+                        }
+                        compressed = entryLength < 0; // see CompressedLogEntry
+                        bytes = new byte[(int) Math.abs(entryLength)];
+                        reader.readFully(bytes);
+                        claimedCRC32 = reader.readLong();
+                    }
+                    catch (EOFException e)
+                    {
+                        // last CL entry didn't get completely written.  that's ok.
+                        break;
+                    }
+
+                    long position = reader.getFilePointer();
+                    readBytes.addAndGet(position - counted);
+                    counted = position;
+
+                    Checksum checksum = new CRC32();
+                    checksum.update(bytes, 0, bytes.length);
+                    if (claimedCRC32 != checksum.getValue())
+                    {
+                        // this part of the log must not have been fsynced.  probably the rest is bad too,
+                        // but just in case there is no harm in trying them.
+                        skippedEntries.incrementAndGet();
+                        continue;
+                    }
+
+                    if (compressed)
+                        bytes = CompressedLogEntry.decompress(bytes);
+                    if (!put(entries, new Entry(clHeader, bytes, position)))
+                        return;
+                }
+            }
+            finally
+            {
+                reader.close();
+                // the rest of the segment is not replayed
+                readBytes.addAndGet(length - counted);
+            }
+        }
+    }
+
+    /**
+     * A replay thread for the keys which hash to it.
+     */
+    private class Lane extends Thread
+    {
+        private final BlockingQueue<Entry> entries = new ArrayBlockingQueue<Entry>(LANE_QUEUE_SIZE);
+
+        Lane(String name)
+        {
+            super(name);
+        }
+
+        void add(Entry entry)
+        {
+            try
+            {
+                entries.put(entry); // the lane drains its queue even after a failure
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+        }
+
+        void finish()
+        {
+            add(END);
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                Entry entry = take(entries);
+                if (entry == END)
+                    return;
+                if (failure.get() != null)
+                    continue;
+
+                try
+                {
+                    apply(entry);
+                }
+                catch (Throwable t)
+                {
+                    fail(t);
+                }
+            }
+        }
+
+        private void apply(Entry entry) throws IOException
+        {
+            /* deserialize the commit log entry */
+            RowMutation rm = RowMutation.serializer().deserialize(new DataInputStream(new ByteArrayInputStream(entry.bytes)));
+            if (logger.isDebugEnabled())
+                logger.debug(String.format("replaying mutation for %s.%s: %s",
+                                           rm.getTable(),
+                                           rm.key(),
+                                           "{" + StringUtils.join(rm.getColumnFamilies(), ", ") + "}"));
+
+            /* remove column families that have already been flushed before applying the rest */
+            Table table = Table.open(rm.getTable());
+            for (ColumnFamily columnFamily : new ArrayList<ColumnFamily>(rm.getColumnFamilies()))
+            {
+                int id = table.getColumnFamilyId(columnFamily.name());
+                if (!entry.header.isDirty(id) || entry.location <= entry.header.getPosition(id))
+                {
+                    rm.removeColumnFamily(columnFamily);
+                }
+            }
+            if (!rm.isEmpty())
+            {
+                table.apply(rm, null, false);
+            }
+            replayedMutations.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db.commitlog;
+
+/**
+ * BIGDATA: progress of the last (or current) commit log replay.
+ */
+public interface CommitLogReplayerMBean
+{
+    /**
+     * @return true while a replay is in progress
+     */
+    public boolean isReplaying();
+
+    public int getTotalSegments();
+
+    public int getReplayedSegments();
+
+    /**
+     * @return the bytes of all the segments to replay
+     */
+    public long getTotalBytes();
+
+    /**
+     * @return the bytes read and checksummed so far
+     */
+    public long getReadBytes();
+
+    /**
+     * @return the mutations applied so far
+     */
+    public long getReplayedMutations();
+
+    /**
+     * @return the entries skipped for a bad checksum
+     */
+    public long getSkippedEntries();
+
+    /**
+     * @return the duration of the replay in milliseconds, up to now if it is in progress
+     */
+    public long getElapsedTime();
+}
@@ -24,6 +24,7 @@ package com.bigdata.dastor.db.commitlog;
 import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
@@ -42,12 +43,12 @@ public class CommitLogSegment
     private static final Logger logger = Logger.getLogger(CommitLogSegment.class);
 
     private final BufferedRandomAccessFile logWriter;
-    private final CommitLogHeader header;
+    protected final CommitLogHeader header;
 
     public CommitLogSegment(int cfCount)
     {
         this.header = new CommitLogHeader(cfCount);
-        String logFile = DatabaseDescriptor.getLogFileLocation() + File.separator + "CommitLog-" + System.currentTimeMillis() + ".log";
+        String logFile = newLogFileName();
         logger.info("Creating new commitlog segment " + logFile);
 
         try
@@ -61,6 +62,31 @@ public class CommitLogSegment
         }
     }
 
+    /**
+     * BIGDATA: for subclasses which do their own file access.
+     */
+    protected CommitLogSegment(CommitLogHeader header)
+    {
+        this.header = header;
+        this.logWriter = null;
+    }
+
+    private static final AtomicLong lastId = new AtomicLong(0);
+
+    /**
+     * BIGDATA: segments may be rolled faster than once per millisecond now, so keep the ids unique.
+     */
+    protected static String newLogFileName()
+    {
+        while (true)
+        {
+            long last = lastId.get();
+            long id = Math.max(last + 1, System.currentTimeMillis());
+            if (lastId.compareAndSet(last, id))
+                return DatabaseDescriptor.getLogFileLocation() + File.separator + "CommitLog-" + id + ".log";
+        }
+    }
+
     public void writeHeader() throws IOException
     {
         seekAndWriteCommitLogHeader(header.toByteArray());
@@ -118,6 +144,14 @@ public class CommitLogSegment
                 logWriter.write(buffer.getData(), 0, buffer.getLength());
                 checkum.update(buffer.getData(), 0, buffer.getLength());
             }
+            else if (serializedRow instanceof CompressedLogEntry)
+            {
+                // BIGDATA: a negative length marks a compressed entry
+                CompressedLogEntry entry = (CompressedLogEntry) serializedRow;
+                logWriter.writeLong(-entry.length);
+                logWriter.write(entry.data, 0, entry.length);
+                checkum.update(entry.data, 0, entry.length);
+            }
             else
             {
                 assert serializedRow instanceof byte[];
@@ -185,7 +219,7 @@ public class CommitLogSegment
     @Override
     public String toString()
     {
-        return "CommitLogSegment(" + logWriter.getPath() + ')';
+        return "CommitLogSegment(" + getPath() + ')';
     }
 
     public class CommitLogContext
@@ -207,7 +241,7 @@ public class CommitLogSegment
         public String toString()
         {
             return "CommitLogContext(" +
-                   "file='" + logWriter.getPath() + '\'' +
+                   "file='" + getPath() + '\'' +
                    ", position=" + position +
                    ')';
         }
@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db.commitlog;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.dastor.concurrent.JMXEnabledThreadPoolExecutor;
+import com.bigdata.dastor.config.DatabaseDescriptor;
+import com.bigdata.dastor.io.util.FileUtils;
+import com.bigdata.dastor.utils.WrappedRunnable;
+
+/**
+ * BIGDATA:
+ * Prepares the files of MappedCommitLogSegments off the write path: each one
+ * is allocated to the full segment size and zero-filled, so a segment roll
+ * never waits on file creation, and syncs never have to grow the file.
+ *
+ * Segments discarded after their memtables are flushed are recycled into
+ * spares instead of being deleted.  They are zero-filled again, since stale
+ * entries past the end of the new contents would otherwise be replayed.
+ *
+ * Spare files are named CommitLog-spare-*.log, which recovery ignores; the
+ * ones left by a previous run are reused.
+ */
+class CommitLogSegmentAllocator
+{
+    private static final Logger logger = Logger.getLogger(CommitLogSegmentAllocator.class);
+
+    private static final int MAX_SPARES = 2;
+    private static final int ZERO_CHUNK = 1024 * 1024;
+    private static final String SPARE_PREFIX = "CommitLog-spare-";
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final BlockingQueue<File> spares = new LinkedBlockingQueue<File>();
+    // spares, plus the ones being prepared
+    private final AtomicInteger spareCount = new AtomicInteger(0);
+    private final AtomicInteger spareId = new AtomicInteger(0);
+    private final ExecutorService executor = new JMXEnabledThreadPoolExecutor("COMMIT-LOG-ALLOCATOR");
+
+    CommitLogSegmentAllocator()
+    {
+        File[] leftovers = new File(DatabaseDescriptor.getLogFileLocation()).listFiles(new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(SPARE_PREFIX);
+            }
+        });
+        for (File file : leftovers)
+        {
+            if (file.length() == CommitLog.getSegmentSize() && spareCount.get() < MAX_SPARES)
+            {
+                spares.add(file);
+                spareCount.incrementAndGet();
+            }
+            else if (!file.delete())
+            {
+                logger.warn("Unable to delete leftover spare " + file);
+            }
+        }
+        ensureSpare();
+    }
+
+    /**
+     * @return a zero-filled file of the segment size; blocks only if the allocator is behind.
+     */
+    File take()
+    {
+        try
+        {
+            File spare = spares.take();
+            spareCount.decrementAndGet();
+            ensureSpare();
+            return spare;
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * turn the file of a discarded segment into a spare, or delete it if there are enough.
+     */
+    void recycle(final String path)
+    {
+        final File file = new File(path);
+        if (file.length() != CommitLog.getSegmentSize() || spareCount.get() >= MAX_SPARES)
+        {
+            logger.info("Deleting obsolete commit log " + path);
+            executor.submit(new WrappedRunnable()
+            {
+                public void runMayThrow() throws IOException
+                {
+                    FileUtils.deleteWithConfirm(file);
+                }
+            });
+            return;
+        }
+
+        logger.info("Recycling obsolete commit log " + path);
+        spareCount.incrementAndGet();
+        prepare(file);
+    }
+
+    private void ensureSpare()
+    {
+        if (spareCount.compareAndSet(0, 1))
+            prepare(null);
+    }
+
+    /**
+     * make a spare of file, or of a new file if it is null, counted in spareCount already.
+     * If that fails (e.g. the disk is full), the spare is uncounted, and while none is left
+     * a new one is tried again after a delay, so take() is not left waiting for nothing.
+     */
+    private void prepare(final File file)
+    {
+        executor.submit(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    spares.add(zeroFill(file));
+                    return;
+                }
+                catch (Throwable t)
+                {
+                    spareCount.decrementAndGet();
+                    logger.error("Unable to prepare a commit log spare" + (file == null ? "" : " of " + file), t);
+                    if (file != null && file.exists() && !file.delete())
+                        logger.warn("Unable to delete " + file);
+                }
+                if (spareCount.get() > 0)
+                    return;
+                try
+                {
+                    Thread.sleep(RETRY_DELAY_MS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new AssertionError(e);
+                }
+                ensureSpare();
+            }
+        });
+    }
+
+    /**
+     * rename file as a spare, or create a new one if it is null, and zero-fill it to the segment size.
+     * A recycled segment is renamed first, so a crash while it is half zeroed does not leave it under
+     * a name recovery would replay.
+     */
+    private File zeroFill(File file) throws IOException
+    {
+        File spare = new File(DatabaseDescriptor.getLogFileLocation(),
+                              SPARE_PREFIX + System.currentTimeMillis() + "-" + spareId.incrementAndGet() + ".log");
+        if (file != null && !file.renameTo(spare))
+            throw new IOException("Unable to rename " + file + " to " + spare);
+
+        boolean filled = false;
+        RandomAccessFile raf = new RandomAccessFile(spare, "rw");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_CHUNK);
+            long size = CommitLog.getSegmentSize();
+            for (long written = 0; written < size; )
+            {
+                zeros.clear();
+                zeros.limit((int) Math.min(ZERO_CHUNK, size - written));
+                written += channel.write(zeros, written);
+            }
+            channel.force(true);
+            filled = true;
+        }
+        finally
+        {
+            raf.close();
+            // a partial spare would only take the space a retry needs
+            if (!filled && !spare.delete())
+                logger.warn("Unable to delete partial spare " + spare);
+        }
+        return spare;
+    }
+}
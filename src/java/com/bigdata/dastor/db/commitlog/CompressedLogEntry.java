@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db.commitlog;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import com.bigdata.dastor.config.DatabaseDescriptor;
+import com.bigdata.dastor.io.compress.Compression;
+import com.bigdata.dastor.io.util.DataOutputBuffer;
+
+/**
+ * BIGDATA:
+ * A commit log entry compressed with Compression.Algorithm.
+ *
+ * Segments write it as a negative length, so recovery tells it from a plain
+ * serialized RowMutation:
+ *   [long -length][byte algorithm id][int uncompressed length][compressed bytes][long checksum]
+ * The checksum covers the compressed payload, as it would the plain one.
+ */
+class CompressedLogEntry
+{
+    final byte[] data;
+    final int length;
+
+    private CompressedLogEntry(byte[] data, int length)
+    {
+        this.data = data;
+        this.length = length;
+    }
+
+    /**
+     * @return a CompressedLogEntry for serializedRow, or serializedRow itself if
+     * compression is disabled, the entry is small or it does not shrink.
+     */
+    static Object maybeCompress(Object serializedRow) throws IOException
+    {
+        Compression.Algorithm algo = DatabaseDescriptor.getCommitLogCompressAlgo();
+        if (algo == Compression.Algorithm.NONE)
+            return serializedRow;
+
+        byte[] bytes;
+        int length;
+        if (serializedRow instanceof DataOutputBuffer)
+        {
+            DataOutputBuffer buffer = (DataOutputBuffer) serializedRow;
+            bytes = buffer.getData();
+            length = buffer.getLength();
+        }
+        else
+        {
+            assert serializedRow instanceof byte[];
+            bytes = (byte[]) serializedRow;
+            length = bytes.length;
+        }
+        if (length < DatabaseDescriptor.getCommitLogCompressStartSize())
+            return serializedRow;
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        out.writeByte(algo.getId());
+        out.writeInt(length);
+        Compressor compressor = algo.getCompressor();
+        try
+        {
+            OutputStream cos = algo.createCompressionStream(out, compressor, 0);
+            cos.write(bytes, 0, length);
+            cos.flush();
+        }
+        finally
+        {
+            algo.returnCompressor(compressor);
+        }
+
+        if (out.getLength() >= length)
+            return serializedRow;
+        return new CompressedLogEntry(out.getData(), out.getLength());
+    }
+
+    /**
+     * @return the serialized RowMutation of a compressed payload read by recovery.
+     */
+    static byte[] decompress(byte[] payload) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Compression.Algorithm algo = Compression.getCompressionAlgorithmById(in.readByte());
+        byte[] bytes = new byte[in.readInt()];
+        Decompressor decompressor = algo.getDecompressor();
+        try
+        {
+            InputStream cis = algo.createDecompressionStream(in, decompressor, 0);
+            new DataInputStream(cis).readFully(bytes);
+        }
+        finally
+        {
+            algo.returnDecompressor(decompressor);
+        }
+        return bytes;
+    }
+}
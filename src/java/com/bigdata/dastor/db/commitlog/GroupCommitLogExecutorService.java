@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db.commitlog;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bigdata.dastor.config.DatabaseDescriptor;
+import com.bigdata.dastor.utils.WrappedRunnable;
+
+/**
+ * BIGDATA:
+ * Group commit: there is no commit log writer thread.  Mutation threads append
+ * to the MappedCommitLogSegment themselves, in parallel, then wait for a
+ * GROUP-COMMIT-LOG-SYNCER pass to fsync their entry together with all the
+ * others appended meanwhile.  Durability is the one of batch mode.
+ *
+ * Segment management (context, discard, roll) is rare and just runs in the
+ * calling thread under this executor's lock, which is what serializes it.
+ */
+class GroupCommitLogExecutorService implements ICommitLogExecutorService, GroupCommitLogExecutorServiceMBean
+{
+    private final Set<MappedCommitLogSegment> unsynced = new LinkedHashSet<MappedCommitLogSegment>(); // guarded by itself
+    private final AtomicLong pendingCount = new AtomicLong(0);
+    private final AtomicLong completedTaskCount = new AtomicLong(0);
+    private volatile long syncCount = 0;
+
+    public GroupCommitLogExecutorService()
+    {
+        Runnable runnable = new WrappedRunnable()
+        {
+            public void runMayThrow() throws Exception
+            {
+                while (true)
+                {
+                    syncGroup();
+                }
+            }
+        };
+        new Thread(runnable, "GROUP-COMMIT-LOG-SYNCER").start();
+
+        AbstractCommitLogExecutorService.registerMBean(this);
+    }
+
+    /**
+     * wait for appended entries, let more writers join the group for up to the
+     * batch window, then fsync every segment they went to.
+     */
+    private void syncGroup() throws Exception
+    {
+        List<MappedCommitLogSegment> segments;
+        synchronized (unsynced)
+        {
+            while (unsynced.isEmpty())
+                unsynced.wait();
+        }
+
+        long window = (long) DatabaseDescriptor.getCommitLogSyncBatchWindow();
+        if (window > 0)
+            Thread.sleep(window);
+
+        synchronized (unsynced)
+        {
+            segments = new ArrayList<MappedCommitLogSegment>(unsynced);
+            unsynced.clear();
+        }
+        for (MappedCommitLogSegment segment : segments)
+        {
+            // a writer which appended after the previous sync started is covered by this one
+            if (segment.needsSync())
+                segment.sync();
+        }
+        syncCount++;
+    }
+
+    public void add(CommitLog.LogRecordAdder adder)
+    {
+        add(adder, true);
+    }
+
+    // BIGDATA: the entry is synced by the next group, nobody waits for it
+    public void addDeferred(CommitLog.LogRecordAdder adder)
+    {
+        add(adder, false);
+    }
+
+    private void add(CommitLog.LogRecordAdder adder, boolean awaitSync)
+    {
+        pendingCount.incrementAndGet();
+        try
+        {
+            MappedCommitLogSegment segment;
+            long position;
+            while (true)
+            {
+                segment = (MappedCommitLogSegment) CommitLog.instance().currentSegment();
+                position = adder.append(segment);
+                if (position >= 0)
+                    break;
+                CommitLog.instance().rollSegment(segment);
+            }
+
+            synchronized (unsynced)
+            {
+                if (unsynced.add(segment))
+                    unsynced.notify();
+            }
+            if (awaitSync)
+                segment.awaitSync(position);
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+        finally
+        {
+            pendingCount.decrementAndGet();
+            completedTaskCount.incrementAndGet();
+        }
+    }
+
+    public synchronized <T> Future<T> submit(Callable<T> task)
+    {
+        FutureTask<T> ft = new FutureTask<T>(task);
+        ft.run();
+        return ft;
+    }
+
+    public long getPendingTasks()
+    {
+        return pendingCount.get();
+    }
+
+    public int getActiveCount()
+    {
+        return (int) pendingCount.get();
+    }
+
+    public long getCompletedTasks()
+    {
+        return completedTaskCount.get();
+    }
+
+    public long getSyncCount()
+    {
+        return syncCount;
+    }
+}
@@ -38,4 +38,9 @@ public interface ICommitLogExecutorService extends IExecutorMBean
      */
     public void add(CommitLog.LogRecordAdder adder);
 
+    /**
+     * BIGDATA: submits the adder for execution without waiting for it to be synced
+     */
+    public void addDeferred(CommitLog.LogRecordAdder adder);
+
 }
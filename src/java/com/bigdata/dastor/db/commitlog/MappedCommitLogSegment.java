@@ -0,0 +1,377 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.db.commitlog;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.dastor.db.ColumnFamily;
+import com.bigdata.dastor.db.RowMutation;
+import com.bigdata.dastor.db.Table;
+import com.bigdata.dastor.io.util.DataOutputBuffer;
+import com.bigdata.dastor.io.util.FileUtils;
+import com.bigdata.dastor.utils.SimpleCondition;
+
+/**
+ * BIGDATA:
+ * A commit log segment on a pre-allocated, zero-filled file of fixed size
+ * (see CommitLogSegmentAllocator), mapped in memory as a whole.
+ *
+ * Writers reserve the space of their entry with a CAS on the append position
+ * and copy it into the mapping, in parallel with each other (group commit) or
+ * from the single commit log writer thread (batch and periodic modes).  Since
+ * the file is already allocated, a sync only flushes data pages, and header
+ * updates are plain writes into the mapping made durable by the next sync.
+ *
+ * The on-disk format is the one of CommitLogSegment; the unwritten, zeroed
+ * tail reads as a zero length entry, where recovery stops.
+ *
+ * sync() takes the append position, waits for the writers which may still be
+ * copying below it, and forces everything up to it at once; writers waiting
+ * in awaitSync are then released together.
+ */
+public class MappedCommitLogSegment extends CommitLogSegment
+{
+    private static final Logger logger = Logger.getLogger(MappedCommitLogSegment.class);
+
+    private final String path;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final long headerSize;
+
+    private final AtomicLong position;
+    private volatile long syncedPosition;
+    private volatile boolean closed = false;
+    private volatile WriterGroup writers = new WriterGroup();
+
+    /**
+     * @param spare a zero-filled file of the segment size, renamed to a fresh commit log name.
+     */
+    public MappedCommitLogSegment(int cfCount, File spare)
+    {
+        super(new CommitLogHeader(cfCount));
+        path = newLogFileName();
+        logger.info("Creating new commitlog segment " + path + " from " + spare.getName());
+
+        try
+        {
+            if (!spare.renameTo(new File(path)))
+                throw new IOException("Unable to rename " + spare + " to " + path);
+            file = new RandomAccessFile(path, "rw");
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            synchronized (header)
+            {
+                headerSize = writeHeaderToBuffer();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+        position = new AtomicLong(headerSize);
+        syncedPosition = headerSize;
+    }
+
+    /**
+     * append the entry of rowMutation; in group commit mode, the entry is durable
+     * once awaitSync(returned position) returns.
+     * @return the position past the entry, or -1 if this segment is full.
+     */
+    public long append(RowMutation rowMutation, Object serializedRow) throws IOException
+    {
+        ByteBuffer entry = serializeEntry(serializedRow);
+        int size = entry.remaining();
+        if (headerSize + size > buffer.capacity())
+            throw new IOException("Mutation of " + size + " bytes does not fit in a commit log segment of " + buffer.capacity());
+
+        WriterGroup group = register();
+        try
+        {
+            if (closed)
+                return -1;
+            markDirty(rowMutation);
+
+            long start = reserve(size);
+            if (start < 0)
+                return -1;
+
+            ByteBuffer dup = buffer.duplicate();
+            dup.position((int) start);
+            dup.put(entry);
+            return start + size;
+        }
+        finally
+        {
+            group.unregister();
+        }
+    }
+
+    /**
+     * single writer modes.
+     * @return the context of the entry, or null if this segment is full.
+     */
+    @Override
+    public CommitLogSegment.CommitLogContext write(RowMutation rowMutation, Object serializedRow) throws IOException
+    {
+        long end = append(rowMutation, serializedRow);
+        return end < 0 ? null : new CommitLogContext(end);
+    }
+
+    /**
+     * block until everything up to position is on disk.
+     */
+    public void awaitSync(long position)
+    {
+        if (syncedPosition >= position)
+            return;
+        synchronized (this)
+        {
+            while (syncedPosition < position)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+    }
+
+    public boolean needsSync()
+    {
+        return !closed && syncedPosition < position.get();
+    }
+
+    @Override
+    public synchronized void sync() throws IOException
+    {
+        if (closed)
+            return;
+
+        // every entry reserved below syncPosition belongs to a writer of the current group (or an older,
+        // already drained one), since writers register before they reserve.
+        long syncPosition = position.get();
+        WriterGroup group = writers;
+        writers = new WriterGroup();
+        group.close();
+
+        buffer.force();
+
+        syncedPosition = Math.max(syncedPosition, syncPosition);
+        notifyAll();
+    }
+
+    /**
+     * no fsync: the header only has to be durable along with the entries it
+     * covers, and those are synced with it.
+     */
+    @Override
+    public void writeHeader() throws IOException
+    {
+        synchronized (header)
+        {
+            writeHeaderToBuffer();
+        }
+    }
+
+    // caller synchronizes on header
+    private int writeHeaderToBuffer() throws IOException
+    {
+        byte[] bytes = header.toByteArray();
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(0);
+        dup.putLong(bytes.length);
+        dup.put(bytes);
+        return dup.position();
+    }
+
+    @Override
+    public CommitLogContext getContext()
+    {
+        return new CommitLogContext(position.get());
+    }
+
+    @Override
+    public String getPath()
+    {
+        return path;
+    }
+
+    @Override
+    public long length()
+    {
+        return position.get();
+    }
+
+    /**
+     * drain the writers still registered, then unmap the buffer; writers
+     * registering afterwards see the segment closed and do not touch it.
+     */
+    @Override
+    public synchronized void close()
+    {
+        closed = true;
+        WriterGroup group = writers;
+        writers = new WriterGroup();
+        group.close();
+        FileUtils.clean(buffer);
+        try
+        {
+            file.close();
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+        notifyAll();
+    }
+
+    private long reserve(int size)
+    {
+        while (true)
+        {
+            long current = position.get();
+            if (current + size > buffer.capacity())
+                return -1;
+            if (position.compareAndSet(current, current + size))
+                return current;
+        }
+    }
+
+    /**
+     * set the dirty bit of each column family before reserving, so the replay
+     * position recorded is never past the entry.
+     */
+    private void markDirty(RowMutation rowMutation) throws IOException
+    {
+        Table table = Table.open(rowMutation.getTable());
+        for (ColumnFamily columnFamily : rowMutation.getColumnFamilies())
+        {
+            int id = table.getColumnFamilyId(columnFamily.name());
+            if (header.isDirty(id))
+                continue;
+            synchronized (header)
+            {
+                if (!header.isDirty(id))
+                {
+                    header.turnOn(id, position.get());
+                    writeHeaderToBuffer();
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer serializeEntry(Object serializedRow)
+    {
+        byte[] bytes;
+        int length;
+        if (serializedRow instanceof DataOutputBuffer)
+        {
+            DataOutputBuffer buffer = (DataOutputBuffer) serializedRow;
+            bytes = buffer.getData();
+            length = buffer.getLength();
+        }
+        else if (serializedRow instanceof CompressedLogEntry)
+        {
+            CompressedLogEntry entry = (CompressedLogEntry) serializedRow;
+            bytes = entry.data;
+            length = entry.length;
+        }
+        else
+        {
+            assert serializedRow instanceof byte[];
+            bytes = (byte[]) serializedRow;
+            length = bytes.length;
+        }
+
+        Checksum checksum = new CRC32();
+        checksum.update(bytes, 0, length);
+        ByteBuffer entry = ByteBuffer.allocate(8 + length + 8);
+        entry.putLong(serializedRow instanceof CompressedLogEntry ? -length : length);
+        entry.put(bytes, 0, length);
+        entry.putLong(checksum.getValue());
+        entry.flip();
+        return entry;
+    }
+
+    private WriterGroup register()
+    {
+        while (true)
+        {
+            WriterGroup group = writers;
+            if (group.register())
+                return group;
+        }
+    }
+
+    /**
+     * The writers between two syncs; same scheme as Memtable.pin: either the writer
+     * sees the group closed and moves to the next one, or the syncer sees the writer.
+     */
+    private static class WriterGroup
+    {
+        private final AtomicInteger count = new AtomicInteger(0);
+        private final SimpleCondition drained = new SimpleCondition();
+        private volatile boolean closed = false;
+
+        boolean register()
+        {
+            count.incrementAndGet();
+            if (!closed)
+                return true;
+            unregister();
+            return false;
+        }
+
+        void unregister()
+        {
+            if (count.decrementAndGet() == 0 && closed)
+                drained.signalAll();
+        }
+
+        void close()
+        {
+            closed = true;
+            if (count.get() == 0)
+                return;
+            try
+            {
+                drained.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -72,6 +72,12 @@ class PeriodicCommitLogExecutorService implements ICommitLogExecutorService, Per
         }
     }
 
+    // BIGDATA: periodic writes never wait for the sync
+    public void addDeferred(CommitLog.LogRecordAdder adder)
+    {
+        add(adder);
+    }
+
     public <T> Future<T> submit(Callable<T> task)
     {
         FutureTask<T> ft = new FutureTask<T>(task);
@@ -28,6 +28,7 @@ import java.util.*;
 import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.*;
 import com.bigdata.dastor.db.marshal.AbstractType;
+import com.bigdata.dastor.io.ColumnStats;
 import com.bigdata.dastor.io.SSTableReader;
 import com.bigdata.dastor.utils.ReducingIterator;
 
@@ -70,6 +71,11 @@ public class NamesQueryFilter extends QueryFilter
         return new SSTableNamesIterator(sstable, key, columns);
     }
 
+    public boolean mayMatch(ColumnStats stats)
+    {
+        return stats.mayContainAny(columns);
+    }
+
     public SuperColumn filterSuperColumn(SuperColumn superColumn, int gcBefore)
     {
         for (IColumn column : superColumn.getSubColumns())
@@ -29,6 +29,7 @@ import java.util.Arrays;
 
 import com.bigdata.dastor.db.*;
 import com.bigdata.dastor.db.marshal.AbstractType;
+import com.bigdata.dastor.io.ColumnStats;
 import com.bigdata.dastor.io.SSTableReader;
 import com.bigdata.dastor.utils.ReducingIterator;
 
@@ -60,6 +61,12 @@ public abstract class QueryFilter
      */
     public abstract ColumnIterator getSSTableColumnIterator(SSTableReader sstable) throws IOException;
 
+    /**
+     * BIGDATA:
+     * @return false if an sstable with these column stats holds nothing the filter may return.
+     */
+    public abstract boolean mayMatch(ColumnStats stats);
+
     /**
      * collects columns from reducedColumns into returnCF.  Termination is determined
      * by the filter code, which should have some limit on the number of columns
@@ -83,7 +83,7 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
             }
             
             /* Read the bloom filter and index summarizing the columns */
-            BloomFilter bf = IndexHelper.defreezeBloomFilter(file);
+            BloomFilter bf = readColumnBloomFilter(file);
             List<IndexHelper.IndexInfo> indexList = IndexHelper.deserializeIndex(file);
 
             cf = ColumnFamily.serializer().deserializeFromSSTableNoColumns(ssTable.makeColumnFamily(), file);
@@ -93,7 +93,7 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
             List<byte[]> filteredColumnNames = new ArrayList<byte[]>(columnNames.size());
             for (byte[] name : columnNames)
             {
-                if (bf.isPresent(name))
+                if (bf == null || bf.isPresent(name))
                 {
                     filteredColumnNames.add(name);
                 }
@@ -155,6 +155,23 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
         return iter.next();
     }
     
+    /**
+     * BIGDATA:
+     * @return the column filter of the row, or null if the row has none or is
+     * small enough to fit a single column block: the block is then read from
+     * the buffer the row header came from, which costs less than
+     * deserializing the filter.
+     */
+    private BloomFilter readColumnBloomFilter(FileDataInput file) throws IOException
+    {
+        if (dataSize <= DatabaseDescriptor.getColumnIndexSize())
+        {
+            IndexHelper.skipBloomFilter(file);
+            return null;
+        }
+        return IndexHelper.defreezeBloomFilter(file);
+    }
+
     /*
      * !BIGDATA:
      * for new row format
@@ -172,7 +189,7 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
             ////// HEADER //////
             
             /* Read the bloom filter summarizing the columns */
-            BloomFilter bf = IndexHelper.defreezeBloomFilter(file);
+            BloomFilter bf = readColumnBloomFilter(file);
 
             // read the deletion info
             cf = ColumnFamily.serializer().deserializeFromSSTableNoColumns(ssTable.makeColumnFamily(), file);
@@ -180,7 +197,7 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
             filteredColumnNames = new ArrayList<byte[]>(columnNames.size());
             for (byte[] name : columnNames)
             {
-                if (bf.isPresent(name))
+                if (bf == null || bf.isPresent(name))
                 {
                     filteredColumnNames.add(name);
                 }
@@ -215,7 +232,7 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
         else
         {
             /* Read the bloom filter summarizing the columns */
-            BloomFilter bf = IndexHelper.defreezeBloomFilter(file);
+            BloomFilter bf = readColumnBloomFilter(file);
 
             // read index into memory
             indexList = IndexHelper.deserializeIndex(file);
@@ -226,7 +243,7 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
             filteredColumnNames = new ArrayList<byte[]>(columnNames.size());
             for (byte[] name : columnNames)
             {
-                if (bf.isPresent(name))
+                if (bf == null || bf.isPresent(name))
                 {
                     filteredColumnNames.add(name);
                 }
@@ -272,12 +289,9 @@ public class SSTableNamesIterator extends SimpleAbstractColumnIterator
             
             for (IndexHelper.IndexInfo indexInfo : ranges)
             {
-                // seek to current block 
-                // curIndexInfo.offset is the relative offset from the first block
-                file.seek(firstBlockPos + indexInfo.offset);
-                
                 // read all columns of current block into memory!
-                DataInputStream blockIn = ColumnFamily.serializer().getBlockInputStream(file, indexInfo.sizeOnDisk, compressContext);
+                // curIndexInfo.offset is the relative offset from the first block
+                DataInputStream blockIn = ColumnFamily.serializer().getBlockInputStream(ssTable, file, firstBlockPos, indexInfo, compressContext);
                 try
                 {
                     int size = 0;
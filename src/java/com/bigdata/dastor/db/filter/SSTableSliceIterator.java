@@ -403,12 +403,9 @@ class SSTableSliceIterator extends AbstractIterator<IColumn> implements ColumnIt
 
             boolean outOfBounds = false;
             
-            // seek to current block 
-            // curIndexInfo.offset is the relative offset from the first block
-            file.seek(firstBlockPos + curColPosition.offset);
-
             // read all columns of current block into memory!
-            DataInputStream blockIn = ColumnFamily.serializer().getBlockInputStream(file, curColPosition.sizeOnDisk, compressContext);
+            // curIndexInfo.offset is the relative offset from the first block
+            DataInputStream blockIn = ColumnFamily.serializer().getBlockInputStream(ssTable, file, firstBlockPos, curColPosition, compressContext);
             try
             {
                 int size = 0;
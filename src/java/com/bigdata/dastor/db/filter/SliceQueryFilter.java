@@ -35,6 +35,7 @@ import org.apache.commons.collections.IteratorUtils;
 
 import com.bigdata.dastor.db.*;
 import com.bigdata.dastor.db.marshal.AbstractType;
+import com.bigdata.dastor.io.ColumnStats;
 import com.bigdata.dastor.io.SSTableReader;
 
 public class SliceQueryFilter extends QueryFilter
@@ -64,6 +65,11 @@ public class SliceQueryFilter extends QueryFilter
         return new SSTableSliceIterator(sstable, key, start, finish, reversed);
     }
 
+    public boolean mayMatch(ColumnStats stats)
+    {
+        return reversed ? stats.mayContain(finish, start) : stats.mayContain(start, finish);
+    }
+
     public SuperColumn filterSuperColumn(SuperColumn superColumn, int gcBefore)
     {
         // we clone shallow, then add, under the theory that generally we're interested in a relatively small number of subcolumns.
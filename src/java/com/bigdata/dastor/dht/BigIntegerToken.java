@@ -19,6 +19,7 @@
 package com.bigdata.dastor.dht;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 public class BigIntegerToken extends Token<BigInteger>
 {
@@ -37,4 +38,24 @@ public class BigIntegerToken extends Token<BigInteger>
     {
         return token.compareTo(o.token);
     }
+
+    // BIGDATA: fits any token of RandomPartitioner, up to 2**127, with its sign
+    private static final int COMPARABLE_LENGTH = 17;
+
+    /**
+     * BIGDATA: fixed width two's complement with the sign bit flipped.
+     */
+    @Override
+    public byte[] toComparableBytes()
+    {
+        byte[] bytes = token.toByteArray();
+        assert bytes.length <= COMPARABLE_LENGTH : token;
+        byte[] comparable = new byte[COMPARABLE_LENGTH];
+        int pad = COMPARABLE_LENGTH - bytes.length;
+        if (token.signum() < 0)
+            Arrays.fill(comparable, 0, pad, (byte) 0xFF);
+        System.arraycopy(bytes, 0, comparable, pad, bytes.length);
+        comparable[0] ^= 0x80;
+        return comparable;
+    }
 }
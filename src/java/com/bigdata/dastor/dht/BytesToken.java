@@ -41,6 +41,13 @@ public class BytesToken extends Token<byte[]>
         return FBUtilities.compareByteArrays(token, o.token);
     }
 
+    // BIGDATA: already compared as unsigned bytes
+    @Override
+    public byte[] toComparableBytes()
+    {
+        return token;
+    }
+
     @Override
     public int hashCode()
     {
@@ -32,4 +32,20 @@ public class StringToken extends Token<String>
     {
         return token.compareTo(o.token);
     }
+
+    /**
+     * BIGDATA: the chars big-endian, compareTo compares them as unsigned 16-bit values.
+     */
+    @Override
+    public byte[] toComparableBytes()
+    {
+        byte[] comparable = new byte[token.length() * 2];
+        for (int i = 0; i < token.length(); i++)
+        {
+            char c = token.charAt(i);
+            comparable[2 * i] = (byte) (c >>> 8);
+            comparable[2 * i + 1] = (byte) c;
+        }
+        return comparable;
+    }
 }
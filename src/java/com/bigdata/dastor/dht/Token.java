@@ -48,6 +48,12 @@ public abstract class Token<T> implements Comparable<Token<T>>, Serializable
      */
     abstract public int compareTo(Token<T> o);
 
+    /**
+     * BIGDATA: an encoding of the token whose unsigned lexicographic byte order
+     * is the order of compareTo, so packed tokens compare without decoding.
+     */
+    abstract public byte[] toComparableBytes();
+
     public String toString()
     {
         return token.toString();
@@ -27,6 +27,7 @@ public class BloomFilterTracker
 {
     private AtomicLong falsePositiveCount = new AtomicLong(0);
     private AtomicLong truePositiveCount = new AtomicLong(0);
+    private AtomicLong trueNegativeCount = new AtomicLong(0); // BIGDATA
     private long lastFalsePositiveCount = 0L;
     private long lastTruePositiveCount = 0L;
 
@@ -40,6 +41,20 @@ public class BloomFilterTracker
         truePositiveCount.incrementAndGet();
     }
 
+    /**
+     * BIGDATA: the filter rejected the key; with the false positives, the
+     * lookups of absent keys, which give the false positive rate.
+     */
+    public void addTrueNegative()
+    {
+        trueNegativeCount.incrementAndGet();
+    }
+
+    public long getTrueNegativeCount()
+    {
+        return trueNegativeCount.get();
+    }
+
     public long getFalsePositiveCount()
     {
         return falsePositiveCount.get();
@@ -0,0 +1,287 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+import com.bigdata.dastor.db.ColumnFamily;
+import com.bigdata.dastor.db.IColumn;
+import com.bigdata.dastor.db.marshal.AbstractType;
+
+/**
+ * BIGDATA:
+ * Bounds of the rows of an sstable, or of one row: the smallest and largest
+ * top-level column names, the smallest and largest timestamps of a column,
+ * subcolumn or tombstone, and whether a row tombstone is present.  Reads skip
+ * the sstables a query cannot find anything in (see
+ * ColumnFamilyStore.getTopLevelColumns).  Whether any column is live, and the
+ * latest local deletion time of a tombstone, tell when an sstable holds
+ * nothing but purgeable tombstones (see TimeWindowCompactionStrategy).
+ *
+ * Rows appended without stats (e.g. binary memtables) make the stats unknown,
+ * and unknown stats never exclude anything.
+ */
+public class ColumnStats
+{
+    private static final byte VERSION = 2;
+
+    private final AbstractType comparator;
+    private boolean known = true;
+    private byte[] minColumnName; // null if no column
+    private byte[] maxColumnName;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private boolean hasRowTombstone = false;
+    private boolean hasLiveColumn = false;
+    private int maxLocalDeletionTime = Integer.MIN_VALUE;
+
+    public ColumnStats(AbstractType comparator)
+    {
+        this.comparator = comparator;
+    }
+
+    public static ColumnStats unknown(AbstractType comparator)
+    {
+        ColumnStats stats = new ColumnStats(comparator);
+        stats.known = false;
+        return stats;
+    }
+
+    /**
+     * @return the stats of one row.
+     */
+    public static ColumnStats of(ColumnFamily cf)
+    {
+        ColumnStats stats = new ColumnStats(cf.getComparator());
+        if (cf.isMarkedForDelete())
+        {
+            stats.hasRowTombstone = true;
+            stats.addTombstone(cf.getMarkedForDeleteAt(), cf.getLocalDeletionTime());
+        }
+        Collection<IColumn> columns = cf.getSortedColumns();
+        if (columns.isEmpty())
+            return stats;
+        boolean first = true;
+        boolean isSuper = cf.isSuper();
+        for (IColumn column : columns)
+        {
+            if (first)
+                stats.minColumnName = column.name();
+            first = false;
+            stats.maxColumnName = column.name();
+            if (!isSuper)
+            {
+                stats.addColumn(column);
+                continue;
+            }
+            // a super column: its own tombstone, and its subcolumns
+            if (column.isMarkedForDelete())
+                stats.addTombstone(column.getMarkedForDeleteAt(), column.getLocalDeletionTime());
+            for (IColumn subColumn : column.getSubColumns())
+                stats.addColumn(subColumn);
+        }
+        return stats;
+    }
+
+    private void addColumn(IColumn column)
+    {
+        if (column.isMarkedForDelete())
+        {
+            addTombstone(column.timestamp(), column.getLocalDeletionTime());
+            return;
+        }
+        hasLiveColumn = true;
+        minTimestamp = Math.min(minTimestamp, column.timestamp());
+        maxTimestamp = Math.max(maxTimestamp, column.timestamp());
+    }
+
+    private void addTombstone(long timestamp, int localDeletionTime)
+    {
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        maxLocalDeletionTime = Math.max(maxLocalDeletionTime, localDeletionTime);
+    }
+
+    /**
+     * widen these bounds to include other's.
+     */
+    public void add(ColumnStats other)
+    {
+        if (other == null || !other.known)
+        {
+            known = false;
+            return;
+        }
+        hasRowTombstone |= other.hasRowTombstone;
+        hasLiveColumn |= other.hasLiveColumn;
+        minTimestamp = Math.min(minTimestamp, other.minTimestamp);
+        maxTimestamp = Math.max(maxTimestamp, other.maxTimestamp);
+        maxLocalDeletionTime = Math.max(maxLocalDeletionTime, other.maxLocalDeletionTime);
+        if (other.minColumnName == null)
+            return;
+        if (minColumnName == null || comparator.compare(other.minColumnName, minColumnName) < 0)
+            minColumnName = other.minColumnName;
+        if (maxColumnName == null || comparator.compare(other.maxColumnName, maxColumnName) > 0)
+            maxColumnName = other.maxColumnName;
+    }
+
+    public boolean isKnown()
+    {
+        return known;
+    }
+
+    /**
+     * @return the smallest timestamp, or Long.MIN_VALUE if unknown.
+     */
+    public long getMinTimestamp()
+    {
+        return known ? minTimestamp : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the largest timestamp, or Long.MAX_VALUE if unknown.
+     */
+    public long getMaxTimestamp()
+    {
+        return known ? maxTimestamp : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if there is nothing but tombstones, all deleted at or before gcBefore,
+     * which a major compaction would purge.
+     */
+    public boolean isPurgeable(int gcBefore)
+    {
+        return known && !hasLiveColumn && maxLocalDeletionTime <= gcBefore;
+    }
+
+    /**
+     * @return true if a tombstone, of a row, column or subcolumn, may be present.
+     */
+    public boolean mayHaveTombstone()
+    {
+        return !known || hasRowTombstone || maxLocalDeletionTime != Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return true if a column named in [start, finish] may be present, an empty name
+     * being unbounded; or if a row tombstone, which shadows any column, may be present.
+     */
+    public boolean mayContain(byte[] start, byte[] finish)
+    {
+        if (!known || hasRowTombstone)
+            return true;
+        if (minColumnName == null)
+            return false;
+        if (finish.length > 0 && comparator.compare(finish, minColumnName) < 0)
+            return false;
+        if (start.length > 0 && comparator.compare(start, maxColumnName) > 0)
+            return false;
+        return true;
+    }
+
+    /**
+     * @return true if one of the names may be present, or a row tombstone.
+     */
+    public boolean mayContainAny(Collection<byte[]> names)
+    {
+        if (!known || hasRowTombstone)
+            return true;
+        if (minColumnName == null)
+            return false;
+        for (byte[] name : names)
+        {
+            if (comparator.compare(name, minColumnName) >= 0 && comparator.compare(name, maxColumnName) <= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * [byte version][boolean known][long max timestamp][boolean row tombstone]
+     * [short length][min name][short length][max name], the names being empty if there is no column,
+     * then since version 2 [long min timestamp][boolean live column][int max local deletion time].
+     */
+    public void serialize(DataOutputStream dos) throws IOException
+    {
+        dos.writeByte(VERSION);
+        dos.writeBoolean(known);
+        dos.writeLong(maxTimestamp);
+        dos.writeBoolean(hasRowTombstone);
+        writeName(minColumnName, dos);
+        writeName(maxColumnName, dos);
+        dos.writeLong(minTimestamp);
+        dos.writeBoolean(hasLiveColumn);
+        dos.writeInt(maxLocalDeletionTime);
+    }
+
+    private static void writeName(byte[] name, DataOutputStream dos) throws IOException
+    {
+        if (name == null)
+        {
+            dos.writeShort(0);
+            return;
+        }
+        dos.writeShort(name.length);
+        dos.write(name);
+    }
+
+    public static ColumnStats deserialize(DataInputStream dis, AbstractType comparator) throws IOException
+    {
+        byte version = dis.readByte();
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unknown column stats version " + version);
+        ColumnStats stats = new ColumnStats(comparator);
+        stats.known = dis.readBoolean();
+        stats.maxTimestamp = dis.readLong();
+        stats.hasRowTombstone = dis.readBoolean();
+        byte[] min = readName(dis);
+        byte[] max = readName(dis);
+        // column names are never empty
+        if (min.length > 0)
+        {
+            stats.minColumnName = min;
+            stats.maxColumnName = max;
+        }
+        if (version >= 2)
+        {
+            stats.minTimestamp = dis.readLong();
+            stats.hasLiveColumn = dis.readBoolean();
+            stats.maxLocalDeletionTime = dis.readInt();
+        }
+        else
+        {
+            // nothing to tell these apart with: never purgeable, and older than anything
+            stats.minTimestamp = Long.MIN_VALUE;
+            stats.hasLiveColumn = true;
+            stats.maxLocalDeletionTime = Integer.MAX_VALUE;
+        }
+        return stats;
+    }
+
+    private static byte[] readName(DataInputStream dis) throws IOException
+    {
+        byte[] name = new byte[dis.readUnsignedShort()];
+        dis.readFully(name);
+        return name;
+    }
+}
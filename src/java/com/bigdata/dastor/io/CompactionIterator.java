@@ -24,6 +24,9 @@ package com.bigdata.dastor.io;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.IOError;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
@@ -37,6 +40,9 @@ import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.ColumnFamily;
 import com.bigdata.dastor.db.ColumnFamilyStore;
 import com.bigdata.dastor.db.DecoratedKey;
+import com.bigdata.dastor.db.IColumn;
+import com.bigdata.dastor.db.marshal.AbstractType;
+import com.bigdata.dastor.io.compress.Compression;
 import com.bigdata.dastor.io.util.DataOutputBuffer;
 import com.bigdata.dastor.utils.FBUtilities;
 import com.bigdata.dastor.utils.ReducingIterator;
@@ -58,7 +64,16 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
 
     public CompactionIterator(ColumnFamilyStore cfs, Iterable<SSTableReader> sstables, int gcBefore, boolean major) throws IOException
     {
-        this(cfs, getCollatingIterator(sstables), gcBefore, major);
+        this(cfs, getCollatingIterator(sstables, null, null), gcBefore, major);
+    }
+
+    /**
+     * BIGDATA: compact the rows of keys in [left, right) only, null being unbounded; the
+     * compactions of disjoint ranges of the same sstables may run in parallel.
+     */
+    public CompactionIterator(ColumnFamilyStore cfs, Iterable<SSTableReader> sstables, DecoratedKey left, DecoratedKey right, int gcBefore, boolean major) throws IOException
+    {
+        this(cfs, getCollatingIterator(sstables, left, right), gcBefore, major);
     }
 
     @SuppressWarnings("unchecked")
@@ -69,7 +84,7 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
         totalBytes = bytesRead = 0;
         for (SSTableScanner scanner : getScanners())
         {
-            totalBytes += scanner.getFileLength();
+            totalBytes += scanner.getBytesTotal();
         }
         this.cfs = cfs;
         this.gcBefore = gcBefore;
@@ -77,12 +92,17 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
     }
 
     @SuppressWarnings("unchecked")
-    protected static CollatingIterator getCollatingIterator(Iterable<SSTableReader> sstables) throws IOException
+    protected static CollatingIterator getCollatingIterator(Iterable<SSTableReader> sstables, DecoratedKey left, DecoratedKey right) throws IOException
     {
         CollatingIterator iter = FBUtilities.<IteratingRow>getCollatingIterator();
         for (SSTableReader sstable : sstables)
         {
-            iter.addIterator(sstable.getScanner(FILE_BUFFER_SIZE));
+            SSTableScanner scanner = sstable.getCompactionScanner(FILE_BUFFER_SIZE);
+            if (left != null)
+                scanner.seekTo(left);
+            if (right != null)
+                scanner.stopAt(right);
+            iter.addIterator(scanner);
         }
         return iter;
     }
@@ -105,6 +125,7 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
         DataOutputBuffer headerBuffer = new DataOutputBuffer(); // BIGDATA
         DataOutputBuffer buffer = new DataOutputBuffer();
         DecoratedKey key = rows.get(0).getKey();
+        ColumnStats stats;
 
         Set<SSTable> sstables = new HashSet<SSTable>();
         for (IteratingRow row : rows)
@@ -113,7 +134,9 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
         
         try
         {
-            if (rows.size() > 1 || shouldPurge)
+            // BIGDATA: rows whose column blocks do not interleave are merged block by block
+            stats = rows.size() > 1 ? mergeColumnBlocks(shouldPurge, headerBuffer, buffer) : null;
+            if (stats == null && (rows.size() > 1 || shouldPurge))
             {
                 ColumnFamily cf = null;
                 for (IteratingRow row : rows)
@@ -140,14 +163,18 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
                 ColumnFamily cfPurged = shouldPurge ? ColumnFamilyStore.removeDeleted(cf, gcBefore) : cf;
                 if (cfPurged == null)
                     return null;
-                ColumnFamily.serializer().serializeWithIndexes(cfPurged, headerBuffer, buffer, cfs.getCFMetaData().compressAlgo); // BIGDATA
+                stats = ColumnStats.of(cfPurged);
+                ColumnFamily.serializer().serializeWithIndexes(cfPurged, headerBuffer, buffer, cfs.getCFMetaData().compressAlgo,
+                                                         cfs.getCFMetaData().columnBloomFilterThreshold); // BIGDATA
             }
-            else
+            else if (stats == null)
             {
                 assert rows.size() == 1;
                 try
                 {
                     rows.get(0).echoData(buffer);
+                    // the row is not deserialized: bound it by its sstable
+                    stats = rows.get(0).sstable.getColumnStats();
                 }
                 catch (IOException e)
                 {
@@ -163,15 +190,111 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
                 bytesRead = 0;
                 for (SSTableScanner scanner : getScanners())
                 {
-                    bytesRead += scanner.getFilePointer();
+                    bytesRead += scanner.getBytesScanned();
                 }
             }
         }
-        return new CompactedRow(key, headerBuffer, buffer);
+        return new CompactedRow(key, headerBuffer, buffer, stats);
+    }
+
+    /**
+     * BIGDATA: merge the rows by copying their column blocks as they are on disk, without
+     * deserializing or compressing them again, if all are of the new row format and of the
+     * bucket's compression, none is deleted, purging would remove nothing from them, and
+     * the columns of one row all sort before those of the next.
+     * The stats of the merged row are those of the columns when they are read anyway, for the
+     * bloom filter, or else bounded by the stats of the sstables, which must all be known.
+     * @return the stats of the merged row, or null if the rows are to be merged column by column.
+     */
+    private ColumnStats mergeColumnBlocks(boolean shouldPurge, DataOutputBuffer headerBuffer, DataOutputBuffer buffer)
+    {
+        Compression.Algorithm compressAlgo = cfs.getCFMetaData().compressAlgo;
+        if (compressAlgo == null)
+            return null;
+        final AbstractType comparator = cfs.getComparator();
+        List<IteratingRow> blockRows = new ArrayList<IteratingRow>();
+        int columnCount = 0;
+        boolean sstableStatsKnown = true;
+        for (IteratingRow row : rows)
+        {
+            if (!row.hasColumnBlocks()
+                || row.getCompressAlgoId() != compressAlgo.getId()
+                || row.getColumnFamilyNoColumns().isMarkedForDelete())
+                return null;
+            // the sstable has no tombstone at all, so neither has the row
+            ColumnStats sstableStats = row.sstable.getColumnStats();
+            if (shouldPurge && (sstableStats == null || sstableStats.mayHaveTombstone()))
+                return null;
+            if (!row.getColumnIndex().isEmpty())
+            {
+                blockRows.add(row);
+                sstableStatsKnown &= sstableStats != null && sstableStats.isKnown();
+            }
+            columnCount += row.getColumnCount();
+        }
+        if (blockRows.isEmpty())
+            return null;
+
+        Collections.sort(blockRows, new Comparator<IteratingRow>()
+        {
+            public int compare(IteratingRow r1, IteratingRow r2)
+            {
+                return comparator.compare(r1.getColumnIndex().get(0).firstName, r2.getColumnIndex().get(0).firstName);
+            }
+        });
+        for (int i = 1; i < blockRows.size(); i++)
+        {
+            List<IndexHelper.IndexInfo> previous = blockRows.get(i - 1).getColumnIndex();
+            byte[] previousLast = previous.get(previous.size() - 1).lastName;
+            if (comparator.compare(previousLast, blockRows.get(i).getColumnIndex().get(0).firstName) >= 0)
+                return null;
+        }
+
+        int threshold = cfs.getCFMetaData().columnBloomFilterThreshold;
+        boolean readColumns = threshold >= 0 && (cfs.isSuper() || columnCount > threshold);
+        // unknown stats would make those of the whole output sstable unknown
+        if (!readColumns && !sstableStatsKnown)
+            return null;
+
+        ColumnStats stats = new ColumnStats(comparator);
+        try
+        {
+            // the bloom filter takes every column and subcolumn name: the blocks are read for
+            // them, though still not compressed again
+            Collection<IColumn> columns = Collections.emptyList();
+            if (readColumns)
+            {
+                columns = new ArrayList<IColumn>(columnCount);
+                for (IteratingRow row : blockRows)
+                {
+                    ColumnFamily cf = row.getColumnFamily();
+                    stats.add(ColumnStats.of(cf));
+                    columns.addAll(cf.getSortedColumns());
+                }
+            }
+            else
+            {
+                for (IteratingRow row : blockRows)
+                    stats.add(row.sstable.getColumnStats());
+            }
+            ColumnFamily.serializer().serializeBlocksWithIndexes(blockRows, columns, compressAlgo, threshold, headerBuffer, buffer);
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+        return stats;
     }
 
     public void close() throws IOException
     {
+        // BIGDATA: the final count, for the compaction throughput
+        long bytes = 0;
+        for (SSTableScanner scanner : getScanners())
+        {
+            bytes += scanner.getBytesScanned();
+        }
+        bytesRead = bytes;
         for (SSTableScanner scanner : getScanners())
         {
             scanner.close();
@@ -198,12 +321,14 @@ public class CompactionIterator extends ReducingIterator<IteratingRow, Compactio
         public final DecoratedKey key;
         public final DataOutputBuffer headerBuffer; // BIGDATA: add headerBuffer
         public final DataOutputBuffer buffer;
+        public final ColumnStats stats; // BIGDATA
 
-        public CompactedRow(DecoratedKey key, DataOutputBuffer headerBuffer, DataOutputBuffer buffer) // BIGDATA: add headerBuffer
+        public CompactedRow(DecoratedKey key, DataOutputBuffer headerBuffer, DataOutputBuffer buffer, ColumnStats stats) // BIGDATA: add headerBuffer
         {
             this.key = key;
             this.headerBuffer = headerBuffer; // BIGDATA: add headerBuffer
             this.buffer = buffer;
+            this.stats = stats;
         }
     }
 }
@@ -86,12 +86,14 @@ public class IndexHelper
     /**
      * Defreeze the bloom filter.
      *
-     * @return bloom filter summarizing the column information
+     * @return bloom filter summarizing the column information, BIGDATA: or null if the row has none
      * @throws java.io.IOException
      */
     public static BloomFilter defreezeBloomFilter(FileDataInput file) throws IOException
     {
         int size = file.readInt();
+        if (size == 0)
+            return null;
         byte[] bytes = new byte[size];
         file.readFully(bytes);
         
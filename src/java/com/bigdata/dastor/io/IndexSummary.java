@@ -21,115 +21,220 @@ package com.bigdata.dastor.io;
  */
 
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.DecoratedKey;
-
+import com.bigdata.dastor.dht.IPartitioner;
+import com.bigdata.dastor.utils.FBUtilities;
+
+/**
+ * BIGDATA:
+ * The sampled keys of an sstable index, packed in a few arrays instead of an
+ * object graph per key.  Sample i is blob[offsets[i], offsets[i + 1]):
+ *   [short token length][comparable token bytes][key in disk format, UTF-8]
+ * and indexPositions[i] is its position in the index file.  Lookups compare the
+ * comparable bytes of the token (Token.toComparableBytes) with the packed ones
+ * in place; keys are only decoded to iterate the samples.
+ *
+ * A summary samples one key every interval keys; the index is read through
+ * MappedSegments, so entries spanning an mmap segment boundary need no extra
+ * samples.  resample() derives a sparser summary without reading the index again.
+ */
 public class IndexSummary
 {
-    private ArrayList<KeyPosition> indexPositions = new ArrayList<KeyPosition>();
-    private Map<KeyPosition, SSTable.PositionSize> spannedIndexDataPositions;
-    private Map<Long, KeyPosition> spannedIndexPositions;
+    private final IPartitioner partitioner;
+    private final int interval;
+
+    private byte[] blob = new byte[4096];
+    private int blobLength = 0;
+    private int[] offsets = new int[65];
+    private long[] indexPositions = new long[64];
+    private int count = 0;
+
     private int keysWritten = 0;
-    private long lastIndexPosition;
 
-    public void maybeAddEntry(DecoratedKey decoratedKey, long dataPosition, long rowSize, long indexPosition, long nextIndexPosition)
+    public IndexSummary(IPartitioner partitioner)
     {
-        boolean spannedIndexEntry = DatabaseDescriptor.getIndexAccessMode() == DatabaseDescriptor.DiskAccessMode.mmap
-                                    && SSTableReader.bufferIndex(indexPosition) != SSTableReader.bufferIndex(nextIndexPosition);
-        if ((keysWritten++ % DatabaseDescriptor.getIndexInterval() == 0) || spannedIndexEntry)
-        {
-            KeyPosition info = new KeyPosition(decoratedKey, indexPosition);
-            indexPositions.add(info);
+        this(partitioner, DatabaseDescriptor.getIndexInterval());
+    }
 
-            if (spannedIndexEntry)
-            {
-                if (spannedIndexDataPositions == null)
-                {
-                    spannedIndexDataPositions = new HashMap<KeyPosition, SSTable.PositionSize>();
-                    spannedIndexPositions = new HashMap<Long, KeyPosition>();
-                }
-                spannedIndexDataPositions.put(info, new SSTable.PositionSize(dataPosition, rowSize));
-                spannedIndexPositions.put(info.indexPosition, info);
-            }
-        }
-        lastIndexPosition = indexPosition;
+    private IndexSummary(IPartitioner partitioner, int interval)
+    {
+        this.partitioner = partitioner;
+        this.interval = interval;
     }
 
-    public Map<KeyPosition, SSTable.PositionSize> getSpannedIndexDataPositions()
+    public void maybeAddEntry(DecoratedKey decoratedKey, long indexPosition)
     {
-        return spannedIndexDataPositions;
+        if (keysWritten++ % interval == 0)
+            addSample(decoratedKey, indexPosition);
     }
 
-    public List<KeyPosition> getIndexPositions()
+    private void addSample(DecoratedKey decoratedKey, long indexPosition)
     {
-        return indexPositions;
+        byte[] token = decoratedKey.token.toComparableBytes();
+        byte[] key = encode(partitioner.convertToDiskFormat(decoratedKey));
+        assert token.length <= Short.MAX_VALUE;
+        append(token.length, token, key);
+        indexPositions[count - 1] = indexPosition;
+    }
+
+    private void append(int tokenLength, byte[] token, byte[] key)
+    {
+        int size = 2 + tokenLength + key.length;
+        if (blobLength + size > blob.length)
+            blob = Arrays.copyOf(blob, Math.max(blob.length * 2, blobLength + size));
+        if (count + 1 == indexPositions.length)
+        {
+            indexPositions = Arrays.copyOf(indexPositions, indexPositions.length * 2);
+            offsets = Arrays.copyOf(offsets, indexPositions.length + 1);
+        }
+        blob[blobLength] = (byte) (tokenLength >>> 8);
+        blob[blobLength + 1] = (byte) tokenLength;
+        System.arraycopy(token, 0, blob, blobLength + 2, tokenLength);
+        System.arraycopy(key, 0, blob, blobLength + 2 + tokenLength, key.length);
+        blobLength += size;
+        offsets[count] = blobLength - size;
+        offsets[++count] = blobLength;
     }
 
     public void complete()
     {
-        indexPositions.trimToSize();
+        blob = Arrays.copyOf(blob, blobLength);
+        offsets = Arrays.copyOf(offsets, count + 1);
+        indexPositions = Arrays.copyOf(indexPositions, count);
     }
 
-    public SSTable.PositionSize getSpannedDataPosition(KeyPosition sampledPosition)
+    public int size()
     {
-        if (spannedIndexDataPositions == null)
-            return null;
-        return spannedIndexDataPositions.get(sampledPosition);
+        return count;
     }
 
-    public KeyPosition getSpannedIndexPosition(long nextIndexPosition)
+    public int getInterval()
     {
-        return spannedIndexPositions == null ? null : spannedIndexPositions.get(nextIndexPosition);
+        return interval;
     }
 
-    public SSTable.PositionSize getSpannedDataPosition(long nextIndexPosition)
+    public long getIndexPosition(int i)
     {
-        if (spannedIndexDataPositions == null)
-            return null;
+        return indexPositions[i];
+    }
 
-        KeyPosition info = spannedIndexPositions.get(nextIndexPosition);
-        if (info == null)
-            return null;
+    /**
+     * @return the index of the last sample not greater than the token, or -1 if every sample is greater.
+     */
+    public int binarySearch(byte[] token)
+    {
+        int low = 0, high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = compareToken(mid, token);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return low - 1;
+    }
 
-        return spannedIndexDataPositions.get(info);
+    private int compareToken(int i, byte[] token)
+    {
+        int start = offsets[i];
+        int length = ((blob[start] & 0xFF) << 8) | (blob[start + 1] & 0xFF);
+        return FBUtilities.compareByteArrays(blob, start + 2, length, token, 0, token.length);
     }
 
-    public long getLastIndexPosition()
+    public DecoratedKey getKey(int i)
     {
-        return lastIndexPosition;
+        int start = offsets[i];
+        int tokenLength = ((blob[start] & 0xFF) << 8) | (blob[start + 1] & 0xFF);
+        start += 2 + tokenLength;
+        return partitioner.convertFromDiskFormat(decode(blob, start, offsets[i + 1] - start));
     }
 
+    public Iterable<DecoratedKey> getKeys()
+    {
+        return new Iterable<DecoratedKey>()
+        {
+            public Iterator<DecoratedKey> iterator()
+            {
+                return new Iterator<DecoratedKey>()
+                {
+                    private int i = 0;
+
+                    public boolean hasNext()
+                    {
+                        return i < count;
+                    }
+
+                    public DecoratedKey next()
+                    {
+                        if (i >= count)
+                            throw new NoSuchElementException();
+                        return getKey(i++);
+                    }
+
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
 
     /**
-     * This is a simple container for the index Key and its corresponding position
-     * in the index file. Binary search is performed on a list of these objects
-     * to find where to start looking for the index entry containing the data position
-     * (which will be turned into a PositionSize object)
+     * @return a summary of the same index, sampled every newInterval keys, or null if
+     * newInterval is not a multiple of the interval of this one, so the index must be read.
      */
-    public static class KeyPosition implements Comparable<KeyPosition>
+    public IndexSummary resample(int newInterval)
     {
-        public final DecoratedKey key;
-        public final long indexPosition;
-
-        public KeyPosition(DecoratedKey key, long indexPosition)
+        if (newInterval % interval != 0)
+            return null;
+        int step = newInterval / interval;
+        IndexSummary summary = new IndexSummary(partitioner, newInterval);
+        for (int i = 0; i < count; i += step)
         {
-            this.key = key;
-            this.indexPosition = indexPosition;
+            int start = offsets[i];
+            int tokenLength = ((blob[start] & 0xFF) << 8) | (blob[start + 1] & 0xFF);
+            summary.append(tokenLength,
+                           Arrays.copyOfRange(blob, start + 2, start + 2 + tokenLength),
+                           Arrays.copyOfRange(blob, start + 2 + tokenLength, offsets[i + 1]));
+            summary.indexPositions[summary.count - 1] = indexPositions[i];
         }
+        summary.keysWritten = keysWritten;
+        summary.complete();
+        return summary;
+    }
 
-        public int compareTo(KeyPosition kp)
+    private static byte[] encode(String key)
+    {
+        try
+        {
+            return key.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
         {
-            return key.compareTo(kp.key);
+            throw new AssertionError(e);
         }
+    }
 
-        public String toString()
+    private static String decode(byte[] bytes, int offset, int length)
+    {
+        try
+        {
+            return new String(bytes, offset, length, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
         {
-            return key + ":" + indexPosition;
+            throw new AssertionError(e);
         }
     }
 }
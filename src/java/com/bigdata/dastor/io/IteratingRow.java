@@ -169,6 +169,62 @@ public class IteratingRow extends AbstractIterator<IColumn> implements Comparabl
         }
     }
 
+    /**
+     * BIGDATA: true if the row is of the new format, in column blocks, compressed or not.
+     */
+    public boolean hasColumnBlocks()
+    {
+        return bigdataBlockReader != null;
+    }
+
+    /**
+     * BIGDATA: the id of the compression algorithm of the blocks of a new format row.
+     */
+    public int getCompressAlgoId()
+    {
+        assert bigdataBlockReader != null;
+        return ColumnFamily.serializer().getNewRowFormatCompressAlgo(rowFormat);
+    }
+
+    /**
+     * BIGDATA: the deletion meta of a new format row, without its columns.
+     */
+    public ColumnFamily getColumnFamilyNoColumns()
+    {
+        assert bigdataBlockReader != null;
+        return bigdataBlockReader.cfNoColumns;
+    }
+
+    /**
+     * BIGDATA: the count of top-level columns of a new format row.
+     */
+    public int getColumnCount()
+    {
+        assert bigdataBlockReader != null;
+        return bigdataBlockReader.columnCount;
+    }
+
+    /**
+     * BIGDATA: the column index of a new format row, one entry per block.
+     */
+    public List<IndexHelper.IndexInfo> getColumnIndex()
+    {
+        assert bigdataBlockReader != null;
+        return bigdataBlockReader.indexList;
+    }
+
+    /**
+     * BIGDATA: copy a block of a new format row as it is on disk, still compressed.
+     */
+    public void echoBlock(IndexHelper.IndexInfo indexInfo, DataOutput out) throws IOException
+    {
+        assert bigdataBlockReader != null;
+        byte[] block = new byte[indexInfo.sizeOnDisk];
+        file.seek(bigdataBlockReader.firstBlockPos + indexInfo.offset);
+        file.readFully(block);
+        out.write(block);
+    }
+
     public int compareTo(IteratingRow o)
     {
         return key.compareTo(o.key);
@@ -0,0 +1,353 @@
+package com.bigdata.dastor.io;
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.bigdata.dastor.db.DecoratedKey;
+import com.bigdata.dastor.io.util.DataOutputBuffer;
+import com.bigdata.dastor.io.util.MappedSegments;
+import com.bigdata.dastor.utils.FBUtilities;
+
+/**
+ * BIGDATA:
+ * A two-level index of an sstable: the -Pages.db file holds the index entries
+ * in pages of a fixed size, and a small directory of the first token of each
+ * page is kept in memory.  A point lookup binary-searches the directory, reads
+ * one page and binary-searches the entries of the page, without decoding them;
+ * unlike the IndexSummary and -Index.db, its cost does not depend on IndexInterval.
+ *
+ * Each page is:
+ *   [int count][long end position][int entry offsets[count]]([short token length][comparable token][long data position]){count}
+ * zero-padded to the page size; the end position is the one of the row after the
+ * last one of the page, so the size of every row is known from its page.  A page
+ * holds at least one entry, so a page of a huge key is a multiple of the page size.
+ * The directory follows the pages:
+ *   [int page count]([short token length][comparable token][long page offset]){page count}
+ *   [long directory offset][int page size][int magic]
+ *
+ * Tokens are encoded with Token.toComparableBytes.
+ */
+public class PagedIndex
+{
+    private static final int MAGIC = 0x44535049;
+    private static final int TRAILER_SIZE = 8 + 4 + 4;
+    private static final int PAGE_HEADER_SIZE = 4 + 8;
+
+    private final String filename;
+    // the directory, packed as in IndexSummary
+    private final byte[] tokens;
+    private final int[] tokenOffsets;
+    private final long[] pageOffsets;
+    private final long directoryOffset;
+    // null in standard index access mode
+    private final MappedSegments segments;
+
+    private PagedIndex(String filename, byte[] tokens, int[] tokenOffsets, long[] pageOffsets, long directoryOffset, MappedSegments segments)
+    {
+        this.filename = filename;
+        this.tokens = tokens;
+        this.tokenOffsets = tokenOffsets;
+        this.pageOffsets = pageOffsets;
+        this.directoryOffset = directoryOffset;
+        this.segments = segments;
+    }
+
+    /**
+     * @param mmap true to map the pages in memory, else they are read from the file.
+     */
+    public static PagedIndex open(String filename, boolean mmap) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            long length = file.length();
+            if (length < TRAILER_SIZE)
+                throw new IOException("Truncated paged index " + filename);
+            file.seek(length - TRAILER_SIZE);
+            long directoryOffset = file.readLong();
+            file.readInt(); // page size, only informative
+            if (file.readInt() != MAGIC)
+                throw new IOException("Bad magic in paged index " + filename);
+
+            byte[] directory = new byte[(int) (length - TRAILER_SIZE - directoryOffset)];
+            file.seek(directoryOffset);
+            file.readFully(directory);
+            ByteBuffer in = ByteBuffer.wrap(directory);
+            int pageCount = in.getInt();
+            int[] tokenOffsets = new int[pageCount + 1];
+            long[] pageOffsets = new long[pageCount];
+            byte[] tokens = new byte[directory.length - 4 - pageCount * (2 + 8)];
+            int tokensLength = 0;
+            for (int i = 0; i < pageCount; i++)
+            {
+                int tokenLength = in.getShort() & 0xFFFF;
+                in.get(tokens, tokensLength, tokenLength);
+                tokenOffsets[i] = tokensLength;
+                tokensLength += tokenLength;
+                pageOffsets[i] = in.getLong();
+            }
+            tokenOffsets[pageCount] = tokensLength;
+
+            MappedSegments segments = mmap ? MappedSegments.map(filename, directoryOffset, SSTableReader.BUFFER_SIZE) : null;
+            return new PagedIndex(filename, tokens, tokenOffsets, pageOffsets, directoryOffset, segments);
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    public int getPageCount()
+    {
+        return pageOffsets.length;
+    }
+
+    /**
+     * @return the position and size of the row of token, or null if it is not in the sstable.
+     */
+    public SSTable.PositionSize getPosition(byte[] token) throws IOException
+    {
+        int pageIndex = findPage(token);
+        if (pageIndex < 0)
+            return null;
+        ByteBuffer page = readPage(pageIndex);
+        int count = page.getInt(0);
+        int i = searchPage(page, count, token);
+        if (i < 0)
+            return null;
+        long position = entryPosition(page, i);
+        long next = i + 1 < count ? entryPosition(page, i + 1) : page.getLong(4);
+        return new SSTable.PositionSize(position, next - position);
+    }
+
+    /**
+     * @return the position of the row of the first token not less than token, or -1 if there is none.
+     */
+    public long getNearestPosition(byte[] token) throws IOException
+    {
+        int pageIndex = findPage(token);
+        if (pageIndex < 0)
+            return 0; // before the first row
+        ByteBuffer page = readPage(pageIndex);
+        int count = page.getInt(0);
+        int i = searchPage(page, count, token);
+        if (i < 0)
+            i = -(i + 1);
+        if (i < count)
+            return entryPosition(page, i);
+        // past the last entry of the page: the first row of the next page, if any
+        return pageIndex + 1 < pageOffsets.length ? page.getLong(4) : -1;
+    }
+
+    /**
+     * @return the index of the last page whose first token is not greater than token, or -1.
+     */
+    private int findPage(byte[] token)
+    {
+        int low = 0, high = pageOffsets.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = FBUtilities.compareByteArrays(tokens, tokenOffsets[mid], tokenOffsets[mid + 1] - tokenOffsets[mid], token, 0, token.length);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return low - 1;
+    }
+
+    /**
+     * @return the index of the entry of token, or (-(insertion point) - 1).
+     */
+    private static int searchPage(ByteBuffer page, int count, byte[] token)
+    {
+        int low = 0, high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = compareEntry(page, page.getInt(PAGE_HEADER_SIZE + 4 * mid), token);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private static int compareEntry(ByteBuffer page, int offset, byte[] token)
+    {
+        int length = page.getShort(offset) & 0xFFFF;
+        offset += 2;
+        int minLength = Math.min(length, token.length);
+        for (int j = 0; j < minLength; j++)
+        {
+            int a = page.get(offset + j) & 0xFF;
+            int b = token[j] & 0xFF;
+            if (a != b)
+                return a < b ? -1 : 1;
+        }
+        return length == token.length ? 0 : (length < token.length ? -1 : 1);
+    }
+
+    private static long entryPosition(ByteBuffer page, int i)
+    {
+        int offset = page.getInt(PAGE_HEADER_SIZE + 4 * i);
+        return page.getLong(offset + 2 + (page.getShort(offset) & 0xFFFF));
+    }
+
+    private ByteBuffer readPage(int pageIndex) throws IOException
+    {
+        long start = pageOffsets[pageIndex];
+        long end = pageIndex + 1 < pageOffsets.length ? pageOffsets[pageIndex + 1] : directoryOffset;
+        int length = (int) (end - start);
+
+        // a view, or a copy if the page spans two mapped segments
+        if (segments != null)
+            return segments.get(start, length);
+
+        byte[] bytes = new byte[length];
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            file.seek(start);
+            file.readFully(bytes);
+        }
+        finally
+        {
+            file.close();
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Writes the pages of entries appended in key order.
+     */
+    public static class Writer
+    {
+        private final String filename;
+        private final int pageSize;
+        private final FileOutputStream fos;
+        private final DataOutputBuffer out = new DataOutputBuffer();
+        private final DataOutputBuffer directory = new DataOutputBuffer();
+        private int pageCount = 0;
+        private long position = 0;
+
+        // the current page
+        private final DataOutputBuffer entries = new DataOutputBuffer();
+        private int[] entryOffsets = new int[64];
+        private int count = 0;
+
+        public Writer(String filename, int pageSize) throws IOException
+        {
+            this.filename = filename;
+            this.pageSize = pageSize;
+            fos = new FileOutputStream(filename);
+        }
+
+        public void append(DecoratedKey key, long dataPosition) throws IOException
+        {
+            byte[] token = key.token.toComparableBytes();
+            assert token.length <= Short.MAX_VALUE;
+            int entrySize = 2 + token.length + 8;
+            if (count > 0 && PAGE_HEADER_SIZE + 4 * (count + 1) + entries.getLength() + entrySize > pageSize)
+                flushPage(dataPosition);
+
+            if (count == 0)
+            {
+                directory.writeShort(token.length);
+                directory.write(token);
+                directory.writeLong(position);
+                pageCount++;
+            }
+            if (count == entryOffsets.length)
+                entryOffsets = Arrays.copyOf(entryOffsets, count * 2);
+            entryOffsets[count++] = entries.getLength();
+            entries.writeShort(token.length);
+            entries.write(token);
+            entries.writeLong(dataPosition);
+        }
+
+        private void flushPage(long endPosition) throws IOException
+        {
+            int headerSize = PAGE_HEADER_SIZE + 4 * count;
+            out.reset();
+            out.writeInt(count);
+            out.writeLong(endPosition);
+            for (int i = 0; i < count; i++)
+                out.writeInt(headerSize + entryOffsets[i]);
+            out.write(entries.getData(), 0, entries.getLength());
+            int length = out.getLength();
+            int padded = ((length + pageSize - 1) / pageSize) * pageSize;
+            for (int i = length; i < padded; i++)
+                out.writeByte(0);
+            fos.write(out.getData(), 0, padded);
+            position += padded;
+            entries.reset();
+            count = 0;
+        }
+
+        /**
+         * @param dataLength the length of the data file, the end of the last row.
+         */
+        public void close(long dataLength) throws IOException
+        {
+            if (count > 0)
+                flushPage(dataLength);
+            out.reset();
+            out.writeInt(pageCount);
+            out.write(directory.getData(), 0, directory.getLength());
+            out.writeLong(position);
+            out.writeInt(pageSize);
+            out.writeInt(MAGIC);
+            fos.write(out.getData(), 0, out.getLength());
+            fos.getFD().sync();
+            fos.close();
+        }
+
+        /**
+         * close and delete a partial file.
+         */
+        public void abort()
+        {
+            try
+            {
+                fos.close();
+            }
+            catch (IOException e)
+            {
+                // the file goes away anyway
+            }
+            new File(filename).delete();
+        }
+    }
+}
@@ -32,7 +32,7 @@ import org.apache.commons.lang.StringUtils;
 import com.bigdata.dastor.db.DecoratedKey;
 import com.bigdata.dastor.dht.IPartitioner;
 import com.bigdata.dastor.io.util.FileUtils;
-import com.bigdata.dastor.utils.BloomFilter;
+import com.bigdata.dastor.utils.Filter;
 
 /**
  * This class is built on top of the SequenceFile. It stores
@@ -51,12 +51,14 @@ public abstract class SSTable
     static final Logger logger = Logger.getLogger(SSTable.class);
 
     public static final int FILES_ON_DISK = 3; // data, index, and bloom filter
+    // BIGDATA: bits per key of the filters of the sstables
+    public static final int FILTER_BUCKETS_PER_KEY = 15;
 
     protected String path;
     protected IPartitioner partitioner;
-    protected BloomFilter bf;
+    protected Filter bf; // BIGDATA: a BloomFilter or a BlockedBloomFilter
     protected String columnFamilyName;
-    protected IndexSummary indexSummary;
+    protected volatile IndexSummary indexSummary; // BIGDATA: volatile, replaced by resampleIndex
 
     public static final String TEMPFILE_MARKER = "tmp";
 
@@ -85,6 +87,51 @@ public abstract class SSTable
         return indexFilename(path);
     }
 
+    /**
+     * BIGDATA: the paged index, see PagedIndex.  Optional: it is not streamed, but it is
+     * snapshotted when present, and it is built again from the index only when the sstable
+     * is opened without it.
+     */
+    public static String pagesFilename(String dataFile)
+    {
+        String[] parts = dataFile.split("-");
+        parts[parts.length - 1] = "Pages.db";
+        return StringUtils.join(parts, "-");
+    }
+
+    public String pagesFilename()
+    {
+        return pagesFilename(path);
+    }
+
+    /**
+     * BIGDATA: the column stats of the rows, see ColumnStats.  Optional like the paged
+     * index, but cannot be rebuilt without reading the data: the sstables missing it
+     * (streamed, or written before) are never skipped by reads.
+     */
+    public static String statsFilename(String dataFile)
+    {
+        String[] parts = dataFile.split("-");
+        parts[parts.length - 1] = "Stats.db";
+        return StringUtils.join(parts, "-");
+    }
+
+    public String statsFilename()
+    {
+        return statsFilename(path);
+    }
+
+    // BIGDATA: the paged index and the column stats
+    static void deleteOptionalComponents(String dataFile) throws IOException
+    {
+        for (String filename : new String[] { pagesFilename(dataFile), statsFilename(dataFile) })
+        {
+            File file = new File(filename);
+            if (file.exists())
+                FileUtils.deleteWithConfirm(file);
+        }
+    }
+
     protected static String compactedFilename(String dataFile)
     {
         String[] parts = dataFile.split("-");
@@ -108,6 +155,7 @@ public abstract class SSTable
             FileUtils.deleteWithConfirm(new File(dataFilename));
             FileUtils.deleteWithConfirm(new File(SSTable.indexFilename(dataFilename)));
             FileUtils.deleteWithConfirm(new File(SSTable.filterFilename(dataFilename)));
+            deleteOptionalComponents(dataFilename);
             FileUtils.deleteWithConfirm(new File(SSTable.compactedFilename(dataFilename)));
             logger.info("Deleted " + dataFilename);
             return true;
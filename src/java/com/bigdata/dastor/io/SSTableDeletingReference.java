@@ -97,6 +97,7 @@ public class SSTableDeletingReference extends PhantomReference<SSTableReader>
             {
                 FileUtils.deleteWithConfirm(new File(SSTable.indexFilename(path)));
                 FileUtils.deleteWithConfirm(new File(SSTable.filterFilename(path)));
+                SSTable.deleteOptionalComponents(path);
                 FileUtils.deleteWithConfirm(new File(SSTable.compactedFilename(path)));
             }
             catch (IOException e)
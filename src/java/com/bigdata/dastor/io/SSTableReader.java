@@ -22,8 +22,6 @@ import java.io.*;
 import java.util.*;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.Reference;
-import java.nio.channels.FileChannel;
-import java.nio.MappedByteBuffer;
 
 import org.apache.log4j.Logger;
 
@@ -39,9 +37,10 @@ import com.bigdata.dastor.db.marshal.AbstractType;
 import com.bigdata.dastor.dht.IPartitioner;
 import com.bigdata.dastor.io.util.BufferedRandomAccessFile;
 import com.bigdata.dastor.io.util.FileDataInput;
-import com.bigdata.dastor.io.util.MappedFileDataInput;
+import com.bigdata.dastor.io.util.MappedSegments;
 import com.bigdata.dastor.service.StorageService;
 import com.bigdata.dastor.utils.BloomFilter;
+import com.bigdata.dastor.utils.Filter;
 import com.bigdata.dastor.utils.FBUtilities;
 import com.bigdata.dastor.utils.Pair;
 
@@ -55,7 +54,8 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
 
     // `finalizers` is required to keep the PhantomReferences alive after the enclosing SSTR is itself
     // unreferenced.  otherwise they will never get enqueued.
-    private static final Set<Reference<SSTableReader>> finalizers = new HashSet<Reference<SSTableReader>>();
+    // BIGDATA: synchronized, sstables are opened in parallel
+    private static final Set<Reference<SSTableReader>> finalizers = Collections.synchronizedSet(new HashSet<Reference<SSTableReader>>());
     private static final ReferenceQueue<SSTableReader> finalizerQueue = new ReferenceQueue<SSTableReader>()
     {{
         Runnable runnable = new Runnable()
@@ -96,8 +96,7 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
 
         for (SSTableReader sstable : sstables)
         {
-            int indexKeyCount = sstable.getIndexPositions().size();
-            count = count + (indexKeyCount + 1) * DatabaseDescriptor.getIndexInterval();
+            count = count + sstable.estimatedKeys() + sstable.indexSummary.getInterval();
             if (logger.isDebugEnabled())
                 logger.debug("index size for bloom filter calc for file  : " + sstable.getFilename() + "   : " + count);
         }
@@ -113,23 +112,28 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
     /** public, but only for tests */
     public static SSTableReader open(String dataFileName, IPartitioner partitioner) throws IOException
     {
-        return open(dataFileName, partitioner, Collections.<String>emptySet(), null);
+        return open(dataFileName, partitioner, Collections.<Pair<String, PositionSize>>emptyList(), null);
     }
 
-    public static SSTableReader open(String dataFileName, Collection<String> savedKeyCacheKeys, SSTableTracker tracker) throws IOException
+    public static SSTableReader open(String dataFileName, Collection<Pair<String, PositionSize>> savedKeyCacheEntries, SSTableTracker tracker) throws IOException
     {
-        return open(dataFileName, StorageService.getPartitioner(), savedKeyCacheKeys, tracker);
+        return open(dataFileName, StorageService.getPartitioner(), savedKeyCacheEntries, tracker);
     }
 
-    public static SSTableReader open(String dataFileName, IPartitioner partitioner, Collection<String> savedKeyCacheKeys, SSTableTracker tracker) throws IOException
+    /**
+     * BIGDATA: savedKeyCacheEntries are the keys of the sstable in the saved key cache, with their
+     * positions, which go straight into the key cache.
+     */
+    public static SSTableReader open(String dataFileName, IPartitioner partitioner, Collection<Pair<String, PositionSize>> savedKeyCacheEntries, SSTableTracker tracker) throws IOException
     {
         assert partitioner != null;
 
         long start = System.currentTimeMillis();
         SSTableReader sstable = new SSTableReader(dataFileName, partitioner);
         sstable.setTrackedBy(tracker);
-        logger.info("Sampling index and loading saved keyCache for " + dataFileName + " (" + savedKeyCacheKeys.size() + " saved keys)");
-        sstable.loadIndexAndCache(savedKeyCacheKeys);
+        logger.info("Sampling index and loading saved keyCache for " + dataFileName + " (" + savedKeyCacheEntries.size() + " saved keys)");
+        sstable.loadIndex();
+        sstable.loadSavedKeyCache(savedKeyCacheEntries);
         sstable.loadBloomFilter();
 
         if (logger.isDebugEnabled())
@@ -140,55 +144,81 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
 
     private volatile SSTableDeletingReference phantomReference;
     // jvm can only map up to 2GB at a time, so we split index/data into segments of that size when using mmap i/o
-    private final MappedByteBuffer[] indexBuffers;
-    private final MappedByteBuffer[] buffers;
+    // BIGDATA: read as one long-addressed input across the segments
+    private final MappedSegments indexSegments;
+    private final MappedSegments dataSegments;
 
     private InstrumentedCache<Pair<String, DecoratedKey>, PositionSize> keyCache;
+    // BIGDATA: null if the paged index is disabled
+    private volatile PagedIndex pagedIndex;
+    // BIGDATA: unknown if the stats file is missing
+    private final ColumnStats columnStats;
+    // BIGDATA: the bounds of the keys, read lazily unless loadIndex read them
+    private volatile DecoratedKey firstKey;
+    private volatile DecoratedKey lastKey;
 
     private BloomFilterTracker bloomFilterTracker = new BloomFilterTracker();
 
-    SSTableReader(String filename, IPartitioner partitioner, IndexSummary indexSummary, BloomFilter bloomFilter)
+    SSTableReader(String filename, IPartitioner partitioner, IndexSummary indexSummary, Filter bloomFilter)
     throws IOException
     {
         super(filename, partitioner);
 
         if (DatabaseDescriptor.getIndexAccessMode() == DatabaseDescriptor.DiskAccessMode.mmap)
         {
-            long indexLength = new File(indexFilename()).length();
-            int bufferCount = 1 + (int) (indexLength / BUFFER_SIZE);
-            indexBuffers = new MappedByteBuffer[bufferCount];
-            long remaining = indexLength;
-            for (int i = 0; i < bufferCount; i++)
-            {
-                indexBuffers[i] = mmap(indexFilename(), i * BUFFER_SIZE, (int) Math.min(remaining, BUFFER_SIZE));
-                remaining -= BUFFER_SIZE;
-            }
+            indexSegments = MappedSegments.map(indexFilename(), BUFFER_SIZE);
         }
         else
         {
             assert DatabaseDescriptor.getIndexAccessMode() == DatabaseDescriptor.DiskAccessMode.standard;
-            indexBuffers = null;
+            indexSegments = null;
         }
 
         if (DatabaseDescriptor.getDiskAccessMode() == DatabaseDescriptor.DiskAccessMode.mmap)
         {
-            int bufferCount = 1 + (int) (new File(path).length() / BUFFER_SIZE);
-            buffers = new MappedByteBuffer[bufferCount];
-            long remaining = length();
-            for (int i = 0; i < bufferCount; i++)
-            {
-                buffers[i] = mmap(path, i * BUFFER_SIZE, (int) Math.min(remaining, BUFFER_SIZE));
-                remaining -= BUFFER_SIZE;
-            }
+            dataSegments = MappedSegments.map(path, BUFFER_SIZE);
         }
         else
         {
             assert DatabaseDescriptor.getDiskAccessMode() == DatabaseDescriptor.DiskAccessMode.standard;
-            buffers = null;
+            dataSegments = null;
         }
 
         this.indexSummary = indexSummary;
         this.bf = bloomFilter;
+        // BIGDATA: else built by loadIndex
+        if (DatabaseDescriptor.getIndexPageSize() > 0 && new File(pagesFilename()).exists())
+            pagedIndex = openPagedIndex(pagesFilename());
+        columnStats = loadColumnStats();
+    }
+
+    private ColumnStats loadColumnStats() throws IOException
+    {
+        AbstractType comparator = getColumnComparator();
+        if (!new File(statsFilename()).exists())
+            return ColumnStats.unknown(comparator);
+        DataInputStream stream = new DataInputStream(new FileInputStream(statsFilename()));
+        try
+        {
+            return ColumnStats.deserialize(stream, comparator);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * BIGDATA: the bounds of the columns of the rows of this sstable.
+     */
+    public ColumnStats getColumnStats()
+    {
+        return columnStats;
+    }
+
+    private static PagedIndex openPagedIndex(String filename) throws IOException
+    {
+        return PagedIndex.open(filename, DatabaseDescriptor.getIndexAccessMode() == DatabaseDescriptor.DiskAccessMode.mmap);
     }
 
     protected void setTrackedBy(SSTableTracker tracker)
@@ -203,41 +233,49 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         }
     }
 
-    private static MappedByteBuffer mmap(String filename, long start, int size) throws IOException
+    private SSTableReader(String filename, IPartitioner partitioner) throws IOException
     {
-        RandomAccessFile raf;
-        try
-        {
-            raf = new RandomAccessFile(filename, "r");
-        }
-        catch (FileNotFoundException e)
-        {
-            throw new IOError(e);
-        }
-
-        try
-        {
-            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, start, size);
-        }
-        finally
-        {
-            raf.close();
-        }
+        this(filename, partitioner, null, null);
     }
 
-    private SSTableReader(String filename, IPartitioner partitioner) throws IOException
+    public Iterable<DecoratedKey> getSampledKeys()
     {
-        this(filename, partitioner, null, null);
+        return indexSummary.getKeys();
     }
 
-    public List<IndexSummary.KeyPosition> getIndexPositions()
+    /**
+     * BIGDATA: at most about count sampled keys, evenly spaced through the sstable.
+     */
+    public List<DecoratedKey> getSampledKeys(int count)
     {
-        return indexSummary.getIndexPositions();
+        IndexSummary summary = indexSummary;
+        int step = Math.max(1, summary.size() / Math.max(1, count));
+        List<DecoratedKey> keys = new ArrayList<DecoratedKey>();
+        for (int i = 0; i < summary.size(); i += step)
+            keys.add(summary.getKey(i));
+        return keys;
     }
 
     public long estimatedKeys()
     {
-        return indexSummary.getIndexPositions().size() * DatabaseDescriptor.getIndexInterval();
+        IndexSummary summary = indexSummary;
+        return (long) summary.size() * summary.getInterval();
+    }
+
+    /**
+     * BIGDATA: sample the index at the current IndexInterval, from the summary if
+     * the interval grew by a multiple of the one of the summary, else from the index file.
+     */
+    public void resampleIndex() throws IOException
+    {
+        int interval = DatabaseDescriptor.getIndexInterval();
+        if (interval == indexSummary.getInterval())
+            return;
+        IndexSummary summary = indexSummary.resample(interval);
+        if (summary != null)
+            indexSummary = summary;
+        else
+            loadIndex();
     }
 
     void loadBloomFilter() throws IOException
@@ -245,7 +283,7 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         DataInputStream stream = new DataInputStream(new FileInputStream(filterFilename()));
         try
         {
-            bf = BloomFilter.serializer().deserialize(stream);
+            bf = Filter.filterSerializer().deserialize(stream);
         }
         finally
         {
@@ -253,80 +291,115 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         }
     }
 
-    void loadIndexAndCache(Collection<String> keysToLoadInCache) throws IOException
+    /**
+     * BIGDATA: the saved positions are valid as long as the sstable, which is
+     * immutable, so no index scan is needed to cache them.
+     */
+    void loadSavedKeyCache(Collection<Pair<String, PositionSize>> entries)
     {
-        // we read the positions in a BRAF so we don't have to worry about an entry spanning a mmap boundary.
-        // any entries that do, we force into the in-memory sample so key lookup can always bsearch within
-        // a single mmapped segment.
-        indexSummary = new IndexSummary();
+        if (keyCache == null || entries.isEmpty())
+            return;
+        if (!keyCache.isWeighted() && keyCache.getCapacity() - keyCache.getSize() < entries.size())
+            keyCache.updateCapacity(keyCache.getSize() + entries.size());
+        for (Pair<String, PositionSize> entry : entries)
+            keyCache.put(new Pair<String, DecoratedKey>(path, partitioner.decorateKey(entry.left)), entry.right);
+    }
+
+    void loadIndex() throws IOException
+    {
+        IndexSummary indexSummary = new IndexSummary(partitioner);
+        // BIGDATA: build the paged index along, if missing (e.g. a streamed sstable)
+        PagedIndex.Writer pagesWriter = null;
+        String pagesTmpFilename = null;
+        if (DatabaseDescriptor.getIndexPageSize() > 0 && pagedIndex == null)
+        {
+            pagesTmpFilename = pagesFilename().replace("-Pages.db", "-Pages-" + SSTable.TEMPFILE_MARKER + ".db");
+            pagesWriter = new PagedIndex.Writer(pagesTmpFilename, DatabaseDescriptor.getIndexPageSize());
+        }
         BufferedRandomAccessFile input = new BufferedRandomAccessFile(indexFilename(), "r");
         try
         {
-            if (keyCache != null && keyCache.getCapacity() - keyCache.getSize() < keysToLoadInCache.size())
-                keyCache.updateCapacity(keyCache.getSize() + keysToLoadInCache.size());
-
             long indexSize = input.length();
-            // we need to know both the current index entry and its data position, as well as the
-            // next such pair, in order to compute tne mmap-spanning entries.  since seeking
-            // backwards in a 0.6 BRAF is expensive, we make one pass through by reading the "next"
-            // entry in each loop through, then summarizing the previous one.
-            IndexSummary.KeyPosition thisEntry = null, nextEntry = null;
-            long thisDataPos = -1, nextDataPos = -1;
+            DecoratedKey key = null;
             while (true)
             {
                 long indexPosition = input.getFilePointer();
                 if (indexPosition == indexSize)
                     break;
 
-                DecoratedKey key = partitioner.convertFromDiskFormat(input.readUTF());
+                key = partitioner.convertFromDiskFormat(input.readUTF());
                 long dataPosition = input.readLong();
-                if (thisEntry == null)
-                {
-                    thisEntry = new IndexSummary.KeyPosition(key, indexPosition);
-                    thisDataPos = dataPosition;
-                    continue;
-                }
-
-                nextEntry = new IndexSummary.KeyPosition(key, indexPosition);
-                nextDataPos = dataPosition;
-                SSTable.PositionSize posSize = new PositionSize(thisDataPos, nextDataPos - thisDataPos);
-                if (keyCache != null && keysToLoadInCache.contains(thisEntry.key.key))
-                    keyCache.put(new Pair<String, DecoratedKey>(path, thisEntry.key), posSize);
-
-                indexSummary.maybeAddEntry(thisEntry.key, posSize.position, posSize.size, thisEntry.indexPosition, nextEntry.indexPosition);
-                //indexSummary.maybeAddEntry(thisEntry.key, thisDataPos, nextDataPos - thisDataPos, thisEntry.indexPosition, nextEntry.indexPosition);
-               
-                thisEntry = nextEntry;
-                thisDataPos = nextDataPos;
+                if (pagesWriter != null)
+                    pagesWriter.append(key, dataPosition);
+                indexSummary.maybeAddEntry(key, indexPosition);
             }
-            assert thisEntry != null; // should not have any zero-row sstables
-            indexSummary.maybeAddEntry(thisEntry.key, thisDataPos, length() - thisDataPos, thisEntry.indexPosition, input.length());
+            assert indexSummary.size() > 0; // should not have any zero-row sstables
             indexSummary.complete();
+            this.indexSummary = indexSummary;
+            lastKey = key;
+
+            if (pagesWriter != null)
+            {
+                pagesWriter.close(length());
+                FBUtilities.renameWithConfirm(pagesTmpFilename, pagesFilename());
+                pagesWriter = null;
+                pagedIndex = openPagedIndex(pagesFilename());
+            }
         }
         finally
         {
             input.close();
+            if (pagesWriter != null)
+                pagesWriter.abort();
         }
     }
 
-    /** get the position in the index file to start scanning to find the given key (at most indexInterval keys away) */
-    private IndexSummary.KeyPosition getIndexScanPosition(DecoratedKey decoratedKey)
+    /**
+     * get the position in the index file to start scanning to find the given key (at most indexInterval keys away),
+     * or -1 if the key is before the first one.
+     */
+    private static long getIndexScanPosition(IndexSummary summary, DecoratedKey decoratedKey)
     {
-        assert indexSummary.getIndexPositions() != null && indexSummary.getIndexPositions().size() > 0;
-        int index = Collections.binarySearch(indexSummary.getIndexPositions(), new IndexSummary.KeyPosition(decoratedKey, -1));
-        if (index < 0)
+        assert summary.size() > 0;
+        int index = summary.binarySearch(decoratedKey.token.toComparableBytes());
+        return index < 0 ? -1 : summary.getIndexPosition(index);
+    }
+
+    /**
+     * BIGDATA: the smallest key of this sstable.
+     */
+    public DecoratedKey getFirstKey()
+    {
+        DecoratedKey key = firstKey;
+        if (key == null)
+            firstKey = key = indexSummary.getKey(0);
+        return key;
+    }
+
+    /**
+     * BIGDATA: the largest key of this sstable, at most an index interval past the last sample.
+     */
+    public DecoratedKey getLastKey() throws IOException
+    {
+        DecoratedKey key = lastKey;
+        if (key != null)
+            return key;
+        IndexSummary indexSummary = this.indexSummary;
+        FileDataInput input = indexInputAt(indexSummary.getIndexPosition(indexSummary.size() - 1));
+        try
         {
-            // binary search gives us the first index _greater_ than the key searched for,
-            // i.e., its insertion position
-            int greaterThan = (index + 1) * -1;
-            if (greaterThan == 0)
-                return null;
-            return indexSummary.getIndexPositions().get(greaterThan - 1);
+            while (!input.isEOF())
+            {
+                key = partitioner.convertFromDiskFormat(input.readUTF());
+                input.readLong();
+            }
         }
-        else
+        finally
         {
-            return indexSummary.getIndexPositions().get(index);
+            input.close();
         }
+        lastKey = key;
+        return key;
     }
 
     /**
@@ -334,9 +407,16 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
      */
     public PositionSize getPosition(DecoratedKey decoratedKey) throws IOException
     {
+        // BIGDATA: outside the keys of this sstable, e.g. those of another sstable of its level
+        if (decoratedKey.compareTo(getFirstKey()) < 0 || decoratedKey.compareTo(getLastKey()) > 0)
+            return null;
+
         // first, check bloom filter
         if (!bf.isPresent(partitioner.convertToDiskFormat(decoratedKey)))
+        {
+            bloomFilterTracker.addTrueNegative();
             return null;
+        }
 
         // next, the key cache
         Pair<String, DecoratedKey> unifiedKey = new Pair<String, DecoratedKey>(path, decoratedKey);
@@ -349,65 +429,43 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
             }
         }
 
+        // BIGDATA: one page read with the paged index
+        PagedIndex pages = pagedIndex;
+        if (pages != null)
+        {
+            PositionSize info = pages.getPosition(decoratedKey.token.toComparableBytes());
+            if (info == null)
+            {
+                bloomFilterTracker.addFalsePositive();
+                return null;
+            }
+            if (keyCache != null && keyCache.getCapacity() > 0)
+                keyCache.put(unifiedKey, info);
+            bloomFilterTracker.addTruePositive();
+            return info;
+        }
+
         // next, see if the sampled index says it's impossible for the key to be present
-        IndexSummary.KeyPosition sampledPosition = getIndexScanPosition(decoratedKey);
-        if (sampledPosition == null)
+        IndexSummary indexSummary = this.indexSummary;
+        long p = getIndexScanPosition(indexSummary, decoratedKey);
+        if (p < 0)
         {
             bloomFilterTracker.addFalsePositive();
             return null;
         }
 
         // get either a buffered or a mmap'd input for the on-disk index
-        long p = sampledPosition.indexPosition;
-        FileDataInput input;
-        if (indexBuffers == null)
-        {
-            input = new BufferedRandomAccessFile(indexFilename(), "r");
-            ((BufferedRandomAccessFile)input).seek(p);
-        }
-        else
-        {
-            input = indexInputAt(p);
-        }
+        FileDataInput input = indexInputAt(p);
 
         // scan the on-disk index, starting at the nearest sampled position
         try
         {
-            int interval = DatabaseDescriptor.getIndexInterval();
+            int interval = indexSummary.getInterval();
             int i = 0;
             do
             {
-                // handle exact sampled index hit
-                IndexSummary.KeyPosition kp = indexSummary.getSpannedIndexPosition(input.getAbsolutePosition());
-                if (kp != null && kp.key.equals(decoratedKey))
-                {
-                    bloomFilterTracker.addTruePositive();
-                    return indexSummary.getSpannedDataPosition(kp);
-                }
-                // if using mmapped i/o, skip to the next mmap buffer if necessary
-                if (input.isEOF() || kp != null)
-                {
-                    if (indexBuffers == null) // not mmap-ing, just one index input
-                        break;
-
-                    FileDataInput oldInput = input;
-                    if (kp == null)
-                    {
-                        input = indexInputAt(input.getAbsolutePosition());
-                    }
-                    else
-                    {
-                        long nextUnspannedPostion = input.getAbsolutePosition()
-                                                    + 2 + FBUtilities.encodedUTF8Length(StorageService.getPartitioner().convertToDiskFormat(kp.key))
-                                                    + 8;
-                        input = indexInputAt(nextUnspannedPostion);
-                    }
-                    oldInput.close();
-                    if (input == null)
-                        break;
-
-                    continue;
-                }
+                if (input.isEOF())
+                    break;
 
                 // read key & data position from index entry
                 DecoratedKey indexDecoratedKey = partitioner.convertFromDiskFormat(input.readUTF());
@@ -438,12 +496,16 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         return null;
     }
 
-    private FileDataInput indexInputAt(long indexPosition)
+    /**
+     * BIGDATA: a mapped input reads across the segments, so an index entry may span two.
+     */
+    private FileDataInput indexInputAt(long indexPosition) throws IOException
     {
-        if (indexPosition > indexSummary.getLastIndexPosition())
-            return null;
-        int bufferIndex = bufferIndex(indexPosition);
-        return new MappedFileDataInput(indexBuffers[bufferIndex], indexFilename(), BUFFER_SIZE * bufferIndex, (int)(indexPosition % BUFFER_SIZE));
+        if (indexSegments != null)
+            return indexSegments.getInput(indexPosition);
+        BufferedRandomAccessFile input = new BufferedRandomAccessFile(indexFilename(), "r");
+        input.seek(indexPosition);
+        return input;
     }
 
     private PositionSize getDataPositionSize(FileDataInput input, long dataPosition) throws IOException
@@ -453,13 +515,6 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
             return new PositionSize(dataPosition, length() - dataPosition);
 
         // otherwise, row size is the start of the next row (in next index entry), minus the start of this one.
-        long nextIndexPosition = input.getAbsolutePosition();
-        // if next index entry would span mmap boundary, get the next row position from the summary instead
-        PositionSize nextPositionSize = indexSummary.getSpannedDataPosition(nextIndexPosition);
-        if (nextPositionSize != null)
-            return new PositionSize(dataPosition, nextPositionSize.position - dataPosition);
-
-        // read next entry directly
         int utflen = input.readUnsignedShort();
         if (utflen != input.skipBytes(utflen))
             throw new EOFException();
@@ -469,15 +524,17 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
     /** like getPosition, but if key is not found will return the location of the first key _greater_ than the desired one, or -1 if no such key exists. */
     public long getNearestPosition(DecoratedKey decoratedKey) throws IOException
     {
-        IndexSummary.KeyPosition sampledPosition = getIndexScanPosition(decoratedKey);
-        if (sampledPosition == null)
+        PagedIndex pages = pagedIndex;
+        if (pages != null)
+            return pages.getNearestPosition(decoratedKey.token.toComparableBytes());
+
+        long sampledPosition = getIndexScanPosition(indexSummary, decoratedKey);
+        if (sampledPosition < 0)
         {
             return 0;
         }
 
-        // can't use a MappedFileDataInput here, since we might cross a segment boundary while scanning
-        BufferedRandomAccessFile input = new BufferedRandomAccessFile(indexFilename(path), "r");
-        input.seek(sampledPosition.indexPosition);
+        FileDataInput input = indexInputAt(sampledPosition);
         try
         {
             while (true)
@@ -524,13 +581,24 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         phantomReference.deleteOnCleanup();
     }
 
+    /**
+     * BIGDATA: delete an sstable which was never tracked, e.g. an output of a failed compaction.
+     */
+    public void deleteUntracked() throws IOException
+    {
+        assert phantomReference == null;
+        if (!new File(compactedFilename()).createNewFile())
+            throw new IOException("Unable to create compaction marker");
+        SSTable.deleteIfCompacted(path);
+    }
+
     /** obviously only for testing */
     public void forceBloomFilterFailures()
     {
         bf = BloomFilter.alwaysMatchingBloomFilter();
     }
 
-    public BloomFilter getBloomFilter()
+    public Filter getBloomFilter()
     {
       return bf;
     }
@@ -542,7 +610,15 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
 
     public SSTableScanner getScanner(int bufferSize) throws IOException
     {
-        return new SSTableScanner(this, bufferSize);
+        return new SSTableScanner(this, bufferSize, false);
+    }
+
+    /**
+     * BIGDATA: a scanner for the input of a compaction, see SSTableScanner.
+     */
+    public SSTableScanner getCompactionScanner(int bufferSize) throws IOException
+    {
+        return new SSTableScanner(this, bufferSize, true);
     }
 
     public FileDataInput getFileDataInput(DecoratedKey decoratedKey, int bufferSize) throws IOException
@@ -551,18 +627,14 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         if (info == null)
             return null;
 
-        if (buffers == null || (bufferIndex(info.position) != bufferIndex(info.position + info.size)))
+        // BIGDATA: a mapped input reads rows spanning a segment boundary too
+        if (dataSegments == null)
         {
             BufferedRandomAccessFile file = new BufferedRandomAccessFile(path, "r", bufferSize);
             file.seek(info.position);
             return file;
         }
-        return new MappedFileDataInput(buffers[bufferIndex(info.position)], path, BUFFER_SIZE * (info.position / BUFFER_SIZE), (int) (info.position % BUFFER_SIZE));
-    }
-
-    static int bufferIndex(long position)
-    {
-        return (int) (position / BUFFER_SIZE);
+        return dataSegments.getInput(info.position);
     }
 
     public AbstractType getColumnComparator()
@@ -597,6 +669,28 @@ public class SSTableReader extends SSTable implements Comparable<SSTableReader>
         return bloomFilterTracker.getTruePositiveCount();
     }
 
+    public long getBloomFilterTrueNegativeCount()
+    {
+        return bloomFilterTracker.getTrueNegativeCount();
+    }
+
+    /**
+     * BIGDATA: the false positive rate expected from the filter of this sstable.
+     */
+    public double getBloomFilterExpectedFalsePositiveRate()
+    {
+        return bf.expectedFalsePositiveRate(estimatedKeys());
+    }
+
+    /**
+     * BIGDATA: the false positive rate a standard BloomFilter of this sstable
+     * would be expected to have, for comparison.
+     */
+    public double getStandardBloomFilterExpectedFalsePositiveRate()
+    {
+        return BloomFilter.expectedFalsePositiveRate(estimatedKeys(), FILTER_BUCKETS_PER_KEY);
+    }
+
     public long getRecentBloomFilterTruePositiveCount()
     {
         return bloomFilterTracker.getRecentTruePositiveCount();
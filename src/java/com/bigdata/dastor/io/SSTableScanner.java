@@ -23,13 +23,18 @@ import java.io.Closeable;
 import java.io.IOError;
 import java.util.Iterator;
 import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 
 import org.apache.log4j.Logger;
 
+import com.bigdata.dastor.config.DatabaseDescriptor;
+import com.bigdata.dastor.db.CompactionManager;
 import com.bigdata.dastor.db.DecoratedKey;
 import com.bigdata.dastor.io.util.BufferedRandomAccessFile;
 import com.bigdata.dastor.io.util.FileDataInput;
+import com.bigdata.dastor.io.util.ScanningRandomAccessFile;
+import com.bigdata.dastor.utils.Throttle;
 
 public class SSTableScanner implements Iterator<IteratingRow>, Closeable
 {
@@ -41,12 +46,25 @@ public class SSTableScanner implements Iterator<IteratingRow>, Closeable
     private boolean exhausted = false;
     private Iterator<IteratingRow> iterator;
 
+    // BIGDATA: the scan of a range [seekTo key, stopAt key) of the rows
+    private DecoratedKey stopKey;
+    private long startPosition = 0;
+    private long endPosition = -1;
+
     /**
      * @param sstable SSTable to scan.
+     * @param compaction BIGDATA: true if the scan is the input of a compaction, whose pages
+     * are dropped from the page cache once read (CompactionSkipPageCache), and which is
+     * throttled by the compaction throughput limit.
      */
-    SSTableScanner(SSTableReader sstable, int bufferSize) throws IOException
+    SSTableScanner(SSTableReader sstable, int bufferSize, boolean compaction) throws IOException
     {
-        this.file = new BufferedRandomAccessFile(sstable.getFilename(), "r", bufferSize);
+        boolean skipCache = compaction && DatabaseDescriptor.isCompactionSkipPageCache();
+        Throttle throttle = compaction ? CompactionManager.instance.getThrottle() : null;
+        if (DatabaseDescriptor.isScanReadAhead() || skipCache || throttle != null)
+            this.file = new ScanningRandomAccessFile(sstable.getFilename(), bufferSize, DatabaseDescriptor.isScanReadAhead(), skipCache, throttle);
+        else
+            this.file = new BufferedRandomAccessFile(sstable.getFilename(), "r", bufferSize);
         this.sstable = sstable;
     }
 
@@ -67,6 +85,7 @@ public class SSTableScanner implements Iterator<IteratingRow>, Closeable
             }
             file.seek(position);
             row = null;
+            startPosition = position;
         }
         catch (IOException e)
         {
@@ -74,6 +93,40 @@ public class SSTableScanner implements Iterator<IteratingRow>, Closeable
         }
     }
 
+    /**
+     * BIGDATA: end the scan before the first row of a key not less than stopKey.
+     */
+    public void stopAt(DecoratedKey stopKey)
+    {
+        try
+        {
+            long position = sstable.getNearestPosition(stopKey);
+            endPosition = position < 0 ? file.length() : position;
+            this.stopKey = stopKey;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("corrupt sstable", e);
+        }
+    }
+
+    /**
+     * BIGDATA: the bytes of the rows scanned, from seekTo to stopAt.
+     */
+    public long getBytesTotal()
+    {
+        if (exhausted)
+            return 0;
+        return Math.max(0, (endPosition < 0 ? getFileLength() : endPosition) - startPosition);
+    }
+
+    public long getBytesScanned()
+    {
+        if (exhausted)
+            return 0;
+        return Math.max(0, Math.min(getFilePointer(), endPosition < 0 ? getFileLength() : endPosition) - startPosition);
+    }
+
     public long getFileLength()
     {
         try
@@ -112,7 +165,30 @@ public class SSTableScanner implements Iterator<IteratingRow>, Closeable
 
     private class KeyScanningIterator implements Iterator<IteratingRow>
     {
+        // BIGDATA: with a stopKey, the next row is read ahead to compare its key
+        private IteratingRow next;
+
         public boolean hasNext()
+        {
+            if (stopKey == null)
+                return hasNextRow();
+            if (next == null && hasNextRow())
+                next = nextRow();
+            return next != null && next.getKey().compareTo(stopKey) < 0;
+        }
+
+        public IteratingRow next()
+        {
+            if (stopKey == null)
+                return nextRow();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            IteratingRow current = next;
+            next = null;
+            return current;
+        }
+
+        private boolean hasNextRow()
         {
             try
             {
@@ -126,7 +202,7 @@ public class SSTableScanner implements Iterator<IteratingRow>, Closeable
             }
         }
 
-        public IteratingRow next()
+        private IteratingRow nextRow()
         {
             try
             {
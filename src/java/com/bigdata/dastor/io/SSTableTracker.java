@@ -26,15 +26,20 @@ import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
-import com.google.common.base.Function;
 
 import org.apache.log4j.Logger;
 
+import com.bigdata.dastor.cache.ICache;
+import com.bigdata.dastor.cache.IWeigher;
 import com.bigdata.dastor.cache.JMXInstrumentedCache;
+import com.bigdata.dastor.cache.SLRUCache;
+import com.bigdata.dastor.cache.SerializingCache;
 import com.bigdata.dastor.config.DatabaseDescriptor;
 import com.bigdata.dastor.db.ColumnFamily;
 import com.bigdata.dastor.db.DecoratedKey;
+import com.bigdata.dastor.service.StorageProxy;
 import com.bigdata.dastor.service.StorageService;
+import com.bigdata.dastor.utils.HeapSizes;
 import com.bigdata.dastor.utils.Pair;
 
 public class SSTableTracker implements Iterable<SSTableReader>
@@ -51,68 +56,268 @@ public class SSTableTracker implements Iterable<SSTableReader>
     private final JMXInstrumentedCache<Pair<String, DecoratedKey>, SSTable.PositionSize> keyCache;
     private final JMXInstrumentedCache<String, ColumnFamily> rowCache;
 
+    // BIGDATA: the key string, and the pair, decorated key, token, position and map entry around it
+    private static final IWeigher<Pair<String, DecoratedKey>, SSTable.PositionSize> KEY_WEIGHER =
+        new IWeigher<Pair<String, DecoratedKey>, SSTable.PositionSize>()
+        {
+            public long weightOf(Pair<String, DecoratedKey> key, SSTable.PositionSize value)
+            {
+                return HeapSizes.sizeOfString(key.right.key) + 192;
+            }
+        };
+
+    // BIGDATA: the key string, the row and the map entry
+    private static final IWeigher<String, ColumnFamily> ROW_WEIGHER = new IWeigher<String, ColumnFamily>()
+    {
+        public long weightOf(String key, ColumnFamily value)
+        {
+            return HeapSizes.sizeOfString(key) + value.heapSize() + 64;
+        }
+    };
+
     public SSTableTracker(String ksname, String cfname)
     {
         this.ksname = ksname;
         this.cfname = cfname;
         sstables = Collections.emptySet();
-        keyCache = new JMXInstrumentedCache<Pair<String, DecoratedKey>, SSTable.PositionSize>(ksname, cfname + "KeyCache", 0);
-        rowCache = new JMXInstrumentedCache<String, ColumnFamily>(ksname, cfname + "RowCache", 0);
+        // BIGDATA:
+        if (DatabaseDescriptor.getKeyCachePolicy(ksname, cfname) == DatabaseDescriptor.CachePolicy.slru)
+        {
+            ICache<Pair<String, DecoratedKey>, SSTable.PositionSize> map =
+                new SLRUCache<Pair<String, DecoratedKey>, SSTable.PositionSize>(DatabaseDescriptor.getKeyCacheSizeInBytes(ksname, cfname),
+                                                                                KEY_WEIGHER);
+            keyCache = new JMXInstrumentedCache<Pair<String, DecoratedKey>, SSTable.PositionSize>(ksname, cfname + "KeyCache", map);
+        }
+        else
+        {
+            keyCache = new JMXInstrumentedCache<Pair<String, DecoratedKey>, SSTable.PositionSize>(ksname, cfname + "KeyCache", 0);
+        }
+
+        // BIGDATA:
+        if (DatabaseDescriptor.getRowCacheProvider(ksname, cfname) == DatabaseDescriptor.RowCacheProvider.serializing)
+        {
+            ICache<String, ColumnFamily> map = new SerializingCache<String, ColumnFamily>(DatabaseDescriptor.getRowCacheSizeInBytes(ksname, cfname),
+                                                                                           ColumnFamily.serializer());
+            rowCache = new JMXInstrumentedCache<String, ColumnFamily>(ksname, cfname + "RowCache", map);
+        }
+        else if (DatabaseDescriptor.getRowCachePolicy(ksname, cfname) == DatabaseDescriptor.CachePolicy.slru)
+        {
+            ICache<String, ColumnFamily> map = new SLRUCache<String, ColumnFamily>(DatabaseDescriptor.getRowCacheSizeInBytes(ksname, cfname),
+                                                                                   ROW_WEIGHER);
+            rowCache = new JMXInstrumentedCache<String, ColumnFamily>(ksname, cfname + "RowCache", map);
+        }
+        else
+        {
+            rowCache = new JMXInstrumentedCache<String, ColumnFamily>(ksname, cfname + "RowCache", 0);
+        }
+    }
+
+    /**
+     * BIGDATA:
+     * Saved caches are binary files starting with SAVED_CACHE_MAGIC.  The key cache is saved
+     * per sstable, with the positions of the keys:
+     *   [int magic]([UTF sstable path][int count]([int length][key bytes][long position][long size]){count})*
+     * and the row cache as its keys:
+     *   [int magic][int count]([int length][key bytes]){count}
+     * Files of any other format, e.g. written by an older version, are ignored.
+     */
+    private static final int SAVED_CACHE_MAGIC = 0x44534331;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private interface CacheSerializer
+    {
+        /**
+         * @return the number of keys written
+         */
+        public int write(DataOutputStream out) throws IOException;
+    }
+
+    private void saveCache(File savedCachePath, CacheSerializer serializer) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        String msgSuffix = " " + savedCachePath.getName() + " for " + cfname + " of " + ksname;
+        logger.debug("saving" + msgSuffix);
+        File tmpFile = File.createTempFile(savedCachePath.getName(), null, savedCachePath.getParentFile());
+        FileOutputStream fout = new FileOutputStream(tmpFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+        FileDescriptor fd = fout.getFD();
+        out.writeInt(SAVED_CACHE_MAGIC);
+        int count = serializer.write(out);
+        out.flush();
+        fd.sync();
+        out.close();
+        if (!tmpFile.renameTo(savedCachePath))
+            throw new IOException("Unable to rename cache to " + savedCachePath);
+        if (logger.isDebugEnabled())
+            logger.debug("saved " + count + " keys in " + (System.currentTimeMillis() - start) + " ms from" + msgSuffix);
     }
 
-    protected class CacheWriter<K, V>
+    /**
+     * @return the saved cache, past its magic, or null if there is none or it has another format.
+     */
+    private DataInputStream openSavedCache(File path) throws IOException
     {
-        public void saveCache(JMXInstrumentedCache<K, V> cache, File savedCachePath, Function<K, byte[]> converter) throws IOException
+        if (!path.exists())
+            return null;
+        if (logger.isDebugEnabled())
+            logger.debug("reading saved cache from " + path);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 64 * 1024));
+        if (path.length() < 4 || in.readInt() != SAVED_CACHE_MAGIC)
         {
-            long start = System.currentTimeMillis();
-            String msgSuffix = " " + savedCachePath.getName() + " for " + cfname + " of " + ksname;
-            logger.debug("saving" + msgSuffix);
-            int count = 0;
-            File tmpFile = File.createTempFile(savedCachePath.getName(), null, savedCachePath.getParentFile());
-            FileOutputStream fout = new FileOutputStream(tmpFile);
-            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fout));
-            FileDescriptor fd = fout.getFD();
-            for (K key : cache.getKeySet())
-            {
-                byte[] bytes = converter.apply(key);
-                out.writeInt(bytes.length);
-                out.write(bytes);
-                ++count;
-            }
-            out.flush();
-            fd.sync();
-            out.close();
-            if (!tmpFile.renameTo(savedCachePath))
-                throw new IOException("Unable to rename cache to " + savedCachePath);
-            if (logger.isDebugEnabled())
-                logger.debug("saved " + count + " keys in " + (System.currentTimeMillis() - start) + " ms from" + msgSuffix);
+            logger.info("ignoring saved cache of an unknown format " + path);
+            in.close();
+            return null;
         }
+        return in;
+    }
+
+    private static void writeKey(String key, DataOutputStream out) throws IOException
+    {
+        byte[] bytes = key.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readKey(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
     }
 
     public void saveKeyCache() throws IOException
     {
-        Function<Pair<String, DecoratedKey>, byte[]> function = new Function<Pair<String, DecoratedKey>, byte[]>()
+        saveCache(DatabaseDescriptor.getSerializedKeyCachePath(ksname, cfname), new CacheSerializer()
         {
-            public byte[] apply(Pair<String, DecoratedKey> key)
+            public int write(DataOutputStream out) throws IOException
             {
-                return key.right.key.getBytes(Charset.forName("UTF-8"));
+                // group the keys by sstable
+                Map<String, List<Pair<String, SSTable.PositionSize>>> entries = new HashMap<String, List<Pair<String, SSTable.PositionSize>>>();
+                for (Pair<String, DecoratedKey> key : keyCache.getKeySet())
+                {
+                    SSTable.PositionSize posSize = keyCache.getInternal(key);
+                    if (posSize == null)
+                        continue; // evicted meanwhile
+                    List<Pair<String, SSTable.PositionSize>> list = entries.get(key.left);
+                    if (list == null)
+                    {
+                        list = new ArrayList<Pair<String, SSTable.PositionSize>>();
+                        entries.put(key.left, list);
+                    }
+                    list.add(new Pair<String, SSTable.PositionSize>(key.right.key, posSize));
+                }
+
+                int count = 0;
+                for (Map.Entry<String, List<Pair<String, SSTable.PositionSize>>> entry : entries.entrySet())
+                {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (Pair<String, SSTable.PositionSize> pair : entry.getValue())
+                    {
+                        writeKey(pair.left, out);
+                        out.writeLong(pair.right.position);
+                        out.writeLong(pair.right.size);
+                    }
+                    count += entry.getValue().size();
+                }
+                return count;
             }
-        };
-        CacheWriter<Pair<String, DecoratedKey>, SSTable.PositionSize> writer = new CacheWriter<Pair<String, DecoratedKey>, SSTable.PositionSize>();
-        writer.saveCache(keyCache, DatabaseDescriptor.getSerializedKeyCachePath(ksname, cfname), function);
+        });
+    }
+
+    /**
+     * BIGDATA:
+     * @return the saved key cache entries, by sstable data file path.
+     */
+    public Map<String, List<Pair<String, SSTable.PositionSize>>> readSavedKeyCache() throws IOException
+    {
+        Map<String, List<Pair<String, SSTable.PositionSize>>> entries = new HashMap<String, List<Pair<String, SSTable.PositionSize>>>();
+        long start = System.currentTimeMillis();
+        File path = DatabaseDescriptor.getSerializedKeyCachePath(ksname, cfname);
+        DataInputStream in = openSavedCache(path);
+        if (in == null)
+            return entries;
+
+        int total = 0;
+        try
+        {
+            while (in.available() > 0)
+            {
+                String sstablePath = in.readUTF();
+                int count = in.readInt();
+                List<Pair<String, SSTable.PositionSize>> list = new ArrayList<Pair<String, SSTable.PositionSize>>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    String key = readKey(in);
+                    list.add(new Pair<String, SSTable.PositionSize>(key, new SSTable.PositionSize(in.readLong(), in.readLong())));
+                }
+                entries.put(sstablePath, list);
+                total += count;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        if (logger.isDebugEnabled())
+            logger.debug(String.format("completed reading (%d ms; %d keys) from saved cache at %s",
+                                       (System.currentTimeMillis() - start), total, path));
+        return entries;
     }
 
     public void saveRowCache() throws IOException
     {
-        Function<String, byte[]> function = new Function<String, byte[]>()
+        saveCache(DatabaseDescriptor.getSerializedRowCachePath(ksname, cfname), new CacheSerializer()
         {
-            public byte[] apply(String key)
+            public int write(DataOutputStream out) throws IOException
             {
-                return key.getBytes(Charset.forName("UTF-8"));
+                Set<String> keys = rowCache.getKeySet();
+                out.writeInt(keys.size());
+                int count = 0;
+                for (String key : keys)
+                {
+                    // a live key set may grow while it is written
+                    if (count == keys.size())
+                        break;
+                    writeKey(key, out);
+                    count++;
+                }
+                return count;
             }
-        };
-        CacheWriter<String, ColumnFamily> writer = new CacheWriter<String, ColumnFamily>();
-        writer.saveCache(rowCache, DatabaseDescriptor.getSerializedRowCachePath(ksname, cfname), function);
+        });
+    }
+
+    /**
+     * BIGDATA:
+     * @return the saved row cache keys, sorted so rows are read in the order of the sstables.
+     */
+    public List<String> readSavedRowCache() throws IOException
+    {
+        long start = System.currentTimeMillis();
+        File path = DatabaseDescriptor.getSerializedRowCachePath(ksname, cfname);
+        DataInputStream in = openSavedCache(path);
+        if (in == null)
+            return Collections.emptyList();
+
+        List<String> keys;
+        try
+        {
+            int count = in.readInt();
+            keys = new ArrayList<String>(count);
+            for (int i = 0; i < count && in.available() > 0; i++)
+                keys.add(readKey(in));
+        }
+        finally
+        {
+            in.close();
+        }
+        // sort the results on read because cache may be written many times during server lifetime,
+        // so better to pay that price once on startup than sort at write time.
+        Collections.sort(keys, StorageProxy.keyComparator);
+        if (logger.isDebugEnabled())
+            logger.debug(String.format("completed reading (%d ms; %d keys) from saved cache at %s",
+                                       (System.currentTimeMillis() - start), keys.size(), path));
+        return keys;
     }
 
     public synchronized void replace(Collection<SSTableReader> oldSSTables, Iterable<SSTableReader> replacements) throws IOException
@@ -121,7 +326,7 @@ public class SSTableTracker implements Iterable<SSTableReader>
 
         for (SSTableReader sstable : replacements)
         {
-            assert sstable.getIndexPositions() != null;
+            assert sstable.indexSummary != null;
             sstablesNew.add(sstable);
             long size = sstable.bytesOnDisk();
             liveSize.addAndGet(size);
@@ -182,7 +387,8 @@ public class SSTableTracker implements Iterable<SSTableReader>
     {
         long keys = estimatedKeys();
 
-        if (!keyCache.isCapacitySetManually())
+        // BIGDATA: a weighted key cache has a fixed capacity in bytes
+        if (!keyCache.isCapacitySetManually() && !keyCache.isWeighted())
         {
             int keyCacheSize = DatabaseDescriptor.getKeysCachedFor(ksname, cfname, keys);
             if (keyCacheSize != keyCache.getCapacity())
@@ -194,7 +400,8 @@ public class SSTableTracker implements Iterable<SSTableReader>
             }
         }
 
-        if (!rowCache.isCapacitySetManually())
+        // BIGDATA: a weighted row cache has a fixed capacity in bytes
+        if (!rowCache.isCapacitySetManually() && !rowCache.isWeighted())
         {
             int rowCacheSize = DatabaseDescriptor.getRowsCachedFor(ksname, cfname, keys);
             if (rowCacheSize != rowCache.getCapacity())
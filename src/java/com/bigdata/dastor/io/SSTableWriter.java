@@ -35,7 +35,10 @@ import com.bigdata.dastor.db.DecoratedKey;
 import com.bigdata.dastor.dht.IPartitioner;
 import com.bigdata.dastor.io.util.BufferedRandomAccessFile;
 import com.bigdata.dastor.io.util.DataOutputBuffer;
+import com.bigdata.dastor.utils.BlockedBloomFilter;
 import com.bigdata.dastor.utils.BloomFilter;
+import com.bigdata.dastor.utils.CLibrary;
+import com.bigdata.dastor.utils.Filter;
 import com.bigdata.dastor.utils.FBUtilities;
 
 public class SSTableWriter extends SSTable
@@ -45,15 +48,28 @@ public class SSTableWriter extends SSTable
     private BufferedRandomAccessFile dataFile;
     private BufferedRandomAccessFile indexFile;
     private DecoratedKey lastWrittenKey;
-    private BloomFilter bf;
+    private Filter bf;
+    private PagedIndex.Writer pagesWriter; // BIGDATA: null if the paged index is disabled
+    private final ColumnStats columnStats; // BIGDATA
+
+    // BIGDATA: with skipPageCache(), the written data pages are dropped every this many bytes
+    private static final long SKIP_CACHE_INTERVAL = 128L * 1024 * 1024;
+    private int dataFd = -1;
+    private long skipCacheMark = 0;
 
     public SSTableWriter(String filename, long keyCount, IPartitioner partitioner) throws IOException
     {
         super(filename, partitioner);
-        indexSummary = new IndexSummary();
+        indexSummary = new IndexSummary(partitioner);
         dataFile = new BufferedRandomAccessFile(path, "rw", (int)(DatabaseDescriptor.getFlushDataBufferSizeInMB() * 1024 * 1024));
         indexFile = new BufferedRandomAccessFile(indexFilename(), "rw", (int)(DatabaseDescriptor.getFlushIndexBufferSizeInMB() * 1024 * 1024));
-        bf = BloomFilter.getFilter(keyCount, 15);
+        if (DatabaseDescriptor.getBloomFilterType() == DatabaseDescriptor.BloomFilterType.blocked)
+            bf = BlockedBloomFilter.getFilter(keyCount, FILTER_BUCKETS_PER_KEY);
+        else
+            bf = BloomFilter.getFilter(keyCount, FILTER_BUCKETS_PER_KEY);
+        if (DatabaseDescriptor.getIndexPageSize() > 0)
+            pagesWriter = new PagedIndex.Writer(pagesFilename(), DatabaseDescriptor.getIndexPageSize());
+        columnStats = new ColumnStats(DatabaseDescriptor.getComparator(getTableName(), getColumnFamilyName()));
     }
 
     private long beforeAppend(DecoratedKey decoratedKey) throws IOException
@@ -72,8 +88,25 @@ public class SSTableWriter extends SSTable
         return (lastWrittenKey == null) ? 0 : dataFile.getFilePointer();
     }
 
+    /**
+     * BIGDATA: advise the kernel to drop the pages of the data file as it is written, for
+     * the output of a compaction.  The writes still go through the page cache, but do not
+     * build up in it.
+     */
+    public void skipPageCache() throws IOException
+    {
+        dataFd = CLibrary.getfd(dataFile.getFD());
+    }
+
     private void afterAppend(DecoratedKey decoratedKey, long dataPosition) throws IOException
     {
+        // BIGDATA: the dirty pages are written back by this advice, and dropped by the next one
+        if (dataFd >= 0 && dataFile.getFilePointer() - skipCacheMark >= SKIP_CACHE_INTERVAL)
+        {
+            CLibrary.trySkipCache(dataFd, 0, 0);
+            skipCacheMark = dataFile.getFilePointer();
+        }
+
         String diskKey = partitioner.convertToDiskFormat(decoratedKey);
         bf.add(diskKey);
         lastWrittenKey = decoratedKey;
@@ -85,8 +118,10 @@ public class SSTableWriter extends SSTable
         if (logger.isTraceEnabled())
             logger.trace("wrote index of " + decoratedKey + " at " + indexPosition);
 
-        int rowSize = (int)(dataFile.getFilePointer() - dataPosition);
-        indexSummary.maybeAddEntry(decoratedKey, dataPosition, rowSize, indexPosition, indexFile.getFilePointer());
+        if (pagesWriter != null)
+            pagesWriter.append(decoratedKey, dataPosition);
+
+        indexSummary.maybeAddEntry(decoratedKey, indexPosition);
     }
 
     // TODO make this take a DataOutputStream and wrap the byte[] version to combine them
@@ -108,6 +143,15 @@ public class SSTableWriter extends SSTable
      */
     public void append(DecoratedKey decoratedKey, DataOutputBuffer headerBuffer, DataOutputBuffer buffer) throws IOException
     {
+        append(decoratedKey, headerBuffer, buffer, null);
+    }
+
+    /**
+     * BIGDATA: rowStats are the column stats of the row, null if unknown.
+     */
+    public void append(DecoratedKey decoratedKey, DataOutputBuffer headerBuffer, DataOutputBuffer buffer, ColumnStats rowStats) throws IOException
+    {
+        columnStats.add(rowStats);
         long currentPosition = beforeAppend(decoratedKey);
         dataFile.writeUTF(partitioner.convertToDiskFormat(decoratedKey));
         int headerBufferLen = headerBuffer.getLength();
@@ -128,11 +172,20 @@ public class SSTableWriter extends SSTable
     
     public void append(DecoratedKey decoratedKey, byte[] value) throws IOException
     {
+        append(decoratedKey, value, 0, value.length, null);
+    }
+
+    /*
+     * BIGDATA: append a row already serialized into value[offset, offset+length)
+     */
+    public void append(DecoratedKey decoratedKey, byte[] value, int offset, int length, ColumnStats rowStats) throws IOException
+    {
+        columnStats.add(rowStats);
         long currentPosition = beforeAppend(decoratedKey);
         dataFile.writeUTF(partitioner.convertToDiskFormat(decoratedKey));
-        assert value.length > 0;
-        dataFile.writeInt(value.length);
-        dataFile.write(value);
+        assert length > 0;
+        dataFile.writeInt(length);
+        dataFile.write(value, offset, length);
         afterAppend(decoratedKey, currentPosition);
     }
 
@@ -144,7 +197,15 @@ public class SSTableWriter extends SSTable
         // bloom filter
         FileOutputStream fos = new FileOutputStream(filterFilename());
         DataOutputStream stream = new DataOutputStream(fos);
-        BloomFilter.serializer().serialize(bf, stream);
+        Filter.filterSerializer().serialize(bf, stream);
+        stream.flush();
+        fos.getFD().sync();
+        stream.close();
+
+        // BIGDATA: column stats
+        fos = new FileOutputStream(statsFilename());
+        stream = new DataOutputStream(fos);
+        columnStats.serialize(stream);
         stream.flush();
         fos.getFD().sync();
         stream.close();
@@ -153,9 +214,21 @@ public class SSTableWriter extends SSTable
         indexFile.getChannel().force(true);
         indexFile.close();
 
+        // BIGDATA: paged index
+        if (pagesWriter != null)
+            pagesWriter.close(dataFile.getFilePointer());
+
         // main data
+        if (dataFd >= 0)
+        {
+            dataFile.sync();
+            CLibrary.trySkipCache(dataFd, 0, 0);
+        }
         dataFile.close(); // calls force
 
+        if (pagesWriter != null)
+            rename(pagesFilename());
+        rename(statsFilename());
         rename(indexFilename());
         rename(filterFilename());
         path = rename(path); // important to do this last since index & filter file names are derived from it
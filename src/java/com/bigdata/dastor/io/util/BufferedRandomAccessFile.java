@@ -202,26 +202,37 @@ public class BufferedRandomAccessFile extends RandomAccessFile implements FileDa
      * "this.buff.length", then EOF was read.
      */
     private int fillBuffer() throws IOException
+    {
+        int cnt = readBuffer(this.lo_, this.buff_);
+        if ( (cnt < 0) && (this.hitEOF_ = (cnt < this.buff_.length)) )
+        {
+            // make sure buffer that wasn't read is initialized with -1
+            Arrays.fill(this.buff_, cnt, this.buff_.length, (byte) 0xff);
+        }
+        this.diskPos_ += cnt;
+        return cnt;
+    }
+    
+    /**
+     * BIGDATA: read at most buffer.length bytes at position, where the file
+     * pointer is, into buffer; overridden by ScanningRandomAccessFile.
+     * @return the number of bytes read, less than buffer.length at EOF.
+     */
+    protected int readBuffer(long position, byte[] buffer) throws IOException
     {
         int cnt = 0;
-        int rem = this.buff_.length;
+        int rem = buffer.length;
         while (rem > 0)
         {
-            int n = super.read(this.buff_, cnt, rem);
+            int n = super.read(buffer, cnt, rem);
             if (n < 0)
                 break;
             cnt += n;
             rem -= n;
         }
-        if ( (cnt < 0) && (this.hitEOF_ = (cnt < this.buff_.length)) )
-        {
-            // make sure buffer that wasn't read is initialized with -1
-            Arrays.fill(this.buff_, cnt, this.buff_.length, (byte) 0xff);
-        }
-        this.diskPos_ += cnt;
         return cnt;
     }
-    
+
     /*
      * This method positions <code>this.curr</code> at position <code>pos</code>.
      * If <code>pos</code> does not fall in the current buffer, it flushes the
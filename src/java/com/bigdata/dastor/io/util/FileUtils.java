@@ -19,6 +19,9 @@
 package com.bigdata.dastor.io.util;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
 import java.text.DecimalFormat;
 import java.util.*;
 
@@ -89,6 +92,46 @@ public class FileUtils
         }
     }
 
+    /**
+     * BIGDATA: unmap buffer now instead of when it is collected.  The buffer must
+     * not be used afterwards.  Where the JVM offers no way to do it, this is a no-op.
+     */
+    public static void clean(MappedByteBuffer buffer)
+    {
+        try
+        {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", java.nio.ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        }
+        catch (NoSuchMethodException e)
+        {
+            // older JVMs, below
+        }
+        catch (Exception e)
+        {
+            logger_.debug("Unable to unmap buffer", e);
+            return;
+        }
+
+        try
+        {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+        catch (Exception e)
+        {
+            logger_.debug("Unable to unmap buffer", e);
+        }
+    }
+
     public static class FileComparator implements Comparator<File>
     {
         public int compare(File f, File f2)
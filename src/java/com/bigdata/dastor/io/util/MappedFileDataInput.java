@@ -21,38 +21,31 @@ package com.bigdata.dastor.io.util;
  */
 
 
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.io.*;
 
+/**
+ * BIGDATA: reads a MappedSegments at long positions, across its segment boundaries.
+ */
 public class MappedFileDataInput extends InputStream implements FileDataInput
 {
-    private final MappedByteBuffer buffer;
-    private final String filename;
-    private int position;
-    private int markedPosition;
-    private final long absoluteStartPosition;
+    private final MappedSegments segments;
+    private long position;
+    private long markedPosition;
 
-    public MappedFileDataInput(MappedByteBuffer buffer, String filename, long absoluteStartPosition)
+    public MappedFileDataInput(MappedSegments segments, long position)
     {
-        this(buffer, filename, absoluteStartPosition, 0);
-    }
-
-    public MappedFileDataInput(MappedByteBuffer buffer, String filename, long absoluteStartPosition, int position)
-    {
-        assert buffer != null;
-        this.absoluteStartPosition = absoluteStartPosition;
-        this.buffer = buffer;
-        this.filename = filename;
+        assert segments != null;
+        this.segments = segments;
         this.position = position;
     }
 
     public long getAbsolutePosition()
     {
-        return absoluteStartPosition + position;
+        return position;
     }
 
-// don't make this public, this is only for seeking WITHIN the current mapped segment
-    private void seekInternal(int pos) throws IOException
+    private void seekInternal(long pos) throws IOException
     {
         position = pos;
     }
@@ -83,24 +76,55 @@ public class MappedFileDataInput extends InputStream implements FileDataInput
     public int bytesPastMark()
     {
         assert position >= markedPosition;
-        return position - markedPosition;
+        assert position - markedPosition <= Integer.MAX_VALUE;
+        return (int) (position - markedPosition);
     }
 
     public boolean isEOF() throws IOException
     {
-        return position == buffer.capacity();
+        return position >= segments.length();
     }
 
     public String getPath()
     {
-        return filename;
+        return segments.getPath();
     }
 
     public int read() throws IOException
     {
         if (isEOF())
             return -1;
-        return buffer.get(position++) & 0xFF;
+        return segments.get(position++) & 0xFF;
+    }
+
+    /**
+     * BIGDATA: bulk copy, instead of the byte at a time read of InputStream.
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException
+    {
+        if (length == 0)
+            return 0;
+        if (isEOF())
+            return -1;
+        length = (int) Math.min(length, segments.length() - position);
+        segments.get(position, bytes, offset, length);
+        position += length;
+        return length;
+    }
+
+    /**
+     * BIGDATA:
+     * @return the next length bytes as a view over the mapping, without copying them,
+     * unless they span two segments.
+     */
+    public ByteBuffer readView(int length) throws IOException
+    {
+        if (length > segments.length() - position)
+            throw new EOFException();
+        ByteBuffer view = segments.get(position, length);
+        position += length;
+        return view;
     }
 
     public int skipBytes(int n) throws IOException
@@ -108,10 +132,9 @@ public class MappedFileDataInput extends InputStream implements FileDataInput
         assert n >= 0 : "skipping negative bytes is illegal: " + n;
         if (n == 0)
             return 0;
-        int oldPosition = position;
-        assert ((long)oldPosition) + n <= Integer.MAX_VALUE;
-        position = Math.min(buffer.capacity(), position + n);
-        return position - oldPosition;
+        long oldPosition = position;
+        position = Math.min(segments.length(), position + n);
+        return (int) (position - oldPosition);
     }
 
     /*
@@ -302,7 +325,7 @@ public class MappedFileDataInput extends InputStream implements FileDataInput
     public final String readLine() throws IOException {
         StringBuilder line = new StringBuilder(80); // Typical line length
         boolean foundTerminator = false;
-        int unreadPosition = 0;
+        long unreadPosition = 0;
         while (true) {
             int nextByte = read();
             switch (nextByte) {
@@ -437,14 +460,9 @@ public class MappedFileDataInput extends InputStream implements FileDataInput
      * @see com.bigdata.dastor.io.util.FileDataInput#seek(long)
      */
     public void seek(long absolutePos) throws IOException {
-        long pos = absolutePos - absoluteStartPosition;
-        // there is no case to seek spanning different buffer. 
-        // see SSTableReader.getFileDataInput(...), when it find spanning, 
-        // will use standard BufferedRandomAccessFile to read the file.
-        // in fact, the skipBytes(n) method of this class has same condition.
-        if ((pos < 0) && (pos >= buffer.capacity())) {
-            throw new IOException("The seeking offset beyond the current mapped segment");
+        if (absolutePos < 0 || absolutePos > segments.length()) {
+            throw new IOException("The seeking offset " + absolutePos + " is beyond " + getPath());
         }
-        seekInternal((int)pos);
+        seekInternal(absolutePos);
     }
 }
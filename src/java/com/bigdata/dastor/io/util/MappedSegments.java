@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.io.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * BIGDATA:
+ * A read-only mapping of a file, or of its first length bytes, addressed by
+ * long positions.  The jvm maps at most 2GB at a time, so the file is mapped
+ * in consecutive segments; getInput returns a MappedFileDataInput which reads
+ * across them, so rows and index entries spanning a segment boundary need no
+ * special handling by the callers.
+ */
+public class MappedSegments
+{
+    private final String filename;
+    private final long segmentSize;
+    private final long length;
+    private final MappedByteBuffer[] segments;
+
+    private MappedSegments(String filename, long segmentSize, long length, MappedByteBuffer[] segments)
+    {
+        this.filename = filename;
+        this.segmentSize = segmentSize;
+        this.length = length;
+        this.segments = segments;
+    }
+
+    public static MappedSegments map(String filename, long segmentSize) throws IOException
+    {
+        return map(filename, -1, segmentSize);
+    }
+
+    /**
+     * @param length the number of bytes to map from the start of the file, or -1 for the whole file.
+     */
+    public static MappedSegments map(String filename, long length, long segmentSize) throws IOException
+    {
+        assert segmentSize > 0 && segmentSize <= Integer.MAX_VALUE;
+        RandomAccessFile raf = new RandomAccessFile(filename, "r");
+        try
+        {
+            if (length < 0)
+                length = raf.length();
+            int count = (int) Math.max(1, (length + segmentSize - 1) / segmentSize);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++)
+            {
+                long start = i * segmentSize;
+                segments[i] = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, Math.min(segmentSize, length - start)));
+            }
+            return new MappedSegments(filename, segmentSize, length, segments);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    public String getPath()
+    {
+        return filename;
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    public MappedFileDataInput getInput(long position)
+    {
+        assert position >= 0 && position <= length : position + " not in [0, " + length + "]";
+        return new MappedFileDataInput(this, position);
+    }
+
+    /**
+     * @return the length bytes at position: a view over the mapping when they are in one
+     * segment, else a copy.
+     */
+    public ByteBuffer get(long position, int length)
+    {
+        assert position >= 0 && position + length <= this.length;
+        int index = segmentIndex(position);
+        int offset = segmentOffset(position);
+        if (offset + length <= segmentSize)
+        {
+            ByteBuffer view = segments[index].duplicate();
+            view.position(offset);
+            view.limit(offset + length);
+            return view.slice();
+        }
+        byte[] bytes = new byte[length];
+        get(position, bytes, 0, length);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * copy length bytes at position into bytes, which may span segments.
+     */
+    void get(long position, byte[] bytes, int offset, int length)
+    {
+        while (length > 0)
+        {
+            int segmentOffset = segmentOffset(position);
+            int n = (int) Math.min(length, segmentSize - segmentOffset);
+            ByteBuffer segment = segments[segmentIndex(position)].duplicate();
+            segment.position(segmentOffset);
+            segment.get(bytes, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    byte get(long position)
+    {
+        return segments[segmentIndex(position)].get(segmentOffset(position));
+    }
+
+    private int segmentIndex(long position)
+    {
+        return (int) (position / segmentSize);
+    }
+
+    private int segmentOffset(long position)
+    {
+        return (int) (position % segmentSize);
+    }
+}
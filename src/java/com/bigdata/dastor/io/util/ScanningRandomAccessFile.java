@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.io.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.bigdata.dastor.concurrent.NamedThreadFactory;
+import com.bigdata.dastor.utils.CLibrary;
+import com.bigdata.dastor.utils.Throttle;
+
+/**
+ * BIGDATA:
+ * A read-only BufferedRandomAccessFile for sequential scans.
+ *
+ * With readAhead, once a buffer is filled the next one is read on a
+ * background thread, while the caller deserializes the current one; a seek
+ * elsewhere just reads synchronously and restarts the read-ahead from there.
+ *
+ * With skipCache, the kernel is advised that the file is read sequentially,
+ * and to drop the pages before the current buffer once they are read, so a
+ * compaction does not evict the pages hot reads depend on.
+ *
+ * With a throttle, each buffer read waits for its bytes to be allowed by it,
+ * which paces all compactions together.
+ */
+public class ScanningRandomAccessFile extends BufferedRandomAccessFile
+{
+    private static final ExecutorService readAheadExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("SCAN-READ-AHEAD"));
+
+    private final boolean readAhead;
+    private final int fd; // -1 unless skipCache
+    private final Throttle throttle; // null if none
+    private long skippedTo = 0;
+
+    private byte[] ahead;
+    private long aheadPosition = -1;
+    private Future<Integer> aheadResult;
+
+    public ScanningRandomAccessFile(String name, int size, boolean readAhead, boolean skipCache) throws IOException
+    {
+        this(name, size, readAhead, skipCache, null);
+    }
+
+    public ScanningRandomAccessFile(String name, int size, boolean readAhead, boolean skipCache, Throttle throttle) throws IOException
+    {
+        super(name, "r", size);
+        this.readAhead = readAhead;
+        this.throttle = throttle;
+        if (skipCache)
+        {
+            fd = CLibrary.getfd(getFD());
+            CLibrary.tryFadviseSequential(fd);
+        }
+        else
+        {
+            fd = -1;
+        }
+    }
+
+    @Override
+    protected int readBuffer(long position, byte[] buffer) throws IOException
+    {
+        if (throttle != null)
+            throttle.acquire(buffer.length);
+
+        int n;
+        if (aheadResult != null && aheadPosition == position && ahead.length == buffer.length)
+        {
+            n = awaitReadAhead();
+            System.arraycopy(ahead, 0, buffer, 0, n);
+        }
+        else
+        {
+            // a seek: the read-ahead, if any, is of no use
+            if (aheadResult != null)
+                awaitReadAhead();
+            n = readAt(position, buffer);
+        }
+
+        if (readAhead && n == buffer.length && position + n < length())
+            startReadAhead(position + n, buffer.length);
+
+        if (fd >= 0 && position > skippedTo)
+        {
+            CLibrary.trySkipCache(fd, skippedTo, position - skippedTo);
+            skippedTo = position;
+        }
+        return n;
+    }
+
+    private void startReadAhead(final long position, int length)
+    {
+        if (ahead == null || ahead.length != length)
+            ahead = new byte[length];
+        final byte[] buffer = ahead;
+        aheadPosition = position;
+        aheadResult = readAheadExecutor.submit(new Callable<Integer>()
+        {
+            public Integer call() throws IOException
+            {
+                return readAt(position, buffer);
+            }
+        });
+    }
+
+    private int awaitReadAhead() throws IOException
+    {
+        Future<Integer> result = aheadResult;
+        aheadResult = null;
+        aheadPosition = -1;
+        try
+        {
+            return result.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * positional read, which leaves the file pointer alone and may run on another thread.
+     */
+    private int readAt(long position, byte[] buffer) throws IOException
+    {
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        while (bb.hasRemaining())
+        {
+            int n = getChannel().read(bb, position + bb.position());
+            if (n < 0)
+                break;
+        }
+        return bb.position();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if (aheadResult != null)
+                awaitReadAhead();
+            if (fd >= 0)
+                CLibrary.trySkipCache(fd, skippedTo, 0);
+        }
+        finally
+        {
+            super.close();
+        }
+    }
+}
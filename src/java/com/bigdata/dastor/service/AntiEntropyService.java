@@ -36,7 +36,6 @@ import com.bigdata.dastor.dht.Range;
 import com.bigdata.dastor.dht.Token;
 import com.bigdata.dastor.io.CompactionIterator.CompactedRow;
 import com.bigdata.dastor.io.ICompactSerializer;
-import com.bigdata.dastor.io.IndexSummary;
 import com.bigdata.dastor.io.SSTableReader;
 import com.bigdata.dastor.net.IVerbHandler;
 import com.bigdata.dastor.net.Message;
@@ -284,8 +283,8 @@ public class AntiEntropyService
         public void prepare(ColumnFamilyStore cfs)
         {
             List<DecoratedKey> keys = new ArrayList<DecoratedKey>();
-            for (IndexSummary.KeyPosition info: cfs.allIndexPositions())
-                keys.add(info.key);
+            for (DecoratedKey key : cfs.allSampledKeys())
+                keys.add(key);
 
             if (keys.isEmpty())
             {
@@ -43,7 +43,7 @@ import com.bigdata.dastor.db.commitlog.CommitLog;
 import com.bigdata.dastor.dht.*;
 import com.bigdata.dastor.gms.*;
 import com.bigdata.dastor.io.DeletionService;
-import com.bigdata.dastor.io.IndexSummary;
+import com.bigdata.dastor.io.SSTableReader;
 import com.bigdata.dastor.io.util.FileUtils;
 import com.bigdata.dastor.io.util.FileUtils.FSInfo;
 import com.bigdata.dastor.locator.*;
@@ -1323,10 +1323,10 @@ public class StorageService implements IEndPointStateChangeSubscriber, StorageSe
         List<DecoratedKey> keys = new ArrayList<DecoratedKey>();
         for (ColumnFamilyStore cfs : ColumnFamilyStore.all())
         {
-            for (IndexSummary.KeyPosition info: cfs.allIndexPositions())
+            for (DecoratedKey key : cfs.allSampledKeys())
             {
-                if (range.contains(info.key.token))
-                    keys.add(info.key);
+                if (range.contains(key.token))
+                    keys.add(key);
             }
         }
         FBUtilities.sortSampledKeys(keys, range);
@@ -1352,10 +1352,10 @@ public class StorageService implements IEndPointStateChangeSubscriber, StorageSe
         List<DecoratedKey> keys = new ArrayList<DecoratedKey>();
         for (ColumnFamilyStore cfs : ColumnFamilyStore.all())
         {
-            for (IndexSummary.KeyPosition info: cfs.allIndexPositions())
+            for (DecoratedKey key : cfs.allSampledKeys())
             {
-                if (range.contains(info.key.token))
-                    keys.add(info.key);
+                if (range.contains(key.token))
+                    keys.add(key);
             }
         }
         FBUtilities.sortSampledKeys(keys, range);
@@ -1800,6 +1800,29 @@ public class StorageService implements IEndPointStateChangeSubscriber, StorageSe
         return CommitLog.instance().getSegmentCount();
     }
 
+    // BIGDATA:
+    @Override
+    public int getIndexInterval()
+    {
+        return DatabaseDescriptor.getIndexInterval();
+    }
+
+    // BIGDATA:
+    @Override
+    public void setIndexInterval(int interval) throws IOException
+    {
+        if (interval <= 0)
+            throw new IllegalArgumentException("IndexInterval must be positive");
+        DatabaseDescriptor.setIndexInterval(interval);
+        long start = System.currentTimeMillis();
+        for (ColumnFamilyStore cfs : ColumnFamilyStore.all())
+        {
+            for (SSTableReader sstable : cfs.getSSTables())
+                sstable.resampleIndex();
+        }
+        logger_.info("resampled sstable indexes at interval " + interval + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
     // BIGDATA:
     @Override
     public List<byte[]> getSchema() throws IOException 
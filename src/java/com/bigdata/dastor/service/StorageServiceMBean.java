@@ -195,6 +195,10 @@ public interface StorageServiceMBean
     public DiskSpaceLoad getTableDiskSpaceLoad(String tableName);
     public Map<String, DiskSpaceLoad> getTablesDiskSpaceLoad();
     public int getCommitLogSegmentCount();
+
+    // BIGDATA: the sampling interval of the sstable indexes; set resamples the open sstables.
+    public int getIndexInterval();
+    public void setIndexInterval(int interval) throws IOException;
     
     // BIGDATA:
     public List<byte[]> getSchema() throws IOException;
@@ -99,6 +99,9 @@ public class DastorMain
             }
         });
         
+        // BIGDATA: startup timing breakdown
+        long startAt = System.currentTimeMillis();
+
         // check the system table for mismatched partitioner.
         try
         {
@@ -117,10 +120,13 @@ public class DastorMain
                 logger.debug("opening keyspace " + table);
             Table.open(table);
         }
+        long openedAt = System.currentTimeMillis();
 
         // replay the log if necessary and check for compaction candidates
         CommitLog.recover();
+        long recoveredAt = System.currentTimeMillis();
         CompactionManager.instance.checkAllColumnFamilies();
+        long checkedAt = System.currentTimeMillis();
 
         // start server internals
         try
@@ -136,6 +142,10 @@ public class DastorMain
         
         // BIGDATA: init storage proxy
         StorageProxy.init();
+        long initializedAt = System.currentTimeMillis();
+        logger.info(String.format("Startup took %d ms: open keyspaces %d ms, log replay %d ms, compaction check %d ms, server init %d ms",
+                                  initializedAt - startAt, openedAt - startAt, recoveredAt - openedAt,
+                                  checkedAt - recoveredAt, initializedAt - checkedAt));
         
         // now we start listening for clients
         final DastorThriftServer dastorServer = new DastorThriftServer();
@@ -24,6 +24,7 @@ package com.bigdata.dastor.tools;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.management.MemoryUsage;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.cli.*;
 
+import com.bigdata.dastor.cache.BlockCacheMBean;
 import com.bigdata.dastor.cache.JMXInstrumentedCacheMBean;
 import com.bigdata.dastor.concurrent.IExecutorMBean;
 import com.bigdata.dastor.config.DatabaseDescriptor;
@@ -48,6 +50,7 @@ import com.bigdata.dastor.db.ColumnFamilyStoreMBean;
 import com.bigdata.dastor.db.CompactionManager;
 import com.bigdata.dastor.db.CompactionManagerMBean;
 import com.bigdata.dastor.db.HintedHandOffManagerMBean;
+import com.bigdata.dastor.db.commitlog.CommitLogReplayerMBean;
 import com.bigdata.dastor.dht.Range;
 import com.bigdata.dastor.io.util.FileUtils;
 import com.bigdata.dastor.service.StorageProxyMBean;
@@ -100,6 +103,7 @@ public class DastorAdminCli {
             "\n streams      - the streaming files to all other nodes or specified node: [node]" +
             "\n cmstats      - the stats of compaction." +
             "\n ddstats      - the stats of deputy transfer." +
+            "\n replaystats  - the progress of commit log replay." +
             "\n -" +
 
             "\n-- Basic operation commands: " +
@@ -109,6 +113,8 @@ public class DastorAdminCli {
             "\n cleanup      - force clean data that do not belong this node: <KS> [BKT...]" +
             "\n gc           - force garbadge collection (to delete compacted-sstables)." +
             "\n dlvhints     - force deliver hints to one node: <HOST>" +
+            "\n setidxintvl  - resample the sstable indexes every <INTERVAL> keys." +
+            "\n setcmrate    - limit the compaction reads to <MB> per second, 0 for unlimited." +
             "\n -" +
             
             // "\n-- Advanced operation commands for experts! : " + 
@@ -266,6 +272,20 @@ public class DastorAdminCli {
         double memMax = (double)heapUsage.getMax() / (1024 * 1024);
         outs.println(String.format("%-17s: %.2f / %.2f", "Heap Memory (MB)", memUsed, memMax));
         
+        // BIGDATA: block cache, registered on the first column block read
+        try
+        {
+            BlockCacheMBean blockCache = probe.getBlockCacheMBean();
+            outs.println(String.format("%-17s: %s / %s, %d blocks, recent hit rate %.3f", "Block Cache",
+                    FileUtils.stringifyFileSize(blockCache.getSizeInBytes()),
+                    FileUtils.stringifyFileSize(blockCache.getCapacityInBytes()),
+                    blockCache.getBlockCount(), blockCache.getRecentHitRate()));
+        }
+        catch (UndeclaredThrowableException e)
+        {
+            outs.println(String.format("%-17s: %s", "Block Cache", "not loaded"));
+        }
+
         // Disk space
         outs.println(String.format("%-17s: %s / %s", "Load", probe.getLoadString(), 
                 probe.getStorageServiceMBean().getGrossLoadString()));
@@ -438,6 +458,7 @@ public class DastorAdminCli {
         
         outs.println("\t\tMemtable cells count: " + cfstore.getMemtableColumnsCount());
         outs.println("\t\tMemtable data size: " + cfstore.getMemtableDataSize());
+        outs.println("\t\tMemtable live size: " + cfstore.getMemtableLiveSize());
         outs.println("\t\tMemtable flush count: " + cfstore.getMemtableSwitchCount());
         
         outs.println("\t\tTotal Read count: " + cfstore.getReadCount());
@@ -447,12 +468,18 @@ public class DastorAdminCli {
         outs.println("\t\tRecent Write latency(ms): " + String.format("%01.3f", cfstore.getRecentWriteLatencyMicros() / 1000));
         outs.println("\t\tRecent Write throughput(ops/s): " + cfstore.getRecentWriteThroughput());
         outs.println("\t\tPending tasks: " + cfstore.getPendingTasks());
+        outs.println("\t\tBloom filter false positive rate: " + String.format("%01.6f", cfstore.getBloomFilterFalsePositiveRate())
+                     + " (expected " + String.format("%01.6f", cfstore.getBloomFilterExpectedFalsePositiveRate())
+                     + ", standard filter " + String.format("%01.6f", cfstore.getStandardBloomFilterExpectedFalsePositiveRate()) + ")");
 
         JMXInstrumentedCacheMBean keyCacheMBean = probe.getKeyCacheMBean(tableName, cfName);
         if (keyCacheMBean.getCapacity() > 0)
         {
             outs.println("\t\tKey cache capacity: " + keyCacheMBean.getCapacity());
             outs.println("\t\tKey cache size: " + keyCacheMBean.getSize());
+            if (keyCacheMBean.isWeighted())
+                outs.println("\t\tKey cache bytes: " + keyCacheMBean.getWeightedSize());
+            outs.println("\t\tKey cache policy: " + keyCacheMBean.getPolicy());
             outs.println("\t\tKey cache hit rate: " + keyCacheMBean.getRecentHitRate());
         }
         else
@@ -465,6 +492,9 @@ public class DastorAdminCli {
         {
             outs.println("\t\tRow cache capacity: " + rowCacheMBean.getCapacity());
             outs.println("\t\tRow cache size: " + rowCacheMBean.getSize());
+            if (rowCacheMBean.isWeighted())
+                outs.println("\t\tRow cache bytes: " + rowCacheMBean.getWeightedSize());
+            outs.println("\t\tRow cache policy: " + rowCacheMBean.getPolicy());
             outs.println("\t\tRow cache hit rate: " + rowCacheMBean.getRecentHitRate());
         }
         else
@@ -512,6 +542,26 @@ public class DastorAdminCli {
         outs.println("Bytes in Compacting :" + cmProxy.getBytesTotalInProgress());
         outs.println("Bytes in Compacted :" + cmProxy.getBytesCompacted());
         outs.println("Pending Tasks :" + cmProxy.getPendingTasks());
+        outs.println("Throughput Limit (MB/s) :" + cmProxy.getCompactionThroughputInMB()); // BIGDATA
+        outs.println("Throughput (MB/s) :" + cmProxy.getCompactionThroughputs()); // BIGDATA
+    }
+    
+    // BIGDATA:
+    public void printReplayStats(PrintStream outs) throws IOException
+    {
+        CommitLogReplayerMBean replayer = probe.getReplayerMBean();
+        if (replayer == null)
+        {
+            outs.println("No commit log replayed.");
+            return;
+        }
+        outs.println("Replaying : " + replayer.isReplaying());
+        outs.println("Segments : " + replayer.getReplayedSegments() + " / " + replayer.getTotalSegments());
+        outs.println("Bytes Read : " + FileUtils.stringifyFileSize(replayer.getReadBytes())
+                     + " / " + FileUtils.stringifyFileSize(replayer.getTotalBytes()));
+        outs.println("Mutations Replayed : " + replayer.getReplayedMutations());
+        outs.println("Entries Skipped : " + replayer.getSkippedEntries());
+        outs.println("Elapsed (ms) : " + replayer.getElapsedTime());
     }
     
     // BIGDATA:
@@ -529,7 +579,19 @@ public class DastorAdminCli {
     {
         probe.getStorageServiceMBean().requestGC();
     }
+
+    // BIGDATA
+    public void setIndexInterval(int interval) throws IOException
+    {
+        probe.getStorageServiceMBean().setIndexInterval(interval);
+    }
     
+    // BIGDATA
+    public void setCompactionThroughput(int throughput)
+    {
+        probe.getCmMBean().setCompactionThroughputInMB(throughput);
+    }
+
     // BIGDATA
     public void deliverHints(String endPoint) throws UnknownHostException
     {
@@ -802,8 +864,8 @@ public class DastorAdminCli {
             }
             String tableName = arguments[1];
             String cfName = arguments[2];
-            int keyCacheCapacity = Integer.valueOf(arguments[3]);
-            int rowCacheCapacity = Integer.valueOf(arguments[4]);
+            long keyCacheCapacity = Long.valueOf(arguments[3]);
+            long rowCacheCapacity = Long.valueOf(arguments[4]);
             probe.setCacheCapacities(tableName, cfName, keyCacheCapacity, rowCacheCapacity);
         }
         else if (cmdName.equals("getcmthresh"))
@@ -857,10 +919,41 @@ public class DastorAdminCli {
         {
             nodeCmd.printHhStats(System.out);
         }
+        else if (cmdName.equals("replaystats"))
+        {
+            nodeCmd.printReplayStats(System.out);
+        }
         else if (cmdName.equals("gc"))
         {
             nodeCmd.requestGC();
         }
+        else if (cmdName.equals("setidxintvl"))
+        {
+            if (arguments.length < 2)
+            {
+                System.err.println("Missing index interval!");
+                printUsage();
+                return 1;
+            }
+            nodeCmd.setIndexInterval(Integer.parseInt(arguments[1]));
+        }
+        else if (cmdName.equals("setcmrate"))
+        {
+            if (arguments.length < 2)
+            {
+                System.err.println("Missing compaction throughput!");
+                printUsage();
+                return 1;
+            }
+            int throughput = Integer.parseInt(arguments[1]);
+            if (throughput < 0)
+            {
+                System.err.println("Compaction throughput must not be negative");
+                printUsage();
+                return 1;
+            }
+            nodeCmd.setCompactionThroughput(throughput);
+        }
         else if (cmdName.equals("dlvhints"))
         {
             if (arguments.length < 2)
@@ -42,6 +42,8 @@ import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
 
+import com.bigdata.dastor.cache.BlockCache;
+import com.bigdata.dastor.cache.BlockCacheMBean;
 import com.bigdata.dastor.cache.JMXInstrumentedCacheMBean;
 import com.bigdata.dastor.concurrent.IExecutorMBean;
 import com.bigdata.dastor.config.KSMetaData;
@@ -50,6 +52,8 @@ import com.bigdata.dastor.db.CompactionManager;
 import com.bigdata.dastor.db.CompactionManagerMBean;
 import com.bigdata.dastor.db.HintedHandOffManager;
 import com.bigdata.dastor.db.HintedHandOffManagerMBean;
+import com.bigdata.dastor.db.commitlog.CommitLogReplayer;
+import com.bigdata.dastor.db.commitlog.CommitLogReplayerMBean;
 import com.bigdata.dastor.dht.Range;
 import com.bigdata.dastor.io.util.FileUtils;
 import com.bigdata.dastor.service.StorageProxy;
@@ -78,6 +82,7 @@ public class NodeProbe
     private StreamingServiceMBean streamProxy;
     private StorageProxyMBean spProxy; // BIGDATA
     private HintedHandOffManagerMBean hhProxy;
+    private BlockCacheMBean bcProxy; // BIGDATA
     
     /**
      * Creates a NodeProbe using the specified JMX host and port.
@@ -130,6 +135,8 @@ public class NodeProbe
             spProxy = JMX.newMBeanProxy(mbeanServerConn, name, StorageProxyMBean.class);
             name = new ObjectName(HintedHandOffManager.MBEAN_OBJECT_NAME);
             hhProxy = JMX.newMBeanProxy(mbeanServerConn, name, HintedHandOffManagerMBean.class);
+            name = new ObjectName(BlockCache.MBEAN_OBJECT_NAME);
+            bcProxy = JMX.newMBeanProxy(mbeanServerConn, name, BlockCacheMBean.class);
         } catch (MalformedObjectNameException e)
         {
             throw new RuntimeException(
@@ -453,7 +460,7 @@ public class NodeProbe
         }
     }
 
-    public void setCacheCapacities(String tableName, String cfName, int keyCacheCapacity, int rowCacheCapacity)
+    public void setCacheCapacities(String tableName, String cfName, long keyCacheCapacity, long rowCacheCapacity)
     {
         try
         {
@@ -514,12 +521,37 @@ public class NodeProbe
         return spProxy;
     }
     
+    // BIGDATA:
+    public BlockCacheMBean getBlockCacheMBean()
+    {
+        return bcProxy;
+    }
+    
     // BIGDATA:
     public CompactionManagerMBean getCmMBean()
     {
         return mcmProxy;
     }
     
+    /**
+     * BIGDATA:
+     * @return the commit log replay progress, or null if the node has not replayed any log.
+     */
+    public CommitLogReplayerMBean getReplayerMBean() throws IOException
+    {
+        try
+        {
+            ObjectName name = new ObjectName(CommitLogReplayer.MBEAN_OBJECT_NAME);
+            if (!mbeanServerConn.isRegistered(name))
+                return null;
+            return JMX.newMBeanProxy(mbeanServerConn, name, CommitLogReplayerMBean.class);
+        }
+        catch (MalformedObjectNameException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
     // BIGDATA:
     public List<KSMetaData> getSchema() throws IOException 
     {
@@ -36,6 +36,7 @@ import com.bigdata.dastor.db.DecoratedKey;
 import com.bigdata.dastor.db.SuperColumn;
 import com.bigdata.dastor.db.filter.QueryPath;
 import com.bigdata.dastor.dht.IPartitioner;
+import com.bigdata.dastor.io.ColumnStats;
 import com.bigdata.dastor.io.SSTableWriter;
 import com.bigdata.dastor.io.util.DataOutputBuffer;
 
@@ -159,8 +160,9 @@ public class SSTableImport
                 else
                     addToStandardCF((JSONArray)json.get(rowKey.key), cfamily);
                            
-                ColumnFamily.serializer().serializeWithIndexes(cfamily, headerBuffer, dob, DatabaseDescriptor.getCompressAlgo(keyspace, cf)); // BIGDATA
-                writer.append(rowKey, headerBuffer, dob);
+                ColumnFamily.serializer().serializeWithIndexes(cfamily, headerBuffer, dob, DatabaseDescriptor.getCompressAlgo(keyspace, cf),
+                                                         DatabaseDescriptor.getColumnBloomFilterThreshold(keyspace, cf)); // BIGDATA
+                writer.append(rowKey, headerBuffer, dob, ColumnStats.of(cfamily));
                 headerBuffer.reset(); // BIGDATA
                 dob.reset();
                 cfamily.clear();
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.dastor.io.ICompactSerializer;
+
+/**
+ * BIGDATA:
+ * A blocked Bloom filter: the bits of a key are all set in one block of 512
+ * bits, a 64-byte cache line, chosen by the first half of a 128-bit murmur3
+ * hash of the key; the bits in the block are derived from the second half.
+ * A probe then costs one hash and one cache miss, whatever the hash count.
+ *
+ * The bits are kept in a long[], so a filter holds up to 2^37 bits instead of
+ * the 2^31 of the BitSet of BloomFilter.  Confining the bits of a key to a
+ * block costs a slightly higher false positive rate for the same size; see
+ * expectedFalsePositiveRate.
+ */
+public class BlockedBloomFilter extends Filter
+{
+    private static final Logger logger = Logger.getLogger(BlockedBloomFilter.class);
+    private static final ICompactSerializer<BlockedBloomFilter> serializer_ = new BlockedBloomFilterSerializer();
+
+    // written in place of the hash count of a BloomFilter, which is positive
+    static final int MARKER = -1;
+
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * 64;
+    private static final int BLOCK_SHIFT = 9; // log2(BLOCK_BITS)
+    private static final int MAX_WORDS = Integer.MAX_VALUE - BLOCK_WORDS;
+
+    public static ICompactSerializer<BlockedBloomFilter> serializer()
+    {
+        return serializer_;
+    }
+
+    private final long[] words;
+    private final int blockCount;
+
+    BlockedBloomFilter(int hashes, long[] words)
+    {
+        assert words.length > 0 && words.length % BLOCK_WORDS == 0;
+        hashCount = hashes;
+        this.words = words;
+        blockCount = words.length / BLOCK_WORDS;
+    }
+
+    /**
+     * @return A BlockedBloomFilter with targetBucketsPerElem bits per element, or
+     * the closest the hash count table supports.
+     */
+    public static BlockedBloomFilter getFilter(long numElements, int targetBucketsPerElem)
+    {
+        numElements = Math.max(1, numElements);
+        int bucketsPerElement = Math.max(1, Math.min(targetBucketsPerElem, BloomCalculations.probs.length - 1));
+        BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement);
+        long blocks = Math.max(1, (numElements * spec.bucketsPerElement + BLOCK_BITS - 1) / BLOCK_BITS);
+        if (blocks * BLOCK_WORDS > MAX_WORDS)
+        {
+            blocks = MAX_WORDS / BLOCK_WORDS;
+            logger.warn(String.format("Cannot provide an optimal BlockedBloomFilter for %d elements (%d/%d buckets per element).",
+                                      numElements, blocks * BLOCK_BITS / numElements, targetBucketsPerElem));
+        }
+        return new BlockedBloomFilter(spec.K, new long[(int) (blocks * BLOCK_WORDS)]);
+    }
+
+    long buckets()
+    {
+        return (long) words.length * 64;
+    }
+
+    public boolean isPresent(String key)
+    {
+        return isPresent(toBytes(key));
+    }
+
+    public boolean isPresent(byte[] key)
+    {
+        long[] hash = MurmurHash.hash3_x64_128(key, 0, key.length, 0);
+        int start = blockStart(hash[0]);
+        long bits = hash[1];
+        for (int i = 0; i < hashCount; i++)
+        {
+            int bit = (int) (bits >>> (64 - BLOCK_SHIFT));
+            if ((words[start + (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+            bits = nextBits(bits);
+        }
+        return true;
+    }
+
+    public void add(String key)
+    {
+        add(toBytes(key));
+    }
+
+    public void add(byte[] key)
+    {
+        long[] hash = MurmurHash.hash3_x64_128(key, 0, key.length, 0);
+        int start = blockStart(hash[0]);
+        long bits = hash[1];
+        for (int i = 0; i < hashCount; i++)
+        {
+            int bit = (int) (bits >>> (64 - BLOCK_SHIFT));
+            words[start + (bit >>> 6)] |= 1L << bit;
+            bits = nextBits(bits);
+        }
+    }
+
+    /**
+     * the bits of the next probe: a multiplicative step, whose high bits are
+     * well mixed, unlike double hashing modulo the small block.
+     */
+    private static long nextBits(long bits)
+    {
+        return bits * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+    }
+
+    private int blockStart(long hash)
+    {
+        return (int) ((hash >>> 1) % blockCount) * BLOCK_WORDS;
+    }
+
+    private static byte[] toBytes(String key)
+    {
+        try
+        {
+            return key.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The number of keys of a block follows a Poisson distribution of mean
+     * elements / blocks; a probe is a false positive with the probability of
+     * a standard filter of one block holding that many keys.
+     */
+    public double expectedFalsePositiveRate(long elements)
+    {
+        if (elements <= 0)
+            return 0;
+        double mean = (double) elements / blockCount;
+        int first = (int) Math.max(0, mean - 10 * Math.sqrt(mean) - 10);
+        int last = (int) (mean + 10 * Math.sqrt(mean) + 10);
+        double logProbability = first * Math.log(mean) - mean - logFactorial(first);
+        double rate = 0;
+        for (int load = first; load <= last; load++)
+        {
+            if (load > first)
+                logProbability += Math.log(mean / load);
+            rate += Math.exp(logProbability) * BloomFilter.falsePositiveRate(hashCount, BLOCK_BITS, load);
+        }
+        return Math.min(1.0, rate);
+    }
+
+    private static double logFactorial(int n)
+    {
+        double result = 0;
+        for (int i = 2; i <= n; i++)
+            result += Math.log(i);
+        return result;
+    }
+
+    long emptyBuckets()
+    {
+        long n = 0;
+        for (long word : words)
+            n += 64 - Long.bitCount(word);
+        return n;
+    }
+
+    long[] words()
+    {
+        return words;
+    }
+}
+
+/**
+ * [int marker][int hash count][int word count][long words]
+ */
+class BlockedBloomFilterSerializer implements ICompactSerializer<BlockedBloomFilter>
+{
+    private static final int CHUNK_WORDS = 8192;
+
+    public void serialize(BlockedBloomFilter bf, DataOutputStream dos) throws IOException
+    {
+        dos.writeInt(BlockedBloomFilter.MARKER);
+        dos.writeInt(bf.getHashCount());
+        long[] words = bf.words();
+        dos.writeInt(words.length);
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * 8);
+        for (int i = 0; i < words.length; i += CHUNK_WORDS)
+        {
+            int n = Math.min(CHUNK_WORDS, words.length - i);
+            chunk.clear();
+            chunk.asLongBuffer().put(words, i, n);
+            dos.write(chunk.array(), 0, n * 8);
+        }
+    }
+
+    public BlockedBloomFilter deserialize(DataInputStream dis) throws IOException
+    {
+        int marker = dis.readInt();
+        if (marker != BlockedBloomFilter.MARKER)
+            throw new IOException("Not a BlockedBloomFilter");
+        return deserializeBody(dis);
+    }
+
+    static BlockedBloomFilter deserializeBody(DataInputStream dis) throws IOException
+    {
+        int hashes = dis.readInt();
+        long[] words = new long[dis.readInt()];
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * 8);
+        for (int i = 0; i < words.length; i += CHUNK_WORDS)
+        {
+            int n = Math.min(CHUNK_WORDS, words.length - i);
+            dis.readFully(chunk.array(), 0, n * 8);
+            chunk.clear();
+            chunk.asLongBuffer().get(words, i, n);
+        }
+        return new BlockedBloomFilter(hashes, words);
+    }
+}
@@ -105,11 +105,50 @@ public class BloomFilter extends Filter
         filter_.clear();
     }
 
-    int buckets()
+    long buckets()
     {
         return filter_.size();
     }
 
+    public int[] getHashBuckets(String key)
+    {
+        return Filter.getHashBuckets(key, hashCount, filter_.size());
+    }
+
+    public int[] getHashBuckets(byte[] key)
+    {
+        return Filter.getHashBuckets(key, hashCount, filter_.size());
+    }
+
+    /**
+     * BIGDATA: (1 - e^(-kn/m))^k
+     */
+    public double expectedFalsePositiveRate(long elements)
+    {
+        return falsePositiveRate(hashCount, buckets(), elements);
+    }
+
+    static double falsePositiveRate(int hashes, long buckets, long elements)
+    {
+        return Math.pow(1 - Math.exp(-(double) hashes * elements / buckets), hashes);
+    }
+
+    /**
+     * BIGDATA:
+     * @return the false positive rate of the filter getFilter(numElements, targetBucketsPerElem)
+     * would return, without building it.
+     */
+    public static double expectedFalsePositiveRate(long numElements, int targetBucketsPerElem)
+    {
+        numElements = Math.max(1, numElements);
+        if ((Integer.MAX_VALUE - EXCESS) / (double) numElements < 1.0)
+            return 1.0;
+        int bucketsPerElement = Math.min(targetBucketsPerElem, Math.max(1, maxBucketsPerElement(numElements)));
+        BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement);
+        long numBits = Math.min(Integer.MAX_VALUE, numElements * spec.bucketsPerElement + EXCESS);
+        return falsePositiveRate(spec.K, numBits, numElements);
+    }
+
     BitSet filter()
     {
         return filter_;
@@ -170,9 +209,9 @@ public class BloomFilter extends Filter
         return serializer_;
     }
 
-    int emptyBuckets()
+    long emptyBuckets()
     {
-        int n = 0;
+        long n = 0;
         for (int i = 0; i < buckets(); i++)
         {
             if (!filter_.get(i))
@@ -203,7 +242,11 @@ class BloomFilterSerializer implements ICompactSerializer<BloomFilter>
 
     public BloomFilter deserialize(DataInputStream dis) throws IOException
     {
-        int hashes = dis.readInt();
+        return deserializeBody(dis.readInt(), dis);
+    }
+
+    static BloomFilter deserializeBody(int hashes, DataInputStream dis) throws IOException
+    {
         BitSet bs = BitSetSerializer.deserialize(dis);
         return new BloomFilter(hashes, bs);
     }
@@ -19,7 +19,9 @@
 package com.bigdata.dastor.utils;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.lang.reflect.Field;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,10 @@ public final class CLibrary
     
     private static final int ENOMEM = 12;
 
+    // BIGDATA: posix_fadvise advice, as on Linux
+    private static final int POSIX_FADV_SEQUENTIAL = 2;
+    private static final int POSIX_FADV_DONTNEED = 4;
+
     static
     {
         try
@@ -57,6 +63,9 @@ public final class CLibrary
 
     private static native int link(String from, String to) throws LastErrorException;
 
+    // BIGDATA: returns the error number instead of setting errno
+    private static native int posix_fadvise(int fd, long offset, long len, int advice);
+
     private static int errno(RuntimeException e)
     {
         assert e instanceof LastErrorException;
@@ -132,6 +141,56 @@ public final class CLibrary
         }
     }
 
+    /**
+     * BIGDATA:
+     * @return the file descriptor number of fd, or -1 if it cannot be read.
+     */
+    public static int getfd(FileDescriptor fd)
+    {
+        try
+        {
+            Field field = FileDescriptor.class.getDeclaredField("fd");
+            field.setAccessible(true);
+            return field.getInt(fd);
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * BIGDATA: advise the kernel that the file will be read sequentially, so it reads further ahead.
+     */
+    public static void tryFadviseSequential(int fd)
+    {
+        tryFadvise(fd, 0, 0, POSIX_FADV_SEQUENTIAL);
+    }
+
+    /**
+     * BIGDATA: advise the kernel to drop the clean cached pages of the range; len 0 means up to the end.
+     */
+    public static void trySkipCache(int fd, long offset, long len)
+    {
+        tryFadvise(fd, offset, len, POSIX_FADV_DONTNEED);
+    }
+
+    private static void tryFadvise(int fd, long offset, long len, int advice)
+    {
+        if (fd < 0 || !System.getProperty("os.name").toLowerCase().contains("linux"))
+            return;
+        try
+        {
+            int result = posix_fadvise(fd, offset, len, advice);
+            if (result != 0 && logger.isDebugEnabled())
+                logger.debug("posix_fadvise(" + advice + ") failed, errno " + result);
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            // this will have already been logged by CLibrary, no need to repeat it
+        }
+    }
+
     private static void createHardLinkWithExec(File sourceFile, File destinationFile) throws IOException
     {
         String osname = System.getProperty("os.name");
@@ -202,6 +202,22 @@ public class FBUtilities
         else return (bytes1.length < bytes2.length)? -1 : 1;
     }
 
+    /**
+     * BIGDATA: compareByteArrays on the ranges of two arrays.
+     */
+    public static int compareByteArrays(byte[] bytes1, int offset1, int length1, byte[] bytes2, int offset2, int length2)
+    {
+        int minLength = Math.min(length1, length2);
+        for (int i = 0; i < minLength; i++)
+        {
+            int b1 = bytes1[offset1 + i] & 0xFF;
+            int b2 = bytes2[offset2 + i] & 0xFF;
+            if (b1 != b2)
+                return b1 < b2 ? -1 : 1;
+        }
+        return length1 == length2 ? 0 : (length1 < length2 ? -1 : 1);
+    }
+
     /**
      * @return The bitwise XOR of the inputs. The output will be the same length as the
      * longer input, but if either input is null, the output will be null.
@@ -18,6 +18,9 @@
 */
 package com.bigdata.dastor.utils;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
 
@@ -28,31 +31,41 @@ public abstract class Filter
     int hashCount;
 
     private static MurmurHash hasher = new MurmurHash();
+    private static final ICompactSerializer<Filter> filterSerializer_ = new FilterSerializer();
 
     int getHashCount()
     {
         return hashCount;
     }
 
-    public int[] getHashBuckets(String key)
-    {
-        return Filter.getHashBuckets(key, hashCount, buckets());
-    }
+    // BIGDATA: long, blocked filters are not bounded by BitSet
+    abstract long buckets();
 
-    public int[] getHashBuckets(byte[] key)
-    {
-        return Filter.getHashBuckets(key, hashCount, buckets());
-    }
+    public abstract void add(String key);
 
+    public abstract void add(byte[] key);
 
-    abstract int buckets();
+    public abstract boolean isPresent(String key);
 
-    public abstract void add(String key);
+    public abstract boolean isPresent(byte[] key);
 
-    public abstract boolean isPresent(String key);
+    /**
+     * BIGDATA:
+     * @return the probability of a false positive once elements have been added.
+     */
+    public abstract double expectedFalsePositiveRate(long elements);
 
     // for testing
-    abstract int emptyBuckets();
+    abstract long emptyBuckets();
+
+    /**
+     * BIGDATA: serializer of the sstable filters, which can be either a
+     * BloomFilter or a BlockedBloomFilter.
+     */
+    public static ICompactSerializer<Filter> filterSerializer()
+    {
+        return filterSerializer_;
+    }
 
     ICompactSerializer<Filter> getSerializer()
     {
@@ -98,4 +111,24 @@ public abstract class Filter
         }
         return result;
     }
-}
\ No newline at end of file
+}
+
+class FilterSerializer implements ICompactSerializer<Filter>
+{
+    public void serialize(Filter filter, DataOutputStream dos) throws IOException
+    {
+        if (filter instanceof BlockedBloomFilter)
+            BlockedBloomFilter.serializer().serialize((BlockedBloomFilter) filter, dos);
+        else
+            BloomFilter.serializer().serialize((BloomFilter) filter, dos);
+    }
+
+    public Filter deserialize(DataInputStream dis) throws IOException
+    {
+        // the hash count of a BloomFilter, or the marker of a BlockedBloomFilter
+        int first = dis.readInt();
+        if (first == BlockedBloomFilter.MARKER)
+            return BlockedBloomFilterSerializer.deserializeBody(dis);
+        return BloomFilterSerializer.deserializeBody(first, dis);
+    }
+}
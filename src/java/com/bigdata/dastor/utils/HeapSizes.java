@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.utils;
+
+/**
+ * BIGDATA:
+ * Rough retained-size arithmetic for on-heap structures, assuming a 64-bit
+ * JVM without compressed oops (the conservative case).  Used to estimate the
+ * real heap footprint of memtables rather than their serialized size.
+ */
+public final class HeapSizes
+{
+    public static final int REFERENCE = 8;
+    public static final int OBJECT_HEADER = 16;
+    public static final int ARRAY_HEADER = 24;
+
+    public static final long ATOMIC_INTEGER = align(OBJECT_HEADER + 4);
+    public static final long ATOMIC_LONG = align(OBJECT_HEADER + 8);
+
+    /* a ConcurrentSkipListMap node (key, value, next), plus its share of index nodes */
+    public static final long SKIP_LIST_ENTRY = align(OBJECT_HEADER + 3 * REFERENCE) + align(OBJECT_HEADER + 3 * REFERENCE) / 2;
+    /* an empty ConcurrentSkipListMap with its head node and head index */
+    public static final long SKIP_LIST = align(OBJECT_HEADER + 6 * REFERENCE + 4) + align(OBJECT_HEADER + 3 * REFERENCE) + align(OBJECT_HEADER + 3 * REFERENCE + 4);
+
+    private HeapSizes()
+    {
+    }
+
+    public static long align(long size)
+    {
+        return (size + 7) & ~7L;
+    }
+
+    public static long sizeOfArray(int length, int elementSize)
+    {
+        return align(ARRAY_HEADER + (long)length * elementSize);
+    }
+
+    public static long sizeOfArray(byte[] bytes)
+    {
+        return sizeOfArray(bytes.length, 1);
+    }
+
+    public static long sizeOfString(String str)
+    {
+        // String object (value, offset, count, hash) and its char[]
+        return align(OBJECT_HEADER + REFERENCE + 3 * 4) + sizeOfArray(str.length(), 2);
+    }
+}
@@ -74,4 +74,82 @@ public class MurmurHash {
 
     return h;
   }
+
+  /**
+   * BIGDATA: MurmurHash3 x64 128-bit.
+   * @return the two 64-bit halves of the hash
+   */
+  @SuppressWarnings("fallthrough") // the tail switch falls through on purpose
+  public static long[] hash3_x64_128(byte[] data, int offset, int length, long seed) {
+    final long c1 = 0x87c37b91114253d5L;
+    final long c2 = 0x4cf5ad432745937fL;
+    long h1 = seed;
+    long h2 = seed;
+
+    int nblocks = length >> 4;
+    for (int i = 0; i < nblocks; i++) {
+      int i_16 = offset + (i << 4);
+      long k1 = getLong(data, i_16);
+      long k2 = getLong(data, i_16 + 8);
+
+      k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+      h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+      k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+      h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    int tail = offset + (nblocks << 4);
+    long k1 = 0;
+    long k2 = 0;
+    switch (length & 15) {
+      case 15: k2 ^= ((long) data[tail + 14] & 0xff) << 48;
+      case 14: k2 ^= ((long) data[tail + 13] & 0xff) << 40;
+      case 13: k2 ^= ((long) data[tail + 12] & 0xff) << 32;
+      case 12: k2 ^= ((long) data[tail + 11] & 0xff) << 24;
+      case 11: k2 ^= ((long) data[tail + 10] & 0xff) << 16;
+      case 10: k2 ^= ((long) data[tail + 9] & 0xff) << 8;
+      case 9:  k2 ^= ((long) data[tail + 8] & 0xff);
+               k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+      case 8:  k1 ^= ((long) data[tail + 7] & 0xff) << 56;
+      case 7:  k1 ^= ((long) data[tail + 6] & 0xff) << 48;
+      case 6:  k1 ^= ((long) data[tail + 5] & 0xff) << 40;
+      case 5:  k1 ^= ((long) data[tail + 4] & 0xff) << 32;
+      case 4:  k1 ^= ((long) data[tail + 3] & 0xff) << 24;
+      case 3:  k1 ^= ((long) data[tail + 2] & 0xff) << 16;
+      case 2:  k1 ^= ((long) data[tail + 1] & 0xff) << 8;
+      case 1:  k1 ^= ((long) data[tail] & 0xff);
+               k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    h2 += h1;
+    return new long[] { h1, h2 };
+  }
+
+  private static long getLong(byte[] data, int i) {
+    return ((long) data[i] & 0xff)
+         | (((long) data[i + 1] & 0xff) << 8)
+         | (((long) data[i + 2] & 0xff) << 16)
+         | (((long) data[i + 3] & 0xff) << 24)
+         | (((long) data[i + 4] & 0xff) << 32)
+         | (((long) data[i + 5] & 0xff) << 40)
+         | (((long) data[i + 6] & 0xff) << 48)
+         | (((long) data[i + 7] & 0xff) << 56);
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
 }
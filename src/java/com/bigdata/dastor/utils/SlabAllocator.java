@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BIGDATA:
+ * An append-only arena of off-heap (direct) slabs.
+ *
+ * Callers allocate a region, copy their bytes into it, and keep only the
+ * returned long reference (slab index in the high 32 bits, offset in the low
+ * 32 bits).  Regions are never freed individually: the whole arena is dropped
+ * at once by release(), which is what a memtable wants after its flush.
+ *
+ * Allocation is lock-free within the current slab; only switching to a new
+ * slab synchronizes.  Regions larger than MAX_SLABBED_SIZE get a dedicated
+ * buffer so that they don't waste the tail of a shared slab.
+ */
+public class SlabAllocator
+{
+    public static final int SLAB_SIZE = 1024 * 1024;
+    private static final int MAX_SLABBED_SIZE = SLAB_SIZE / 8;
+
+    private volatile ByteBuffer[] slabs = new ByteBuffer[16];
+    private int slabCount = 0; // guarded by this
+    private volatile Region currentRegion;
+
+    private final AtomicLong allocatedBytes = new AtomicLong(0);
+    private final AtomicLong usedBytes = new AtomicLong(0);
+
+    public SlabAllocator()
+    {
+        currentRegion = newRegion(SLAB_SIZE);
+    }
+
+    /**
+     * @return a reference to a new region of size bytes.
+     */
+    public long allocate(int size)
+    {
+        assert size >= 0;
+        usedBytes.addAndGet(size);
+        if (size > MAX_SLABBED_SIZE)
+            return reference(newRegion(size).index, 0);
+
+        while (true)
+        {
+            Region region = currentRegion;
+            int offset = region.allocate(size);
+            if (offset >= 0)
+                return reference(region.index, offset);
+
+            synchronized (this)
+            {
+                // another thread may already have switched the region
+                if (currentRegion == region)
+                    currentRegion = newRegion(SLAB_SIZE);
+            }
+        }
+    }
+
+    /**
+     * allocate a region for bytes[offset, offset+length) and copy them in.
+     * @return the reference of the copy.
+     */
+    public long copy(byte[] bytes, int offset, int length)
+    {
+        long ref = allocate(length);
+        ByteBuffer dup = slab(ref).duplicate();
+        dup.position(offset(ref));
+        dup.put(bytes, offset, length);
+        return ref;
+    }
+
+    public int getInt(long ref, int delta)
+    {
+        return slab(ref).getInt(offset(ref) + delta);
+    }
+
+    public int getUnsignedShort(long ref, int delta)
+    {
+        return slab(ref).getShort(offset(ref) + delta) & 0xFFFF;
+    }
+
+    /**
+     * copy length bytes starting at delta past ref into dest.
+     */
+    public void get(long ref, int delta, byte[] dest, int destOffset, int length)
+    {
+        ByteBuffer dup = slab(ref).duplicate();
+        dup.position(offset(ref) + delta);
+        dup.get(dest, destOffset, length);
+    }
+
+    /**
+     * @return the bytes reserved from the system, including unused slab tails.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return the bytes handed out to callers.
+     */
+    public long getUsedBytes()
+    {
+        return usedBytes.get();
+    }
+
+    /**
+     * drop all slabs at once.  The direct memory is reclaimed when the buffers
+     * become unreachable, so a reader still holding a slab stays safe.
+     */
+    public synchronized void release()
+    {
+        slabs = null;
+        currentRegion = null;
+        slabCount = 0;
+    }
+
+    public boolean isReleased()
+    {
+        return slabs == null;
+    }
+
+    private ByteBuffer slab(long ref)
+    {
+        ByteBuffer[] current = slabs;
+        if (current == null)
+            throw new IllegalStateException("arena has been released");
+        return current[(int)(ref >>> 32)];
+    }
+
+    private static int offset(long ref)
+    {
+        return (int)ref;
+    }
+
+    private static long reference(int index, int offset)
+    {
+        return ((long)index << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private synchronized Region newRegion(int size)
+    {
+        if (slabs == null)
+            throw new IllegalStateException("arena has been released");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        if (slabCount == slabs.length)
+        {
+            ByteBuffer[] grown = new ByteBuffer[slabs.length * 2];
+            System.arraycopy(slabs, 0, grown, 0, slabCount);
+            grown[slabCount] = buffer;
+            slabs = grown;
+        }
+        else
+        {
+            slabs[slabCount] = buffer;
+            // re-publish so that readers see the new slab through the volatile
+            slabs = slabs;
+        }
+        allocatedBytes.addAndGet(size);
+        return new Region(slabCount++, size);
+    }
+
+    private static class Region
+    {
+        final int index;
+        final int capacity;
+        final AtomicInteger nextFreeOffset = new AtomicInteger(0);
+
+        Region(int index, int capacity)
+        {
+            this.index = index;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return the offset of the allocated region, or -1 if this slab is full.
+         */
+        int allocate(int size)
+        {
+            while (true)
+            {
+                int oldOffset = nextFreeOffset.get();
+                if (oldOffset + size > capacity)
+                    return -1;
+                if (nextFreeOffset.compareAndSet(oldOffset, oldOffset + size))
+                    return oldOffset;
+            }
+        }
+    }
+}
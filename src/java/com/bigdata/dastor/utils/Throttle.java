@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bigdata.dastor.utils;
+
+/**
+ * BIGDATA:
+ * Paces the threads sharing it to a total rate of bytes per second: each
+ * acquire reserves the time its bytes take at that rate after those of the
+ * previous acquires, and sleeps until then.  A rate of 0 is unlimited, and
+ * the rate may be changed at any time.
+ */
+public class Throttle
+{
+    private volatile long bytesPerSecond;
+    private long nextFreeNanos = 0; // when the bytes acquired so far are paid for
+
+    public Throttle(long bytesPerSecond)
+    {
+        setRate(bytesPerSecond);
+    }
+
+    public void setRate(long bytesPerSecond)
+    {
+        assert bytesPerSecond >= 0;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getRate()
+    {
+        return bytesPerSecond;
+    }
+
+    public void acquire(long bytes)
+    {
+        long rate = bytesPerSecond;
+        if (rate <= 0 || bytes <= 0)
+            return;
+        long waitNanos;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            // time unused while idle is not saved up for a burst
+            if (nextFreeNanos < now)
+                nextFreeNanos = now;
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += (long) (bytes * 1000000000.0 / rate);
+        }
+        if (waitNanos <= 0)
+            return;
+        try
+        {
+            Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+}
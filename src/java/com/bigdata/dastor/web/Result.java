@@ -248,10 +248,10 @@ public class Result {
         double writeLatency;
         double writeThroughput;
         int pendingTasks;
-        int keyCacheCapacity;
+        long keyCacheCapacity;
         int keyCacheSize;
         double keyCacheHitRate;
-        int rowCacheCapacity;
+        long rowCacheCapacity;
         int rowCacheSize;
         double rowCacheHitRate;
         long compactedRowMinimumSize;
@@ -430,13 +430,13 @@ public class Result {
         /**
          * @return the keyCacheCapacity
          */
-        public int getKeyCacheCapacity() {
+        public long getKeyCacheCapacity() {
             return keyCacheCapacity;
         }
         /**
          * @param keyCacheCapacity the keyCacheCapacity to set
          */
-        public void setKeyCacheCapacity(int keyCacheCapacity) {
+        public void setKeyCacheCapacity(long keyCacheCapacity) {
             this.keyCacheCapacity = keyCacheCapacity;
         }
         /**
@@ -466,13 +466,13 @@ public class Result {
         /**
          * @return the rowCacheCapacity
          */
-        public int getRowCacheCapacity() {
+        public long getRowCacheCapacity() {
             return rowCacheCapacity;
         }
         /**
          * @param rowCacheCapacity the rowCacheCapacity to set
          */
-        public void setRowCacheCapacity(int rowCacheCapacity) {
+        public void setRowCacheCapacity(long rowCacheCapacity) {
             rowCacheCapacity = rowCacheCapacity;
         }
         /**